@@ -94,10 +94,8 @@ public class AccessChecker
       }
       return false;
     }
-    for (final Integer groupId : groupIds) {
-      if (node.hasPermission(groupId, accessType, operationType) == true) {
-        return true;
-      }
+    if (taskTree.hasPermission(groupIds, taskId, accessType, operationType) == true) {
+      return true;
     }
     if (throwException == true) {
       throw new AccessException(taskId, accessType, operationType);
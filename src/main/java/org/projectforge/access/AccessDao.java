@@ -24,8 +24,10 @@
 package org.projectforge.access;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.Validate;
 import org.hibernate.Hibernate;
 import org.hibernate.criterion.Restrictions;
@@ -117,6 +119,44 @@ public class AccessDao extends BaseDao<GroupTaskAccessDO>
     return list;
   }
 
+  /**
+   * Loads all GroupTaskAccessDO (including deleted ones) modified after the given time stamp without any access checking.
+   * @see org.projectforge.core.BaseDao#internalLoadModifiedSince(java.util.Date)
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public List<GroupTaskAccessDO> internalLoadModifiedSince(final Date since)
+  {
+    Validate.notNull(since);
+    List<GroupTaskAccessDO> list = getHibernateTemplate().find(
+        "from GroupTaskAccessDO g join fetch g.accessEntries where g.lastUpdate > ? order by g.task.id, g.group.id", since);
+    list = selectUnique(list);
+    return list;
+  }
+
+  /**
+   * @return The ids of all GroupTaskAccessDO (not deleted ones). Used for detecting deleted entries by the task tree.
+   */
+  @SuppressWarnings("unchecked")
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public List<Integer> internalLoadAllIds()
+  {
+    return getHibernateTemplate().find("select g.id from GroupTaskAccessDO g where deleted=false");
+  }
+
+  /**
+   * @return The number of all GroupTaskAccessDO (not deleted ones). Used by the task tree for detecting deleted entries without loading all
+   *         ids.
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public long internalCountAll()
+  {
+    @SuppressWarnings("unchecked")
+    final List<Number> list = getHibernateTemplate().find("select count(g.id) from GroupTaskAccessDO g where deleted=false");
+    return CollectionUtils.isNotEmpty(list) == true && list.get(0) != null ? list.get(0).longValue() : 0;
+  }
+
   @Override
   protected String[] getAdditionalSearchFields()
   {
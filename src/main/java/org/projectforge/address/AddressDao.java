@@ -127,13 +127,7 @@ public class AddressDao extends BaseDao<AddressDO>
   @Override
   public List<AddressDO> getList(final BaseSearchFilter filter)
   {
-    final AddressFilter myFilter;
-    if (filter instanceof AddressFilter) {
-      myFilter = (AddressFilter) filter;
-    } else {
-      myFilter = new AddressFilter(filter);
-    }
-    final QueryFilter queryFilter = new QueryFilter(myFilter);
+    final AddressFilter myFilter = asAddressFilter(filter);
     if (StringUtils.isBlank(myFilter.getSearchString()) == true) {
       if (myFilter.isDeleted() == false) {
         if (myFilter.isNewest() == true) {
@@ -149,6 +143,32 @@ public class AddressDao extends BaseDao<AddressDO>
         myFilter.setSearchString("*" + myFilter.getSearchString() + "*");
       }
     }
+    return getList(createQueryFilter(myFilter));
+  }
+
+  /**
+   * The newest entries and the favorites aren't selected by the query filter.
+   * @see org.projectforge.core.BaseDao#isKeysetPagingSupported(org.projectforge.core.BaseSearchFilter)
+   */
+  @Override
+  public boolean isKeysetPagingSupported(final BaseSearchFilter filter)
+  {
+    final AddressFilter myFilter = asAddressFilter(filter);
+    if (myFilter.isDeleted() == false && (myFilter.isNewest() == true || myFilter.isMyFavorites() == true)) {
+      return false;
+    }
+    return super.isKeysetPagingSupported(filter);
+  }
+
+  /**
+   * Selects the contact and address status of the filter.
+   * @see org.projectforge.core.BaseDao#createQueryFilter(org.projectforge.core.BaseSearchFilter)
+   */
+  @Override
+  protected QueryFilter createQueryFilter(final BaseSearchFilter filter)
+  {
+    final AddressFilter myFilter = asAddressFilter(filter);
+    final QueryFilter queryFilter = new QueryFilter(myFilter);
     if ("filter".equals(myFilter.getListType()) == true) {
       // Proceed contact status:
       // Use filter only for non deleted entries:
@@ -193,7 +213,15 @@ public class AddressDao extends BaseDao<AddressDO>
       }
     }
     queryFilter.addOrder(Order.asc("name"));
-    return getList(queryFilter);
+    return queryFilter;
+  }
+
+  private AddressFilter asAddressFilter(final BaseSearchFilter filter)
+  {
+    if (filter instanceof AddressFilter) {
+      return (AddressFilter) filter;
+    }
+    return new AddressFilter(filter);
   }
 
   /**
@@ -51,6 +51,9 @@ public class Holidays
   /** Contains all holidays of a year. Key is the year. Value is a map of all holidays in the year with the day of the year as key. */
   private Map<Integer, Map<Integer, Holiday>> holidaysByYear = new HashMap<Integer, Map<Integer, Holiday>>();
 
+  /** Precomputed working days per year. Key is the year. */
+  private Map<Integer, WorkingDaysOfYear> workingDaysByYear = new HashMap<Integer, WorkingDaysOfYear>();
+
   private Map<HolidayDefinition, ConfigureHoliday> reconfiguredHolidays = new HashMap<HolidayDefinition, ConfigureHoliday>();
 
   private ConfigXml xmlConfiguration;
@@ -183,6 +186,7 @@ public class Holidays
           }
         }
         holidaysByYear.clear();
+        workingDaysByYear.clear();
       }
     }
     Map<Integer, Holiday> holidays = holidaysByYear.get(new Integer(year));
@@ -193,6 +197,20 @@ public class Holidays
     return holidays;
   }
 
+  /**
+   * @param year
+   * @return The precomputed working days of the given year.
+   */
+  public synchronized WorkingDaysOfYear getWorkingDaysOfYear(final int year)
+  {
+    WorkingDaysOfYear workingDays = workingDaysByYear.get(year);
+    if (workingDays == null) {
+      workingDays = new WorkingDaysOfYear(year, getHolidays(year));
+      workingDaysByYear.put(year, workingDays);
+    }
+    return workingDays;
+  }
+
   public boolean isHoliday(int year, int dayOfYear)
   {
     return (getHolidays(year).containsKey(dayOfYear) == true);
@@ -200,14 +218,7 @@ public class Holidays
 
   public boolean isWorkingDay(final DayHolder date)
   {
-    if (date.isWeekend() == true) {
-      return false;
-    }
-    final Holiday day = getHolidays(date.getYear()).get(date.getDayOfYear());
-    if (day != null && day.isWorkingDay() == false) {
-      return false;
-    }
-    return true;
+    return getWorkingDaysOfYear(date.getYear()).isWorkingDay(date.getDayOfYear());
   }
 
   public BigDecimal getWorkFraction(final DayHolder date)
@@ -0,0 +1,181 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.calendar;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Map;
+
+import org.projectforge.common.DateHelper;
+
+/**
+ * Precomputed working days of one year: a bitmap of the working days and cumulative counts per day of year. Therefore the number of working
+ * days between two days and the n-th working day of the year are calculated in constant or logarithmic time.<br/>
+ * Working days with a work fraction (e. g. 24th and 31st of December) are counted as full working days by {@link #getWorkingDays(int, int)}
+ * (as needed for adding working days). {@link #getNumberOfWorkingDays(int, int)} considers the work fractions.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class WorkingDaysOfYear
+{
+  private final int year;
+
+  private final int daysOfYear;
+
+  private final long[] workingDayBits;
+
+  /** Number of working days from the first day of the year until the given day of year (inclusive). Index 0 is always 0. */
+  private final int[] workingDayCounts;
+
+  /** Number of working days without work fraction from the first day of the year until the given day of year (inclusive). */
+  private final int[] fullWorkingDayCounts;
+
+  /** Sum of the work fractions from the first day of the year until the given day of year (inclusive). */
+  private final BigDecimal[] workFractionSums;
+
+  WorkingDaysOfYear(final int year, final Map<Integer, Holiday> holidays)
+  {
+    this.year = year;
+    final Calendar cal = new GregorianCalendar(DateHelper.UTC);
+    cal.clear();
+    cal.set(Calendar.YEAR, year);
+    cal.set(Calendar.DAY_OF_YEAR, 1);
+    this.daysOfYear = cal.getActualMaximum(Calendar.DAY_OF_YEAR);
+    final int firstDayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+    this.workingDayBits = new long[(daysOfYear + 64) / 64];
+    this.workingDayCounts = new int[daysOfYear + 1];
+    this.fullWorkingDayCounts = new int[daysOfYear + 1];
+    this.workFractionSums = new BigDecimal[daysOfYear + 1];
+    workFractionSums[0] = BigDecimal.ZERO;
+    for (int dayOfYear = 1; dayOfYear <= daysOfYear; dayOfYear++) {
+      final int dayOfWeek = (firstDayOfWeek - 1 + dayOfYear - 1) % 7 + 1;
+      boolean workingDay = dayOfWeek != Calendar.SATURDAY && dayOfWeek != Calendar.SUNDAY;
+      BigDecimal workFraction = null;
+      if (workingDay == true) {
+        final Holiday holiday = holidays != null ? holidays.get(dayOfYear) : null;
+        if (holiday != null) {
+          workingDay = holiday.isWorkingDay();
+          workFraction = holiday.getWorkFraction();
+        }
+      }
+      workingDayCounts[dayOfYear] = workingDayCounts[dayOfYear - 1];
+      fullWorkingDayCounts[dayOfYear] = fullWorkingDayCounts[dayOfYear - 1];
+      workFractionSums[dayOfYear] = workFractionSums[dayOfYear - 1];
+      if (workingDay == true) {
+        workingDayBits[dayOfYear >> 6] |= 1L << (dayOfYear & 63);
+        workingDayCounts[dayOfYear]++;
+        if (workFraction != null) {
+          workFractionSums[dayOfYear] = workFractionSums[dayOfYear].add(workFraction);
+        } else {
+          fullWorkingDayCounts[dayOfYear]++;
+        }
+      }
+    }
+  }
+
+  public int getYear()
+  {
+    return year;
+  }
+
+  /**
+   * @return 365 or 366.
+   */
+  public int getDaysOfYear()
+  {
+    return daysOfYear;
+  }
+
+  /**
+   * @param dayOfYear 1-based.
+   */
+  public boolean isWorkingDay(final int dayOfYear)
+  {
+    if (dayOfYear < 1 || dayOfYear > daysOfYear) {
+      return false;
+    }
+    return (workingDayBits[dayOfYear >> 6] & (1L << (dayOfYear & 63))) != 0;
+  }
+
+  /**
+   * @return The number of working days of the whole year (work fractions are counted as full working days).
+   */
+  public int getWorkingDays()
+  {
+    return workingDayCounts[daysOfYear];
+  }
+
+  /**
+   * @param fromDayOfYear Inclusive.
+   * @param toDayOfYear Inclusive.
+   * @return The number of working days of the given period (work fractions are counted as full working days).
+   */
+  public int getWorkingDays(final int fromDayOfYear, final int toDayOfYear)
+  {
+    final int from = Math.max(fromDayOfYear, 1);
+    final int to = Math.min(toDayOfYear, daysOfYear);
+    if (to < from) {
+      return 0;
+    }
+    return workingDayCounts[to] - workingDayCounts[from - 1];
+  }
+
+  /**
+   * @param fromDayOfYear Inclusive.
+   * @param toDayOfYear Inclusive.
+   * @return The number of working days of the given period (the work fractions of days such as 24th of December are considered).
+   */
+  public BigDecimal getNumberOfWorkingDays(final int fromDayOfYear, final int toDayOfYear)
+  {
+    final int from = Math.max(fromDayOfYear, 1);
+    final int to = Math.min(toDayOfYear, daysOfYear);
+    if (to < from) {
+      return BigDecimal.ZERO;
+    }
+    final BigDecimal fractions = workFractionSums[to].subtract(workFractionSums[from - 1]);
+    return fractions.add(new BigDecimal(fullWorkingDayCounts[to] - fullWorkingDayCounts[from - 1]));
+  }
+
+  /**
+   * @param n 1-based.
+   * @return The day of year of the n-th working day of this year or -1 if the year doesn't have n working days.
+   */
+  public int getNthWorkingDay(final int n)
+  {
+    if (n < 1 || n > getWorkingDays()) {
+      return -1;
+    }
+    // Binary search for the first day with workingDayCounts[day] >= n:
+    int low = 1, high = daysOfYear;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (workingDayCounts[mid] < n) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -23,9 +23,19 @@
 
 package org.projectforge.common;
 
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * This class is usefull, if the stored object of derived classes has to be cached. After reaching expireTime during a request, the method
- * refresh will be called.
+ * refresh will be called.<br/>
+ * Reading from a non-expired cache doesn't lock. If the cache is refreshed in background (see {@link #setRefreshInBackground(boolean)}),
+ * readers don't wait for a refresh after reaching the expire time and will be served with the old data until the refresh is done. This
+ * mode requires that the derived cache builds its data in new objects and publishes them at the end of the refresh (see
+ * {@link AbstractSnapshotCache}).<br/>
+ * After an explicit {@link #setExpired()} (e. g. by a writer) the next reader waits for the refresh in both modes (read your writes). If a
+ * refresh fails, the cache will be refreshed again by the next reader as long as no refresh succeeded.
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 public abstract class AbstractCache
@@ -38,13 +48,29 @@ public abstract class AbstractCache
 
   public static final long TICKS_PER_HOUR = TICKS_PER_MINUTE * 60;
 
-  protected long expireTime = 60 * TICKS_PER_MINUTE;
+  private static final String REFRESH_EXECUTOR_NAME = "CacheRefresh";
+
+  private static final int REFRESH_EXECUTOR_THREADS = 2;
+
+  protected volatile long expireTime = 60 * TICKS_PER_MINUTE;
+
+  private transient volatile long timeOfLastRefresh = -1;
+
+  private transient volatile boolean isExpired = true;
+
+  /** True, if at least one refresh succeeded. */
+  private transient volatile boolean initialized = false;
+
+  private transient final AtomicBoolean refreshInProgress = new AtomicBoolean();
 
-  private transient long timeOfLastRefresh = -1;
+  private transient final AtomicBoolean refreshScheduled = new AtomicBoolean();
 
-  private transient boolean isExpired = true;
+  /** Incremented by every call of setExpired for detecting calls during a running refresh. */
+  private transient final AtomicInteger expiredCounter = new AtomicInteger();
 
-  private transient boolean refreshInProgress = false;
+  private transient volatile boolean refreshInBackground = false;
+
+  private transient final CacheStatistics statistics = new CacheStatistics(getClass().getName());
 
   protected AbstractCache()
   {
@@ -71,44 +97,132 @@ public abstract class AbstractCache
   }
 
   /**
-   * Cache will be refreshed before next use.
+   * If true, a cache reaching its expire time will be refreshed by a background thread and the readers are served with the stale data
+   * meanwhile. The first initialization and the refresh after {@link #setExpired()} are done synchronously. Default is false.
+   */
+  protected void setRefreshInBackground(final boolean refreshInBackground)
+  {
+    this.refreshInBackground = refreshInBackground;
+  }
+
+  public boolean isRefreshInBackground()
+  {
+    return refreshInBackground;
+  }
+
+  /**
+   * Cache will be refreshed before next use. The next reader waits for the refresh also in background refresh mode, so a writer calling
+   * this method after modifying data reads its own writes.
    */
   public void setExpired()
   {
+    expiredCounter.incrementAndGet();
     this.isExpired = true;
   }
 
   /**
-   * Sets the cache to expired and calls checkRefresh, which forces refresh.
+   * Sets the cache to expired and calls checkRefresh, which forces refresh. The refresh is done synchronously also in background refresh
+   * mode.
    */
   public void forceReload()
   {
     setExpired();
-    checkRefresh();
+    synchronized (this) {
+      if (isRefreshNeeded() == true) {
+        doRefresh();
+      }
+    }
   }
 
   /**
-   * Checks the expire time and calls refresh, if cache is expired.
+   * Checks the expire time and calls refresh, if cache is expired. No lock is needed if the cache isn't expired.
    */
-  protected synchronized void checkRefresh()
+  protected void checkRefresh()
   {
-    if (refreshInProgress == true) {
-      // Do nothing because refreshing is already in progress.
+    if (isRefreshNeeded() == false) {
+      statistics.hit();
       return;
     }
-    if (this.isExpired == true || System.currentTimeMillis() - this.timeOfLastRefresh > this.expireTime) {
-      try {
-        refreshInProgress = true;
-        this.timeOfLastRefresh = System.currentTimeMillis();
-        try {
-          this.refresh();
-        } catch (final Throwable ex) {
-          log.error(ex.getMessage(), ex);
+    if (refreshInBackground == true && initialized == true && isExpired == false) {
+      // Expire time reached: serve the stale data and refresh in background.
+      statistics.hit();
+      if (refreshInProgress.get() == false) {
+        scheduleRefresh();
+      }
+      return;
+    }
+    synchronized (this) {
+      if (refreshInProgress.get() == true) {
+        // Do nothing because refreshing is already in progress (re-entrant call from refresh()).
+        return;
+      }
+      if (isRefreshNeeded() == true) {
+        doRefresh();
+      }
+    }
+  }
+
+  private void scheduleRefresh()
+  {
+    if (refreshScheduled.compareAndSet(false, true) == false) {
+      // Refresh is already queued.
+      return;
+    }
+    try {
+      BackgroundExecutors.getInstance().getExecutor(REFRESH_EXECUTOR_NAME, REFRESH_EXECUTOR_THREADS).execute(new Runnable() {
+        public void run()
+        {
+          refreshScheduled.set(false);
+          synchronized (AbstractCache.this) {
+            if (isRefreshNeeded() == true) {
+              doRefresh();
+            }
+          }
         }
-        this.isExpired = false;
-      } finally {
-        refreshInProgress = false;
+      });
+    } catch (final RejectedExecutionException ex) {
+      // Thread pool is shutting down, the next reader will try again.
+      refreshScheduled.set(false);
+    }
+  }
+
+  private boolean isRefreshNeeded()
+  {
+    return this.isExpired == true || System.currentTimeMillis() - this.timeOfLastRefresh > this.expireTime;
+  }
+
+  /**
+   * Must be called inside a synchronized block.
+   */
+  private void doRefresh()
+  {
+    if (refreshInProgress.compareAndSet(false, true) == false) {
+      return;
+    }
+    try {
+      final long start = System.currentTimeMillis();
+      final int expiredCount = expiredCounter.get();
+      boolean success = false;
+      try {
+        this.refresh();
+        success = true;
+      } catch (final Throwable ex) {
+        log.error(ex.getMessage(), ex);
       }
+      if (success == true) {
+        // Readers (without lock) will see the new state not until the refresh is finished:
+        this.timeOfLastRefresh = start;
+        // Cache is still expired if setExpired was called during the refresh:
+        this.isExpired = expiredCount != expiredCounter.get();
+        this.initialized = true;
+        statistics.refreshed(start, System.currentTimeMillis() - start);
+      } else if (initialized == true) {
+        // Keep the old data until the next expiry (explicitly expired caches are refreshed again by the next reader).
+        this.timeOfLastRefresh = start;
+      }
+      // Otherwise the cache was never initialized and the next reader tries again.
+    } finally {
+      refreshInProgress.set(false);
     }
   }
 
@@ -117,7 +231,23 @@ public abstract class AbstractCache
    */
   public boolean isRefreshInProgress()
   {
-    return refreshInProgress;
+    return refreshInProgress.get();
+  }
+
+  /**
+   * @return The statistics of this cache (refresh duration, age and hit count).
+   */
+  public CacheStatistics getStatistics()
+  {
+    return statistics;
+  }
+
+  /**
+   * @return true, if at least one refresh succeeded.
+   */
+  public boolean isInitialized()
+  {
+    return initialized;
   }
 
   /**
@@ -0,0 +1,94 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common;
+
+/**
+ * Base class for caches holding their data in an immutable snapshot object. The snapshot is published through a volatile reference, so
+ * readers never lock. A snapshot reaching the expire time will be rebuilt by a background thread while the readers are served with the old
+ * snapshot. The first access waits for the initial snapshot and the first access after {@link #setExpired()} waits for the new snapshot.<br/>
+ * The snapshot must not be modified after publishing. Modifications have to be done by building a new snapshot (copy on write) and
+ * calling {@link #setSnapshot(Object)} or by expiring the cache.
+ * @param <S> The type of the snapshot.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public abstract class AbstractSnapshotCache<S> extends AbstractCache
+{
+  private volatile S snapshot;
+
+  protected AbstractSnapshotCache()
+  {
+    setRefreshInBackground(true);
+  }
+
+  protected AbstractSnapshotCache(final long expireTime)
+  {
+    super(expireTime);
+    setRefreshInBackground(true);
+  }
+
+  /**
+   * @return The current snapshot (refreshes the cache if needed).
+   * @throws IllegalStateException if no snapshot could be built yet (the next call tries again).
+   */
+  protected S getSnapshot()
+  {
+    checkRefresh();
+    final S result = snapshot;
+    if (result == null) {
+      throw new IllegalStateException("Cache " + getClass().getName() + " isn't available, building of the snapshot failed (see log).");
+    }
+    return result;
+  }
+
+  /**
+   * Publishes the given snapshot.
+   * @param snapshot
+   */
+  protected void setSnapshot(final S snapshot)
+  {
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Builds the snapshot with {@link #buildSnapshot()} and publishes it.
+   * @see org.projectforge.common.AbstractCache#refresh()
+   */
+  @Override
+  protected final void refresh()
+  {
+    final S newSnapshot = buildSnapshot();
+    if (newSnapshot != null) {
+      this.snapshot = newSnapshot;
+    } else if (this.snapshot == null) {
+      throw new IllegalStateException("Initial snapshot of " + getClass().getName() + " couldn't be built.");
+    }
+  }
+
+  /**
+   * Reads the data and builds a new snapshot. This method is called by a background thread (except of the first initialization), so it
+   * must not depend on the current user context.
+   * @return The new snapshot or null if the snapshot couldn't be build (the old snapshot will be kept).
+   */
+  protected abstract S buildSnapshot();
+}
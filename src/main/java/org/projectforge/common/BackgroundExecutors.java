@@ -0,0 +1,134 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owner of all shared thread pools used for background work (e. g. cache refreshes). The pools consist of daemon threads named after the
+ * pool and are created on first use. This singleton is declared as spring bean with destroy-method {@link #shutdown()}, so all pools are
+ * shut down if the application context is closed.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class BackgroundExecutors
+{
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(BackgroundExecutors.class);
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private static final BackgroundExecutors instance = new BackgroundExecutors();
+
+  private final Map<String, ExecutorService> executors = new HashMap<String, ExecutorService>();
+
+  public static BackgroundExecutors getInstance()
+  {
+    return instance;
+  }
+
+  private BackgroundExecutors()
+  {
+  }
+
+  /**
+   * @param name The name of the pool, used as prefix of the thread names.
+   * @param threads The number of threads of the pool (only used if the pool doesn't yet exist).
+   * @return The pool with the given name.
+   */
+  public synchronized ExecutorService getExecutor(final String name, final int threads)
+  {
+    ExecutorService executor = executors.get(name);
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(threads, newThreadFactory(name));
+      executors.put(name, executor);
+    }
+    return executor;
+  }
+
+  /**
+   * Delayed tasks not yet due are dropped on {@link #shutdown()}.
+   * @param name The name of the pool, used as prefix of the thread names.
+   * @param threads The number of threads of the pool (only used if the pool doesn't yet exist).
+   * @return The pool with the given name for delayed tasks.
+   * @throws IllegalStateException if a pool with the given name was already created by {@link #getExecutor(String, int)}.
+   */
+  public synchronized ScheduledExecutorService getScheduledExecutor(final String name, final int threads)
+  {
+    final ExecutorService executor = executors.get(name);
+    if (executor == null) {
+      final ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(threads, newThreadFactory(name));
+      scheduledExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+      executors.put(name, scheduledExecutor);
+      return scheduledExecutor;
+    }
+    if (executor instanceof ScheduledExecutorService == false) {
+      throw new IllegalStateException("Thread pool '" + name + "' isn't a pool for delayed tasks.");
+    }
+    return (ScheduledExecutorService) executor;
+  }
+
+  /**
+   * Shuts down all pools: running tasks are given some seconds to finish, afterwards they're interrupted. Pools requested after the
+   * shutdown are created again.
+   */
+  public synchronized void shutdown()
+  {
+    for (final ExecutorService executor : executors.values()) {
+      executor.shutdown();
+    }
+    for (final Map.Entry<String, ExecutorService> entry : executors.entrySet()) {
+      try {
+        if (entry.getValue().awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS) == false) {
+          log.warn("Tasks of thread pool '" + entry.getKey() + "' not finished, interrupting them.");
+          entry.getValue().shutdownNow();
+        }
+      } catch (final InterruptedException ex) {
+        entry.getValue().shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+    executors.clear();
+    log.info("Background thread pools shut down.");
+  }
+
+  private static ThreadFactory newThreadFactory(final String name)
+  {
+    final AtomicInteger counter = new AtomicInteger();
+    return new ThreadFactory() {
+      public Thread newThread(final Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+}
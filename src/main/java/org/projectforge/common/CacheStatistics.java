@@ -0,0 +1,129 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Statistics of a cache: number of hits (accesses without refresh), number and duration of refreshes and the age of the cached data.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class CacheStatistics
+{
+  private final String name;
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private volatile long refreshCount;
+
+  private volatile long lastRefreshDuration = -1;
+
+  private volatile long totalRefreshDuration;
+
+  private volatile long timeOfLastRefresh = -1;
+
+  CacheStatistics(final String name)
+  {
+    this.name = name;
+  }
+
+  void hit()
+  {
+    hitCount.incrementAndGet();
+  }
+
+  synchronized void refreshed(final long time, final long duration)
+  {
+    this.timeOfLastRefresh = time;
+    this.lastRefreshDuration = duration;
+    this.totalRefreshDuration += duration;
+    this.refreshCount++;
+  }
+
+  /**
+   * @return The name of the cache (class name).
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * @return The number of cache accesses served without a synchronous refresh.
+   */
+  public long getHitCount()
+  {
+    return hitCount.get();
+  }
+
+  public long getRefreshCount()
+  {
+    return refreshCount;
+  }
+
+  /**
+   * @return The duration of the last refresh in milliseconds or -1 if the cache wasn't refreshed yet.
+   */
+  public long getLastRefreshDuration()
+  {
+    return lastRefreshDuration;
+  }
+
+  /**
+   * @return The average duration of all refreshes in milliseconds or -1 if the cache wasn't refreshed yet.
+   */
+  public long getAverageRefreshDuration()
+  {
+    if (refreshCount == 0) {
+      return -1;
+    }
+    return totalRefreshDuration / refreshCount;
+  }
+
+  /**
+   * @return The age of the cached data in milliseconds or -1 if the cache wasn't refreshed yet.
+   */
+  public long getAge()
+  {
+    if (timeOfLastRefresh < 0) {
+      return -1;
+    }
+    return System.currentTimeMillis() - timeOfLastRefresh;
+  }
+
+  @Override
+  public String toString()
+  {
+    final ToStringBuilder sb = new ToStringBuilder(this);
+    sb.append("name", name);
+    sb.append("hitCount", getHitCount());
+    sb.append("refreshCount", refreshCount);
+    sb.append("lastRefreshDuration", lastRefreshDuration);
+    sb.append("averageRefreshDuration", getAverageRefreshDuration());
+    sb.append("age", getAge());
+    return sb.toString();
+  }
+}
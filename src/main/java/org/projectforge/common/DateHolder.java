@@ -32,7 +32,8 @@ import java.util.TimeZone;
 
 import org.apache.commons.lang.Validate;
 import org.apache.commons.lang.builder.HashCodeBuilder;
-import org.projectforge.calendar.DayHolder;
+import org.projectforge.calendar.Holidays;
+import org.projectforge.calendar.WorkingDaysOfYear;
 import org.projectforge.user.PFUserContext;
 
 /**
@@ -708,26 +709,47 @@ public class DateHolder implements Serializable, Cloneable, Comparable<DateHolde
   }
 
   /**
-   * Adds the given number of days (non-working days will be skipped). Maximum allowed value is 10.000 (for avoiding end-less loops).
+   * Adds the given number of days (non-working days will be skipped). Maximum allowed value is 10.000 (for avoiding end-less loops).<br/>
+   * The precomputed working days of the years are used, so the costs are independent of the number of days.
    * @param days Value can be positive or negative.
+   * @see WorkingDaysOfYear
    */
   public DateHolder addWorkingDays(final int days)
   {
     Validate.isTrue(days <= 10000);
-    short sign = 1;
-    if (days < 0) {
-      sign = -1;
+    if (days == 0) {
+      return this;
     }
-    int counter = 0;
-    for (int i = 0; i < 10000; i++) {
-      if (counter == days) {
-        break;
+    final Holidays holidays = Holidays.getInstance();
+    int year = calendar.get(Calendar.YEAR);
+    int dayOfYear = calendar.get(Calendar.DAY_OF_YEAR);
+    int remaining = Math.min(Math.abs(days), 10000);
+    for (int i = 0; i < 100; i++) { // Endless loop protection (a year without working days).
+      final WorkingDaysOfYear workingDays = holidays.getWorkingDaysOfYear(year);
+      if (days > 0) {
+        // Working days of this year after the current day:
+        final int available = workingDays.getWorkingDays(dayOfYear + 1, workingDays.getDaysOfYear());
+        if (remaining <= available) {
+          dayOfYear = workingDays.getNthWorkingDay(workingDays.getWorkingDays(1, dayOfYear) + remaining);
+          break;
+        }
+        remaining -= available;
+        ++year;
+        dayOfYear = 0;
+      } else {
+        // Working days of this year before the current day:
+        final int available = workingDays.getWorkingDays(1, dayOfYear - 1);
+        if (remaining <= available) {
+          dayOfYear = workingDays.getNthWorkingDay(available - remaining + 1);
+          break;
+        }
+        remaining -= available;
+        --year;
+        dayOfYear = holidays.getWorkingDaysOfYear(year).getDaysOfYear() + 1;
       }
-      do {
-        calendar.add(Calendar.DAY_OF_MONTH, sign);
-      } while (new DayHolder(this).isWorkingDay() == false);
-      counter += sign;
     }
+    calendar.set(Calendar.YEAR, year);
+    calendar.set(Calendar.DAY_OF_YEAR, dayOfYear);
     return this;
   }
 
@@ -32,6 +32,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -49,16 +50,21 @@ import org.apache.log4j.Logger;
 import org.apache.lucene.queryParser.MultiFieldQueryParser;
 import org.apache.lucene.util.Version;
 import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
 import org.hibernate.HibernateException;
 import org.hibernate.LockMode;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.search.FullTextQuery;
 import org.hibernate.search.FullTextSession;
 import org.hibernate.search.Search;
 import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.type.Type;
 import org.projectforge.access.AccessChecker;
 import org.projectforge.access.AccessException;
 import org.projectforge.access.OperationType;
@@ -79,6 +85,8 @@ import org.springframework.orm.hibernate3.support.HibernateDaoSupport;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import de.micromata.hibernate.history.Historizable;
@@ -330,6 +338,21 @@ public abstract class BaseDao<O extends ExtendedBaseDO< ? extends Serializable>>
     return list;
   }
 
+  /**
+   * Loads all objects (including deleted ones) modified after the given time stamp without any access checking. Used e. g. for incremental
+   * refreshes of caches.
+   * @param since
+   * @return All objects with a last update newer than the given time stamp.
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public List<O> internalLoadModifiedSince(final Date since)
+  {
+    Validate.notNull(since);
+    @SuppressWarnings("unchecked")
+    final List<O> list = getHibernateTemplate().find("from " + clazz.getSimpleName() + " t where t.lastUpdate > ?", since);
+    return list;
+  }
+
   @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
   public List<O> internalLoad(final Collection< ? extends Serializable> idList)
   {
@@ -363,10 +386,226 @@ public abstract class BaseDao<O extends ExtendedBaseDO< ? extends Serializable>>
   @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
   public List<O> getList(final BaseSearchFilter filter)
   {
-    final QueryFilter queryFilter = new QueryFilter(filter);
+    final QueryFilter queryFilter = createQueryFilter(filter);
     return getList(queryFilter);
   }
 
+  /**
+   * Builds the query filter used by {@link #getList(BaseSearchFilter)} and {@link #getPage(BaseSearchFilter, String, boolean, PageToken, int)}
+   * by simply calling constructor of QueryFilter with given search filter. Override this method for building more complex query filters.
+   * @param filter
+   */
+  protected QueryFilter createQueryFilter(final BaseSearchFilter filter)
+  {
+    return new QueryFilter(filter);
+  }
+
+  /**
+   * Keyset pagination isn't supported for full text searches (hibernate search) and for filtering by history entries (modification
+   * filter).
+   * @param filter
+   * @return true if {@link #getPage(QueryFilter, String, boolean, PageToken, int)} may be used for the given filter.
+   */
+  public boolean isKeysetPagingSupported(final BaseSearchFilter filter)
+  {
+    return filter.isSearchNotEmpty() == false && filter.isUseModificationFilter() == false;
+  }
+
+  /**
+   * @param property
+   * @return true if the given property may be used as keyset property: id or any persistent property of a basic type (no associations and
+   *         collections, no nested or transient properties).
+   */
+  public boolean isKeysetPropertySupported(final String property)
+  {
+    if (property == null || "id".equals(property) == true) {
+      return true;
+    }
+    final ClassMetadata metadata = getSessionFactory().getClassMetadata(clazz);
+    final String[] propertyNames = metadata.getPropertyNames();
+    for (int i = 0; i < propertyNames.length; i++) {
+      if (property.equals(propertyNames[i]) == true) {
+        final Type type = metadata.getPropertyTypes()[i];
+        return type.isAssociationType() == false && type.isCollectionType() == false && type.isComponentType() == false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Same as {@link #getPage(QueryFilter, String, boolean, PageToken, int)}, but the keyset property may be nullable: the entries without
+   * value are returned after all other entries (ordered by id), independent of the ordering of null values by the data base.
+   * @see #createQueryFilter(BaseSearchFilter)
+   * @see #isKeysetPropertySupported(String)
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public ResultPage<O> getPage(final BaseSearchFilter filter, final String keysetProperty, final boolean ascending, final PageToken token,
+      final int pageSize) throws AccessException
+  {
+    if (keysetProperty == null || "id".equals(keysetProperty) == true || isNullable(keysetProperty) == false) {
+      return getPage(createQueryFilter(filter), keysetProperty, ascending, token, pageSize);
+    }
+    final List<O> entries = new ArrayList<O>(pageSize);
+    if (token == null || token.getValue() != null) {
+      // Entries with values first:
+      final QueryFilter queryFilter = createQueryFilter(filter);
+      queryFilter.add(Restrictions.isNotNull(keysetProperty));
+      final ResultPage<O> page = getPage(queryFilter, keysetProperty, ascending, token, pageSize);
+      if (page.hasNext() == true) {
+        return page;
+      }
+      entries.addAll(page.getEntries());
+    }
+    // Entries without value (the token's value is null, if the previous page already ended inside this range):
+    final QueryFilter queryFilter = createQueryFilter(filter);
+    queryFilter.add(Restrictions.isNull(keysetProperty));
+    final PageToken nullToken = token != null && token.getValue() == null ? token : null;
+    if (entries.size() == pageSize) {
+      // Page is full, only check if there are any entries without value:
+      final ResultPage<O> page = getPage(queryFilter, "id", ascending, null, 1);
+      if (page.getEntries().isEmpty() == true) {
+        return new ResultPage<O>(entries, null);
+      }
+      final O last = entries.get(pageSize - 1);
+      return new ResultPage<O>(entries, new PageToken(getKeysetValue(last, keysetProperty), last.getId()));
+    }
+    final ResultPage<O> page = getPage(queryFilter, "id", ascending, nullToken, pageSize - entries.size());
+    entries.addAll(page.getEntries());
+    return new ResultPage<O>(entries, page.hasNext() == true ? new PageToken(null, page.getNextToken().getId()) : null);
+  }
+
+  private boolean isNullable(final String property)
+  {
+    final ClassMetadata metadata = getSessionFactory().getClassMetadata(clazz);
+    final String[] propertyNames = metadata.getPropertyNames();
+    for (int i = 0; i < propertyNames.length; i++) {
+      if (property.equals(propertyNames[i]) == true) {
+        return metadata.getPropertyNullability()[i];
+      }
+    }
+    return true;
+  }
+
+  private Object getKeysetValue(final O obj, final String property)
+  {
+    if ("id".equals(property) == true) {
+      return obj.getId();
+    }
+    return getSessionFactory().getClassMetadata(clazz).getPropertyValue(obj, property, EntityMode.POJO);
+  }
+
+  /**
+   * Processes the entries matching the given filter one by one without loading the whole result list into memory (e. g. for building sums
+   * or statistics of lists shown by keyset pagination). Every processed entry is evicted from the session. Only entries with select access
+   * are given to the handler.
+   * @param filter
+   * @param handler
+   * @see #createQueryFilter(BaseSearchFilter)
+   * @see #isKeysetPagingSupported(BaseSearchFilter)
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public void processList(final BaseSearchFilter filter, final ResultHandler<O> handler) throws AccessException
+  {
+    checkLoggedInUserSelectAccess();
+    if (accessChecker.isRestrictedUser() == true) {
+      return;
+    }
+    Validate.isTrue(isKeysetPagingSupported(filter) == true, "Processing of lists not supported for full text search.");
+    final QueryFilter queryFilter = createQueryFilter(filter);
+    if (filter.isIgnoreDeleted() == false) {
+      queryFilter.add(Restrictions.eq("deleted", filter.isDeleted()));
+    }
+    final PFUserDO user = PFUserContext.getUser();
+    final Session session = getSession();
+    final Criteria criteria = queryFilter.buildCriteria(session, clazz);
+    final ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+    try {
+      Serializable lastId = null;
+      while (results.next() == true) {
+        @SuppressWarnings("unchecked")
+        final O obj = (O) results.get(0);
+        if (lastId != null && lastId.equals(obj.getId()) == true) {
+          // Duplicate row (e. g. due to joins).
+          continue;
+        }
+        lastId = obj.getId();
+        final boolean proceed = hasSelectAccess(user, obj, false) == false || handler.handle(obj) == true;
+        session.evict(obj);
+        if (proceed == false) {
+          break;
+        }
+      }
+    } finally {
+      results.close();
+    }
+  }
+
+  /**
+   * Gets one page of the result list by using keyset (seek) pagination: the entries are ordered by the given keyset property and the id,
+   * the page starts directly after the entry of the given token. The entries are read by a forward only cursor and the select access is
+   * checked entry by entry, so only the entries of this page (and one more) are loaded into the session. Orders of the given filter are
+   * replaced.
+   * @param filter
+   * @param keysetProperty Property of the order (must be not null for all entries) or null for ordering by id.
+   * @param ascending
+   * @param token The token of the previous page ({@link ResultPage#getNextToken()}) or null for the first page.
+   * @param pageSize
+   * @return The page, never null.
+   * @see #isKeysetPagingSupported(BaseSearchFilter)
+   */
+  @SuppressWarnings("unchecked")
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public ResultPage<O> getPage(final QueryFilter filter, final String keysetProperty, final boolean ascending, final PageToken token,
+      final int pageSize) throws AccessException
+  {
+    Validate.isTrue(pageSize > 0, "Page size must be positive.");
+    checkLoggedInUserSelectAccess();
+    final List<O> entries = new ArrayList<O>(pageSize);
+    if (accessChecker.isRestrictedUser() == true) {
+      return new ResultPage<O>(entries, null);
+    }
+    final BaseSearchFilter searchFilter = filter.getFilter();
+    Validate.isTrue(isKeysetPagingSupported(searchFilter) == true, "Keyset pagination not supported for full text search.");
+    filter.clearErrorMessage();
+    if (searchFilter.isIgnoreDeleted() == false) {
+      filter.add(Restrictions.eq("deleted", searchFilter.isDeleted()));
+    }
+    final String property = keysetProperty != null ? keysetProperty : "id";
+    filter.setKeysetOrder(property, ascending, token);
+    final PFUserDO user = PFUserContext.getUser();
+    final Session session = getSession();
+    final Criteria criteria = filter.buildCriteria(session, clazz);
+    criteria.setFetchSize(Math.min(pageSize + 1, 500));
+    PageToken nextToken = null;
+    final ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+    try {
+      Serializable lastId = null;
+      while (results.next() == true) {
+        final O obj = (O) results.get(0);
+        if (lastId != null && lastId.equals(obj.getId()) == true) {
+          // Duplicate row (e. g. due to joins).
+          continue;
+        }
+        lastId = obj.getId();
+        if (hasSelectAccess(user, obj, false) == false) {
+          session.evict(obj);
+          continue;
+        }
+        if (entries.size() == pageSize) {
+          // There is at least one more entry.
+          session.evict(obj);
+          final O last = entries.get(pageSize - 1);
+          nextToken = new PageToken(getKeysetValue(last, property), last.getId());
+          break;
+        }
+        entries.add(obj);
+      }
+    } finally {
+      results.close();
+    }
+    return new ResultPage<O>(entries, nextToken);
+  }
+
   /**
    * Gets the list filtered by the given filter.
    * @param filter
@@ -937,6 +1176,31 @@ public abstract class BaseDao<O extends ExtendedBaseDO< ? extends Serializable>>
   {
   }
 
+  /**
+   * Runs the given task after the commit of the current transaction, e. g. for updating caches only with committed data. The task is
+   * discarded if the transaction is rolled back. Without an active transaction the task is run immediately.
+   * @param task
+   */
+  protected void runAfterCommit(final Runnable task)
+  {
+    if (TransactionSynchronizationManager.isSynchronizationActive() == false) {
+      task.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+      @Override
+      public void afterCommit()
+      {
+        try {
+          task.run();
+        } catch (final RuntimeException ex) {
+          // The transaction is already committed, so don't disturb the caller.
+          log.error("Exception encountered while running task after commit: " + ex.getMessage(), ex);
+        }
+      }
+    });
+  }
+
   /**
    * This method is for internal use e. g. for updating objects without check access.
    * @param obj
@@ -190,6 +190,8 @@ public class ConfigXml
 
   private String loginHandlerClass;
 
+  private String clientIpHeader;
+
   /**
    * Separated list of main classes (separated by white chars and or ',').
    */
@@ -247,6 +249,7 @@ public class ConfigXml
     logoFile = null;
     keystoreFile = null;
     keystorePassphrase = null;
+    clientIpHeader = null;
     cronExpressionHourlyJob = null;
     cronExpressionNightlyJob = null;
     cronExpressionMebPollingJob = null;
@@ -1067,6 +1070,18 @@ public class ConfigXml
     return loginHandlerClass;
   }
 
+  /**
+   * If ProjectForge runs behind a reverse proxy, the remote address of every request is the address of the proxy. In this case the name of
+   * the header containing the client's address set by the proxy should be given, e. g. X-Forwarded-For. It's used e. g. for the protection
+   * against brute force attacks (which would lock the proxy otherwise). Don't configure this header if ProjectForge is reachable without
+   * proxy, because the header may be forged by any client.
+   * @return the name of the http header or null if the remote address of the requests should be used.
+   */
+  public String getClientIpHeader()
+  {
+    return clientIpHeader;
+  }
+
   /**
    * Here you can add menu entries to be hidden or can build your own menu tree or just modify the existing one. If you don't configure this
    * element, you will receive the standard ProjectForge menu containing all menu entries which are available for the system and the user. <br/>
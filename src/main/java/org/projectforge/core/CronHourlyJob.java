@@ -27,6 +27,7 @@ import java.util.Calendar;
 
 import org.projectforge.common.DateHelper;
 import org.projectforge.database.MyDatabaseUpdateDao;
+import org.projectforge.user.LoginProtection;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
@@ -48,6 +49,7 @@ public class CronHourlyJob extends AbstractCronJob
   public void execute(final JobExecutionContext context) throws JobExecutionException
   {
     log.info("Hourly job started.");
+    log.info("Login protection: " + LoginProtection.instance().getStatistics());
     if (databaseUpdateDao == null) {
       wire(context);
     }
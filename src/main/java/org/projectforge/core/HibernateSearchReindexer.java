@@ -105,6 +105,7 @@ public class HibernateSearchReindexer
     synchronized (this) {
       try {
         currentReindexRun = new Date();
+        databaseDao.resetReindexProgress();
         final StringBuffer buf = new StringBuffer();
         if (classes != null && classes.length > 0) {
           for (final Class< ? > cls : classes) {
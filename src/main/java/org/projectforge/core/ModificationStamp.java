@@ -0,0 +1,124 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.core;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Cheap fingerprint of a set of data base objects: the time stamp of the last modification and the number of objects. Used e. g. for ETags
+ * of calendar feeds. Deletions are detected through the count or through the time stamp (marked as deleted). An optional checksum (e. g.
+ * the sum of the ids) detects objects moved into and out of the set at the same time.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class ModificationStamp implements Serializable
+{
+  private static final long serialVersionUID = 2624521707428573396L;
+
+  private final long lastModified;
+
+  private final long count;
+
+  private final long checksum;
+
+  /**
+   * @param aggregate Result of a query such as "select max(lastUpdate), count(id) from ..." or
+   *          "select max(lastUpdate), count(id), sum(id) from ..." (with checksum).
+   */
+  public static ModificationStamp create(final Object[] aggregate)
+  {
+    final Date lastUpdate = aggregate != null ? (Date) aggregate[0] : null;
+    final Number count = aggregate != null ? (Number) aggregate[1] : null;
+    final Number checksum = aggregate != null && aggregate.length > 2 ? (Number) aggregate[2] : null;
+    return new ModificationStamp(lastUpdate != null ? lastUpdate.getTime() : 0, count != null ? count.longValue() : 0,
+        checksum != null ? checksum.longValue() : 0);
+  }
+
+  public ModificationStamp(final long lastModified, final long count)
+  {
+    this(lastModified, count, 0);
+  }
+
+  public ModificationStamp(final long lastModified, final long count, final long checksum)
+  {
+    this.lastModified = lastModified;
+    this.count = count;
+    this.checksum = checksum;
+  }
+
+  /**
+   * @param other May be null.
+   * @return A new stamp with the maximum of both modification times and the sum of both counts and checksums.
+   */
+  public ModificationStamp merge(final ModificationStamp other)
+  {
+    if (other == null) {
+      return this;
+    }
+    return new ModificationStamp(Math.max(this.lastModified, other.lastModified), this.count + other.count, this.checksum + other.checksum);
+  }
+
+  /**
+   * @return The time of the last modification in millis.
+   */
+  public long getLastModified()
+  {
+    return lastModified;
+  }
+
+  public long getCount()
+  {
+    return count;
+  }
+
+  public long getChecksum()
+  {
+    return checksum;
+  }
+
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (obj instanceof ModificationStamp == false) {
+      return false;
+    }
+    final ModificationStamp other = (ModificationStamp) obj;
+    return this.lastModified == other.lastModified && this.count == other.count && this.checksum == other.checksum;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return ((int) (lastModified ^ (lastModified >>> 32)) * 31 + (int) count) * 31 + (int) (checksum ^ (checksum >>> 32));
+  }
+
+  @Override
+  public String toString()
+  {
+    if (checksum == 0) {
+      return lastModified + "-" + count;
+    }
+    return lastModified + "-" + count + "-" + checksum;
+  }
+}
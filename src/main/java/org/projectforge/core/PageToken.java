@@ -0,0 +1,69 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.core;
+
+import java.io.Serializable;
+
+/**
+ * Continuation token of keyset (seek) pagination: the value of the keyset property and the id of the last entry of the previous page. The
+ * next page starts directly after this entry without any offset (no rows have to be skipped by the data base).
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ * @see BaseDao#getPage(QueryFilter, String, boolean, PageToken, int)
+ */
+public class PageToken implements Serializable
+{
+  private static final long serialVersionUID = -1932781246287309825L;
+
+  private final Object value;
+
+  private final Serializable id;
+
+  public PageToken(final Object value, final Serializable id)
+  {
+    this.value = value;
+    this.id = id;
+  }
+
+  /**
+   * @return The value of the keyset property of the last entry of the previous page.
+   */
+  public Object getValue()
+  {
+    return value;
+  }
+
+  /**
+   * @return The id of the last entry of the previous page.
+   */
+  public Serializable getId()
+  {
+    return id;
+  }
+
+  @Override
+  public String toString()
+  {
+    return value + "|" + id;
+  }
+}
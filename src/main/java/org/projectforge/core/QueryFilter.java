@@ -25,6 +25,7 @@ package org.projectforge.core;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
@@ -35,6 +36,7 @@ import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 import org.projectforge.common.DateHelper;
 
 
@@ -157,6 +159,42 @@ public class QueryFilter
     return this;
   }
 
+  /**
+   * Replaces all orders by the order of the given keyset property and the id (needed for a unique order). If a token is given, only entries
+   * after the entry of the token are selected (seek method).
+   * @param property The keyset property, must be not null for all entries (e. g. id, created or a mandatory date).
+   * @param ascending
+   * @param token The token of the previous page or null for the first page.
+   * @return this for chaining.
+   * @see BaseDao#getPage(QueryFilter, String, boolean, PageToken, int)
+   */
+  public QueryFilter setKeysetOrder(final String property, final boolean ascending, final PageToken token)
+  {
+    final Iterator<Object> it = filterSettings.iterator();
+    while (it.hasNext() == true) {
+      if (it.next() instanceof Order) {
+        it.remove();
+      }
+    }
+    final boolean idOnly = "id".equals(property);
+    if (token != null) {
+      if (idOnly == true) {
+        add(ascending == true ? Restrictions.gt("id", token.getId()) : Restrictions.lt("id", token.getId()));
+      } else if (ascending == true) {
+        add(Restrictions.or(Restrictions.gt(property, token.getValue()),
+            Restrictions.and(Restrictions.eq(property, token.getValue()), Restrictions.gt("id", token.getId()))));
+      } else {
+        add(Restrictions.or(Restrictions.lt(property, token.getValue()),
+            Restrictions.and(Restrictions.eq(property, token.getValue()), Restrictions.lt("id", token.getId()))));
+      }
+    }
+    if (idOnly == false) {
+      addOrder(ascending == true ? Order.asc(property) : Order.desc(property));
+    }
+    addOrder(ascending == true ? Order.asc("id") : Order.desc("id"));
+    return this;
+  }
+
   public void setFetchMode(String associationPath, FetchMode mode)
   {
     this.associationPath = associationPath;
@@ -0,0 +1,68 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.core;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of a result list with the token for fetching the next page.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ * @see BaseDao#getPage(QueryFilter, String, boolean, PageToken, int)
+ */
+public class ResultPage<O> implements Serializable
+{
+  private static final long serialVersionUID = 4613408846396536216L;
+
+  private final List<O> entries;
+
+  private final PageToken nextToken;
+
+  public ResultPage(final List<O> entries, final PageToken nextToken)
+  {
+    this.entries = entries;
+    this.nextToken = nextToken;
+  }
+
+  /**
+   * @return The entries of this page (with select access of the logged-in user).
+   */
+  public List<O> getEntries()
+  {
+    return entries;
+  }
+
+  /**
+   * @return The token for fetching the next page or null if this is the last page.
+   */
+  public PageToken getNextToken()
+  {
+    return nextToken;
+  }
+
+  public boolean hasNext()
+  {
+    return nextToken != null;
+  }
+}
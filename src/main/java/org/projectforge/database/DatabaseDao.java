@@ -69,8 +69,12 @@ public class DatabaseDao extends HibernateDaoSupport
 
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(DatabaseDao.class);
 
+  private static final int REINDEX_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
   private Date currentReindexRun = null;
 
+  private ReindexPipeline reindexPipeline;
+
   /**
    * Since yesterday and 1,000 newest entries at maximimum.
    * @return
@@ -98,6 +102,40 @@ public class DatabaseDao extends HibernateDaoSupport
     return buf.toString();
   }
 
+  /**
+   * @return The progress of all classes (re-indexed by the re-index pipeline) of the current or last run.
+   */
+  public List<ReindexProgress> getReindexProgress()
+  {
+    return getReindexPipeline().getProgress();
+  }
+
+  /**
+   * Cancels the current full re-index run. The next full re-index run will resume after the last checkpoint.
+   */
+  public void cancelReindex()
+  {
+    log.info("Cancelling re-indexing.");
+    getReindexPipeline().cancel();
+  }
+
+  /**
+   * Should be called before starting a new re-index run (resets the progress of the previous run).
+   */
+  public void resetReindexProgress()
+  {
+    getReindexPipeline().reset();
+  }
+
+  private synchronized ReindexPipeline getReindexPipeline()
+  {
+    if (reindexPipeline == null) {
+      final File checkpointFile = new File(ConfigXml.getInstance().getApplicationHomeDir() + "/hibernate-search/reindex-checkpoints.properties");
+      reindexPipeline = new ReindexPipeline(getSessionFactory(), checkpointFile, REINDEX_THREADS);
+    }
+    return reindexPipeline;
+  }
+
   @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
   public void reindex(final Class< ? > clazz, final ReindexSettings settings, final StringBuffer buf)
   {
@@ -144,6 +182,10 @@ public class DatabaseDao extends HibernateDaoSupport
       return reindexObjects(clazz, settings);
     }
     // OK, full re-index required:
+    if (getReindexPipeline().supports(clazz) == true) {
+      // Partitioned, parallel and resumable:
+      return getReindexPipeline().reindex(clazz);
+    }
     if (isIn(clazz, HistoryEntry.class, TimesheetDO.class) == true) {
       // MassIndexer throws LazyInitializationException for some classes, so use it only for the important classes (with most entries):
       return reindexMassIndexer(clazz);
@@ -0,0 +1,411 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.database;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.hibernate.CacheMode;
+import org.hibernate.Criteria;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.projectforge.common.BackgroundExecutors;
+import org.projectforge.core.ExtendedBaseDO;
+
+/**
+ * Full re-indexing of entity classes: The entities of a class are partitioned by id ranges and the partitions are loaded and indexed in
+ * parallel by a bounded pool of worker threads (every partition in its own session and transaction). After every completed partition the
+ * progress is written as checkpoint (the id up to which all entities are indexed) to a properties file, so a cancelled or crashed run will
+ * be resumed after the last checkpoint. A new run (without checkpoint) purges the index of the class first, like the MassIndexer does.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class ReindexPipeline
+{
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(ReindexPipeline.class);
+
+  /**
+   * Desired number of entities per partition and maximum number of entities loaded at once by one worker.
+   */
+  static final int PARTITION_SIZE = 1000;
+
+  /**
+   * Name of the background thread pool of the workers.
+   */
+  static final String REINDEX_EXECUTOR_NAME = "Reindex";
+
+  private final SessionFactory sessionFactory;
+
+  private final File checkpointFile;
+
+  private final int threads;
+
+  private final Map<Class< ? >, ReindexProgress> progressMap = new LinkedHashMap<Class< ? >, ReindexProgress>();
+
+  private volatile boolean cancelled;
+
+  /**
+   * @param sessionFactory
+   * @param checkpointFile The properties file for storing the checkpoints.
+   * @param threads Number of worker threads (size of the background thread pool {@link #REINDEX_EXECUTOR_NAME}, only used on its
+   *          creation).
+   */
+  ReindexPipeline(final SessionFactory sessionFactory, final File checkpointFile, final int threads)
+  {
+    this.sessionFactory = sessionFactory;
+    this.checkpointFile = checkpointFile;
+    this.threads = threads;
+  }
+
+  /**
+   * @return true if the entities of the given class have a numeric id (needed for partitioning).
+   */
+  boolean supports(final Class< ? > clazz)
+  {
+    final ClassMetadata metadata = sessionFactory.getClassMetadata(clazz);
+    if (metadata == null || metadata.getIdentifierPropertyName() == null) {
+      return false;
+    }
+    final Class< ? > idType = metadata.getIdentifierType().getReturnedClass();
+    return Integer.class.equals(idType) == true || Long.class.equals(idType) == true;
+  }
+
+  /**
+   * Cancels the current run. The remaining partitions are skipped, the next run will resume after the last checkpoint.
+   */
+  void cancel()
+  {
+    cancelled = true;
+  }
+
+  /**
+   * Should be called before starting a new run: Resets the cancel flag and the progress of the previous run.
+   */
+  void reset()
+  {
+    cancelled = false;
+    synchronized (progressMap) {
+      progressMap.clear();
+    }
+  }
+
+  /**
+   * @return The progress of all classes of the current (or last) run.
+   */
+  List<ReindexProgress> getProgress()
+  {
+    synchronized (progressMap) {
+      return new ArrayList<ReindexProgress>(progressMap.values());
+    }
+  }
+
+  /**
+   * Re-indexes all entities of the given class (resumes after the last checkpoint if exists).
+   * @return Number of indexed entities.
+   */
+  long reindex(final Class< ? > clazz)
+  {
+    final ClassMetadata metadata = sessionFactory.getClassMetadata(clazz);
+    final String idProperty = metadata.getIdentifierPropertyName();
+    final boolean longId = Long.class.equals(metadata.getIdentifierType().getReturnedClass());
+    final Long checkpoint = getCheckpoint(clazz);
+    final Object[] stats;
+    Session session = null;
+    try {
+      session = sessionFactory.openSession();
+      final Criteria criteria = session.createCriteria(clazz).setProjection(
+          Projections.projectionList().add(Projections.min(idProperty)).add(Projections.max(idProperty)).add(Projections.rowCount()));
+      if (checkpoint != null) {
+        criteria.add(Restrictions.gt(idProperty, toId(checkpoint, longId)));
+      }
+      stats = (Object[]) criteria.uniqueResult();
+    } finally {
+      if (session != null) {
+        session.close();
+      }
+    }
+    if (checkpoint == null) {
+      // New run: Remove the documents of deleted entities (not done on resume, because the interrupted run already purged the index).
+      purge(clazz);
+    }
+    final long total = stats[2] != null ? ((Number) stats[2]).longValue() : 0;
+    final ReindexProgress progress = new ReindexProgress(clazz, total, checkpoint);
+    synchronized (progressMap) {
+      progressMap.put(clazz, progress);
+    }
+    if (total == 0 || stats[0] == null) {
+      removeCheckpoint(clazz);
+      progress.finished(false, false);
+      return 0;
+    }
+    final long minId = ((Number) stats[0]).longValue();
+    final long maxId = ((Number) stats[1]).longValue();
+    // Span of ids per partition: PARTITION_SIZE entities per partition on average (ids may have gaps).
+    final long span = Math.max(PARTITION_SIZE, (maxId - minId + 1) / Math.max(1, total / PARTITION_SIZE));
+    final int numberOfPartitions = (int) ((maxId - minId) / span + 1);
+    log.info("Starting re-indexing of "
+        + total
+        + " entries of type "
+        + clazz.getName()
+        + " in "
+        + numberOfPartitions
+        + " partitions"
+        + (checkpoint != null ? " (resuming after id " + checkpoint + ")" : "")
+        + "...");
+    final boolean[] completed = new boolean[numberOfPartitions];
+    final int[] contiguous = new int[1]; // Number of completed partitions without gaps from the beginning.
+    final ExecutorService executor = BackgroundExecutors.getInstance().getExecutor(REINDEX_EXECUTOR_NAME, threads);
+    boolean failed = false;
+    final List<Future< ? >> futures = new ArrayList<Future< ? >>(numberOfPartitions);
+    try {
+      for (int i = 0; i < numberOfPartitions; i++) {
+        final int partition = i;
+        final long from = minId + partition * span;
+        final long to = Math.min(maxId, from + span - 1);
+        futures.add(executor.submit(new Runnable() {
+          public void run()
+          {
+            if (indexPartition(clazz, idProperty, longId, from, to, progress) == false) {
+              // Cancelled.
+              return;
+            }
+            synchronized (completed) {
+              completed[partition] = true;
+              int pos = contiguous[0];
+              while (pos < completed.length && completed[pos] == true) {
+                pos++;
+              }
+              if (pos > contiguous[0]) {
+                contiguous[0] = pos;
+                storeCheckpoint(clazz, Math.min(maxId, minId + pos * span - 1));
+              }
+            }
+          }
+        }));
+      }
+      for (final Future< ? > future : futures) {
+        try {
+          future.get();
+        } catch (final ExecutionException ex) {
+          failed = true;
+          log.error("Exception encountered while re-indexing " + clazz.getName() + ": " + ex.getCause().getMessage(), ex.getCause());
+        }
+      }
+    } catch (final InterruptedException ex) {
+      cancelled = true;
+      Thread.currentThread().interrupt();
+    } finally {
+      for (final Future< ? > future : futures) {
+        future.cancel(true);
+      }
+    }
+    progress.finished(failed, cancelled);
+    if (failed == false && cancelled == false) {
+      removeCheckpoint(clazz);
+      session = null;
+      try {
+        session = sessionFactory.openSession();
+        Search.getFullTextSession(session).getSearchFactory().optimize(clazz);
+      } finally {
+        if (session != null) {
+          session.close();
+        }
+      }
+    }
+    log.info("Re-indexing of "
+        + progress.getIndexed()
+        + " objects of type "
+        + clazz.getName()
+        + (cancelled == true ? " cancelled" : failed == true ? " failed" : " done")
+        + " ("
+        + Math.round(progress.getEntitiesPerSecond())
+        + " entities/s).");
+    return progress.getIndexed();
+  }
+
+  /**
+   * Indexes all entities of the given id range (in chunks of {@link #PARTITION_SIZE} entities).
+   * @return false if the run was cancelled before all entities of the partition were indexed.
+   */
+  private boolean indexPartition(final Class< ? > clazz, final String idProperty, final boolean longId, final long from, final long to,
+      final ReindexProgress progress)
+  {
+    final Session session = sessionFactory.openSession();
+    try {
+      final FullTextSession fullTextSession = Search.getFullTextSession(session);
+      fullTextSession.setFlushMode(FlushMode.MANUAL);
+      fullTextSession.setCacheMode(CacheMode.IGNORE);
+      final Transaction tx = fullTextSession.beginTransaction();
+      try {
+        Serializable lastId = null;
+        while (true) {
+          if (cancelled == true) {
+            tx.rollback();
+            return false;
+          }
+          final Criteria criteria = fullTextSession.createCriteria(clazz).add(Restrictions.le(idProperty, toId(to, longId)))
+              .addOrder(Order.asc(idProperty)).setMaxResults(PARTITION_SIZE);
+          if (lastId != null) {
+            criteria.add(Restrictions.gt(idProperty, lastId));
+          } else {
+            criteria.add(Restrictions.ge(idProperty, toId(from, longId)));
+          }
+          final List< ? > list = criteria.list();
+          for (final Object obj : list) {
+            if (obj instanceof ExtendedBaseDO< ? >) {
+              ((ExtendedBaseDO< ? >) obj).recalculate();
+            }
+            fullTextSession.index(obj);
+            lastId = fullTextSession.getIdentifier(obj);
+          }
+          fullTextSession.flushToIndexes();
+          fullTextSession.clear();
+          progress.addIndexed(list.size());
+          if (list.size() < PARTITION_SIZE) {
+            break;
+          }
+        }
+        tx.commit();
+        return true;
+      } catch (final RuntimeException ex) {
+        tx.rollback();
+        throw ex;
+      }
+    } finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Removes all documents of the given class from the index.
+   */
+  private void purge(final Class< ? > clazz)
+  {
+    final Session session = sessionFactory.openSession();
+    try {
+      final FullTextSession fullTextSession = Search.getFullTextSession(session);
+      final Transaction tx = fullTextSession.beginTransaction();
+      try {
+        fullTextSession.purgeAll(clazz);
+        fullTextSession.flushToIndexes();
+        tx.commit();
+      } catch (final RuntimeException ex) {
+        tx.rollback();
+        throw ex;
+      }
+    } finally {
+      session.close();
+    }
+  }
+
+  private Serializable toId(final long id, final boolean longId)
+  {
+    if (longId == true) {
+      return id;
+    }
+    return (int) id;
+  }
+
+  private synchronized Long getCheckpoint(final Class< ? > clazz)
+  {
+    final String value = readCheckpoints().getProperty(clazz.getName());
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Long.valueOf(value);
+    } catch (final NumberFormatException ex) {
+      log.error("Ignoring invalid re-index checkpoint of " + clazz.getName() + ": " + value);
+      return null;
+    }
+  }
+
+  private synchronized void storeCheckpoint(final Class< ? > clazz, final long id)
+  {
+    final Properties checkpoints = readCheckpoints();
+    checkpoints.setProperty(clazz.getName(), String.valueOf(id));
+    writeCheckpoints(checkpoints);
+  }
+
+  private synchronized void removeCheckpoint(final Class< ? > clazz)
+  {
+    final Properties checkpoints = readCheckpoints();
+    if (checkpoints.remove(clazz.getName()) != null) {
+      writeCheckpoints(checkpoints);
+    }
+  }
+
+  private Properties readCheckpoints()
+  {
+    final Properties checkpoints = new Properties();
+    if (checkpointFile.exists() == false) {
+      return checkpoints;
+    }
+    InputStream in = null;
+    try {
+      in = new FileInputStream(checkpointFile);
+      checkpoints.load(in);
+    } catch (final IOException ex) {
+      log.error("Can't read re-index checkpoints from '" + checkpointFile.getAbsolutePath() + "': " + ex.getMessage(), ex);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    return checkpoints;
+  }
+
+  private void writeCheckpoints(final Properties checkpoints)
+  {
+    OutputStream out = null;
+    try {
+      checkpointFile.getParentFile().mkdirs();
+      out = new FileOutputStream(checkpointFile);
+      checkpoints.store(out, "ProjectForge re-index checkpoints (id up to which all entities are indexed).");
+    } catch (final IOException ex) {
+      log.error("Can't write re-index checkpoints to '" + checkpointFile.getAbsolutePath() + "': " + ex.getMessage(), ex);
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+}
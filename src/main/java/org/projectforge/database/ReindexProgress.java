@@ -0,0 +1,161 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.database;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.ClassUtils;
+
+/**
+ * Progress of the (partitioned) re-indexing of one entity class. Will be updated by the worker threads of the re-index pipeline and may be
+ * read at any time (e. g. by the admin page).
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class ReindexProgress implements Serializable
+{
+  private static final long serialVersionUID = -4052386391924468410L;
+
+  private final String className;
+
+  private final long total;
+
+  private final Serializable resumedFromId;
+
+  private final long startTime;
+
+  private final AtomicLong indexed = new AtomicLong();
+
+  private volatile long endTime;
+
+  private volatile boolean failed;
+
+  private volatile boolean cancelled;
+
+  ReindexProgress(final Class< ? > clazz, final long total, final Serializable resumedFromId)
+  {
+    this.className = ClassUtils.getShortClassName(clazz);
+    this.total = total;
+    this.resumedFromId = resumedFromId;
+    this.startTime = System.currentTimeMillis();
+  }
+
+  void addIndexed(final long number)
+  {
+    indexed.addAndGet(number);
+  }
+
+  void finished(final boolean failed, final boolean cancelled)
+  {
+    this.failed = failed;
+    this.cancelled = cancelled;
+    this.endTime = System.currentTimeMillis();
+  }
+
+  public String getClassName()
+  {
+    return className;
+  }
+
+  /**
+   * @return The number of entities to re-index in this run (without the entities already indexed by a previous cancelled run).
+   */
+  public long getTotal()
+  {
+    return total;
+  }
+
+  public long getIndexed()
+  {
+    return indexed.get();
+  }
+
+  /**
+   * @return The id of the last checkpoint if this run resumes a previous cancelled or crashed run, otherwise null.
+   */
+  public Serializable getResumedFromId()
+  {
+    return resumedFromId;
+  }
+
+  public boolean isRunning()
+  {
+    return endTime == 0;
+  }
+
+  public boolean isFailed()
+  {
+    return failed;
+  }
+
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  /**
+   * @return Duration of the run in millis (until now if the run isn't finished).
+   */
+  public long getDuration()
+  {
+    final long end = endTime != 0 ? endTime : System.currentTimeMillis();
+    return end - startTime;
+  }
+
+  /**
+   * @return The throughput of this run.
+   */
+  public double getEntitiesPerSecond()
+  {
+    final long duration = getDuration();
+    if (duration <= 0) {
+      return 0.0;
+    }
+    return getIndexed() * 1000.0 / duration;
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuffer buf = new StringBuffer();
+    buf.append(className).append(": ").append(getIndexed()).append("/").append(total);
+    if (total > 0) {
+      buf.append(" (").append(getIndexed() * 100 / total).append("%)");
+    }
+    buf.append(", ").append(Math.round(getEntitiesPerSecond())).append(" entities/s");
+    if (resumedFromId != null) {
+      buf.append(", resumed after id ").append(resumedFromId);
+    }
+    if (isRunning() == true) {
+      buf.append(", running");
+    } else if (cancelled == true) {
+      buf.append(", cancelled");
+    } else if (failed == true) {
+      buf.append(", failed");
+    } else {
+      buf.append(", done");
+    }
+    return buf.toString();
+  }
+}
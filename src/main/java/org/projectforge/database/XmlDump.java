@@ -23,6 +23,7 @@
 
 package org.projectforge.database;
 
+import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -40,6 +41,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -61,11 +64,15 @@ import org.hibernate.Hibernate;
 import org.hibernate.LockOptions;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Projections;
+import org.hibernate.proxy.HibernateProxy;
 import org.projectforge.access.AccessEntryDO;
 import org.projectforge.access.GroupTaskAccessDO;
 import org.projectforge.common.BeanHelper;
 import org.projectforge.core.AbstractBaseDO;
 import org.projectforge.core.ConfigurationDO;
+import org.projectforge.database.xstream.HibernateEntityReferenceConverter;
 import org.projectforge.database.xstream.HibernateXmlConverter;
 import org.projectforge.database.xstream.XStreamSavingConverter;
 import org.projectforge.fibu.AbstractRechnungDO;
@@ -95,7 +102,9 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.io.xml.StaxDriver;
 
 import de.micromata.hibernate.history.HistoryEntry;
 
@@ -110,6 +119,18 @@ public class XmlDump
 
   private static final String XML_DUMP_FILENAME = System.getProperty("user.home") + "/tmp/database-dump.xml.gz";
 
+  /**
+   * Number of entities read per query while dumping the data-base in the streaming format.
+   */
+  private static final int STREAM_CHUNK_SIZE = 500;
+
+  /**
+   * Number of entities restored per transaction while restoring a dump of the streaming format.
+   */
+  private static final int STREAM_BATCH_SIZE = 500;
+
+  private static final int STREAM_DUMP_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
   private HibernateTemplate hibernate;
 
   private final List<XmlDumpHook> xmlDumpHooks = new LinkedList<XmlDumpHook>();
@@ -163,6 +184,213 @@ public class XmlDump
    * @return Only for test cases.
    */
   public XStreamSavingConverter restoreDatabase(final Reader reader)
+  {
+    final BufferedReader bufferedReader = new BufferedReader(reader);
+    try {
+      if (isStreamingDump(bufferedReader) == true) {
+        return restoreDatabaseFromStream(bufferedReader, STREAM_BATCH_SIZE);
+      }
+    } catch (final IOException ex) {
+      log.error(ex.getMessage(), ex);
+      IOUtils.closeQuietly(bufferedReader);
+      throw new RuntimeException(ex);
+    }
+    final XStreamSavingConverter xstreamSavingConverter = createXStreamSavingConverter();
+    Session session = null;
+    try {
+      final SessionFactory sessionFactory = hibernate.getSessionFactory();
+      session = sessionFactory.openSession(EmptyInterceptor.INSTANCE);
+      session.setFlushMode(FlushMode.AUTO);
+      final XStream xstream = new XStream(new DomDriver());
+      xstream.setMode(XStream.ID_REFERENCES);
+      xstreamSavingConverter.setSession(session);
+      xstream.registerConverter(xstreamSavingConverter, 10);
+      xstream.registerConverter(new UserRightIdSingleValueConverter(), 20);
+      xstream.registerConverter(new UserPrefAreaSingleValueConverter(), 19);
+      // alle Objekte Laden und speichern
+      xstream.fromXML(bufferedReader);
+
+      xstreamSavingConverter.saveObjects();
+    } catch (final Exception ex) {
+      log.error(ex.getMessage(), ex);
+      throw new RuntimeException(ex);
+    } finally {
+      IOUtils.closeQuietly(bufferedReader);
+      if (session != null) {
+        session.close();
+      }
+    }
+    return xstreamSavingConverter;
+  }
+
+  /**
+   * Restores a dump written in the streaming format (see {@link #dumpDatabaseAsStream(String, OutputStream)}). The objects are read and
+   * saved one by one and the transaction is committed after every batch, so the memory usage is independent of the size of the dump.
+   * References to other entities are resolved through the id mapping of the already restored objects.
+   * @param reader
+   * @param batchSize Number of objects to restore per transaction.
+   * @return Only for test cases.
+   */
+  public XStreamSavingConverter restoreDatabaseFromStream(final Reader reader, final int batchSize)
+  {
+    final XStreamSavingConverter xstreamSavingConverter = createXStreamSavingConverter();
+    xstreamSavingConverter.setStreaming(true);
+    Session session = null;
+    Transaction tx = null;
+    try {
+      final SessionFactory sessionFactory = hibernate.getSessionFactory();
+      session = sessionFactory.openSession(EmptyInterceptor.INSTANCE);
+      session.setFlushMode(FlushMode.AUTO);
+      xstreamSavingConverter.setSession(session);
+      final Session restoreSession = session;
+      final XStream xstream = new XStream(new StaxDriver());
+      xstream.setMode(XStream.ID_REFERENCES);
+      xstream.registerConverter(new HibernateEntityReferenceConverter(xstream.getMapper(), xstream.getReflectionProvider()) {
+        @Override
+        protected Object resolveReference(final Class< ? > type, final String id)
+        {
+          final Serializable newId = xstreamSavingConverter.getNewId(type, id);
+          if (newId == null) {
+            // Entity isn't yet restored: Collection entries (e. g. inverse collections) are restored by the referenced entities themselves,
+            // other references are registered by onUnresolvedReference and updated after all objects are restored.
+            if (log.isDebugEnabled() == true) {
+              log.debug("Can't resolve reference to '" + type.getName() + "' with id " + id + " (not yet restored).");
+            }
+            return null;
+          }
+          return restoreSession.load(type, newId);
+        }
+
+        @Override
+        protected void onUnresolvedReference(final Object obj, final Field field, final Class< ? > type, final String id)
+        {
+          xstreamSavingConverter.registerDeferredReference(obj, field, type, id);
+        }
+      }, XStream.PRIORITY_VERY_HIGH);
+      xstream.registerConverter(new UserRightIdSingleValueConverter(), 20);
+      xstream.registerConverter(new UserPrefAreaSingleValueConverter(), 19);
+      final HierarchicalStreamReader xmlReader = new StaxDriver().createReader(reader);
+      final List<Object> batch = new ArrayList<Object>(batchSize);
+      tx = session.beginTransaction();
+      while (xmlReader.hasMoreChildren() == true) {
+        xmlReader.moveDown(); // Entities of one type.
+        log.info("Restoring objects of type " + xmlReader.getAttribute("class"));
+        while (xmlReader.hasMoreChildren() == true) {
+          xmlReader.moveDown();
+          final Object obj = xstream.unmarshal(xmlReader);
+          xstreamSavingConverter.saveObject(obj);
+          if (obj != null) {
+            batch.add(obj);
+          }
+          xmlReader.moveUp();
+          if (batch.size() == batchSize) {
+            tx = commitBatch(session, tx, batch, xstreamSavingConverter);
+          }
+        }
+        xmlReader.moveUp();
+      }
+      tx = commitBatch(session, tx, batch, xstreamSavingConverter);
+      tx.commit();
+      if (xstreamSavingConverter.getDeferredReferencesCounter() > 0) {
+        log.info("Restoring " + xstreamSavingConverter.getDeferredReferencesCounter() + " references to objects restored later.");
+        tx = session.beginTransaction();
+        xstreamSavingConverter.updateDeferredReferences(batchSize);
+        tx.commit();
+      }
+      tx = null;
+      log.info("Restored " + xstreamSavingConverter.getSavedObjectsCounter() + " objects.");
+    } catch (final Exception ex) {
+      log.error(ex.getMessage(), ex);
+      if (tx != null) {
+        tx.rollback();
+      }
+      throw new RuntimeException(ex);
+    } finally {
+      IOUtils.closeQuietly(reader);
+      if (session != null) {
+        session.close();
+      }
+    }
+    return xstreamSavingConverter;
+  }
+
+  /**
+   * Commits the given transaction and compares the restored objects of the batch with the objects read from the data-base afterwards, the
+   * same way as {@link #verifyDump(XStreamSavingConverter)} does for the whole dump of the classic format. References not yet restored and
+   * collection entries restored later by their own entities are ignored (they're verified by the objects restored later).
+   * @return The transaction for the next batch.
+   */
+  private Transaction commitBatch(final Session session, final Transaction tx, final List<Object> batch,
+      final XStreamSavingConverter xstreamSavingConverter)
+  {
+    tx.commit();
+    session.clear();
+    final Transaction result = session.beginTransaction();
+    for (final Object obj : batch) {
+      if (HibernateUtils.isEntity(obj.getClass()) == false) {
+        continue;
+      }
+      final Serializable id = HibernateUtils.getIdentifier(obj);
+      if (id == null) {
+        // Object wasn't saved (already counted as failed).
+        continue;
+      }
+      final Object databaseObject = session.get(obj.getClass(), id, LockOptions.READ);
+      Hibernate.initialize(databaseObject);
+      if (equals(obj, databaseObject, true, true) == false) {
+        xstreamSavingConverter.registerDifferingObject(obj, databaseObject);
+      }
+    }
+    batch.clear();
+    session.clear();
+    xstreamSavingConverter.onBatchCommitted();
+    return result;
+  }
+
+  /**
+   * @return true if the root element of the given xml stream is the root element of the streaming format. The reader is reset to the
+   *         beginning afterwards.
+   */
+  private boolean isStreamingDump(final BufferedReader reader) throws IOException
+  {
+    final char[] buf = new char[1024];
+    reader.mark(buf.length);
+    int len = 0;
+    while (len < buf.length) {
+      final int read = reader.read(buf, len, buf.length - len);
+      if (read < 0) {
+        break;
+      }
+      len += read;
+    }
+    reader.reset();
+    return new String(buf, 0, len).contains("<" + HibernateXmlConverter.STREAM_ROOT_ELEMENT) == true;
+  }
+
+  /**
+   * @return The types in the order of restoring (the types of the plugins are appended).
+   */
+  private List<Class< ? >> getOrderOfTypes()
+  {
+    final List<Class< ? >> types = new ArrayList<Class< ? >>();
+    types.addAll(Arrays.asList(PFUserDO.class, GroupDO.class, TaskDO.class, KundeDO.class, ProjektDO.class, Kost1DO.class,
+        Kost2ArtDO.class, Kost2DO.class, AuftragDO.class, //
+        RechnungDO.class, EingangsrechnungDO.class, EmployeeSalaryDO.class, KostZuweisungDO.class,//
+        UserPrefEntryDO.class, UserPrefDO.class, //
+        AccessEntryDO.class, GroupTaskAccessDO.class, ConfigurationDO.class));
+    final List<AbstractPlugin> plugins = PluginsRegistry.instance().getPlugins();
+    if (plugins != null) {
+      for (final AbstractPlugin plugin : plugins) {
+        final Class< ? >[] persistentEntities = plugin.getPersistentEntities();
+        if (persistentEntities != null) {
+          types.addAll(Arrays.asList(persistentEntities));
+        }
+      }
+    }
+    return types;
+  }
+
+  private XStreamSavingConverter createXStreamSavingConverter()
   {
     final List<AbstractPlugin> plugins = PluginsRegistry.instance().getPlugins();
     final XStreamSavingConverter xstreamSavingConverter = new XStreamSavingConverter() {
@@ -187,20 +415,19 @@ public class XmlDump
           final Serializable id = save(rechnung);
           if (positions != null) {
             for (final AbstractRechnungsPositionDO pos : positions) {
-              if (pos.getKostZuweisungen() != null) {
-                final List<KostZuweisungDO> zuweisungen = pos.getKostZuweisungen();
-                pos.setKostZuweisungen(null); // Need to nullable first (otherwise insert fails).
-                save(pos);
-                if (pos instanceof RechnungsPositionDO) {
-                  ((RechnungDO) rechnung).addPosition((RechnungsPositionDO) pos);
-                } else {
-                  ((EingangsrechnungDO) rechnung).addPosition((EingangsrechnungsPositionDO) pos);
-                }
-                if (zuweisungen != null) {
-                  for (final KostZuweisungDO zuweisung : zuweisungen) {
-                    pos.addKostZuweisung(zuweisung);
-                    save(zuweisung);
-                  }
+              // The cost assignments of the streaming format are restored later on their own (the list is empty).
+              final List<KostZuweisungDO> zuweisungen = pos.getKostZuweisungen();
+              pos.setKostZuweisungen(null); // Need to nullable first (otherwise insert fails).
+              save(pos);
+              if (pos instanceof RechnungsPositionDO) {
+                ((RechnungDO) rechnung).addPosition((RechnungsPositionDO) pos);
+              } else {
+                ((EingangsrechnungDO) rechnung).addPosition((EingangsrechnungsPositionDO) pos);
+              }
+              if (zuweisungen != null) {
+                for (final KostZuweisungDO zuweisung : zuweisungen) {
+                  pos.addKostZuweisung(zuweisung);
+                  save(zuweisung);
                 }
               }
             }
@@ -244,40 +471,8 @@ public class XmlDump
     };
     // UserRightDO is inserted on cascade while inserting PFUserDO.
     xstreamSavingConverter.appendIgnoredObjects(embeddedClasses);
-    xstreamSavingConverter.appendOrderedType(PFUserDO.class, GroupDO.class, TaskDO.class, KundeDO.class, ProjektDO.class, Kost1DO.class,
-        Kost2ArtDO.class, Kost2DO.class, AuftragDO.class, //
-        RechnungDO.class, EingangsrechnungDO.class, EmployeeSalaryDO.class, KostZuweisungDO.class,//
-        UserPrefEntryDO.class, UserPrefDO.class, //
-        AccessEntryDO.class, GroupTaskAccessDO.class, ConfigurationDO.class);
-    if (plugins != null) {
-      for (final AbstractPlugin plugin : plugins) {
-        xstreamSavingConverter.appendOrderedType(plugin.getPersistentEntities());
-      }
-    }
-    Session session = null;
-    try {
-      final SessionFactory sessionFactory = hibernate.getSessionFactory();
-      session = sessionFactory.openSession(EmptyInterceptor.INSTANCE);
-      session.setFlushMode(FlushMode.AUTO);
-      final XStream xstream = new XStream(new DomDriver());
-      xstream.setMode(XStream.ID_REFERENCES);
-      xstreamSavingConverter.setSession(session);
-      xstream.registerConverter(xstreamSavingConverter, 10);
-      xstream.registerConverter(new UserRightIdSingleValueConverter(), 20);
-      xstream.registerConverter(new UserPrefAreaSingleValueConverter(), 19);
-      // alle Objekte Laden und speichern
-      xstream.fromXML(reader);
-
-      xstreamSavingConverter.saveObjects();
-    } catch (final Exception ex) {
-      log.error(ex.getMessage(), ex);
-      throw new RuntimeException(ex);
-    } finally {
-      IOUtils.closeQuietly(reader);
-      if (session != null) {
-        session.close();
-      }
-    }
+    final List<Class< ? >> orderOfTypes = getOrderOfTypes();
+    xstreamSavingConverter.appendOrderedType(orderOfTypes.toArray(new Class< ? >[orderOfTypes.size()]));
     return xstreamSavingConverter;
   }
 
@@ -315,18 +510,7 @@ public class XmlDump
    */
   public void dumpDatabase(final String filename, final OutputStream out)
   {
-    final HibernateXmlConverter converter = new HibernateXmlConverter() {
-      @Override
-      protected void init(final XStream xstream)
-      {
-        xstream.omitField(AbstractBaseDO.class, "minorChange");
-        xstream.omitField(AbstractBaseDO.class, "selected");
-        xstream.registerConverter(new UserRightIdSingleValueConverter(), 20);
-        xstream.registerConverter(new UserPrefAreaSingleValueConverter(), 19);
-      }
-    };
-    converter.setHibernate(hibernate);
-    converter.appendIgnoredTopLevelObjects(embeddedClasses);
+    final HibernateXmlConverter converter = createHibernateXmlConverter();
     Writer writer = null;
     GZIPOutputStream gzipOut = null;
     try {
@@ -345,6 +529,51 @@ public class XmlDump
     }
   }
 
+  /**
+   * Dumps the data-base in the streaming format: The entities are read in chunks type by type and written one by one (the entity types are
+   * dumped in parallel), so the memory usage is independent of the size of the data-base. Dumps of this format are restored by
+   * {@link #restoreDatabase(Reader)} as well.
+   * @param filename virtual filename: If the filename suffix is "gz" then the dump will be compressed.
+   * @param out
+   */
+  public void dumpDatabaseAsStream(final String filename, final OutputStream out)
+  {
+    final HibernateXmlConverter converter = createHibernateXmlConverter();
+    Writer writer = null;
+    GZIPOutputStream gzipOut = null;
+    try {
+      if (filename.endsWith(".gz") == true) {
+        gzipOut = new GZIPOutputStream(out);
+        writer = new OutputStreamWriter(gzipOut, "utf-8");
+      } else {
+        writer = new OutputStreamWriter(out, "utf-8");
+      }
+      converter.dumpDatabaseToXmlStream(writer, getOrderOfTypes(), true, STREAM_CHUNK_SIZE, STREAM_DUMP_THREADS);
+    } catch (final IOException ex) {
+      log.error(ex.getMessage(), ex);
+    } finally {
+      IOUtils.closeQuietly(writer);
+      IOUtils.closeQuietly(gzipOut);
+    }
+  }
+
+  private HibernateXmlConverter createHibernateXmlConverter()
+  {
+    final HibernateXmlConverter converter = new HibernateXmlConverter() {
+      @Override
+      protected void init(final XStream xstream)
+      {
+        xstream.omitField(AbstractBaseDO.class, "minorChange");
+        xstream.omitField(AbstractBaseDO.class, "selected");
+        xstream.registerConverter(new UserRightIdSingleValueConverter(), 20);
+        xstream.registerConverter(new UserPrefAreaSingleValueConverter(), 19);
+      }
+    };
+    converter.setHibernate(hibernate);
+    converter.appendIgnoredTopLevelObjects(embeddedClasses);
+    return converter;
+  }
+
   public void dumpDatabase(final String path, final String encoding)
   {
     OutputStream out = null;
@@ -364,6 +593,9 @@ public class XmlDump
    */
   public int verifyDump(final XStreamSavingConverter xstreamSavingConverter)
   {
+    if (xstreamSavingConverter.isStreaming() == true) {
+      return verifyStreamedDump(xstreamSavingConverter);
+    }
     final SessionFactory sessionFactory = hibernate.getSessionFactory();
     Session session = null;
     boolean hasError = false;
@@ -389,7 +621,7 @@ public class XmlDump
           // log.info("Testing object: " + obj);
           final Object databaseObject = session.get(entityClass, id, LockOptions.READ);
           Hibernate.initialize(databaseObject);
-          final boolean equals = equals(obj, databaseObject, true);
+          final boolean equals = equals(obj, databaseObject, true, false);
           if (equals == false) {
             log.error("Object not sucessfully imported! xml object=[" + obj + "], data base=[" + databaseObject + "]");
             hasError = true;
@@ -426,13 +658,72 @@ public class XmlDump
     }
   }
 
+  /**
+   * The restored objects aren't held in memory by the streaming restore, they're compared with the data-base after every committed batch
+   * and the references restored afterwards are checked after their update (see {@link #restoreDatabaseFromStream(Reader, int)}). Any
+   * differing object, failed object or unresolved reference is an error. The number of objects of every restored type in the data-base is
+   * compared with the number of restored objects.
+   * @return Number of checked objects. This number is negative if any error occurs.
+   */
+  private int verifyStreamedDump(final XStreamSavingConverter xstreamSavingConverter)
+  {
+    final int counter = xstreamSavingConverter.getSavedObjectsCounter();
+    boolean hasError = false;
+    if (xstreamSavingConverter.getFailedObjectsCounter() > 0) {
+      log.error(xstreamSavingConverter.getFailedObjectsCounter() + " objects or references couldn't be imported.");
+      hasError = true;
+    }
+    if (xstreamSavingConverter.getDeferredReferencesCounter() > 0) {
+      log.error(xstreamSavingConverter.getDeferredReferencesCounter() + " references weren't restored.");
+      hasError = true;
+    }
+    if (xstreamSavingConverter.getDifferingObjectsCounter() > 0) {
+      log.error(xstreamSavingConverter.getDifferingObjectsCounter() + " restored objects differ from the data-base.");
+      hasError = true;
+    }
+    final SessionFactory sessionFactory = hibernate.getSessionFactory();
+    Session session = null;
+    try {
+      session = sessionFactory.openSession(EmptyInterceptor.INSTANCE);
+      session.setDefaultReadOnly(true);
+      for (final Map.Entry<Class< ? >, Integer> entry : xstreamSavingConverter.getSavedObjectsCounters().entrySet()) {
+        final Class< ? > type = entry.getKey();
+        final Number count = (Number) session.createCriteria(type).setProjection(Projections.rowCount()).uniqueResult();
+        if (count == null || count.intValue() != entry.getValue()) {
+          log.error("Number of objects of type '"
+              + type.getName()
+              + "' in the data-base ("
+              + count
+              + ") differs from the number of restored objects ("
+              + entry.getValue()
+              + ").");
+          hasError = true;
+        }
+      }
+    } finally {
+      if (session != null) {
+        session.close();
+      }
+    }
+    if (hasError == true) {
+      log.fatal("*********** A inconsistency in the import was found! This may result in a data loss or corrupted data! Please retry the import. "
+          + counter
+          + " objects restored.");
+      return -counter;
+    }
+    log.info("Data-base import successfully verified: " + counter + " objects restored.");
+    return counter;
+  }
+
   /**
    * @param o1
    * @param o2
    * @param logDifference If true than the difference is logged.
+   * @param streamed If true, o1 is an object of the streaming restore: Null collections of o1 aren't compared and the entries of the
+   *          collections of o1 have to be found in the collections of o2 only (the other entries are restored later on their own).
    * @return True if the given objects are equal.
    */
-  private boolean equals(final Object o1, final Object o2, final boolean logDifference)
+  private boolean equals(final Object o1, final Object o2, final boolean logDifference, final boolean streamed)
   {
     if (o1 == null) {
       final boolean equals = (o2 == null);
@@ -465,7 +756,7 @@ public class XmlDump
           }
           continue;
         } else if (fieldValue1 == null) {
-          if (fieldValue2 != null) {
+          if (fieldValue2 != null && (streamed == false || fieldValue2 instanceof Collection< ? > == false)) {
             if (logDifference == true) {
               log.error("Field '" + field.getName() + "': value 1 '" + fieldValue1 + "' is different from value 2 '" + fieldValue2 + "'.");
             }
@@ -481,7 +772,7 @@ public class XmlDump
         } else if (fieldValue1 instanceof Collection< ? >) {
           final Collection< ? > col1 = (Collection< ? >) fieldValue1;
           final Collection< ? > col2 = (Collection< ? >) fieldValue2;
-          if (col1.size() != col2.size()) {
+          if (col1.size() != col2.size() && (streamed == false || col1.size() > col2.size())) {
             if (logDifference == true) {
               log.error("Field '"
                   + field.getName()
@@ -493,10 +784,11 @@ public class XmlDump
             }
             return false;
           }
-          if (equals(field, col1, col2, logDifference) == false || equals(field, col2, col1, logDifference) == false) {
+          if (equals(field, col1, col2, logDifference, streamed) == false
+              || (streamed == false && equals(field, col2, col1, logDifference, streamed) == false)) {
             return false;
           }
-        } else if (HibernateUtils.isEntity(fieldValue1.getClass()) == true) {
+        } else if (isEntity(fieldValue1) == true) {
           if (fieldValue2 == null
               || ObjectUtils.equals(HibernateUtils.getIdentifier(fieldValue1), HibernateUtils.getIdentifier(fieldValue2)) == false) {
             if (logDifference == true) {
@@ -543,12 +835,19 @@ public class XmlDump
    * @param col2
    * @return
    */
-  private boolean equals(final Field field, final Collection< ? > col1, final Collection< ? > col2, final boolean logDifference)
+  private boolean equals(final Field field, final Collection< ? > col1, final Collection< ? > col2, final boolean logDifference,
+      final boolean streamed)
   {
     for (final Object colVal1 : col1) {
       boolean equals = false;
       for (final Object colVal2 : col2) {
-        if (equals(colVal1, colVal2, false) == true) {
+        if ((colVal1 instanceof HibernateProxy || colVal2 instanceof HibernateProxy) && colVal1 != null && colVal2 != null) {
+          // Don't initialize the proxies (references of the streaming restore are detached).
+          if (ObjectUtils.equals(HibernateUtils.getIdentifier(colVal1), HibernateUtils.getIdentifier(colVal2)) == true) {
+            equals = true;
+            break;
+          }
+        } else if (equals(colVal1, colVal2, false, streamed) == true) {
           equals = true; // Equal object found.
           break;
         }
@@ -563,6 +862,11 @@ public class XmlDump
     return true;
   }
 
+  private boolean isEntity(final Object obj)
+  {
+    return obj instanceof HibernateProxy || HibernateUtils.isEntity(obj.getClass()) == true;
+  }
+
   /**
    * @param obj
    * @param compareObj Only need for @Transient (because Javassist proxy doesn't have this annotion).
@@ -0,0 +1,252 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.database.xstream;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.projectforge.database.HibernateUtils;
+
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.mapper.Mapper;
+
+/**
+ * Converter used by the streaming xml dump: Only the current top level object is serialized completely, all other referenced entities
+ * (except the embedded ones owned by the top level object, such as the positions of an invoice) are written as references containing
+ * only their id. So every entity of the data-base can be written and read on its own without loading whole object graphs. Embedded
+ * entities referenced by other objects than their owners (e. g. the invoice position of a cost assignment) are written as references as
+ * well.<br/>
+ * Any instance of this converter has to be used by one thread only.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class HibernateEntityReferenceConverter extends ReflectionConverter
+{
+  /**
+   * Attribute of the xml element containing the id of the referenced entity.
+   */
+  public static final String ATTR_ENTITY_REF = "entity-ref";
+
+  private final Set<Class< ? >> embeddedTypes = new HashSet<Class< ? >>();
+
+  // Fields of the embedded types referencing other entities (the candidates for the owner).
+  private final Map<Class< ? >, List<Field>> ownerFields = new HashMap<Class< ? >, List<Field>>();
+
+  private Object root;
+
+  private String unresolvedId;
+
+  public HibernateEntityReferenceConverter(final Mapper mapper, final ReflectionProvider reflectionProvider)
+  {
+    super(mapper, reflectionProvider);
+  }
+
+  /**
+   * @param types Entities of these types are serialized completely as part of their owners (the top level object referenced by one of
+   *          their fields).
+   * @return this for chaining.
+   */
+  public HibernateEntityReferenceConverter appendEmbeddedTypes(final Collection< ? extends Class< ? >> types)
+  {
+    if (types != null) {
+      this.embeddedTypes.addAll(types);
+    }
+    return this;
+  }
+
+  /**
+   * Must be called before marshalling the next top level object.
+   * @param root The object to serialize completely.
+   */
+  public void setRoot(final Object root)
+  {
+    this.root = root;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public boolean canConvert(final Class type)
+  {
+    if (HibernateProxy.class.isAssignableFrom(type) == true) {
+      return true;
+    }
+    return HibernateUtils.isEntity(type) == true;
+  }
+
+  @Override
+  public void marshal(final Object source, final HierarchicalStreamWriter writer, final MarshallingContext context)
+  {
+    Object obj = source;
+    if (source instanceof HibernateProxy) {
+      final HibernateProxy proxy = (HibernateProxy) source;
+      final Class< ? > type = HibernateProxyHelper.getClassWithoutInitializingProxy(source);
+      if (source != root && embeddedTypes.contains(type) == false) {
+        // Don't initialize the proxy, the id is sufficient.
+        writer.addAttribute(ATTR_ENTITY_REF, String.valueOf(proxy.getHibernateLazyInitializer().getIdentifier()));
+        return;
+      }
+      // Top level object or embedded object is a proxy, serialize the initialized object.
+      obj = proxy.getHibernateLazyInitializer().getImplementation();
+    }
+    if (source == root || obj == root || isOwnedByRoot(obj) == true) {
+      super.marshal(obj, writer, context);
+      return;
+    }
+    final Serializable id = HibernateUtils.getIdentifier(obj);
+    if (id != null) {
+      writer.addAttribute(ATTR_ENTITY_REF, String.valueOf(id));
+    }
+  }
+
+  /**
+   * @return true if the given object is of an embedded type and one of its fields references the current top level object.
+   */
+  private boolean isOwnedByRoot(final Object obj)
+  {
+    if (root == null || embeddedTypes.contains(obj.getClass()) == false) {
+      return false;
+    }
+    final Class< ? > rootType = HibernateProxyHelper.getClassWithoutInitializingProxy(root);
+    for (final Field field : getOwnerFields(obj.getClass())) {
+      if (field.getType().isAssignableFrom(rootType) == false) {
+        continue;
+      }
+      final Object value;
+      try {
+        value = field.get(obj);
+      } catch (final IllegalAccessException ex) {
+        throw new InternalError("Unexpected IllegalAccessException: " + ex.getMessage());
+      }
+      if (value == root) {
+        return true;
+      }
+      if (value != null
+          && HibernateProxyHelper.getClassWithoutInitializingProxy(value).equals(rootType) == true
+          && ObjectUtils.equals(HibernateUtils.getIdentifier(value), HibernateUtils.getIdentifier(root)) == true) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<Field> getOwnerFields(final Class< ? > type)
+  {
+    List<Field> fields = ownerFields.get(type);
+    if (fields == null) {
+      fields = new ArrayList<Field>();
+      for (Class< ? > cls = type; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+        for (final Field field : cls.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers()) == true || HibernateUtils.isEntity(field.getType()) == false) {
+            continue;
+          }
+          field.setAccessible(true);
+          fields.add(field);
+        }
+      }
+      ownerFields.put(type, fields);
+    }
+    return fields;
+  }
+
+  @Override
+  public Object unmarshal(final HierarchicalStreamReader reader, final UnmarshallingContext context)
+  {
+    final String id = reader.getAttribute(ATTR_ENTITY_REF);
+    if (id == null) {
+      // Top level object.
+      return super.unmarshal(reader, context);
+    }
+    final Object reference = resolveReference(context.getRequiredType(), id);
+    if (reference == null) {
+      unresolvedId = id;
+    }
+    return reference;
+  }
+
+  /**
+   * Calls {@link #onUnresolvedReference(Object, Field, Class, String)} if the value of the given field of a top level or embedded object is
+   * a reference which couldn't be resolved. References of collections which couldn't be resolved are removed from the collection (the
+   * referenced entities restore these references by themselves, e. g. the cost assignments of an invoice position).
+   * @see com.thoughtworks.xstream.converters.reflection.AbstractReflectionConverter#unmarshallField(com.thoughtworks.xstream.converters.UnmarshallingContext,
+   *      java.lang.Object, java.lang.Class, java.lang.reflect.Field)
+   */
+  @SuppressWarnings("rawtypes")
+  @Override
+  protected Object unmarshallField(final UnmarshallingContext context, final Object result, final Class type, final Field field)
+  {
+    unresolvedId = null;
+    final Object value = super.unmarshallField(context, result, type, field);
+    if (value == null && unresolvedId != null && field != null) {
+      onUnresolvedReference(result, field, type, unresolvedId);
+    } else if (value instanceof Collection< ? >) {
+      final Iterator< ? > it = ((Collection< ? >) value).iterator();
+      while (it.hasNext() == true) {
+        if (it.next() == null) {
+          it.remove();
+        }
+      }
+    }
+    unresolvedId = null;
+    return value;
+  }
+
+  /**
+   * Will be called while reading a reference to another entity. Does nothing at default.
+   * @param type The type of the referenced entity.
+   * @param id The id of the referenced entity as written in the xml stream (the id of the data-base the dump is from).
+   * @return The referenced entity or null if the reference couldn't be resolved.
+   */
+  protected Object resolveReference(final Class< ? > type, final String id)
+  {
+    return null;
+  }
+
+  /**
+   * Will be called if the reference of the given field couldn't be resolved by {@link #resolveReference(Class, String)}, e. g. because the
+   * referenced entity is written after the given object. Does nothing at default.
+   * @param obj The top level or embedded object containing the reference.
+   * @param field The field of the reference (the field value is null).
+   * @param type The type of the referenced entity.
+   * @param id The id of the referenced entity as written in the xml stream.
+   */
+  protected void onUnresolvedReference(final Object obj, final Field field, final Class< ? > type, final String id)
+  {
+  }
+}
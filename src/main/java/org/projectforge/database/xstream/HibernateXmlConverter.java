@@ -23,22 +23,42 @@
 
 package org.projectforge.database.xstream;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.PredicateUtils;
+import org.apache.commons.io.IOUtils;
+import org.hibernate.Criteria;
 import org.hibernate.EntityMode;
+import org.hibernate.FlushMode;
 import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.proxy.HibernateProxyHelper;
+import org.projectforge.common.BackgroundExecutors;
 import org.springframework.dao.DataAccessException;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
@@ -74,6 +94,21 @@ public class HibernateXmlConverter
   /** The logger */
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(HibernateXmlConverter.class);
 
+  /**
+   * Root element of the streaming dump format.
+   */
+  public static final String STREAM_ROOT_ELEMENT = "projectforge-dump";
+
+  /**
+   * Element containing all entities of one type in the streaming dump format.
+   */
+  public static final String STREAM_ENTITIES_ELEMENT = "entities";
+
+  /**
+   * Name of the background thread pool used for dumping the entity types in parallel.
+   */
+  public static final String DUMP_EXECUTOR_NAME = "XmlDump";
+
   /** the wrapper to hibernate */
   private HibernateTemplate hibernate;
 
@@ -135,6 +170,200 @@ public class HibernateXmlConverter
     });
   }
 
+  /**
+   * Writes all objects of the data-base in the streaming format to the given writer. In contrast to {@link #dumpDatabaseToXml(Writer, boolean)}
+   * the whole data-base isn't loaded at once: The entities of each type are read in chunks ordered by id (the session is cleared after every
+   * chunk) and written one by one. References to other entities are written as ids (see {@link HibernateEntityReferenceConverter}), so the
+   * memory usage is independent of the size of the data-base. The ids are always preserved.
+   * @param writer Destination of the xml stream.
+   * @param orderOfTypes These types are written first in the given order (should be the order of restoring), all other entity types are
+   *          written afterwards. The history entries are always written at last.
+   * @param includeHistory If false, the history entries will not be written.
+   * @param chunkSize Number of entities to read per query.
+   * @param threads If greater than 1, the entity types are dumped in parallel to temporary files which are concatenated in the given order.
+   *          The size of the background thread pool {@link #DUMP_EXECUTOR_NAME} (only used on its creation).
+   */
+  public void dumpDatabaseToXmlStream(final Writer writer, final Collection<Class< ? >> orderOfTypes, final boolean includeHistory,
+      final int chunkSize, final int threads)
+  {
+    final List<Class< ? >> types = getTypesToDump(orderOfTypes, includeHistory);
+    try {
+      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n");
+      writer.write("<" + STREAM_ROOT_ELEMENT + ">\n");
+      if (threads > 1 && types.size() > 1) {
+        writeEntitiesParallel(writer, types, chunkSize, threads);
+      } else {
+        for (final Class< ? > type : types) {
+          final int counter = writeEntities(writer, type, chunkSize);
+          log.info("Wrote " + counter + " objects of type " + type.getName());
+        }
+      }
+      writer.write("</" + STREAM_ROOT_ELEMENT + ">\n");
+      writer.flush();
+    } catch (final IOException ex) {
+      log.error(ex.getMessage(), ex);
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * @return All mapped entity types in the order of writing.
+   */
+  private List<Class< ? >> getTypesToDump(final Collection<Class< ? >> orderOfTypes, final boolean includeHistory)
+  {
+    // Sorted by name for getting the same order in every dump.
+    final TreeMap<String, Class< ? >> mappedTypes = new TreeMap<String, Class< ? >>();
+    for (final Object obj : hibernate.getSessionFactory().getAllClassMetadata().values()) {
+      final Class< ? > type = ((ClassMetadata) obj).getMappedClass(EntityMode.POJO);
+      if (type == null || this.ignoreFromTopLevelListing.contains(type) == true) {
+        continue;
+      }
+      mappedTypes.put(type.getName(), type);
+    }
+    final Set<Class< ? >> types = new LinkedHashSet<Class< ? >>();
+    if (orderOfTypes != null) {
+      for (final Class< ? > type : orderOfTypes) {
+        if (mappedTypes.containsKey(type.getName()) == true) {
+          types.add(type);
+        }
+      }
+    }
+    for (final Class< ? > type : mappedTypes.values()) {
+      if (HistoryEntry.class.isAssignableFrom(type) == false) {
+        types.add(type);
+      }
+    }
+    if (includeHistory == true) {
+      for (final Class< ? > type : mappedTypes.values()) {
+        if (HistoryEntry.class.isAssignableFrom(type) == true) {
+          types.add(type);
+        }
+      }
+    }
+    return new ArrayList<Class< ? >>(types);
+  }
+
+  private void writeEntitiesParallel(final Writer writer, final List<Class< ? >> types, final int chunkSize, final int threads)
+      throws IOException
+  {
+    final ExecutorService executor = BackgroundExecutors.getInstance().getExecutor(DUMP_EXECUTOR_NAME, threads);
+    final List<Future<File>> futures = new ArrayList<Future<File>>(types.size());
+    try {
+      for (final Class< ? > type : types) {
+        futures.add(executor.submit(new Callable<File>() {
+          public File call() throws Exception
+          {
+            final File file = File.createTempFile("projectforge-dump-", ".xml");
+            Writer fileWriter = null;
+            try {
+              fileWriter = new OutputStreamWriter(new FileOutputStream(file), "utf-8");
+              final int counter = writeEntities(fileWriter, type, chunkSize);
+              log.info("Wrote " + counter + " objects of type " + type.getName());
+            } finally {
+              IOUtils.closeQuietly(fileWriter);
+            }
+            return file;
+          }
+        }));
+      }
+      // Concatenate the fragments in the given order (waits for every type in order).
+      for (final Future<File> future : futures) {
+        final File file = future.get();
+        Reader reader = null;
+        try {
+          reader = new InputStreamReader(new FileInputStream(file), "utf-8");
+          IOUtils.copy(reader, writer);
+        } finally {
+          IOUtils.closeQuietly(reader);
+          file.delete();
+        }
+      }
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    } catch (final ExecutionException ex) {
+      log.error(ex.getMessage(), ex);
+      throw new RuntimeException(ex.getCause());
+    } finally {
+      for (final Future<File> future : futures) {
+        future.cancel(true);
+        if (future.isDone() == true && future.isCancelled() == false) {
+          try {
+            // Remove the fragments not concatenated due to errors.
+            future.get().delete();
+          } catch (final Exception ex) {
+            // Nothing to delete.
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes all entities of the given type ordered by id. The entities are read in chunks and the session is cleared after every chunk. Uses
+   * its own session, so this method may be called by several threads in parallel.
+   * @return Number of written objects.
+   */
+  private int writeEntities(final Writer writer, final Class< ? > type, final int chunkSize) throws IOException
+  {
+    final Session session = hibernate.getSessionFactory().openSession();
+    try {
+      session.setDefaultReadOnly(true);
+      session.setFlushMode(FlushMode.MANUAL);
+      final Transaction tx = session.beginTransaction();
+      try {
+        final XStream xstream = initXStream(session, false);
+        xstream.setMode(XStream.ID_REFERENCES);
+        final HibernateEntityReferenceConverter referenceConverter = new HibernateEntityReferenceConverter(xstream.getMapper(),
+            xstream.getReflectionProvider()).appendEmbeddedTypes(ignoreFromTopLevelListing);
+        xstream.registerConverter(referenceConverter, XStream.PRIORITY_VERY_HIGH + 1);
+        final ClassMetadata classMetadata = session.getSessionFactory().getClassMetadata(type);
+        final String idProperty = classMetadata.getIdentifierPropertyName();
+        writer.write("<" + STREAM_ENTITIES_ELEMENT + " class=\"" + type.getName() + "\">\n");
+        final PrettyPrintWriter xmlWriter = new PrettyPrintWriter(writer);
+        int counter = 0;
+        int offset = 0;
+        Object lastId = null;
+        while (true) {
+          final Criteria criteria = session.createCriteria(type).setMaxResults(chunkSize);
+          if (idProperty != null) {
+            criteria.addOrder(Order.asc(idProperty));
+            if (lastId != null) {
+              criteria.add(Restrictions.gt(idProperty, lastId));
+            }
+          } else {
+            criteria.setFirstResult(offset);
+          }
+          final List< ? > list = criteria.list();
+          for (final Object obj : list) {
+            if (idProperty != null) {
+              lastId = classMetadata.getIdentifier(obj, EntityMode.POJO);
+            }
+            if (HibernateProxyHelper.getClassWithoutInitializingProxy(obj).equals(type) == false) {
+              // Object of a sub class, will be written with its own type.
+              continue;
+            }
+            referenceConverter.setRoot(obj);
+            xstream.marshal(obj, xmlWriter);
+            ++counter;
+          }
+          xmlWriter.flush();
+          offset += list.size();
+          session.clear();
+          if (list.size() < chunkSize) {
+            break;
+          }
+        }
+        writer.write("\n</" + STREAM_ENTITIES_ELEMENT + ">\n");
+        return counter;
+      } finally {
+        tx.rollback();
+      }
+    } finally {
+      session.close();
+    }
+  }
+
   public HibernateXmlConverter appendIgnoredTopLevelObjects(final Class< ? >... types)
   {
     if (types != null) {
@@ -24,6 +24,7 @@
 package org.projectforge.database.xstream;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -90,8 +91,22 @@ public class XStreamSavingConverter implements Converter
 
   private final Map<String, Class< ? >> historyClassMapping = new HashMap<String, Class< ? >>();
 
+  // References of the streaming restore which couldn't be resolved while reading, because the referenced entities weren't yet restored.
+  private final List<DeferredReference> deferredReferences = new ArrayList<DeferredReference>();
+
+  // Number of saved objects per type (streaming restore).
+  private final Map<Class< ? >, Integer> savedObjectsCounters = new HashMap<Class< ? >, Integer>();
+
   private Session session;
 
+  private boolean streaming;
+
+  private int savedObjectsCounter;
+
+  private int failedObjectsCounter;
+
+  private int differingObjectsCounter;
+
   public XStreamSavingConverter() throws HibernateException
   {
     final XStream xstream = new XStream();
@@ -107,6 +122,73 @@ public class XStreamSavingConverter implements Converter
     this.session = session;
   }
 
+  /**
+   * @return true if this converter was used by the streaming restore. The objects aren't registered in this case, so
+   *         {@link #getAllObjects()} is empty.
+   */
+  public boolean isStreaming()
+  {
+    return streaming;
+  }
+
+  public void setStreaming(final boolean streaming)
+  {
+    this.streaming = streaming;
+  }
+
+  /**
+   * @return Number of objects saved by {@link #saveObject(Object)} without errors.
+   */
+  public int getSavedObjectsCounter()
+  {
+    return savedObjectsCounter;
+  }
+
+  /**
+   * @return Number of objects which couldn't be saved by {@link #saveObject(Object)}.
+   */
+  public int getFailedObjectsCounter()
+  {
+    return failedObjectsCounter;
+  }
+
+  /**
+   * @return Number of objects per type saved by {@link #saveObject(Object)} without errors (the embedded objects saved by their parent
+   *         objects aren't counted).
+   */
+  public Map<Class< ? >, Integer> getSavedObjectsCounters()
+  {
+    return savedObjectsCounters;
+  }
+
+  /**
+   * @return Number of restored objects registered by {@link #registerDifferingObject(Object, Object)}.
+   */
+  public int getDifferingObjectsCounter()
+  {
+    return differingObjectsCounter;
+  }
+
+  /**
+   * Should be called by the verification of the streaming restore if a restored object differs from the object read from the data-base.
+   * @param obj The restored object.
+   * @param dbObj The object read from the data-base.
+   */
+  public void registerDifferingObject(final Object obj, final Object dbObj)
+  {
+    ++differingObjectsCounter;
+    log.error("Object not sucessfully imported! xml object=[" + obj + "], data base=[" + dbObj + "]");
+  }
+
+  /**
+   * @return Number of references registered by {@link #registerDeferredReference(Object, Field, Class, Serializable)} which aren't yet
+   *         updated by {@link #updateDeferredReferences(int)}.
+   */
+  public int getDeferredReferencesCounter()
+  {
+    return deferredReferences.size();
+  }
+
   public Map<Class< ? >, List<Object>> getAllObjects()
   {
     return allObjects;
@@ -300,31 +382,141 @@ public class XStreamSavingConverter implements Converter
       return;
     }
     for (final Object obj : list) {
-      if (obj == null || writtenObjects.contains(obj) == true) {
-        // Object null or already written. Skip this item.
+      saveObject(obj);
+    }
+  }
+
+  /**
+   * Saves the given object immediately (used by the streaming restore, the objects are read and saved one by one without registering).
+   * Objects of ignored types, objects already written and objects contained in the session are skipped.
+   * @param obj
+   */
+  public void saveObject(final Object obj)
+  {
+    if (obj == null || writtenObjects.contains(obj) == true) {
+      // Object null or already written. Skip this item.
+      return;
+    }
+    if (ignoreFromSaving.contains(obj.getClass()) == true || session.contains(obj) == true) {
+      return;
+    }
+    try {
+      if (log.isDebugEnabled()) {
+        log.debug("Try to write object " + obj);
+      }
+      Serializable id = onBeforeSave(session, obj);
+      if (id == null) {
+        id = save(obj);
+      }
+      onAfterSave(obj, id);
+      ++savedObjectsCounter;
+      final Integer counter = savedObjectsCounters.get(obj.getClass());
+      savedObjectsCounters.put(obj.getClass(), counter != null ? counter + 1 : 1);
+      if (log.isDebugEnabled() == true) {
+        log.debug("wrote object " + obj + " under id " + id);
+      }
+    } catch (final HibernateException ex) {
+      ++failedObjectsCounter;
+      log.fatal("Failed to write " + obj + " ex=" + ex, ex);
+    } catch (final NullPointerException ex) {
+      ++failedObjectsCounter;
+      log.fatal("Failed to write " + obj + " ex=" + ex, ex);
+    }
+  }
+
+  /**
+   * Should be called by the streaming restore after every committed batch (after clearing the session): Forgets all written objects, so
+   * the memory usage doesn't grow with the number of restored objects. Only the id mapping (old to new ids) is kept.
+   */
+  public void onBatchCommitted()
+  {
+    writtenObjects.clear();
+    historyEntries.clear();
+  }
+
+  /**
+   * Registers a reference of the streaming restore which couldn't be resolved while reading the given object, because the referenced
+   * entity isn't yet restored (e. g. a task referencing a parent task with a higher id). The given object is hold in memory until
+   * {@link #updateDeferredReferences(int)} is called.
+   * @param obj The object containing the reference (not yet saved).
+   * @param field The field of the reference.
+   * @param type The type of the referenced entity.
+   * @param oldId The id of the referenced entity as written in the xml stream.
+   */
+  public void registerDeferredReference(final Object obj, final Field field, final Class< ? > type, final Serializable oldId)
+  {
+    deferredReferences.add(new DeferredReference(obj, field, type, oldId));
+  }
+
+  /**
+   * Sets all references registered by {@link #registerDeferredReference(Object, Field, Class, Serializable)}. Should be called after all
+   * objects are saved. References which still can't be resolved are counted as failed objects. The updated references are read from the
+   * data-base afterwards, any reference not pointing to the restored entity is counted as differing object.
+   * @param batchSize The session is flushed and cleared after this number of updated objects.
+   */
+  public void updateDeferredReferences(final int batchSize)
+  {
+    final List<DeferredReference> updatedReferences = new ArrayList<DeferredReference>(deferredReferences.size());
+    int counter = 0;
+    for (final DeferredReference reference : deferredReferences) {
+      final Serializable id = HibernateUtils.getIdentifier(reference.obj);
+      if (id == null) {
+        // Object wasn't saved (already counted as failed).
         continue;
       }
-      if (session.contains(obj) == true) {
+      final Serializable newId = getNewId(reference.type, reference.oldId);
+      final Object dbObj = session.get(reference.obj.getClass(), id);
+      if (newId == null || dbObj == null) {
+        ++failedObjectsCounter;
+        log.fatal("Can't restore reference '"
+            + reference.field.getName()
+            + "' of "
+            + reference.obj.getClass().getName()
+            + " with id "
+            + id
+            + ": '"
+            + reference.type.getName()
+            + "' with old id "
+            + reference.oldId
+            + " not found.");
         continue;
       }
       try {
-        if (log.isDebugEnabled()) {
-          log.debug("Try to write object " + obj);
-        }
-        Serializable id = onBeforeSave(session, obj);
-        if (id == null) {
-          id = save(obj);
-        }
-        onAfterSave(obj, id);
-        if (log.isDebugEnabled() == true) {
-          log.debug("wrote object " + obj + " under id " + id);
-        }
-      } catch (final HibernateException ex) {
-        log.fatal("Failed to write " + obj + " ex=" + ex, ex);
-      } catch (final NullPointerException ex) {
-        log.fatal("Failed to write " + obj + " ex=" + ex, ex);
+        reference.field.setAccessible(true);
+        reference.field.set(dbObj, session.load(reference.type, newId));
+      } catch (final IllegalAccessException ex) {
+        ++failedObjectsCounter;
+        log.fatal("Can't restore reference '" + reference.field.getName() + "' of " + dbObj + ": " + ex.getMessage(), ex);
+        continue;
+      }
+      updatedReferences.add(reference);
+      if (++counter % batchSize == 0) {
+        session.flush();
+        session.clear();
+      }
+    }
+    session.flush();
+    session.clear();
+    deferredReferences.clear();
+    counter = 0;
+    for (final DeferredReference reference : updatedReferences) {
+      final Serializable id = HibernateUtils.getIdentifier(reference.obj);
+      final Object dbObj = session.get(reference.obj.getClass(), id);
+      Object value = null;
+      try {
+        value = dbObj != null ? reference.field.get(dbObj) : null;
+      } catch (final IllegalAccessException ex) {
+        log.fatal("Can't read reference '" + reference.field.getName() + "' of " + dbObj + ": " + ex.getMessage(), ex);
+      }
+      final Serializable newId = getNewId(reference.type, reference.oldId);
+      if (value == null || newId.equals(HibernateUtils.getIdentifier(value)) == false) {
+        registerDifferingObject(reference.obj, dbObj);
+      }
+      if (++counter % batchSize == 0) {
+        session.clear();
       }
     }
+    session.clear();
   }
 
   /**
@@ -471,4 +663,23 @@ public class XStreamSavingConverter implements Converter
     }
     list.add(obj);
   }
+
+  private static class DeferredReference
+  {
+    private final Object obj;
+
+    private final Field field;
+
+    private final Class< ? > type;
+
+    private final Serializable oldId;
+
+    private DeferredReference(final Object obj, final Field field, final Class< ? > type, final Serializable oldId)
+    {
+      this.obj = obj;
+      this.field = field;
+      this.type = type;
+      this.oldId = oldId;
+    }
+  }
 }
@@ -23,12 +23,28 @@
 
 package org.projectforge.fibu;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.hibernate.Hibernate;
+import org.projectforge.common.BackgroundExecutors;
+import org.projectforge.core.ResultHandler;
+import org.projectforge.fibu.kost.Kost2DO;
 import org.projectforge.timesheet.TimesheetDO;
 import org.projectforge.timesheet.TimesheetDao;
 import org.projectforge.timesheet.TimesheetFilter;
+import org.projectforge.user.PFUserContext;
 import org.projectforge.user.PFUserDO;
 import org.springframework.orm.hibernate3.support.HibernateDaoSupport;
 import org.springframework.transaction.annotation.Propagation;
@@ -40,6 +56,18 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
 public class MonthlyEmployeeReportDao extends HibernateDaoSupport
 {
+  /**
+   * Name of the background thread pool used for calculating the reports.
+   */
+  public static final String CALCULATE_EXECUTOR_NAME = "MonthlyEmployeeReport";
+
+  private static final int CALCULATE_THREADS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Maximum number of reports calculated ahead of the handler.
+   */
+  static final int MAX_PENDING_REPORTS = 2 * CALCULATE_THREADS;
+
   private TimesheetDao timesheetDao;
 
   private EmployeeDao employeeDao;
@@ -73,6 +101,171 @@ public class MonthlyEmployeeReportDao extends HibernateDaoSupport
     return report;
   }
 
+  /**
+   * Builds the reports of the given users for the given month. All time sheets of the month are read by one streamed query (ordered by
+   * start time) and the reports are calculated in parallel (one task per user, see {@link #CALCULATE_EXECUTOR_NAME}). The given handler is
+   * called in the calling thread for every calculated report in the order of the given users. At most {@link #MAX_PENDING_REPORTS} reports
+   * are calculated ahead of the handler, so e. g. an export may be written while the following reports are still being calculated.
+   * @param year
+   * @param month
+   * @param users If null, the reports of all active employees of the given month are built.
+   * @param handler The processing is stopped if the handler returns false.
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public void processReports(final int year, final int month, final Collection<PFUserDO> users,
+      final ResultHandler<MonthlyEmployeeReport> handler)
+  {
+    if (year <= 0) {
+      return;
+    }
+    // Load all employees at once instead of one query per user:
+    final Map<Integer, EmployeeDO> employees = new HashMap<Integer, EmployeeDO>();
+    final List<EmployeeDO> allEmployees = employeeDao.internalLoadAll();
+    if (allEmployees != null) {
+      for (final EmployeeDO employee : allEmployees) {
+        if (employee.getUserId() != null && employee.isDeleted() == false) {
+          employees.put(employee.getUserId(), employee);
+        }
+      }
+    }
+    final Map<Integer, MonthlyEmployeeReport> reports = new LinkedHashMap<Integer, MonthlyEmployeeReport>();
+    if (users != null) {
+      for (final PFUserDO user : users) {
+        final MonthlyEmployeeReport report = new MonthlyEmployeeReport(year, month);
+        final EmployeeDO employee = employees.get(user.getId());
+        if (employee != null) {
+          report.setEmployee(employee);
+        } else {
+          report.setUser(user);
+        }
+        report.init();
+        reports.put(user.getId(), report);
+      }
+    } else {
+      for (final EmployeeDO employee : employees.values()) {
+        final MonthlyEmployeeReport report = new MonthlyEmployeeReport(year, month);
+        report.setEmployee(employee);
+        report.init();
+        if (isActive(employee, report) == true) {
+          reports.put(employee.getUserId(), report);
+        }
+      }
+    }
+    if (reports.isEmpty() == true) {
+      return;
+    }
+    final MonthlyEmployeeReport first = reports.values().iterator().next();
+    final TimesheetFilter filter = new TimesheetFilter();
+    filter.setDeleted(false);
+    filter.setStartTime(first.getFromDate());
+    filter.setStopTime(first.getToDate());
+    timesheetDao.processList(filter, new ResultHandler<TimesheetDO>() {
+      @Override
+      public boolean handle(final TimesheetDO sheet)
+      {
+        final MonthlyEmployeeReport report = reports.get(sheet.getUserId());
+        if (report != null) {
+          // The time sheets are evicted from the session after handling and the reports are calculated in other threads without session,
+          // so initialize all needed objects now:
+          initialize(sheet);
+          report.addTimesheet(sheet);
+        }
+        return true;
+      }
+    });
+    final PFUserDO loggedInUser = PFUserContext.getUser();
+    final ExecutorService executor = BackgroundExecutors.getInstance().getExecutor(CALCULATE_EXECUTOR_NAME, CALCULATE_THREADS);
+    final LinkedList<Future<MonthlyEmployeeReport>> pending = new LinkedList<Future<MonthlyEmployeeReport>>();
+    final Iterator<MonthlyEmployeeReport> it = reports.values().iterator();
+    try {
+      while (it.hasNext() == true || pending.isEmpty() == false) {
+        while (it.hasNext() == true && pending.size() < MAX_PENDING_REPORTS) {
+          final MonthlyEmployeeReport report = it.next();
+          pending.add(executor.submit(new Callable<MonthlyEmployeeReport>() {
+            @Override
+            public MonthlyEmployeeReport call() throws Exception
+            {
+              PFUserContext.setUser(loggedInUser);
+              try {
+                report.calculate();
+                return report;
+              } finally {
+                PFUserContext.setUser(null);
+              }
+            }
+          }));
+        }
+        if (handler.handle(pending.removeFirst().get()) == false) {
+          break;
+        }
+      }
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while calculating monthly employee reports.", ex);
+    } catch (final ExecutionException ex) {
+      throw new RuntimeException("Error while calculating monthly employee reports: " + ex.getCause().getMessage(), ex.getCause());
+    } finally {
+      for (final Future<MonthlyEmployeeReport> future : pending) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * @param year
+   * @param month
+   * @param users If null, the reports of all active employees of the given month are built.
+   * @return The reports in the order of the given users.
+   * @see #processReports(int, int, Collection, ResultHandler)
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public List<MonthlyEmployeeReport> getReports(final int year, final int month, final Collection<PFUserDO> users)
+  {
+    final List<MonthlyEmployeeReport> result = new ArrayList<MonthlyEmployeeReport>();
+    processReports(year, month, users, new ResultHandler<MonthlyEmployeeReport>() {
+      @Override
+      public boolean handle(final MonthlyEmployeeReport report)
+      {
+        result.add(report);
+        return true;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return true if the employee is employed in the month of the given report and the user is neither deleted nor deactivated.
+   */
+  private boolean isActive(final EmployeeDO employee, final MonthlyEmployeeReport report)
+  {
+    final PFUserDO user = employee.getUser();
+    if (user == null || user.hasSystemAccess() == false) {
+      return false;
+    }
+    if (employee.getEintrittsDatum() != null && employee.getEintrittsDatum().after(report.getToDate()) == true) {
+      return false;
+    }
+    if (employee.getAustrittsDatum() != null && employee.getAustrittsDatum().before(report.getFromDate()) == true) {
+      return false;
+    }
+    return true;
+  }
+
+  private void initialize(final TimesheetDO sheet)
+  {
+    Hibernate.initialize(sheet.getTask());
+    final Kost2DO kost2 = sheet.getKost2();
+    if (kost2 != null) {
+      Hibernate.initialize(kost2);
+      Hibernate.initialize(kost2.getKost2Art());
+      final ProjektDO projekt = kost2.getProjekt();
+      if (projekt != null) {
+        Hibernate.initialize(projekt);
+        Hibernate.initialize(projekt.getKunde());
+      }
+    }
+  }
+
   public void setTimesheetDao(TimesheetDao timesheetDao)
   {
     this.timesheetDao = timesheetDao;
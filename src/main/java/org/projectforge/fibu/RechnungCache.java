@@ -30,44 +30,54 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
-import org.projectforge.common.AbstractCache;
+import org.projectforge.common.AbstractSnapshotCache;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 
 
 /**
- * Caches the order positions assigned to invoice positions.
+ * Caches the order positions assigned to invoice positions. After reaching the expire time the cache is refreshed in background, readers
+ * aren't blocked meanwhile.
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
-public class RechnungCache extends AbstractCache
+public class RechnungCache extends AbstractSnapshotCache<RechnungCache.Snapshot>
 {
   private static Logger log = Logger.getLogger(RechnungCache.class);
 
   private HibernateTemplate hibernateTemplate;
 
-  /** The key is the order id. */
-  private Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragId;
+  static class Snapshot
+  {
+    /** The key is the order id. */
+    private final Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragId;
+
+    /** The key is the order position id. */
+    private final Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragsPositionId;
 
-  /** The key is the order position id. */
-  private Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragsPositionId;
+    private Snapshot(final Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragId,
+        final Map<Integer, Set<RechnungsPositionVO>> invoicePositionMapByAuftragsPositionId)
+    {
+      this.invoicePositionMapByAuftragId = invoicePositionMapByAuftragId;
+      this.invoicePositionMapByAuftragsPositionId = invoicePositionMapByAuftragsPositionId;
+    }
+  }
 
   public Set<RechnungsPositionVO> getRechnungsPositionVOSetByAuftragId(final Integer auftragId)
   {
-    checkRefresh();
-    return invoicePositionMapByAuftragId.get(auftragId);
+    return getSnapshot().invoicePositionMapByAuftragId.get(auftragId);
   }
 
   public Set<RechnungsPositionVO> getRechnungsPositionVOSetByAuftragsPositionId(final Integer auftragsPositionId)
   {
-    checkRefresh();
-    return invoicePositionMapByAuftragsPositionId.get(auftragsPositionId);
+    return getSnapshot().invoicePositionMapByAuftragsPositionId.get(auftragsPositionId);
   }
 
   /**
-   * This method will be called by CacheHelper and is synchronized via getData();
+   * This method will be called by AbstractCache in background (except of the first call). The old snapshot is used by the readers until the
+   * new one is published.
    */
   @Override
   @SuppressWarnings("unchecked")
-  protected void refresh()
+  protected Snapshot buildSnapshot()
   {
     log.info("Initializing RechnungCache ...");
     // This method must not be synchronized because it works with a new copy of maps.
@@ -102,9 +112,8 @@ public class RechnungCache extends AbstractCache
         setByAuftragsPositionId.add(vo);
       }
     }
-    this.invoicePositionMapByAuftragId = mapByAuftragId;
-    this.invoicePositionMapByAuftragsPositionId = mapByAuftragsPositionId;
     log.info("Initializing of RechnungCache done.");
+    return new Snapshot(mapByAuftragId, mapByAuftragsPositionId);
   }
 
   public void setHibernateTemplate(final HibernateTemplate hibernateTemplate)
@@ -49,6 +49,7 @@ import org.projectforge.core.DisplayHistoryEntry;
 import org.projectforge.core.MessageParam;
 import org.projectforge.core.MessageParamType;
 import org.projectforge.core.QueryFilter;
+import org.projectforge.core.ResultHandler;
 import org.projectforge.core.UserException;
 import org.projectforge.database.SQLHelper;
 import org.projectforge.fibu.kost.KostZuweisungDO;
@@ -294,20 +295,8 @@ public class RechnungDao extends BaseDao<RechnungDO>
   @Override
   public List<RechnungDO> getList(final BaseSearchFilter filter)
   {
-    final RechnungFilter myFilter;
-    if (filter instanceof RechnungFilter) {
-      myFilter = (RechnungFilter) filter;
-    } else {
-      myFilter = new RechnungFilter(filter);
-    }
-    final QueryFilter queryFilter = new QueryFilter(myFilter);
-    queryFilter.setYearAndMonth("datum", myFilter.getYear(), myFilter.getMonth());
-    queryFilter.addOrder(Order.desc("datum"));
-    queryFilter.addOrder(Order.desc("nummer"));
-    if (myFilter.isShowKostZuweisungStatus() == true) {
-      queryFilter.setFetchMode("positionen.kostZuweisungen", FetchMode.JOIN);
-    }
-    final List<RechnungDO> list = getList(queryFilter);
+    final RechnungFilter myFilter = asRechnungFilter(filter);
+    final List<RechnungDO> list = getList(createQueryFilter(myFilter));
     if (myFilter.isShowAll() == true || myFilter.isDeleted() == true) {
       return list;
     }
@@ -329,6 +318,69 @@ public class RechnungDao extends BaseDao<RechnungDO>
     return result;
   }
 
+  /**
+   * The unpaid and overdue invoices are filtered in-memory, so only lists of all invoices are supported.
+   * @see org.projectforge.core.BaseDao#isKeysetPagingSupported(org.projectforge.core.BaseSearchFilter)
+   */
+  @Override
+  public boolean isKeysetPagingSupported(final BaseSearchFilter filter)
+  {
+    final RechnungFilter myFilter = asRechnungFilter(filter);
+    if (myFilter.isShowAll() == false && myFilter.isDeleted() == false) {
+      return false;
+    }
+    return super.isKeysetPagingSupported(filter);
+  }
+
+  /**
+   * @see org.projectforge.core.BaseDao#createQueryFilter(org.projectforge.core.BaseSearchFilter)
+   */
+  @Override
+  protected QueryFilter createQueryFilter(final BaseSearchFilter filter)
+  {
+    final RechnungFilter myFilter = asRechnungFilter(filter);
+    final QueryFilter queryFilter = new QueryFilter(myFilter);
+    queryFilter.setYearAndMonth("datum", myFilter.getYear(), myFilter.getMonth());
+    queryFilter.addOrder(Order.desc("datum"));
+    queryFilter.addOrder(Order.desc("nummer"));
+    if (myFilter.isShowKostZuweisungStatus() == true) {
+      queryFilter.setFetchMode("positionen.kostZuweisungen", FetchMode.JOIN);
+    }
+    return queryFilter;
+  }
+
+  /**
+   * The statistics of all invoices matching the given filter. The invoices are processed one by one without loading the complete list, if
+   * supported.
+   * @param filter
+   * @see #processList(BaseSearchFilter, ResultHandler)
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public RechnungsStatistik buildStatistik(final RechnungFilter filter)
+  {
+    if (isKeysetPagingSupported(filter) == false) {
+      return buildStatistik(getList(filter));
+    }
+    final RechnungsStatistik stats = new RechnungsStatistik();
+    processList(filter, new ResultHandler<RechnungDO>() {
+      @Override
+      public boolean handle(final RechnungDO rechnung)
+      {
+        stats.add(rechnung);
+        return true;
+      }
+    });
+    return stats;
+  }
+
+  private RechnungFilter asRechnungFilter(final BaseSearchFilter filter)
+  {
+    if (filter instanceof RechnungFilter) {
+      return (RechnungFilter) filter;
+    }
+    return new RechnungFilter(filter);
+  }
+
   @Override
   protected List<RechnungDO> sort(final List<RechnungDO> list)
   {
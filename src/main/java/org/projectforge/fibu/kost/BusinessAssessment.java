@@ -126,6 +126,7 @@ public class BusinessAssessment implements Serializable
       return;
     }
     if (CollectionUtils.isNotEmpty(records) == true) {
+      final BusinessAssessmentRowIndex rowIndex = config.getRowIndex();
       for (final BuchungssatzDO record : records) {
         counter++;
         // Diese Berechnungen werden anhand des Wertenachweises einer Bwa geführt:
@@ -137,15 +138,10 @@ public class BusinessAssessment implements Serializable
           continue;
         }
         final int accountNumber = account.getNummer();
-        boolean found = false;
-        for (final BusinessAssessmentRow row : rows) {
-          if (row.doesMatch(accountNumber) == true) {
-            row.addAccountRecord(record);
-            found = true;
-            break;
-          }
-        }
-        if (found == false) {
+        final int pos = rowIndex.getRowIndex(accountNumber);
+        if (pos >= 0) {
+          rows.get(pos).addAccountRecord(record);
+        } else {
           log.warn("Ignoring Satz: " + record);
           record.setIgnore(true);
         }
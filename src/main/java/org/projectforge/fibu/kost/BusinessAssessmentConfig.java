@@ -29,6 +29,7 @@ import java.util.List;
 import org.apache.commons.lang.builder.ReflectionToStringBuilder;
 import org.projectforge.xml.stream.XmlField;
 import org.projectforge.xml.stream.XmlObject;
+import org.projectforge.xml.stream.XmlOmitField;
 
 /**
  * Used in config.xml for the definition of the used business assessment schema. The business assessment is displayed in different
@@ -49,6 +50,9 @@ public class BusinessAssessmentConfig implements Serializable
 
   private String overallPerformance, merchandisePurchase, preliminaryResult;
 
+  @XmlOmitField
+  private transient BusinessAssessmentRowIndex rowIndex;
+
   public BusinessAssessmentConfig()
   {
   }
@@ -75,6 +79,17 @@ public class BusinessAssessmentConfig implements Serializable
     return null;
   }
 
+  /**
+   * @return The compiled account number ranges of all rows (built on first access).
+   */
+  BusinessAssessmentRowIndex getRowIndex()
+  {
+    if (rowIndex == null) {
+      rowIndex = new BusinessAssessmentRowIndex(rows);
+    }
+    return rowIndex;
+  }
+
   /**
    * @return the heading to be displayed first.
    */
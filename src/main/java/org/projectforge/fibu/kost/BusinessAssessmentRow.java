@@ -60,6 +60,15 @@ public class BusinessAssessmentRow implements Serializable
 
   private BigDecimal amount;
 
+  // Sum of the account records in cents (the amounts of account records have a scale of 2), for avoiding BigDecimal additions.
+  private long amountInCents;
+
+  // Sum of the account records which doesn't fit into amountInCents (scale > 2 or too large).
+  private BigDecimal amountRest;
+
+  // If true, the amount has to be calculated from amountInCents and amountRest.
+  private boolean amountDirty;
+
   // If true then no recalculation is done, otherwise the amounts are lost.
   private boolean accountRecordsExist;
 
@@ -98,11 +107,20 @@ public class BusinessAssessmentRow implements Serializable
    */
   public void addAccountRecord(final BuchungssatzDO record)
   {
-    accountRecordsExist = true;
-    if (amount == null) {
-      amount = BigDecimal.ZERO;
+    if (accountRecordsExist == false) {
+      accountRecordsExist = true;
+      amountRest = getAmount();
+      amountInCents = 0;
     }
-    amount = amount.add(record.getBetrag());
+    final BigDecimal betrag = record.getBetrag();
+    if (betrag != null) {
+      if (betrag.scale() <= 2 && betrag.precision() - betrag.scale() < 15) {
+        amountInCents += betrag.movePointRight(2).longValue();
+      } else {
+        amountRest = amountRest != null ? amountRest.add(betrag) : betrag;
+      }
+    }
+    amountDirty = true;
     if (this.accountRecords != null) {
       this.accountRecords.add(record);
     }
@@ -113,6 +131,13 @@ public class BusinessAssessmentRow implements Serializable
    */
   public BigDecimal getAmount()
   {
+    if (amountDirty == true) {
+      amount = BigDecimal.valueOf(amountInCents, 2);
+      if (amountRest != null) {
+        amount = amount.add(amountRest);
+      }
+      amountDirty = false;
+    }
     return amount;
   }
 
@@ -212,6 +237,7 @@ public class BusinessAssessmentRow implements Serializable
       // Nothing to do.
       return;
     }
+    amountDirty = false;
     amount = BigDecimal.ZERO;
     final Map<String, Object> vars = new HashMap<String, Object>();
     BusinessAssessment.putBusinessAssessmentRows(vars, businessAssessment);
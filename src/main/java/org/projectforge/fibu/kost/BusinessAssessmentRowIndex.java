@@ -0,0 +1,148 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.fibu.kost;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.projectforge.common.IntRanges;
+import org.projectforge.common.Range;
+
+/**
+ * Compiled account number ranges of all rows of a business assessment config. The (possibly overlapping) ranges and single values of the
+ * rows are flattened into a sorted table of disjoint intervals, each referring to the first row (in config order) matching this interval.
+ * So the row of an account number is found by a binary search instead of testing the ranges of every row.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class BusinessAssessmentRowIndex implements Serializable
+{
+  private static final long serialVersionUID = -3620471598614218853L;
+
+  private final int[] starts;
+
+  private final int[] ends;
+
+  private final int[] rowIndexes;
+
+  /**
+   * @param rowConfigs The rows in the order of the config (the first matching row wins).
+   */
+  BusinessAssessmentRowIndex(final List<BusinessAssessmentRowConfig> rowConfigs)
+  {
+    final List<long[]> intervals = new ArrayList<long[]>(); // {min, max, rowIndex}
+    final TreeSet<Long> boundaries = new TreeSet<Long>();
+    if (rowConfigs != null) {
+      int rowIndex = 0;
+      for (final BusinessAssessmentRowConfig rowConfig : rowConfigs) {
+        final IntRanges ranges = rowConfig.getAccountNumberRanges();
+        if (ranges != null) {
+          if (ranges.getRanges() != null) {
+            for (final Range<Integer> range : ranges.getRanges()) {
+              addInterval(intervals, boundaries, range.getMinValue(), range.getMaxValue(), rowIndex);
+            }
+          }
+          if (ranges.getValues() != null) {
+            for (final Integer value : ranges.getValues()) {
+              addInterval(intervals, boundaries, value, value, rowIndex);
+            }
+          }
+        }
+        ++rowIndex;
+      }
+    }
+    // Split the number space into elementary segments between two neighboured boundaries and assign the first matching row:
+    final List<int[]> segments = new ArrayList<int[]>();
+    Long segmentStart = null;
+    for (final Long boundary : boundaries) {
+      if (segmentStart != null) {
+        final long from = segmentStart;
+        final long to = boundary - 1;
+        int rowIndex = Integer.MAX_VALUE;
+        for (final long[] interval : intervals) {
+          if (interval[0] <= from && to <= interval[1] && interval[2] < rowIndex) {
+            rowIndex = (int) interval[2];
+          }
+        }
+        if (rowIndex != Integer.MAX_VALUE) {
+          final int[] last = segments.isEmpty() == false ? segments.get(segments.size() - 1) : null;
+          if (last != null && last[2] == rowIndex && last[1] + 1L == from) {
+            // Merge with the previous segment.
+            last[1] = (int) to;
+          } else {
+            segments.add(new int[] { (int) from, (int) to, rowIndex});
+          }
+        }
+      }
+      segmentStart = boundary;
+    }
+    final int size = segments.size();
+    starts = new int[size];
+    ends = new int[size];
+    rowIndexes = new int[size];
+    for (int i = 0; i < size; i++) {
+      final int[] segment = segments.get(i);
+      starts[i] = segment[0];
+      ends[i] = segment[1];
+      rowIndexes[i] = segment[2];
+    }
+  }
+
+  private static void addInterval(final List<long[]> intervals, final TreeSet<Long> boundaries, final Integer min, final Integer max,
+      final int rowIndex)
+  {
+    if (min == null || max == null) {
+      return;
+    }
+    intervals.add(new long[] { min, max, rowIndex});
+    boundaries.add((long) min);
+    boundaries.add(max + 1L);
+  }
+
+  /**
+   * @param accountNumber
+   * @return The index of the first row (in config order) matching the given account number or -1 if no row matches.
+   */
+  int getRowIndex(final int accountNumber)
+  {
+    int pos = Arrays.binarySearch(starts, accountNumber);
+    if (pos < 0) {
+      pos = -pos - 2; // Last interval starting before the given number.
+      if (pos < 0) {
+        return -1;
+      }
+    }
+    return accountNumber <= ends[pos] ? rowIndexes[pos] : -1;
+  }
+
+  /**
+   * @return The number of disjoint intervals.
+   */
+  int size()
+  {
+    return starts.length;
+  }
+}
@@ -0,0 +1,104 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.fibu.kost.reporting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Precompiled list of kost patterns (see {@link Report#modifyRegExp(String)}). Patterns consisting only of digits and dots, optional
+ * followed by a trailing '*' (e. g. "5.100.*" or "5.100.01.02"), are matched as simple prefix or by string comparison. All other patterns
+ * are compiled once as regular expressions.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class KostPatternMatcher
+{
+  private final String[] prefixes;
+
+  private final String[] literals;
+
+  private final Pattern[] patterns;
+
+  private final boolean empty;
+
+  KostPatternMatcher(final List<String> regExpList)
+  {
+    final List<String> prefixList = new ArrayList<String>();
+    final List<String> literalList = new ArrayList<String>();
+    final List<Pattern> patternList = new ArrayList<Pattern>();
+    if (regExpList != null) {
+      for (final String str : regExpList) {
+        if (str == null) {
+          continue;
+        }
+        if (str.startsWith("'") == false && StringUtils.containsOnly(str, "0123456789.*") == true) {
+          final int pos = str.indexOf('*');
+          if (pos < 0) {
+            literalList.add(str);
+            continue;
+          } else if (pos == str.length() - 1) {
+            prefixList.add(str.substring(0, pos));
+            continue;
+          }
+        }
+        patternList.add(Pattern.compile(Report.modifyRegExp(str)));
+      }
+    }
+    prefixes = prefixList.toArray(new String[prefixList.size()]);
+    literals = literalList.toArray(new String[literalList.size()]);
+    patterns = patternList.toArray(new Pattern[patternList.size()]);
+    empty = regExpList == null || regExpList.isEmpty() == true;
+  }
+
+  /**
+   * @param kost
+   * @param emptyListMatches Result if no pattern is given.
+   * @return true if at least one pattern matches the whole given kost string.
+   */
+  boolean match(final String kost, final boolean emptyListMatches)
+  {
+    if (empty == true) {
+      return emptyListMatches;
+    }
+    for (final String prefix : prefixes) {
+      if (kost.startsWith(prefix) == true) {
+        return true;
+      }
+    }
+    for (final String literal : literals) {
+      if (kost.equals(literal) == true) {
+        return true;
+      }
+    }
+    for (final Pattern pattern : patterns) {
+      if (pattern.matcher(kost).matches() == true) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -27,13 +27,22 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
 import org.apache.commons.lang.ObjectUtils;
+import org.projectforge.common.BackgroundExecutors;
 import org.projectforge.fibu.KostFormatter;
+import org.projectforge.fibu.kost.Kost1DO;
+import org.projectforge.fibu.kost.Kost2DO;
 import org.projectforge.fibu.kost.AccountingConfig;
 import org.projectforge.fibu.kost.BuchungssatzDO;
 import org.projectforge.fibu.kost.BusinessAssessment;
@@ -49,6 +58,13 @@ public class Report implements Serializable
 {
   private static final long serialVersionUID = -5359861335173843043L;
 
+  /**
+   * Child reports are selected in parallel if the parent report contains at least this number of account records.
+   */
+  private static final int PARALLEL_SELECT_THRESHOLD = 1000;
+
+  private static final String SELECT_EXECUTOR_NAME = "ReportSelect";
+
   private transient List<BuchungssatzDO> buchungssaetze;
 
   private transient Set<BuchungssatzDO> buchungssatzSet;
@@ -77,6 +93,9 @@ public class Report implements Serializable
 
   private transient Report parent;
 
+  // Formatted kost1 and kost2 strings by id, only used by the root report (shared by all descendant reports).
+  private transient Map<Integer, String> kost1Strings, kost2Strings;
+
   public Report(final ReportObjective reportObjective)
   {
     this.reportObjective = reportObjective;
@@ -271,10 +290,9 @@ public class Report implements Serializable
     if (childReports == null && hasChilds() == true) {
       childReports = new ArrayList<Report>();
       for (final ReportObjective child : reportObjective.getChildReportObjectives()) {
-        final Report report = new Report(child, this);
-        report.select(this.buchungssaetze);
-        childReports.add(report);
+        childReports.add(new Report(child, this));
       }
+      selectChilds(childReports);
       if (this.buchungssaetze != null && (reportObjective.isSuppressOther() == false || reportObjective.isSuppressDuplicates() == false)) {
         for (final BuchungssatzDO satz : this.buchungssaetze) {
           int n = 0;
@@ -320,6 +338,105 @@ public class Report implements Serializable
     return childReports;
   }
 
+  /**
+   * Selects the account records of the given child reports from the account records of this report. The child reports are selected in
+   * parallel for large reports.
+   */
+  private void selectChilds(final List<Report> childs)
+  {
+    if (this.buchungssaetze == null || this.buchungssaetze.size() < PARALLEL_SELECT_THRESHOLD || childs.size() < 2) {
+      for (final Report child : childs) {
+        child.select(this.buchungssaetze);
+      }
+      return;
+    }
+    // Format all kost strings inside this thread (the kost objects may have to be loaded by Hibernate):
+    for (final BuchungssatzDO satz : this.buchungssaetze) {
+      getKost1String(satz);
+      getKost2String(satz);
+    }
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (final Report child : childs) {
+      tasks.add(new Callable<Object>() {
+        public Object call()
+        {
+          child.select(Report.this.buchungssaetze);
+          return null;
+        }
+      });
+    }
+    final ExecutorService executor = BackgroundExecutors.getInstance().getExecutor(SELECT_EXECUTOR_NAME,
+        Runtime.getRuntime().availableProcessors());
+    try {
+      for (final Future<Object> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while selecting child reports of report '" + getId() + "'.", ex);
+    } catch (final ExecutionException ex) {
+      throw new RuntimeException("Error while selecting child reports of report '" + getId() + "': " + ex.getCause().getMessage(), ex
+          .getCause());
+    }
+  }
+
+  private Report getRoot()
+  {
+    Report root = this;
+    while (root.parent != null) {
+      root = root.parent;
+    }
+    return root;
+  }
+
+  /**
+   * @return The formatted kost1 of the given account record, cached by kost1 id for the whole report tree.
+   * @see KostFormatter#format(Kost1DO)
+   */
+  private String getKost1String(final BuchungssatzDO satz)
+  {
+    final Kost1DO kost1 = satz.getKost1();
+    if (kost1 == null || kost1.getId() == null) {
+      return KostFormatter.format(kost1);
+    }
+    final Report root = getRoot();
+    synchronized (root) {
+      if (root.kost1Strings == null) {
+        root.kost1Strings = new ConcurrentHashMap<Integer, String>();
+      }
+    }
+    String str = root.kost1Strings.get(kost1.getId());
+    if (str == null) {
+      str = KostFormatter.format(kost1);
+      root.kost1Strings.put(kost1.getId(), str);
+    }
+    return str;
+  }
+
+  /**
+   * @return The formatted kost2 of the given account record, cached by kost2 id for the whole report tree.
+   * @see KostFormatter#format(Kost2DO)
+   */
+  private String getKost2String(final BuchungssatzDO satz)
+  {
+    final Kost2DO kost2 = satz.getKost2();
+    if (kost2 == null || kost2.getId() == null) {
+      return KostFormatter.format(kost2);
+    }
+    final Report root = getRoot();
+    synchronized (root) {
+      if (root.kost2Strings == null) {
+        root.kost2Strings = new ConcurrentHashMap<Integer, String>();
+      }
+    }
+    String str = root.kost2Strings.get(kost2.getId());
+    if (str == null) {
+      str = KostFormatter.format(kost2);
+      root.kost2Strings.put(kost2.getId(), str);
+    }
+    return str;
+  }
+
   public List<BuchungssatzDO> getBuchungssaetze()
   {
     return buchungssaetze;
@@ -364,24 +481,26 @@ public class Report implements Serializable
    */
   public void select(final List<BuchungssatzDO> list)
   {
+    final KostPatternMatcher kost1ExcludeMatcher = reportObjective.getKost1ExcludeMatcher();
+    final KostPatternMatcher kost2ExcludeMatcher = reportObjective.getKost2ExcludeMatcher();
+    final KostPatternMatcher kost1IncludeMatcher = reportObjective.getKost1IncludeMatcher();
+    final KostPatternMatcher kost2IncludeMatcher = reportObjective.getKost2IncludeMatcher();
     final Predicate regExpPredicate = new Predicate() {
       public boolean evaluate(final Object obj)
       {
         final BuchungssatzDO satz = (BuchungssatzDO) obj;
-        final String kost1 = KostFormatter.format(satz.getKost1());
-        final String kost2 = KostFormatter.format(satz.getKost2());
+        final String kost1 = getKost1String(satz);
+        final String kost2 = getKost2String(satz);
 
         // 1st of all the Blacklists
-        if (match(reportObjective.getKost1ExcludeRegExpList(), kost1, false) == true) {
+        if (kost1ExcludeMatcher.match(kost1, false) == true) {
           return false;
         }
-        if (match(reportObjective.getKost2ExcludeRegExpList(), kost2, false) == true) {
+        if (kost2ExcludeMatcher.match(kost2, false) == true) {
           return false;
         }
         // 2nd the whitelists
-        final boolean kost1Match = match(reportObjective.getKost1IncludeRegExpList(), kost1, true);
-        final boolean kost2Match = match(reportObjective.getKost2IncludeRegExpList(), kost2, true);
-        return kost1Match == true && kost2Match == true;
+        return kost1IncludeMatcher.match(kost1, true) == true && kost2IncludeMatcher.match(kost2, true) == true;
       }
     };
     this.buchungssaetze = new ArrayList<BuchungssatzDO>();
@@ -422,18 +541,7 @@ public class Report implements Serializable
    */
   public static boolean match(final List<String> regExpList, final String kost, final boolean emptyListMatches)
   {
-    if (CollectionUtils.isNotEmpty(regExpList) == true) {
-      for (final String str : regExpList) {
-        final String regExp = modifyRegExp(str);
-        if (kost.matches(regExp) == true) {
-          return true;
-        }
-      }
-      return false;
-    } else {
-      // List is empty:
-      return emptyListMatches;
-    }
+    return new KostPatternMatcher(regExpList).match(kost, emptyListMatches);
   }
 
   /**
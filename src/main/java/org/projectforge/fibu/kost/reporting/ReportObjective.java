@@ -73,6 +73,8 @@ public class ReportObjective
   
   private transient ReportObjective parent;
 
+  private transient KostPatternMatcher kost1IncludeMatcher, kost1ExcludeMatcher, kost2IncludeMatcher, kost2ExcludeMatcher;
+
   public ReportObjective()
   {
   }
@@ -233,6 +235,38 @@ public class ReportObjective
     this.kost2ExcludeRegExpList = addRegExp(this.kost2ExcludeRegExpList, regExp);
   }
   
+  KostPatternMatcher getKost1IncludeMatcher()
+  {
+    if (kost1IncludeMatcher == null) {
+      kost1IncludeMatcher = new KostPatternMatcher(kost1IncludeRegExpList);
+    }
+    return kost1IncludeMatcher;
+  }
+
+  KostPatternMatcher getKost1ExcludeMatcher()
+  {
+    if (kost1ExcludeMatcher == null) {
+      kost1ExcludeMatcher = new KostPatternMatcher(kost1ExcludeRegExpList);
+    }
+    return kost1ExcludeMatcher;
+  }
+
+  KostPatternMatcher getKost2IncludeMatcher()
+  {
+    if (kost2IncludeMatcher == null) {
+      kost2IncludeMatcher = new KostPatternMatcher(kost2IncludeRegExpList);
+    }
+    return kost2IncludeMatcher;
+  }
+
+  KostPatternMatcher getKost2ExcludeMatcher()
+  {
+    if (kost2ExcludeMatcher == null) {
+      kost2ExcludeMatcher = new KostPatternMatcher(kost2ExcludeRegExpList);
+    }
+    return kost2ExcludeMatcher;
+  }
+
   public ReportObjective getParent()
   {
     return parent;
@@ -244,6 +278,7 @@ public class ReportObjective
       regExpList = new ArrayList<String>();
     }
     regExpList.add(regExp);
+    kost1IncludeMatcher = kost1ExcludeMatcher = kost2IncludeMatcher = kost2ExcludeMatcher = null;
     return regExpList;
   }
 }
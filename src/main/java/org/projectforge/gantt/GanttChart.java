@@ -68,6 +68,8 @@ public class GanttChart
 
   private transient String fontFamily = "Helvetica";
 
+  private transient GanttScheduler scheduler;
+
   private transient Map<GanttTask, ObjectInfo> objectMap = new HashMap<GanttTask, ObjectInfo>();
 
   private class ObjectInfo
@@ -127,6 +129,17 @@ public class GanttChart
     this.name = name;
   }
 
+  /**
+   * @param scheduler If given and already scheduled, the calculated dates of the scheduler are used (e. g. updated incrementally after
+   *          modifications of single tasks). Otherwise the dates of all tasks are calculated on {@link #recalculate()}.
+   * @return this for chaining.
+   */
+  public GanttChart setScheduler(final GanttScheduler scheduler)
+  {
+    this.scheduler = scheduler;
+    return this;
+  }
+
   public GanttChart setFontFamily(String fontFamily)
   {
     this.fontFamily = fontFamily;
@@ -320,7 +333,11 @@ public class GanttChart
    */
   public Collection<GanttTask> recalculate()
   {
-    rootNode.recalculate();
+    if (scheduler == null) {
+      new GanttScheduler(rootNode).schedule();
+    } else if (scheduler.isScheduled() == false) {
+      scheduler.schedule();
+    }
     fromDate = toDate = null;
     final Collection<GanttTask> allVisibleGanttObjects = getAllVisibleGanttObjects(new ArrayList<GanttTask>(), rootNode);
     for (final GanttTask node : allVisibleGanttObjects) {
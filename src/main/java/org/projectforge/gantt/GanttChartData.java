@@ -37,15 +37,29 @@ public class GanttChartData implements Serializable
 
   private Collection<GanttTask> externalObjects;
 
+  private transient GanttScheduler scheduler;
+
   public void setRootObject(GanttTask rootObject)
   {
     this.rootObject = rootObject;
+    this.scheduler = null;
   }
 
   public GanttTask getRootObject()
   {
     return rootObject;
   }
+
+  /**
+   * @return The scheduler of the root object (created on first call).
+   */
+  public GanttScheduler getScheduler()
+  {
+    if (scheduler == null) {
+      scheduler = new GanttScheduler(rootObject);
+    }
+    return scheduler;
+  }
   
   public GanttTask findById(final Serializable id) {
     if (rootObject == null) {
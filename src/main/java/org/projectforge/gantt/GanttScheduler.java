@@ -0,0 +1,413 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.gantt;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates the start and end dates of all tasks of a Gantt chart in one pass. The dependency graph of the dates (predecessor relations
+ * and the roll-up of the children's dates by their parents) is built once, cycles are detected up-front and the dates are calculated in
+ * topological order (dependencies first). So every single calculation of {@link GanttUtils} finds the dates it depends on already
+ * calculated and the recursion depth is independent of the length of the dependency chains.<br/>
+ * After changing a single task (duration, dates, predecessor or relation) {@link #update(GanttTask)} recalculates only the dates depending
+ * on this task.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class GanttScheduler
+{
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(GanttScheduler.class);
+
+  private final GanttTask rootNode;
+
+  /** All tasks of the chart (including tasks outside the tree referred as predecessors). Vertex 2*i is the start, 2*i+1 the end date. */
+  private List<GanttTask> tasks;
+
+  private Map<GanttTask, Integer> taskIndexes;
+
+  /** Vertices each vertex depends on. */
+  private int[][] dependencies;
+
+  /** Vertices depending on each vertex. */
+  private int[][] dependents;
+
+  /** All vertices in topological order (dependencies first). */
+  private int[] order;
+
+  private boolean scheduled;
+
+  public GanttScheduler(final GanttTask rootNode)
+  {
+    this.rootNode = rootNode;
+  }
+
+  /**
+   * Builds the dependency graph and (re-)calculates the dates of all tasks.
+   * @return this for chaining.
+   */
+  public GanttScheduler schedule()
+  {
+    build();
+    for (final GanttTask task : tasks) {
+      task.setCalculatedStartDate(null).setStartDateCalculated(false);
+      task.setCalculatedEndDate(null).setEndDateCalculated(false);
+    }
+    for (final int vertex : order) {
+      calculate(vertex);
+    }
+    scheduled = true;
+    return this;
+  }
+
+  /**
+   * Recalculates all dates depending on the given task (and the dates of the given task itself) after changing the given task. If the
+   * chart isn't scheduled yet, nothing is done (the dates will be calculated by the next call of {@link #schedule()}).
+   * @param task The modified task.
+   */
+  public void update(final GanttTask task)
+  {
+    if (scheduled == false || task == null) {
+      return;
+    }
+    // Dependents in the old graph (e. g. the former successors of the task, if the predecessor relation was changed):
+    final List<GanttTask> affectedStarts = new ArrayList<GanttTask>();
+    final List<GanttTask> affectedEnds = new ArrayList<GanttTask>();
+    final Integer oldIndex = taskIndexes.get(task);
+    if (oldIndex != null) {
+      collectAffected(collectDependents(oldIndex), affectedStarts, affectedEnds);
+    }
+    build();
+    final boolean[] affected = new boolean[2 * tasks.size()];
+    for (final GanttTask start : affectedStarts) {
+      final Integer index = taskIndexes.get(start);
+      if (index != null) {
+        affected[2 * index] = true;
+      }
+    }
+    for (final GanttTask end : affectedEnds) {
+      final Integer index = taskIndexes.get(end);
+      if (index != null) {
+        affected[2 * index + 1] = true;
+      }
+    }
+    final Integer index = taskIndexes.get(task);
+    if (index != null) {
+      final boolean[] newAffected = collectDependents(index);
+      for (int i = 0; i < affected.length; i++) {
+        affected[i] |= newAffected[i];
+      }
+    }
+    for (int vertex = 0; vertex < affected.length; vertex++) {
+      if (affected[vertex] == true) {
+        final GanttTask t = tasks.get(vertex / 2);
+        if (vertex % 2 == 0) {
+          t.setCalculatedStartDate(null).setStartDateCalculated(false);
+        } else {
+          t.setCalculatedEndDate(null).setEndDateCalculated(false);
+        }
+      }
+    }
+    for (final int vertex : order) {
+      if (affected[vertex] == true) {
+        calculate(vertex);
+      }
+    }
+  }
+
+  /**
+   * Forces a complete recalculation by the next call of {@link #schedule()} or {@link #isScheduled()} respectively.
+   */
+  public void invalidate()
+  {
+    scheduled = false;
+  }
+
+  /**
+   * @return true if all dates were calculated and not invalidated since then.
+   */
+  public boolean isScheduled()
+  {
+    return scheduled;
+  }
+
+  private void calculate(final int vertex)
+  {
+    final GanttTask task = tasks.get(vertex / 2);
+    if (vertex % 2 == 0) {
+      if (task.isStartDateCalculated() == false) {
+        final Date date = GanttUtils.getCalculatedStartDate(task);
+        if (task.getStartDate() != null) {
+          task.setCalculatedStartDate(date).setStartDateCalculated(true);
+        }
+      }
+    } else {
+      if (task.isEndDateCalculated() == false) {
+        final Date date = GanttUtils.getCalculatedEndDate(task);
+        if (task.getEndDate() != null) {
+          task.setCalculatedEndDate(date).setEndDateCalculated(true);
+        }
+      }
+    }
+  }
+
+  private boolean[] collectDependents(final int taskIndex)
+  {
+    final boolean[] result = new boolean[dependents.length];
+    final LinkedList<Integer> queue = new LinkedList<Integer>();
+    queue.add(2 * taskIndex);
+    queue.add(2 * taskIndex + 1);
+    result[2 * taskIndex] = result[2 * taskIndex + 1] = true;
+    while (queue.isEmpty() == false) {
+      final int vertex = queue.removeFirst();
+      for (final int dependent : dependents[vertex]) {
+        if (result[dependent] == false) {
+          result[dependent] = true;
+          queue.add(dependent);
+        }
+      }
+    }
+    return result;
+  }
+
+  private void collectAffected(final boolean[] vertices, final List<GanttTask> starts, final List<GanttTask> ends)
+  {
+    for (int vertex = 0; vertex < vertices.length; vertex++) {
+      if (vertices[vertex] == true) {
+        if (vertex % 2 == 0) {
+          starts.add(tasks.get(vertex / 2));
+        } else {
+          ends.add(tasks.get(vertex / 2));
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects all tasks, builds the dependency graph of the start and end dates and calculates the topological order.
+   */
+  private void build()
+  {
+    tasks = new ArrayList<GanttTask>();
+    taskIndexes = new IdentityHashMap<GanttTask, Integer>();
+    if (rootNode != null) {
+      final LinkedList<GanttTask> queue = new LinkedList<GanttTask>();
+      addTask(rootNode, queue);
+      while (queue.isEmpty() == false) {
+        final GanttTask task = queue.removeFirst();
+        if (task.getChildren() != null) {
+          for (final GanttTask child : task.getChildren()) {
+            addTask(child, queue);
+          }
+        }
+        addTask(task.getPredecessor(), queue);
+      }
+    }
+    final int size = 2 * tasks.size();
+    final List<List<Integer>> deps = new ArrayList<List<Integer>>(size);
+    final List<List<Integer>> reverse = new ArrayList<List<Integer>>(size);
+    for (int i = 0; i < size; i++) {
+      deps.add(new ArrayList<Integer>());
+      reverse.add(new ArrayList<Integer>());
+    }
+    for (int i = 0; i < tasks.size(); i++) {
+      final GanttTask task = tasks.get(i);
+      addStartDependencies(task, deps.get(2 * i));
+      addEndDependencies(task, deps.get(2 * i + 1));
+    }
+    dependencies = new int[size][];
+    for (int vertex = 0; vertex < size; vertex++) {
+      final List<Integer> list = deps.get(vertex);
+      dependencies[vertex] = new int[list.size()];
+      for (int j = 0; j < list.size(); j++) {
+        dependencies[vertex][j] = list.get(j);
+        reverse.get(list.get(j)).add(vertex);
+      }
+    }
+    dependents = new int[size][];
+    for (int vertex = 0; vertex < size; vertex++) {
+      final List<Integer> list = reverse.get(vertex);
+      dependents[vertex] = new int[list.size()];
+      for (int j = 0; j < list.size(); j++) {
+        dependents[vertex][j] = list.get(j);
+      }
+    }
+    calculateOrder();
+  }
+
+  private void addTask(final GanttTask task, final LinkedList<GanttTask> queue)
+  {
+    if (task == null || taskIndexes.containsKey(task) == true) {
+      return;
+    }
+    taskIndexes.put(task, tasks.size());
+    tasks.add(task);
+    queue.add(task);
+  }
+
+  /**
+   * Same dependencies as used by {@link GanttUtils#getCalculatedStartDate(GanttTask)}.
+   */
+  private void addStartDependencies(final GanttTask task, final List<Integer> deps)
+  {
+    if (task.getStartDate() != null || (task.getDuration() != null && task.getEndDate() != null)) {
+      // Start date is given or calculated from the given end date.
+      return;
+    }
+    final GanttTask predecessor = task.getPredecessor();
+    if (predecessor != null) {
+      deps.add(getPredecessorVertex(task.getRelationType(), predecessor));
+    }
+    final GanttRelationType relationType = task.getRelationType();
+    if ((predecessor == null || (relationType != null && relationType.isIn(GanttRelationType.FINISH_FINISH,
+        GanttRelationType.START_FINISH) == true))
+        && task.getChildren() != null) {
+      for (final GanttTask child : task.getChildren()) {
+        deps.add(2 * taskIndexes.get(child));
+      }
+    }
+    if (task.getDuration() != null) {
+      deps.add(2 * taskIndexes.get(task) + 1);
+    }
+  }
+
+  /**
+   * Same dependencies as used by {@link GanttUtils#getCalculatedEndDate(GanttTask)}.
+   */
+  private void addEndDependencies(final GanttTask task, final List<Integer> deps)
+  {
+    if (task.getEndDate() != null || (task.getDuration() != null && task.getStartDate() != null)) {
+      // End date is given or calculated from the given start date.
+      return;
+    }
+    final GanttTask predecessor = task.getPredecessor();
+    if (predecessor != null) {
+      deps.add(getPredecessorVertex(task.getRelationType(), predecessor));
+    }
+    final GanttRelationType relationType = task.getRelationType();
+    if ((predecessor == null || (relationType == null || relationType.isIn(GanttRelationType.FINISH_FINISH,
+        GanttRelationType.START_FINISH) == false))
+        && task.getChildren() != null
+        && task.getDuration() == null) {
+      for (final GanttTask child : task.getChildren()) {
+        deps.add(2 * taskIndexes.get(child) + 1);
+      }
+    }
+    if (task.getDuration() != null) {
+      deps.add(2 * taskIndexes.get(task));
+    }
+  }
+
+  private int getPredecessorVertex(final GanttRelationType relationType, final GanttTask predecessor)
+  {
+    final int index = taskIndexes.get(predecessor);
+    if (relationType == GanttRelationType.START_START || relationType == GanttRelationType.START_FINISH) {
+      return 2 * index;
+    }
+    return 2 * index + 1;
+  }
+
+  /**
+   * Tarjan's algorithm (iterative for avoiding stack overflows). The strongly connected components are found in reverse topological order,
+   * which is the order of calculation (dependencies first). Components containing dates of more than one task are circular references.
+   */
+  private void calculateOrder()
+  {
+    final int size = dependencies.length;
+    final int[] index = new int[size];
+    final int[] lowLink = new int[size];
+    final boolean[] onStack = new boolean[size];
+    final int[] stack = new int[size];
+    int stackSize = 0;
+    final int[] callStack = new int[size];
+    final int[] edgePos = new int[size];
+    order = new int[size];
+    int orderSize = 0;
+    int counter = 0;
+    for (int i = 0; i < size; i++) {
+      index[i] = -1;
+    }
+    for (int root = 0; root < size; root++) {
+      if (index[root] >= 0) {
+        continue;
+      }
+      int callStackSize = 0;
+      callStack[callStackSize++] = root;
+      index[root] = lowLink[root] = counter++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      edgePos[root] = 0;
+      while (callStackSize > 0) {
+        final int vertex = callStack[callStackSize - 1];
+        if (edgePos[vertex] < dependencies[vertex].length) {
+          final int dep = dependencies[vertex][edgePos[vertex]++];
+          if (index[dep] < 0) {
+            index[dep] = lowLink[dep] = counter++;
+            stack[stackSize++] = dep;
+            onStack[dep] = true;
+            edgePos[dep] = 0;
+            callStack[callStackSize++] = dep;
+          } else if (onStack[dep] == true) {
+            lowLink[vertex] = Math.min(lowLink[vertex], index[dep]);
+          }
+          continue;
+        }
+        // All dependencies processed:
+        --callStackSize;
+        if (callStackSize > 0) {
+          final int caller = callStack[callStackSize - 1];
+          lowLink[caller] = Math.min(lowLink[caller], lowLink[vertex]);
+        }
+        if (lowLink[vertex] == index[vertex]) {
+          // Root of a strongly connected component:
+          final int first = orderSize;
+          int member;
+          do {
+            member = stack[--stackSize];
+            onStack[member] = false;
+            order[orderSize++] = member;
+          } while (member != vertex);
+          if (orderSize - first == 2 && order[first] / 2 == order[first + 1] / 2 && order[first] % 2 == 1) {
+            // Start and end date of the same task depend on each other: calculate the start date first (as done by the Gantt chart).
+            order[first + 1] = order[first];
+            order[first] = order[first] - 1;
+          }
+          if (orderSize - first > 2 || (orderSize - first == 2 && order[first] / 2 != order[first + 1] / 2)) {
+            final StringBuffer buf = new StringBuffer();
+            for (int i = first; i < orderSize; i++) {
+              if (i > first) {
+                buf.append(", ");
+              }
+              buf.append(tasks.get(order[i] / 2).getId()).append(order[i] % 2 == 0 ? " (start)" : " (end)");
+            }
+            log.error("Circular reference detected (dates couldn't be calculated): " + buf.toString());
+          }
+        }
+      }
+    }
+  }
+}
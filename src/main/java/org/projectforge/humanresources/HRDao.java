@@ -24,25 +24,33 @@
 package org.projectforge.humanresources;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.criterion.Order;
 import org.projectforge.calendar.DayHolder;
+import org.projectforge.calendar.TimePeriod;
 import org.projectforge.common.DateHolder;
 import org.projectforge.common.NumberHelper;
 import org.projectforge.core.BaseSearchFilter;
 import org.projectforge.core.IDao;
+import org.projectforge.core.ModificationStamp;
 import org.projectforge.core.QueryFilter;
 import org.projectforge.fibu.KundeDO;
 import org.projectforge.fibu.ProjektDO;
 import org.projectforge.task.TaskTree;
-import org.projectforge.timesheet.TimesheetDO;
 import org.projectforge.timesheet.TimesheetDao;
-import org.projectforge.timesheet.TimesheetFilter;
+import org.projectforge.user.PFUserContext;
 import org.projectforge.user.PFUserDO;
 import org.projectforge.user.UserDao;
 import org.projectforge.user.UserGroupCache;
+import org.projectforge.user.UserRights;
 import org.springframework.orm.hibernate3.support.HibernateDaoSupport;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -57,6 +65,8 @@ public class HRDao extends HibernateDaoSupport implements IDao<HRViewData>
 {
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(HRDao.class);
 
+  private static final int MAX_CACHED_PERIODS = 100;
+
   private TimesheetDao timesheetDao;
 
   private HRPlanningDao hrPlanningDao;
@@ -67,6 +77,17 @@ public class HRDao extends HibernateDaoSupport implements IDao<HRViewData>
 
   private UserDao userDao;
 
+  // Summed durations of the time sheets of closed periods, key is start and stop time of the period.
+  private final Map<String, CachedDurations> timesheetDurationsCache = new LinkedHashMap<String, CachedDurations>(16, 0.75f, true) {
+    private static final long serialVersionUID = -2317413484394858434L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, CachedDurations> eldest)
+    {
+      return size() > MAX_CACHED_PERIODS;
+    }
+  };
+
   /**
    * Rows contains the users and the last row contains the total sums. Columns of each rows are the man days of the projects (see
    * getProjectNames)
@@ -85,28 +106,33 @@ public class HRDao extends HibernateDaoSupport implements IDao<HRViewData>
       day.setEndOfWeek();
       filter.setStopTime(day.getDate());
     }
-    if (filter.isShowBookedTimesheets() == true) {
-      final TimesheetFilter tsFilter = new TimesheetFilter();
-      tsFilter.setStartTime(filter.getStartTime());
-      tsFilter.setStopTime(filter.getStopTime());
-      final List<TimesheetDO> sheets = timesheetDao.getList(tsFilter);
-      for (final TimesheetDO sheet : sheets) {
-        final PFUserDO user = userGroupCache.getUser(sheet.getUserId());
+    if (filter.isShowBookedTimesheets() == true && UserRights.getAccessChecker().isRestrictedUser() == false) {
+      final Map<Integer, Map<Integer, Long>> durations = getTimesheetDurations(filter.getStartTime(), filter.getStopTime());
+      final PFUserDO loggedInUser = PFUserContext.getUser();
+      for (final Map.Entry<Integer, Map<Integer, Long>> userEntry : durations.entrySet()) {
+        final PFUserDO user = userGroupCache.getUser(userEntry.getKey());
         if (user == null) {
-          log.error("Oups, user of time sheet is null or unknown? Ignoring entry: " + sheet);
+          log.error("Oups, user of time sheets is null or unknown? Ignoring entries of user with id: " + userEntry.getKey());
           continue;
         }
-        final ProjektDO projekt = taskTree.getProjekt(sheet.getTaskId());
-        final Object targetObject = getTargetObject(filter, projekt);
-        if (targetObject == null) {
-          data.addTimesheet(sheet, user);
-        } else if (targetObject instanceof ProjektDO) {
-          data.addTimesheet(sheet, user, (ProjektDO) targetObject);
-        } else if (targetObject instanceof KundeDO) {
-          data.addTimesheet(sheet, user, (KundeDO) targetObject);
-        } else {
-          log.error("Target object of type " + targetObject + " not supported.");
-          data.addTimesheet(sheet, user);
+        for (final Map.Entry<Integer, Long> taskEntry : userEntry.getValue().entrySet()) {
+          final Integer taskId = taskEntry.getKey();
+          if (timesheetDao.hasSelectAccess(loggedInUser, user, taskTree.getTaskById(taskId)) == false) {
+            continue;
+          }
+          final long duration = taskEntry.getValue();
+          final ProjektDO projekt = taskTree.getProjekt(taskId);
+          final Object targetObject = getTargetObject(filter, projekt);
+          if (targetObject == null) {
+            data.addTimesheet(duration, user);
+          } else if (targetObject instanceof ProjektDO) {
+            data.addTimesheet(duration, user, (ProjektDO) targetObject);
+          } else if (targetObject instanceof KundeDO) {
+            data.addTimesheet(duration, user, (KundeDO) targetObject);
+          } else {
+            log.error("Target object of type " + targetObject + " not supported.");
+            data.addTimesheet(duration, user);
+          }
         }
       }
     }
@@ -166,6 +192,64 @@ public class HRDao extends HibernateDaoSupport implements IDao<HRViewData>
     return data;
   }
 
+  /**
+   * Sums the durations of all time sheets of the given period by user and task. Only the ids and the time stamps are selected, no time sheet
+   * objects are loaded. The sums of closed periods (before the current week) are cached and validated by the modification stamp of all time
+   * sheets of the period (the sum of the ids detects time sheets moved into and out of the period at once). No access checking is done
+   * here.
+   * @param startTime
+   * @param stopTime The end of the day of the stop time is used.
+   * @return The durations in millis by task id by user id. The result may be shared and mustn't be modified.
+   */
+  Map<Integer, Map<Integer, Long>> getTimesheetDurations(final Date startTime, final Date stopTime)
+  {
+    final DateHolder date = new DateHolder(stopTime);
+    date.setEndOfDay();
+    final Date stop = date.getDate();
+    final DayHolder beginOfWeek = new DayHolder();
+    beginOfWeek.setBeginOfWeek();
+    final boolean closed = stop.before(beginOfWeek.getDate());
+    final String key = startTime.getTime() + "-" + stop.getTime();
+    ModificationStamp stamp = null;
+    if (closed == true) {
+      stamp = ModificationStamp.create((Object[]) getSession()
+          .createQuery("select max(lastUpdate), count(id), sum(id) from TimesheetDO where startTime between :start and :stop")
+          .setTimestamp("start", startTime).setTimestamp("stop", stop).uniqueResult());
+      synchronized (timesheetDurationsCache) {
+        final CachedDurations cached = timesheetDurationsCache.get(key);
+        if (cached != null && cached.stamp.equals(stamp) == true) {
+          return cached.durations;
+        }
+      }
+    }
+    final Map<Integer, Map<Integer, Long>> durations = new HashMap<Integer, Map<Integer, Long>>();
+    final ScrollableResults results = getSession()
+        .createQuery("select user.id, task.id, startTime, stopTime from TimesheetDO where deleted = false and startTime between :start and :stop")
+        .setTimestamp("start", startTime).setTimestamp("stop", stop).scroll(ScrollMode.FORWARD_ONLY);
+    try {
+      while (results.next() == true) {
+        final Integer userId = (Integer) results.get(0);
+        final Integer taskId = (Integer) results.get(1);
+        final long duration = TimePeriod.getDuration((Date) results.get(2), (Date) results.get(3));
+        Map<Integer, Long> taskDurations = durations.get(userId);
+        if (taskDurations == null) {
+          taskDurations = new HashMap<Integer, Long>();
+          durations.put(userId, taskDurations);
+        }
+        final Long sum = taskDurations.get(taskId);
+        taskDurations.put(taskId, sum != null ? sum + duration : duration);
+      }
+    } finally {
+      results.close();
+    }
+    if (closed == true) {
+      synchronized (timesheetDurationsCache) {
+        timesheetDurationsCache.put(key, new CachedDurations(stamp, durations));
+      }
+    }
+    return durations;
+  }
+
   /**
    * Returns a list of all users which are accessible by the current logged in user and not planned in the given HRViewData object.
    * @return Result list (may be empty but never null).
@@ -287,4 +371,17 @@ public class HRDao extends HibernateDaoSupport implements IDao<HRViewData>
   {
     return hrPlanningDao.hasInsertAccess(user);
   }
+
+  private static class CachedDurations
+  {
+    private final ModificationStamp stamp;
+
+    private final Map<Integer, Map<Integer, Long>> durations;
+
+    private CachedDurations(final ModificationStamp stamp, final Map<Integer, Map<Integer, Long>> durations)
+    {
+      this.stamp = stamp;
+      this.durations = durations;
+    }
+  }
 }
@@ -35,7 +35,6 @@ import org.hibernate.Hibernate;
 import org.projectforge.common.StringHelper;
 import org.projectforge.fibu.KundeDO;
 import org.projectforge.fibu.ProjektDO;
-import org.projectforge.timesheet.TimesheetDO;
 import org.projectforge.user.PFUserDO;
 
 
@@ -70,22 +69,26 @@ public class HRViewData implements Serializable
     customers = new HashMap<Integer, KundeDO>();
   }
 
-  void addTimesheet(final TimesheetDO sheet, final PFUserDO user)
+  /**
+   * @param duration The duration of the time sheet(s) in millis.
+   * @param user
+   */
+  void addTimesheet(final long duration, final PFUserDO user)
   {
-    ensureAndGetUserData(user).addTimesheet(sheet);
+    ensureAndGetUserData(user).addTimesheet(duration);
     sortedUserDatas = null;
   }
 
-  void addTimesheet(final TimesheetDO sheet, final PFUserDO user, final ProjektDO projekt)
+  void addTimesheet(final long duration, final PFUserDO user, final ProjektDO projekt)
   {
-    ensureAndGetUserData(user).addTimesheet(sheet, projekt);
+    ensureAndGetUserData(user).addTimesheet(duration, projekt);
     addProjekt(projekt);
     sortedUserDatas = null;
   }
 
-  void addTimesheet(final TimesheetDO sheet, final PFUserDO user, final KundeDO kunde)
+  void addTimesheet(final long duration, final PFUserDO user, final KundeDO kunde)
   {
-    ensureAndGetUserData(user).addTimesheet(sheet, kunde);
+    ensureAndGetUserData(user).addTimesheet(duration, kunde);
     addKunde(kunde);
     sortedUserDatas = null;
   }
@@ -33,7 +33,6 @@ import org.projectforge.common.NumberHelper;
 import org.projectforge.core.IdObject;
 import org.projectforge.fibu.KundeDO;
 import org.projectforge.fibu.ProjektDO;
-import org.projectforge.timesheet.TimesheetDO;
 import org.projectforge.user.PFUserDO;
 
 public class HRViewUserData implements Comparable<HRViewUserData>, Serializable, IdObject<Serializable>
@@ -62,26 +61,29 @@ public class HRViewUserData implements Comparable<HRViewUserData>, Serializable,
     this.entries = new ArrayList<HRViewUserEntryData>();
   }
 
-  void addTimesheet(final TimesheetDO timesheet)
+  /**
+   * @param duration The duration of the time sheet(s) in millis.
+   */
+  void addTimesheet(final long duration)
   {
-    addTimesheet(timesheet, (ProjektDO) null);
+    addTimesheet(duration, (ProjektDO) null);
   }
 
-  void addTimesheet(final TimesheetDO timesheet, final ProjektDO projekt)
+  void addTimesheet(final long duration, final ProjektDO projekt)
   {
-    ensureAndGetEntry(projekt).addTimesheet(timesheet);
-    actualSecondsSum += (timesheet.getDuration() / 1000);
+    ensureAndGetEntry(projekt).addTimesheet(duration);
+    actualSecondsSum += (duration / 1000);
     if (projekt == null) {
-      actualSecondsRestSum += (timesheet.getDuration() / 1000);
+      actualSecondsRestSum += (duration / 1000);
     }
   }
 
-  void addTimesheet(final TimesheetDO timesheet, final KundeDO kunde)
+  void addTimesheet(final long duration, final KundeDO kunde)
   {
-    ensureAndGetEntry(kunde).addTimesheet(timesheet);
-    actualSecondsSum += (timesheet.getDuration() / 1000);
+    ensureAndGetEntry(kunde).addTimesheet(duration);
+    actualSecondsSum += (duration / 1000);
     if (kunde == null) {
-      actualSecondsRestSum += (timesheet.getDuration() / 1000);
+      actualSecondsRestSum += (duration / 1000);
     }
   }
 
@@ -30,7 +30,6 @@ import java.math.RoundingMode;
 import org.projectforge.common.NumberHelper;
 import org.projectforge.fibu.KundeDO;
 import org.projectforge.fibu.ProjektDO;
-import org.projectforge.timesheet.TimesheetDO;
 
 
 public class HRViewUserEntryData implements Comparable<HRViewUserEntryData>, Serializable
@@ -64,9 +63,12 @@ public class HRViewUserEntryData implements Comparable<HRViewUserEntryData>, Ser
     this.planningEntryStatus = status;
   }
 
-  void addTimesheet(final TimesheetDO timesheet)
+  /**
+   * @param duration The duration of the time sheet(s) in millis.
+   */
+  void addTimesheet(final long duration)
   {
-    actualSeconds += (timesheet.getDuration() / 1000);
+    actualSeconds += (duration / 1000);
   }
 
   void addPlanningEntry(final HRPlanningEntryDO entry)
@@ -0,0 +1,135 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.ldap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.projectforge.user.GroupDO;
+import org.projectforge.user.PFUserDO;
+
+/**
+ * Hash index of LDAP entries used by the LDAP master synchronization instead of scanning the whole list of LDAP entries for every user and
+ * group. The entries are registered by one or more keys. If multiple entries match the lookup, the first entry of the given list is
+ * returned (same result as a linear search through the list).
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class LdapEntryIndex<T>
+{
+  private static final String KEY_UID = "uid:";
+
+  private static final String KEY_EMPLOYEE_NUMBER = "employeeNumber:";
+
+  private static final String KEY_BUSINESS_CATEGORY = "businessCategory:";
+
+  private final List<T> entries;
+
+  // Key is the (prefixed) key, value is the position of the first entry with this key.
+  private final Map<String, Integer> positions = new HashMap<String, Integer>();
+
+  /**
+   * @return Index of the given LDAP users by uid and employee number.
+   */
+  static LdapEntryIndex<LdapUser> createUserIndex(final List<LdapUser> ldapUsers)
+  {
+    final LdapEntryIndex<LdapUser> index = new LdapEntryIndex<LdapUser>(ldapUsers);
+    int pos = 0;
+    for (final LdapUser ldapUser : ldapUsers) {
+      index.put(KEY_UID, ldapUser.getUid(), pos);
+      index.put(KEY_EMPLOYEE_NUMBER, ldapUser.getEmployeeNumber(), pos);
+      ++pos;
+    }
+    return index;
+  }
+
+  /**
+   * @return Index of the given LDAP groups by business category (containing the id of the ProjectForge group).
+   */
+  static LdapEntryIndex<LdapGroup> createGroupIndex(final List<LdapGroup> ldapGroups)
+  {
+    final LdapEntryIndex<LdapGroup> index = new LdapEntryIndex<LdapGroup>(ldapGroups);
+    int pos = 0;
+    for (final LdapGroup ldapGroup : ldapGroups) {
+      index.put(KEY_BUSINESS_CATEGORY, ldapGroup.getBusinessCategory(), pos);
+      ++pos;
+    }
+    return index;
+  }
+
+  /**
+   * @return The LDAP user with the username as uid or with the employee number of the given user.
+   */
+  static LdapUser getLdapUser(final LdapEntryIndex<LdapUser> index, final PFUserDO user)
+  {
+    return index.get(index.getPosition(KEY_UID, user.getUsername()),
+        index.getPosition(KEY_EMPLOYEE_NUMBER, PFUserDOConverter.buildEmployeeNumber(user)));
+  }
+
+  /**
+   * @return The LDAP group with the business category of the given group.
+   */
+  static LdapGroup getLdapGroup(final LdapEntryIndex<LdapGroup> index, final GroupDO group)
+  {
+    return index.get(index.getPosition(KEY_BUSINESS_CATEGORY, GroupDOConverter.buildBusinessCategory(group)));
+  }
+
+  private LdapEntryIndex(final List<T> entries)
+  {
+    this.entries = entries;
+  }
+
+  private void put(final String keyType, final String key, final int position)
+  {
+    if (key == null) {
+      return;
+    }
+    final String indexKey = keyType + key;
+    if (positions.containsKey(indexKey) == false) {
+      positions.put(indexKey, position);
+    }
+  }
+
+  private Integer getPosition(final String keyType, final String key)
+  {
+    if (key == null) {
+      return null;
+    }
+    return positions.get(keyType + key);
+  }
+
+  /**
+   * @return The entry with the lowest of the given positions or null if no position is given.
+   */
+  private T get(final Integer... positions)
+  {
+    Integer result = null;
+    for (final Integer position : positions) {
+      if (position != null && (result == null || position < result)) {
+        result = position;
+      }
+    }
+    return result != null ? entries.get(result) : null;
+  }
+}
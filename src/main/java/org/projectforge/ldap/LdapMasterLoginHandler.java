@@ -25,15 +25,26 @@ package org.projectforge.ldap;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
+import org.projectforge.common.BackgroundExecutors;
 import org.projectforge.registry.Registry;
 import org.projectforge.user.GroupDO;
 import org.projectforge.user.LoginDefaultHandler;
@@ -66,17 +77,46 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
 {
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(LdapMasterLoginHandler.class);
 
+  /**
+   * A full synchronization is forced after this period even if the content hash of the users and groups wasn't changed (for
+   * overwriting modifications made directly in the LDAP system).
+   */
+  static final long FULL_SYNC_INTERVAL = 24 * 60 * 60 * 1000L;
+
+  /**
+   * Number of changes applied through one LDAP connection.
+   */
+  static final int SYNC_BATCH_SIZE = 50;
+
+  /**
+   * Maximum number of LDAP connections used in parallel for applying the changes.
+   */
+  static final int SYNC_CONNECTIONS = 4;
+
+  /**
+   * Name of the background thread pool used for applying the changes.
+   */
+  static final String SYNC_EXECUTOR_NAME = "LdapSync";
+
   /**
    * For users of this list, the stay-logged-in mechanism interrupts, the user has to re-login via LoginForm to update the correct password
-   * in the LDAP system.
+   * in the LDAP system. The set is never modified after publishing, it's replaced (copy on write).
    */
-  private Set<Integer> usersWithoutLdapPasswords = new HashSet<Integer>();
+  private volatile Set<Integer> usersWithoutLdapPasswords = new HashSet<Integer>();
 
-  // Caches all Samba NT password of the LDAP users by user id.
-  private Map<Integer, String> sambaNTPasswords = new HashMap<Integer, String>();
+  // Caches all Samba NT password of the LDAP users by user id (copy on write).
+  private volatile Map<Integer, String> sambaNTPasswords = new HashMap<Integer, String>();
+
+  // Guards the replacement of usersWithoutLdapPasswords and sambaNTPasswords (this is locked during the whole LDAP update).
+  private final Object passwordCacheLock = new Object();
 
   private boolean refreshInProgress;
 
+  // Hash of the users and groups of the last successful synchronization.
+  private String lastSyncContentHash;
+
+  private long lastSyncTime;
+
   /**
    * @see org.projectforge.ldap.LdapLoginHandler#initialize()
    */
@@ -111,16 +151,19 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
       log.info("User's credentials in LDAP not up-to-date: " + username + ". Updating LDAP entry...");
       ldapUserDao.createOrUpdate(userBase, ldapUser);
       ldapUserDao.changePassword(ldapUser, null, password);
+      ldapPasswordUpdated(user.getId());
     } else {
       final String sambaNTPassword = sambaNTPasswords.get(loginResult.getUser().getId());
       if (sambaNTPassword != null) {
         if ("".equals(sambaNTPassword) == true) {
           // sambaNTPassword needed to be set (isn't yet set):
           ldapUserDao.changePassword(ldapUser, null, password);
+          ldapPasswordUpdated(user.getId());
         } else {
           if (sambaNTPassword.equals(SmbEncrypt.NTUNICODEHash(password)) == false) {
             // sambaNTPassword needed to be updated:
             ldapUserDao.changePassword(ldapUser, null, password);
+            ldapPasswordUpdated(user.getId());
           }
         }
       }
@@ -128,6 +171,27 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
     return loginResult;
   }
 
+  /**
+   * The LDAP password of the given user is up-to-date now. The caches are updated directly because the next synchronization may be skipped
+   * (if users and groups are unmodified).
+   * @param userId
+   */
+  private void ldapPasswordUpdated(final Integer userId)
+  {
+    synchronized (passwordCacheLock) {
+      if (usersWithoutLdapPasswords.contains(userId) == true) {
+        final Set<Integer> set = new HashSet<Integer>(usersWithoutLdapPasswords);
+        set.remove(userId);
+        usersWithoutLdapPasswords = set;
+      }
+      if (sambaNTPasswords.containsKey(userId) == true) {
+        final Map<Integer, String> map = new HashMap<Integer, String>(sambaNTPasswords);
+        map.remove(userId);
+        sambaNTPasswords = map;
+      }
+    }
+  }
+
   /**
    * @see org.projectforge.user.LoginHandler#getAllGroups()
    */
@@ -179,175 +243,362 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
     return refreshInProgress;
   }
 
-  private void updateLdap(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
+  /**
+   * Synchronizes the LDAP with the given users and groups. All changes are computed first (with one LDAP connection for reading all LDAP
+   * entries) and applied afterwards in batches through a small pool of LDAP connections. The synchronization is skipped if the users and
+   * groups weren't modified since the last successful synchronization (see {@link #FULL_SYNC_INTERVAL}).
+   * @return false if the synchronization was skipped, otherwise true.
+   */
+  boolean updateLdap(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
   {
+    final String contentHash = getContentHash(users, groups);
+    final long now = System.currentTimeMillis();
+    if (contentHash.equals(lastSyncContentHash) == true && now - lastSyncTime < FULL_SYNC_INTERVAL) {
+      log.info("Users and groups not modified since last LDAP update, nothing to do.");
+      return false;
+    }
+    log.info("Updating LDAP...");
+    // First, get set of all ldap entries:
+    final List<LdapUser> ldapUsers = new ArrayList<LdapUser>();
+    final List<LdapGroup> ldapGroups = new ArrayList<LdapGroup>();
     new LdapTemplate(ldapConnector) {
       @Override
       protected Object call() throws NameNotFoundException, Exception
       {
-        log.info("Updating LDAP...");
-        // First, get set of all ldap entries:
-        final List<LdapUser> ldapUsers = getAllLdapUsers(ctx);
-        final List<LdapUser> updatedLdapUsers = new ArrayList<LdapUser>();
-        int error = 0, unmodified = 0, created = 0, updated = 0, deleted = 0, renamed = 0;
-        final Set<Integer> shadowUsersWithoutLdapPasswords = new HashSet<Integer>();
-        final Map<Integer, String> shadowSambaNTPasswords = new HashMap<Integer, String>();
-        final boolean sambaConfigured = ldapConfig.getSambaAccountsConfig() != null;
-        for (final PFUserDO user : users) {
-          final LdapUser updatedLdapUser = PFUserDOConverter.convert(user);
-          try {
-            final LdapUser ldapUser = getLdapUser(ldapUsers, user);
-            if (ldapUser == null) {
-              updatedLdapUser.setOrganizationalUnit(userBase);
-              if (user.isDeleted() == false && user.isLocalUser() == false) {
-                // Do not add deleted or local users.
-                // TODO: if (ldapConfig.isSupportPosixAccounts() == true &&) {
-                // updatedLdapUser.addObjectClass(LdapUserDao.OBJECT_CLASS_POSIX_ACCOUNT);
-                // }
+        ldapUsers.addAll(getAllLdapUsers(ctx));
+        ldapGroups.addAll(getAllLdapGroups(ctx));
+        return null;
+      }
+    }.excecute();
+    final LdapSyncChanges userChanges = getUserChanges(users, ldapUsers);
+    applyChanges(userChanges);
+    synchronized (passwordCacheLock) {
+      usersWithoutLdapPasswords = userChanges.usersWithoutLdapPasswords;
+      sambaNTPasswords = userChanges.sambaNTPasswords;
+    }
+    log.info(""
+        + userChanges.usersWithoutLdapPasswords.size()
+        + " users without password in the LDAP system (login required for these users for updating the LDAP password).");
+    log.info("Update of LDAP users: " + userChanges.getStatistics());
+    // Now the groups (the users have to be up-to-date for the group memberships):
+    final LdapSyncChanges groupChanges = getGroupChanges(groups, ldapGroups, getUserMap(userChanges.updatedLdapUsers));
+    applyChanges(groupChanges);
+    log.info("Update of LDAP groups: " + groupChanges.getStatistics());
+    if (userChanges.errors == 0 && groupChanges.errors == 0) {
+      lastSyncContentHash = contentHash;
+      lastSyncTime = now;
+    } else {
+      // Try it again next time.
+      lastSyncContentHash = null;
+    }
+    log.info("LDAP update done.");
+    return true;
+  }
+
+  /**
+   * Computes all changes of the LDAP users without any LDAP access.
+   * @param users The users of ProjectForge.
+   * @param ldapUsers All users of the LDAP system.
+   */
+  LdapSyncChanges getUserChanges(final Collection<PFUserDO> users, final List<LdapUser> ldapUsers)
+  {
+    final LdapSyncChanges result = new LdapSyncChanges();
+    final LdapEntryIndex<LdapUser> index = LdapEntryIndex.createUserIndex(ldapUsers);
+    final boolean sambaConfigured = ldapConfig.getSambaAccountsConfig() != null;
+    for (final PFUserDO user : users) {
+      final LdapUser updatedLdapUser = PFUserDOConverter.convert(user);
+      try {
+        final LdapUser ldapUser = LdapEntryIndex.getLdapUser(index, user);
+        if (ldapUser == null) {
+          updatedLdapUser.setOrganizationalUnit(userBase);
+          if (user.isDeleted() == false && user.isLocalUser() == false) {
+            // Do not add deleted or local users.
+            // TODO: if (ldapConfig.isSupportPosixAccounts() == true &&) {
+            // updatedLdapUser.addObjectClass(LdapUserDao.OBJECT_CLASS_POSIX_ACCOUNT);
+            // }
+            result.add(new LdapSyncChanges.Change("create user '" + user.getUsername() + "'") {
+              @Override
+              void apply(final DirContext ctx) throws NamingException
+              {
                 ldapUserDao.create(ctx, userBase, updatedLdapUser);
-                shadowUsersWithoutLdapPasswords.add(user.getId()); // User can't be valid for created users.
-                created++;
               }
-            } else {
-              // Need to set organizational unit for detecting the change of deactivated flag. The updateLdapUser needs the organizational
-              // unit of the original ldap object:
-              updatedLdapUser.setOrganizationalUnit(ldapUser.getOrganizationalUnit());
-              // Otherwise the NT password will be deleted in copy function below:
-              updatedLdapUser.setSambaNTPassword(ldapUser.getSambaNTPassword());
-              if (user.isDeleted() == true || user.isLocalUser() == true) {
-                // Deleted and local users shouldn't be synchronized with LDAP:
+            });
+            result.usersWithoutLdapPasswords.add(user.getId()); // User can't be valid for created users.
+            result.created++;
+          }
+        } else {
+          // Need to set organizational unit for detecting the change of deactivated flag. The updateLdapUser needs the organizational
+          // unit of the original ldap object:
+          updatedLdapUser.setOrganizationalUnit(ldapUser.getOrganizationalUnit());
+          // Otherwise the NT password will be deleted in copy function below:
+          updatedLdapUser.setSambaNTPassword(ldapUser.getSambaNTPassword());
+          if (user.isDeleted() == true || user.isLocalUser() == true) {
+            // Deleted and local users shouldn't be synchronized with LDAP:
+            result.add(new LdapSyncChanges.Change("delete user '" + user.getUsername() + "'") {
+              @Override
+              void apply(final DirContext ctx) throws NamingException
+              {
                 ldapUserDao.delete(ctx, updatedLdapUser);
-                shadowUsersWithoutLdapPasswords.add(user.getId()); // Paranoia code, stay-logged-in shouldn't work with deleted users.
-                deleted++;
-              } else {
-                final boolean modified = PFUserDOConverter.copyUserFields(updatedLdapUser, ldapUser);
-                if (StringUtils.equals(updatedLdapUser.getUid(), ldapUser.getUid()) == false) {
-                  // uid (dn) changed.
-                  ldapUserDao.rename(ctx, updatedLdapUser, ldapUser);
-                  renamed++;
-                }
-                if (modified == true) {
-                  updatedLdapUser.setObjectClasses(ldapUser.getObjectClasses());
-                  ldapUserDao.update(ctx, userBase, updatedLdapUser);
-                  updated++;
+              }
+            });
+            result.usersWithoutLdapPasswords.add(user.getId()); // Paranoia code, stay-logged-in shouldn't work with deleted users.
+            result.deleted++;
+          } else {
+            final boolean modified = PFUserDOConverter.copyUserFields(updatedLdapUser, ldapUser);
+            // uid (dn) changed?
+            final boolean rename = StringUtils.equals(updatedLdapUser.getUid(), ldapUser.getUid()) == false;
+            if (rename == true) {
+              result.renamed++;
+            }
+            if (modified == true) {
+              updatedLdapUser.setObjectClasses(ldapUser.getObjectClasses());
+              result.updated++;
+            } else {
+              result.unmodified++;
+            }
+            boolean passwordsGiven = false;
+            if (ldapUser.isPasswordGiven() == true) {
+              // If the user has a Samba SID then the Samba NT password mustn't be blank:
+              if (sambaConfigured == false || ldapUser.getSambaSIDNumber() == null || StringUtils.isNotBlank(ldapUser.getSambaNTPassword()) == true) {
+                passwordsGiven = true;
+              }
+            }
+            boolean deactivate = false;
+            if (passwordsGiven == true) {
+              if (updatedLdapUser.isDeactivated()) {
+                log.warn("User password for deactivated user is set: " + ldapUser);
+                deactivate = true;
+                result.usersWithoutLdapPasswords.add(user.getId()); // Paranoia code, stay-logged-in shouldn't work with deleted or
+                // deactivated users.
+              }
+            } else {
+              result.usersWithoutLdapPasswords.add(user.getId()); // Password isn't given for the current user.
+              if (ldapUser.getSambaSIDNumber() != null) {
+                final String sambaNTPassword = ldapUser.getSambaNTPassword();
+                if (StringUtils.isNotBlank(sambaNTPassword) == true) {
+                  result.sambaNTPasswords.put(user.getId(), sambaNTPassword);
                 } else {
-                  unmodified++;
+                  result.sambaNTPasswords.put(user.getId(), ""); // Empty password
                 }
-                boolean passwordsGiven = false;
-                if (ldapUser.isPasswordGiven() == true) {
-                  // If the user has a Samba SID then the Samba NT password mustn't be blank:
-                  if (sambaConfigured == false || ldapUser.getSambaSIDNumber() == null || StringUtils.isNotBlank(ldapUser.getSambaNTPassword()) == true) {
-                    passwordsGiven = true;
+              }
+            }
+            if (rename == true || modified == true || deactivate == true) {
+              final boolean deactivateUser = deactivate;
+              result.add(new LdapSyncChanges.Change("update user '" + user.getUsername() + "'") {
+                @Override
+                void apply(final DirContext ctx) throws NamingException
+                {
+                  if (rename == true) {
+                    ldapUserDao.rename(ctx, updatedLdapUser, ldapUser);
                   }
-                }
-                if (passwordsGiven == true) {
-                  if (updatedLdapUser.isDeactivated()) {
-                    log.warn("User password for deactivated user is set: " + ldapUser);
-                    ldapUserDao.deactivateUser(ctx, updatedLdapUser);
-                    shadowUsersWithoutLdapPasswords.add(user.getId()); // Paranoia code, stay-logged-in shouldn't work with deleted or
-                    // deactivated users.
-                  } else {
-                    shadowUsersWithoutLdapPasswords.remove(user.getId()); // Remove if exists because password is given.
+                  if (modified == true) {
+                    ldapUserDao.update(ctx, userBase, updatedLdapUser);
                   }
-                } else {
-                  shadowUsersWithoutLdapPasswords.add(user.getId()); // Password isn't given for the current user.
-                  if (ldapUser.getSambaSIDNumber() != null) {
-                    final String sambaNTPassword = ldapUser.getSambaNTPassword();
-                    if (StringUtils.isNotBlank(sambaNTPassword) == true) {
-                      shadowSambaNTPasswords.put(user.getId(), sambaNTPassword);
-                    } else {
-                      shadowSambaNTPasswords.put(user.getId(), ""); // Empty password
-                    }
+                  if (deactivateUser == true) {
+                    ldapUserDao.deactivateUser(ctx, updatedLdapUser);
                   }
                 }
-              }
+              });
             }
-            ldapUserDao.buildDn(userBase, updatedLdapUser);
-            updatedLdapUsers.add(updatedLdapUser);
-          } catch (final Exception ex) {
-            ldapUserDao.buildDn(userBase, updatedLdapUser);
-            updatedLdapUsers.add(updatedLdapUser);
-            log.error("Error while proceeding user '" + user.getUsername() + "'. Continuing with next user.", ex);
-            error++;
           }
         }
-        usersWithoutLdapPasswords = shadowUsersWithoutLdapPasswords;
-        sambaNTPasswords = shadowSambaNTPasswords;
-        log.info(""
-            + shadowUsersWithoutLdapPasswords.size()
-            + " users without password in the LDAP system (login required for these users for updating the LDAP password).");
-        log.info("Update of LDAP users: "
-            + (error > 0 ? "*** " + error + " errors ***, " : "")
-            + unmodified
-            + " unmodified, "
-            + created
-            + " created, "
-            + updated
-            + " updated, "
-            + renamed
-            + " renamed, "
-            + deleted
-            + " deleted.");
-        // Now get all groups:
-        final List<LdapGroup> ldapGroups = getAllLdapGroups(ctx);
-        final Map<Integer, LdapUser> ldapUserMap = getUserMap(updatedLdapUsers);
-        error = unmodified = created = updated = renamed = deleted = 0;
-        for (final GroupDO group : groups) {
-          try {
-            final LdapGroup updatedLdapGroup = GroupDOConverter.convert(group, baseDN, ldapUserMap);
-            final LdapGroup ldapGroup = getLdapGroup(ldapGroups, group);
-            if (ldapGroup == null) {
-              updatedLdapGroup.setOrganizationalUnit(groupBase);
-              if (group.isDeleted() == false && group.isLocalGroup() == false) {
-                // Do not add deleted or local groups.
-                setMembers(updatedLdapGroup, group.getAssignedUsers(), ldapUserMap);
+      } catch (final Exception ex) {
+        log.error("Error while proceeding user '" + user.getUsername() + "'. Continuing with next user.", ex);
+        result.errors++;
+      }
+      ldapUserDao.buildDn(userBase, updatedLdapUser);
+      result.updatedLdapUsers.add(updatedLdapUser);
+    }
+    return result;
+  }
+
+  /**
+   * Computes all changes of the LDAP groups without any LDAP access.
+   * @param groups The groups of ProjectForge.
+   * @param ldapGroups All groups of the LDAP system.
+   * @param ldapUserMap The (updated) LDAP users by user id.
+   */
+  LdapSyncChanges getGroupChanges(final Collection<GroupDO> groups, final List<LdapGroup> ldapGroups,
+      final Map<Integer, LdapUser> ldapUserMap)
+  {
+    final LdapSyncChanges result = new LdapSyncChanges();
+    final LdapEntryIndex<LdapGroup> index = LdapEntryIndex.createGroupIndex(ldapGroups);
+    for (final GroupDO group : groups) {
+      try {
+        final LdapGroup updatedLdapGroup = GroupDOConverter.convert(group, baseDN, ldapUserMap);
+        final LdapGroup ldapGroup = LdapEntryIndex.getLdapGroup(index, group);
+        if (ldapGroup == null) {
+          updatedLdapGroup.setOrganizationalUnit(groupBase);
+          if (group.isDeleted() == false && group.isLocalGroup() == false) {
+            // Do not add deleted or local groups.
+            setMembers(updatedLdapGroup, group.getAssignedUsers(), ldapUserMap);
+            result.add(new LdapSyncChanges.Change("create group '" + group.getName() + "'") {
+              @Override
+              void apply(final DirContext ctx) throws NamingException
+              {
                 ldapGroupDao.create(ctx, groupBase, updatedLdapGroup);
-                created++;
               }
-            } else {
-              updatedLdapGroup.setOrganizationalUnit(ldapGroup.getOrganizationalUnit());
-              if (group.isDeleted() == true || group.isLocalGroup() == true) {
-                // Deleted and local users shouldn't be synchronized with LDAP:
+            });
+            result.created++;
+          }
+        } else {
+          updatedLdapGroup.setOrganizationalUnit(ldapGroup.getOrganizationalUnit());
+          if (group.isDeleted() == true || group.isLocalGroup() == true) {
+            // Deleted and local users shouldn't be synchronized with LDAP:
+            result.add(new LdapSyncChanges.Change("delete group '" + group.getName() + "'") {
+              @Override
+              void apply(final DirContext ctx) throws NamingException
+              {
                 ldapGroupDao.delete(ctx, updatedLdapGroup);
-                deleted++;
-              } else {
-                final boolean modified = GroupDOConverter.copyGroupFields(updatedLdapGroup, ldapGroup);
-                if (modified == true) {
-                  updatedLdapGroup.setObjectClasses(ldapGroup.getObjectClasses());
-                  setMembers(updatedLdapGroup, group.getAssignedUsers(), ldapUserMap);
-                  ldapGroupDao.update(ctx, groupBase, updatedLdapGroup);
-                  updated++;
-                } else {
-                  unmodified++;
+              }
+            });
+            result.deleted++;
+          } else {
+            final boolean modified = GroupDOConverter.copyGroupFields(updatedLdapGroup, ldapGroup);
+            if (modified == true) {
+              updatedLdapGroup.setObjectClasses(ldapGroup.getObjectClasses());
+              setMembers(updatedLdapGroup, group.getAssignedUsers(), ldapUserMap);
+              result.updated++;
+            } else {
+              result.unmodified++;
+            }
+            // CommonName (cn) and therefor dn changed?
+            final boolean rename = StringUtils.equals(updatedLdapGroup.getCommonName(), ldapGroup.getCommonName()) == false;
+            if (rename == true) {
+              result.renamed++;
+            }
+            if (modified == true || rename == true) {
+              result.add(new LdapSyncChanges.Change("update group '" + group.getName() + "'") {
+                @Override
+                void apply(final DirContext ctx) throws NamingException
+                {
+                  if (modified == true) {
+                    ldapGroupDao.update(ctx, groupBase, updatedLdapGroup);
+                  }
+                  if (rename == true) {
+                    ldapGroupDao.rename(ctx, updatedLdapGroup, ldapGroup);
+                  }
                 }
-                if (StringUtils.equals(updatedLdapGroup.getCommonName(), ldapGroup.getCommonName()) == false) {
-                  // CommonName (cn) and therefor dn changed.
-                  ldapGroupDao.rename(ctx, updatedLdapGroup, ldapGroup);
-                  renamed++;
+              });
+            }
+          }
+        }
+      } catch (final Exception ex) {
+        log.error("Error while proceeding group '" + group.getName() + "'. Continuing with next group.", ex);
+        result.errors++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Applies the given changes in batches of {@link #SYNC_BATCH_SIZE}, every batch uses its own LDAP connection. Up to
+   * {@link #SYNC_CONNECTIONS} batches are applied in parallel. Failed changes are logged and counted as errors.
+   */
+  void applyChanges(final LdapSyncChanges changes)
+  {
+    if (changes.changes.isEmpty() == true) {
+      return;
+    }
+    final AtomicInteger errors = new AtomicInteger();
+    final List<Runnable> batches = new ArrayList<Runnable>();
+    for (int i = 0; i < changes.changes.size(); i += SYNC_BATCH_SIZE) {
+      final List<LdapSyncChanges.Change> batch = changes.changes.subList(i, Math.min(i + SYNC_BATCH_SIZE, changes.changes.size()));
+      batches.add(new Runnable() {
+        @Override
+        public void run()
+        {
+          try {
+            new LdapTemplate(ldapConnector) {
+              @Override
+              protected Object call() throws NameNotFoundException, Exception
+              {
+                for (final LdapSyncChanges.Change change : batch) {
+                  try {
+                    change.apply(ctx);
+                  } catch (final Exception ex) {
+                    log.error("Error while applying LDAP change (" + change.getDescription() + "). Continuing with next change.", ex);
+                    errors.incrementAndGet();
+                  }
                 }
+                return null;
               }
-            }
+            }.excecute();
           } catch (final Exception ex) {
-            log.error("Error while proceeding group '" + group.getName() + "'. Continuing with next group.", ex);
-            error++;
+            log.error("Error while applying batch of LDAP changes: " + ex.getMessage(), ex);
+            errors.addAndGet(batch.size());
           }
         }
-        log.info("Update of LDAP groups: "
-            + (error > 0 ? "*** " + error + " errors ***, " : "")
-            + unmodified
-            + " unmodified, "
-            + created
-            + " created, "
-            + updated
-            + " updated, "
-            + renamed
-            + " renamed, "
-            + deleted
-            + " deleted.");
-        log.info("LDAP update done.");
-        return null;
+      });
+    }
+    if (batches.size() == 1) {
+      // No need for a thread pool.
+      batches.get(0).run();
+    } else {
+      final ExecutorService executor = BackgroundExecutors.getInstance().getExecutor(SYNC_EXECUTOR_NAME, SYNC_CONNECTIONS);
+      final List<Future< ? >> futures = new ArrayList<Future< ? >>(batches.size());
+      for (final Runnable batch : batches) {
+        futures.add(executor.submit(batch));
       }
-    }.excecute();
+      try {
+        for (final Future< ? > future : futures) {
+          while (true) {
+            try {
+              future.get(1, TimeUnit.MINUTES);
+              break;
+            } catch (final TimeoutException ex) {
+              log.info("Waiting for LDAP update...");
+            } catch (final ExecutionException ex) {
+              // Shouldn't occur, the batches catch all exceptions.
+              log.error("Error while applying batch of LDAP changes: " + ex.getCause().getMessage(), ex.getCause());
+              break;
+            }
+          }
+        }
+      } catch (final InterruptedException ex) {
+        log.error("Interrupted while waiting for LDAP update.", ex);
+        for (final Future< ? > future : futures) {
+          future.cancel(true);
+        }
+        Thread.currentThread().interrupt();
+      }
+    }
+    changes.errors += errors.get();
+  }
+
+  /**
+   * @return Hash of all fields of the given users and groups relevant for the LDAP synchronization (modifications of users and groups
+   *         result in a new last update time stamp).
+   */
+  static String getContentHash(final Collection<PFUserDO> users, final Collection<GroupDO> groups)
+  {
+    final StringBuilder buf = new StringBuilder();
+    if (users != null) {
+      for (final PFUserDO user : users) {
+        buf.append("u").append(user.getId()).append(',').append(user.getUsername()).append(',')
+        .append(user.getLastUpdate() != null ? user.getLastUpdate().getTime() : null).append(',').append(user.isDeleted()).append(',')
+        .append(user.isDeactivated()).append(',').append(user.isLocalUser()).append(';');
+      }
+    }
+    if (groups != null) {
+      for (final GroupDO group : groups) {
+        buf.append("g").append(group.getId()).append(',').append(group.getName()).append(',')
+        .append(group.getLastUpdate() != null ? group.getLastUpdate().getTime() : null).append(',').append(group.isDeleted()).append(',')
+        .append(group.isLocalGroup());
+        if (group.getAssignedUsers() != null) {
+          final List<Integer> userIds = new ArrayList<Integer>();
+          for (final PFUserDO assignedUser : group.getAssignedUsers()) {
+            if (assignedUser.getId() != null) {
+              userIds.add(assignedUser.getId());
+            }
+          }
+          Collections.sort(userIds);
+          buf.append(',').append(userIds);
+        }
+        buf.append(';');
+      }
+    }
+    return DigestUtils.md5Hex(buf.toString());
   }
 
   /**
@@ -444,25 +695,4 @@ public class LdapMasterLoginHandler extends LdapLoginHandler
     }
     return map;
   }
-
-  private LdapUser getLdapUser(final List<LdapUser> ldapUsers, final PFUserDO user)
-  {
-    for (final LdapUser ldapUser : ldapUsers) {
-      if (StringUtils.equals(ldapUser.getUid(), user.getUsername()) == true
-          || StringUtils.equals(ldapUser.getEmployeeNumber(), PFUserDOConverter.buildEmployeeNumber(user)) == true) {
-        return ldapUser;
-      }
-    }
-    return null;
-  }
-
-  private LdapGroup getLdapGroup(final List<LdapGroup> ldapGroups, final GroupDO group)
-  {
-    for (final LdapGroup ldapGroup : ldapGroups) {
-      if (StringUtils.equals(ldapGroup.getBusinessCategory(), GroupDOConverter.buildBusinessCategory(group)) == true) {
-        return ldapGroup;
-      }
-    }
-    return null;
-  }
 }
@@ -0,0 +1,99 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.ldap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+/**
+ * The set of changes of the LDAP master synchronization. All changes are computed first (without any LDAP access) and applied afterwards
+ * in batches (see {@link LdapMasterLoginHandler}).
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class LdapSyncChanges
+{
+  /**
+   * All LDAP operations of one LDAP entry (e. g. rename and update of an user). The operations of one change are applied in the given order
+   * through the same connection, different changes are independent of each other.
+   */
+  abstract static class Change
+  {
+    private final String description;
+
+    Change(final String description)
+    {
+      this.description = description;
+    }
+
+    abstract void apply(final DirContext ctx) throws NamingException;
+
+    String getDescription()
+    {
+      return description;
+    }
+  }
+
+  final List<Change> changes = new ArrayList<Change>();
+
+  /**
+   * The LDAP users after applying the changes (only filled by the synchronization of users).
+   */
+  final List<LdapUser> updatedLdapUsers = new ArrayList<LdapUser>();
+
+  final Set<Integer> usersWithoutLdapPasswords = new HashSet<Integer>();
+
+  final Map<Integer, String> sambaNTPasswords = new HashMap<Integer, String>();
+
+  int errors, unmodified, created, updated, renamed, deleted;
+
+  void add(final Change change)
+  {
+    changes.add(change);
+  }
+
+  /**
+   * @return Statistics for log messages.
+   */
+  String getStatistics()
+  {
+    return (errors > 0 ? "*** " + errors + " errors ***, " : "")
+        + unmodified
+        + " unmodified, "
+        + created
+        + " created, "
+        + updated
+        + " updated, "
+        + renamed
+        + " renamed, "
+        + deleted
+        + " deleted.";
+  }
+}
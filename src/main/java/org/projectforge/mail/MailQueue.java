@@ -0,0 +1,487 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.mail;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.projectforge.common.BackgroundExecutors;
+import org.projectforge.common.DateHelper;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+
+/**
+ * Bounded queue of mails to deliver. A fixed number of worker threads takes the queued mails in batches and sends them through one
+ * connected transport, which is kept open as long as further mails are queued (one smtp handshake per busy period instead of per mail).
+ * Failed mails are queued again with exponential backoff until the maximum number of attempts is reached, permanent failures (invalid
+ * addresses, smtp reply codes 5xx) are given up immediately.<br/>
+ * If a persistence directory is given, every queued mail is stored there until it's delivered, so undelivered mails are delivered after a
+ * restart. Mails given up are kept with the suffix ".failed".
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class MailQueue
+{
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(MailQueue.class);
+
+  static final int CAPACITY = 1000;
+
+  static final int BATCH_SIZE = 50;
+
+  static final int MAX_ATTEMPTS = 5;
+
+  static final int DEFAULT_WORKERS = 2;
+
+  static final long DEFAULT_RETRY_DELAY = DateHelper.MILLIS_MINUTE;
+
+  static final String WORKER_EXECUTOR_NAME = "MailQueue";
+
+  static final String RETRY_EXECUTOR_NAME = "MailQueueRetry";
+
+  private static final String FILE_SUFFIX = ".mail";
+
+  private static final String FAILED_SUFFIX = ".failed";
+
+  private final BlockingQueue<QueuedMail> queue = new LinkedBlockingQueue<QueuedMail>(CAPACITY);
+
+  private final Session session;
+
+  private final String user;
+
+  private final String password;
+
+  private final File persistenceDir;
+
+  private final int workers;
+
+  private final long retryDelay;
+
+  private List<Future< ? >> workerFutures;
+
+  private ScheduledExecutorService retryExecutor;
+
+  private final AtomicInteger fileCounter = new AtomicInteger();
+
+  private final AtomicLong sentCounter = new AtomicLong();
+
+  private final AtomicLong failedCounter = new AtomicLong();
+
+  private final AtomicLong retryCounter = new AtomicLong();
+
+  private final AtomicLong batchCounter = new AtomicLong();
+
+  private final AtomicLong connectionCounter = new AtomicLong();
+
+  private volatile long startTime;
+
+  /**
+   * @param properties The properties of the mail session (protocol, host, port etc.).
+   * @param user If given, the transport will be connected with this user and the given password.
+   * @param password
+   * @param persistenceDir If null, the queued mails aren't persisted.
+   * @param workers The number of worker threads.
+   * @param retryDelay The delay in millis before the first retry of a failed mail, doubled for every further attempt.
+   */
+  MailQueue(final Properties properties, final String user, final String password, final File persistenceDir, final int workers,
+      final long retryDelay)
+  {
+    this.session = Session.getInstance(properties);
+    this.user = user;
+    this.password = password;
+    this.persistenceDir = persistenceDir;
+    this.workers = workers;
+    this.retryDelay = retryDelay;
+  }
+
+  /**
+   * Queues the persisted mails of the last run (if any) and starts the worker threads.
+   */
+  synchronized void start()
+  {
+    if (workerFutures != null) {
+      return;
+    }
+    startTime = System.currentTimeMillis();
+    loadPersistedMails();
+    retryExecutor = BackgroundExecutors.getInstance().getScheduledExecutor(RETRY_EXECUTOR_NAME, 1);
+    workerFutures = new ArrayList<Future< ? >>(workers);
+    for (int i = 0; i < workers; i++) {
+      workerFutures.add(BackgroundExecutors.getInstance().getExecutor(WORKER_EXECUTOR_NAME, workers).submit(new Runnable() {
+        public void run()
+        {
+          final List<QueuedMail> batch = new ArrayList<QueuedMail>(BATCH_SIZE);
+          Transport transport = null;
+          try {
+            while (Thread.currentThread().isInterrupted() == false) {
+              try {
+                batch.add(queue.take());
+              } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+              }
+              queue.drainTo(batch, BATCH_SIZE - 1);
+              transport = deliver(batch, transport);
+              batch.clear();
+              if (queue.isEmpty() == true) {
+                // Don't hold the connection while idle, the server would drop it anyway.
+                close(transport);
+                transport = null;
+              }
+            }
+          } finally {
+            close(transport);
+          }
+        }
+      }));
+    }
+  }
+
+  /**
+   * Stops the worker threads. Mails not yet delivered are delivered after the next start (if persisted).
+   */
+  synchronized void shutdown()
+  {
+    if (workerFutures == null) {
+      return;
+    }
+    for (final Future< ? > future : workerFutures) {
+      future.cancel(true);
+    }
+    workerFutures = null;
+    retryExecutor = null;
+    log.info("Mail queue stopped: " + getStatistics());
+  }
+
+  /**
+   * @param mail
+   * @return false if the queue is full (the mail isn't sent), otherwise true.
+   */
+  boolean enqueue(final QueuedMail mail)
+  {
+    persist(mail);
+    if (queue.offer(mail) == false) {
+      log.error("Mail queue is full (" + CAPACITY + " mails), mail not sent: " + mail);
+      deleteFile(mail);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Sends the given mails through the given transport. A new connection is only opened if the transport is disconnected (e. g. by the
+   * server). If no connection is available all remaining mails are queued for retry.
+   * @param batch
+   * @param transport The transport of the previous batch or null.
+   * @return The connected transport for reuse by the next batch or null if no connection is available.
+   */
+  Transport deliver(final List<QueuedMail> batch, Transport transport)
+  {
+    batchCounter.incrementAndGet();
+    for (int i = 0; i < batch.size(); i++) {
+      final QueuedMail mail = batch.get(i);
+      if (transport == null || transport.isConnected() == false) {
+        close(transport);
+        transport = null;
+        try {
+          transport = connect();
+        } catch (final MessagingException ex) {
+          log.error("Can't connect to mail server (" + (batch.size() - i) + " mail(s) will be retried): " + ex.getMessage(), ex);
+          for (int j = i; j < batch.size(); j++) {
+            retry(batch.get(j));
+          }
+          return null;
+        }
+      }
+      try {
+        final MimeMessage message = mail.createMessage(session);
+        transport.sendMessage(message, message.getAllRecipients());
+        sentCounter.incrementAndGet();
+        deleteFile(mail);
+        log.info("E-Mail successfully sent: " + mail);
+      } catch (final MessagingException ex) {
+        if (isPermanentFailure(ex) == true) {
+          log.error("Mail rejected permanently, giving up: " + mail, ex);
+          giveUp(mail);
+        } else {
+          log.error("While creating and sending message: " + mail, ex);
+          retry(mail);
+        }
+      }
+    }
+    return transport;
+  }
+
+  /**
+   * @param ex
+   * @return true if a retry of the mail would fail again: invalid addresses or smtp reply codes 5xx (the nested exceptions are checked,
+   *         too).
+   */
+  static boolean isPermanentFailure(final MessagingException ex)
+  {
+    Exception current = ex;
+    while (current instanceof MessagingException) {
+      if (current instanceof AddressException) {
+        return true;
+      }
+      if (current instanceof SMTPAddressFailedException) {
+        if (isPermanentReturnCode(((SMTPAddressFailedException) current).getReturnCode()) == true) {
+          return true;
+        }
+      } else if (current instanceof SMTPSendFailedException) {
+        if (isPermanentReturnCode(((SMTPSendFailedException) current).getReturnCode()) == true) {
+          return true;
+        }
+      }
+      if (current instanceof SendFailedException) {
+        final Address[] invalidAddresses = ((SendFailedException) current).getInvalidAddresses();
+        if (invalidAddresses != null && invalidAddresses.length > 0) {
+          return true;
+        }
+      }
+      current = ((MessagingException) current).getNextException();
+    }
+    return false;
+  }
+
+  private static boolean isPermanentReturnCode(final int returnCode)
+  {
+    return returnCode >= 500 && returnCode < 600;
+  }
+
+  public int getQueueSize()
+  {
+    return queue.size();
+  }
+
+  public long getSentCount()
+  {
+    return sentCounter.get();
+  }
+
+  /**
+   * @return The number of mails given up after {@link #MAX_ATTEMPTS} failed attempts or a permanent failure.
+   */
+  public long getFailedCount()
+  {
+    return failedCounter.get();
+  }
+
+  public long getRetryCount()
+  {
+    return retryCounter.get();
+  }
+
+  public long getBatchCount()
+  {
+    return batchCounter.get();
+  }
+
+  public long getConnectionCount()
+  {
+    return connectionCounter.get();
+  }
+
+  /**
+   * @return The average number of sent mails per minute since start.
+   */
+  public double getSentPerMinute()
+  {
+    final long millis = System.currentTimeMillis() - startTime;
+    if (startTime == 0 || millis <= 0) {
+      return 0.0;
+    }
+    return sentCounter.get() * (double) DateHelper.MILLIS_MINUTE / millis;
+  }
+
+  public String getStatistics()
+  {
+    return "queueSize=" + getQueueSize() + ", sent=" + getSentCount() + ", failed=" + getFailedCount() + ", retries=" + getRetryCount()
+        + ", batches=" + getBatchCount() + ", connections=" + getConnectionCount() + ", sentPerMinute="
+        + String.format("%.2f", getSentPerMinute());
+  }
+
+  private Transport connect() throws MessagingException
+  {
+    final Transport transport = session.getTransport();
+    if (StringUtils.isNotEmpty(user) == true) {
+      transport.connect(user, password);
+    } else {
+      transport.connect();
+    }
+    connectionCounter.incrementAndGet();
+    return transport;
+  }
+
+  private void close(final Transport transport)
+  {
+    if (transport == null) {
+      return;
+    }
+    try {
+      transport.close();
+    } catch (final MessagingException ex) {
+      log.warn("Exception encountered while closing transport: " + ex.getMessage(), ex);
+    }
+  }
+
+  private void retry(final QueuedMail mail)
+  {
+    final int attempts = mail.incrementAttempts();
+    if (attempts >= MAX_ATTEMPTS) {
+      log.error("Giving up sending mail after " + attempts + " attempts: " + mail);
+      giveUp(mail);
+      return;
+    }
+    retryCounter.incrementAndGet();
+    persist(mail);
+    final long delay = retryDelay << (attempts - 1);
+    final ScheduledExecutorService executor;
+    synchronized (this) {
+      executor = retryExecutor;
+    }
+    if (executor == null) {
+      log.warn("Mail queue stopped, mail will be sent after restart: " + mail);
+      return;
+    }
+    try {
+      executor.schedule(new Runnable() {
+        public void run()
+        {
+          synchronized (MailQueue.this) {
+            if (retryExecutor == null) {
+              // Mail queue stopped in the meantime, the persisted mail is sent after restart.
+              return;
+            }
+          }
+          if (queue.offer(mail) == false) {
+            log.error("Mail queue is full (" + CAPACITY + " mails), mail will be sent after restart: " + mail);
+          }
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    } catch (final RejectedExecutionException ex) {
+      log.warn("Mail queue stopped, mail will be sent after restart: " + mail);
+    }
+  }
+
+  private void giveUp(final QueuedMail mail)
+  {
+    failedCounter.incrementAndGet();
+    final File file = mail.getFile();
+    if (file != null && file.renameTo(new File(file.getPath() + FAILED_SUFFIX)) == false) {
+      log.error("Can't rename file '" + file.getAbsolutePath() + "'.");
+    }
+  }
+
+  private void persist(final QueuedMail mail)
+  {
+    if (persistenceDir == null) {
+      return;
+    }
+    if (mail.getFile() == null) {
+      mail.setFile(new File(persistenceDir, System.currentTimeMillis() + "-" + fileCounter.incrementAndGet() + FILE_SUFFIX));
+    }
+    ObjectOutputStream out = null;
+    try {
+      out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(mail.getFile())));
+      out.writeObject(mail);
+    } catch (final IOException ex) {
+      log.error("Can't persist mail to '" + mail.getFile().getAbsolutePath() + "' (mail is only queued in memory): " + ex.getMessage(), ex);
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  private void deleteFile(final QueuedMail mail)
+  {
+    final File file = mail.getFile();
+    if (file != null && file.delete() == false && file.exists() == true) {
+      log.error("Can't delete file '" + file.getAbsolutePath() + "', mail may be sent twice after restart.");
+    }
+  }
+
+  private void loadPersistedMails()
+  {
+    if (persistenceDir == null) {
+      return;
+    }
+    final File[] files = persistenceDir.listFiles(new FilenameFilter() {
+      public boolean accept(final File dir, final String name)
+      {
+        return name.endsWith(FILE_SUFFIX);
+      }
+    });
+    if (files == null || files.length == 0) {
+      return;
+    }
+    Arrays.sort(files); // File names start with the time stamp.
+    int counter = 0;
+    for (final File file : files) {
+      ObjectInputStream in = null;
+      try {
+        in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        final QueuedMail mail = (QueuedMail) in.readObject();
+        mail.setFile(file);
+        if (queue.offer(mail) == false) {
+          log.warn("Mail queue is full, remaining persisted mails will be sent after next restart.");
+          break;
+        }
+        ++counter;
+      } catch (final Exception ex) {
+        log.error("Can't read persisted mail '" + file.getAbsolutePath() + "': " + ex.getMessage(), ex);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    log.info(counter + " undelivered mail(s) of last run queued.");
+  }
+}
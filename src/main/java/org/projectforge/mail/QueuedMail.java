@@ -0,0 +1,139 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.mail;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Serializable snapshot of a composed mail waiting in the {@link MailQueue} for delivery. All information needed for creating the message
+ * is copied, so undelivered mails may be persisted and delivered after a restart.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class QueuedMail implements Serializable
+{
+  private static final long serialVersionUID = -4528720953463104733L;
+
+  private final String from;
+
+  private final String to;
+
+  private final String subject;
+
+  private final String content;
+
+  private final String contentType;
+
+  private final String charset;
+
+  private final String defaultCharset;
+
+  private int attempts;
+
+  /** The file of the persisted mail, if any. */
+  private transient File file;
+
+  /**
+   * @param mail
+   * @param defaultCharset Used for the subject and for the content if no content type is given.
+   */
+  QueuedMail(final Mail mail, final String defaultCharset)
+  {
+    this.from = mail.getFrom();
+    this.to = mail.getTo();
+    this.subject = mail.getSubject();
+    this.content = mail.getContent();
+    this.contentType = mail.getContentType();
+    this.charset = mail.getCharset();
+    this.defaultCharset = defaultCharset;
+  }
+
+  MimeMessage createMessage(final Session session) throws MessagingException
+  {
+    final MimeMessage message = new MimeMessage(session);
+    if (from != null) {
+      message.setFrom(new InternetAddress(from));
+    } else {
+      message.setFrom();
+    }
+    message.setRecipients(Message.RecipientType.TO, to);
+    message.setSubject(subject, defaultCharset);
+    message.setSentDate(new Date());
+    if (contentType != null) {
+      message.setText(content, charset, contentType);
+    } else {
+      message.setText(content, defaultCharset);
+    }
+    message.saveChanges(); // don't forget this
+    return message;
+  }
+
+  String getTo()
+  {
+    return to;
+  }
+
+  /**
+   * @return The number of failed delivery attempts.
+   */
+  int getAttempts()
+  {
+    return attempts;
+  }
+
+  int incrementAttempts()
+  {
+    return ++attempts;
+  }
+
+  File getFile()
+  {
+    return file;
+  }
+
+  void setFile(final File file)
+  {
+    this.file = file;
+  }
+
+  @Override
+  public String toString()
+  {
+    final ToStringBuilder sb = new ToStringBuilder(this);
+    sb.append("from", from);
+    sb.append("to", to);
+    sb.append("subject", subject);
+    sb.append("attempts", attempts);
+    return sb.toString();
+  }
+}
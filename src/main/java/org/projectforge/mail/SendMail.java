@@ -23,21 +23,13 @@
 
 package org.projectforge.mail;
 
-import java.util.Date;
+import java.io.File;
 import java.util.Map;
 import java.util.Properties;
 
-import javax.mail.Message;
-import javax.mail.MessagingException;
-import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
-
 import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
 import org.projectforge.core.ConfigXml;
-import org.projectforge.core.InternalErrorException;
 import org.projectforge.core.UserException;
 import org.projectforge.scripting.GroovyEngine;
 import org.projectforge.user.PFUserContext;
@@ -55,9 +47,13 @@ public class SendMail
 
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(SendMail.class);
 
+  private static final String MAIL_QUEUE_DIR = "mailqueue";
+
+  private ConfigXml configXml;
+
   private SendMailConfig sendMailConfig;
 
-  private Properties properties;
+  private MailQueue mailQueue;
 
   /**
    * Get the ProjectForge standard subject: "[ProjectForge] ..."
@@ -69,10 +65,10 @@ public class SendMail
   }
 
   /**
+   * The mail is queued and sent asynchronously by the {@link MailQueue}, failed deliveries are retried.
    * @param composedMessage
-   * @return true for successful sending, otherwise an exception will be thrown.
+   * @return true if the mail is queued for sending, false if no mail host is configured or the queue is full.
    * @throws UserException if to address is not given.
-   * @throws InternalErrorException due to technical failures.
    */
   public boolean send(final Mail composedMessage)
   {
@@ -85,12 +81,40 @@ public class SendMail
       log.error("No e-mail host configured. E-Mail not sent: " + composedMessage.toString());
       return false;
     }
-    log.info("Try to send email to " + to);
-    // Get a Session object
+    log.info("Queue email to " + to);
+    return getMailQueue().enqueue(new QueuedMail(composedMessage, sendMailConfig.getCharset()));
+  }
 
-    if (properties == null) {
-      properties = new Properties();
-      String protocol = sendMailConfig.getProtocol();
+  /**
+   * Starts the mail queue (if a mail host is configured), so undelivered mails of the last run are sent.
+   */
+  public void initialize()
+  {
+    if (sendMailConfig != null && StringUtils.isNotBlank(sendMailConfig.getHost()) == true) {
+      getMailQueue();
+    }
+  }
+
+  /**
+   * Stops the worker threads of the mail queue. Queued mails will be sent after restart.
+   */
+  public synchronized void shutdown()
+  {
+    if (mailQueue != null) {
+      mailQueue.shutdown();
+      mailQueue = null;
+    }
+  }
+
+  /**
+   * The mail queue is created and started on first use.
+   * @return The mail queue (e. g. for monitoring).
+   */
+  public synchronized MailQueue getMailQueue()
+  {
+    if (mailQueue == null) {
+      final Properties properties = new Properties();
+      final String protocol = sendMailConfig.getProtocol();
       properties.put("mail.from", sendMailConfig.getFrom());
       properties.put("mail.mime.charset", "UTF-8");
       properties.put("mail.transport.protocol", sendMailConfig.getProtocol());
@@ -99,63 +123,19 @@ public class SendMail
       if (BooleanUtils.isTrue(sendMailConfig.getDebug()) == true) {
         properties.put("mail.debug", "true");
       }
-    }
-    new Thread() {
-      @Override
-      public void run()
-      {
-       sendIt(composedMessage);
-      }
-    }.start();
-    return true;
-  }
-  
-  private void sendIt(final Mail composedMessage) {
-    final Session session = Session.getInstance(properties);
-    Transport transport = null;
-    try {
-      MimeMessage message = new MimeMessage(session);
-      if (composedMessage.getFrom() != null) {
-        message.setFrom(new InternetAddress(composedMessage.getFrom()));
-      } else {
-        message.setFrom();
-      }
-      message.setRecipients(Message.RecipientType.TO, composedMessage.getTo());
-      String subject;
-      subject = composedMessage.getSubject();
-      /*
-       * try { subject = MimeUtility.encodeText(composedMessage.getSubject()); } catch (UnsupportedEncodingException ex) {
-       * log.error("Exception encountered while encoding subject." + ex, ex); subject = composedMessage.getSubject(); }
-       */
-      message.setSubject(subject, sendMailConfig.getCharset());
-      message.setSentDate(new Date());
-      if (composedMessage.getContentType() != null) {
-        message.setText(composedMessage.getContent(), composedMessage.getCharset(), composedMessage.getContentType());
-      } else {
-        message.setText(composedMessage.getContent(), sendMailConfig.getCharset());
-      }
-      message.saveChanges(); // don't forget this
-      transport = session.getTransport();
-      if (StringUtils.isNotEmpty(sendMailConfig.getUser()) == true) {
-        transport.connect(sendMailConfig.getUser(), sendMailConfig.getPassword());
-      } else {
-        transport.connect();
-      }
-      transport.sendMessage(message, message.getAllRecipients());
-    } catch (MessagingException ex) {
-      log.error("While creating and sending message: " + composedMessage.toString(), ex);
-      throw new InternalErrorException("mail.error.exception");
-    } finally {
-      if (transport != null) {
-        try {
-          transport.close();
-        } catch (MessagingException ex) {
-          log.error("While creating and sending message: " + composedMessage.toString(), ex);
-          throw new InternalErrorException("mail.error.exception");
+      File persistenceDir = null;
+      if (configXml != null && configXml.getWorkingDirectory() != null) {
+        persistenceDir = new File(configXml.getWorkingDirectory(), MAIL_QUEUE_DIR);
+        if (persistenceDir.exists() == false && persistenceDir.mkdirs() == false) {
+          log.error("Can't create directory '" + persistenceDir.getAbsolutePath() + "', queued mails aren't persisted.");
+          persistenceDir = null;
         }
       }
+      mailQueue = new MailQueue(properties, sendMailConfig.getUser(), sendMailConfig.getPassword(), persistenceDir,
+          MailQueue.DEFAULT_WORKERS, MailQueue.DEFAULT_RETRY_DELAY);
+      mailQueue.start();
     }
-    log.info("E-Mail successfully sent: " + composedMessage.toString());
+    return mailQueue;
   }
 
   /**
@@ -191,6 +171,7 @@ public class SendMail
 
   public void setConfigXml(final ConfigXml configXml)
   {
+    this.configXml = configXml;
     this.sendMailConfig = configXml.getSendMailConfiguration();
   }
 }
@@ -28,14 +28,27 @@ import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
 import org.apache.commons.lang.Validate;
+import org.hibernate.Session;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.projectforge.access.OperationType;
 import org.projectforge.common.StringHelper;
 import org.projectforge.core.BaseDao;
+import org.projectforge.core.ModificationStamp;
 import org.projectforge.user.PFUserContext;
 import org.projectforge.user.PFUserDO;
 import org.projectforge.user.UserDao;
@@ -59,12 +72,24 @@ public class MebDao extends BaseDao<MebEntryDO>
 
   public static final String DATE_FORMAT = "yyyyMMddHHmmss";
 
+  /**
+   * Number of entries checked by one query against the already imported entries.
+   */
+  static final int IMPORT_BATCH_SIZE = 500;
+
+  /**
+   * Should be equal to hibernate.jdbc.batch_size.
+   */
+  private static final int JDBC_BATCH_SIZE = 50;
+
   private DataSource dataSource;
 
   private UserDao userDao;
 
   private MebCache mebCache = new MebCache(this);
 
+  private volatile MebPhoneNumberIndex phoneNumberIndex;
+
   /**
    * Removes all non digit and letter characters (also white-spaces) first. Afterward a MD5 checksum is calculated.
    * @param message
@@ -181,58 +206,146 @@ public class MebDao extends BaseDao<MebEntryDO>
   /**
    * Try to assign the owner from the sender number first. Ignore if the entry does already exist in the data base.
    * @param entry
+   * @return true if the entry was imported, false if the entry was already imported before.
+   * @see #checkAndAddEntries(Collection, String)
+   */
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
+  public boolean checkAndAddEntry(final MebEntryDO entry, final String source)
+  {
+    return checkAndAddEntries(Collections.singletonList(entry), source) > 0;
+  }
+
+  /**
+   * Imports the given entries (e. g. a backlog of received messages). Entries already imported before (same sender, date and check sum)
+   * and duplicates within the given entries are ignored. The owners are assigned via the phone numbers of the users. The existing entries
+   * are checked with one query per {@link #IMPORT_BATCH_SIZE} entries and the new entries are inserted in jdbc batches. The new entries pass
+   * the same hooks as {@link #internalSave(MebEntryDO)} (onSave, onSaveOrModify, prepareHibernateSearch, afterSaveOrModify and afterSave),
+   * but the session is flushed only once per jdbc batch.
+   * @param entries
+   * @param source From which source are the entries imported (MAIL or SERVLET)?
    * @return Number of new imported messages.
    */
   @SuppressWarnings("unchecked")
   @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
-  public boolean checkAndAddEntry(final MebEntryDO entry, final String source)
+  public int checkAndAddEntries(final Collection<MebEntryDO> entries, final String source)
   {
-    Validate.notNull(entry.getSender());
-    Validate.notNull(entry.getDate());
-    Validate.notNull(entry.getMessage());
-    entry.setStatus(MebEntryStatus.RECENT);
-    synchronized (this) {
+    // Key is sender, date and check sum of the entry:
+    final Map<String, MebEntryDO> entryMap = new LinkedHashMap<String, MebEntryDO>();
+    final Map<MebEntryDO, String> checkSums = new HashMap<MebEntryDO, String>();
+    for (final MebEntryDO entry : entries) {
+      Validate.notNull(entry.getSender());
+      Validate.notNull(entry.getDate());
+      Validate.notNull(entry.getMessage());
       final String checkSum = createCheckSum(entry.getMessage());
-      // First check weather the entry is already in the data base or not.
-      final List<ImportedMebEntryDO> entryList = getHibernateTemplate().find(
-          "from ImportedMebEntryDO e where e.sender = ? and e.date = ? and e.checkSum = ?",
-          new Object[] { entry.getSender(), entry.getDate(), checkSum});
-      if (entryList != null && entryList.size() > 0) {
-        return false;
+      final String key = getImportKey(entry.getSender(), entry.getDate(), checkSum);
+      if (entryMap.containsKey(key) == false) {
+        entryMap.put(key, entry);
+        checkSums.put(entry, checkSum);
       }
-      // Try to assign the owner from the sender string.
-      final List<Object[]> userList = (List<Object[]>) getSession().createQuery(
-          "select id, personalMebMobileNumbers from PFUserDO u where deleted = false and personalMebMobileNumbers is not null").list();
-      final String senderNumber = StringHelper.removeNonDigits(entry.getSender());
-      Integer pk = null;
-      for (final Object[] user : userList) {
-        final String personalPhoneIdentifiers = StringHelper.removeNonDigits((String) user[1]);
-        if (personalPhoneIdentifiers.length() == 0) {
-          continue;
+    }
+    if (entryMap.isEmpty() == true) {
+      return 0;
+    }
+    final MebPhoneNumberIndex index = getPhoneNumberIndex();
+    final Session session = getSession();
+    final FullTextSession fullTextSession = Search.getFullTextSession(session);
+    int counter = 0;
+    synchronized (this) {
+      final List<MebEntryDO> list = new ArrayList<MebEntryDO>(entryMap.values());
+      for (int fromIndex = 0; fromIndex < list.size(); fromIndex += IMPORT_BATCH_SIZE) {
+        final List<MebEntryDO> batch = list.subList(fromIndex, Math.min(fromIndex + IMPORT_BATCH_SIZE, list.size()));
+        final Set<String> checkSumSet = new HashSet<String>();
+        for (final MebEntryDO entry : batch) {
+          checkSumSet.add(checkSums.get(entry));
+        }
+        // Check which entries are already in the data base (one query per batch):
+        final List<Object[]> importedList = session
+            .createQuery("select e.sender, e.date, e.checkSum from ImportedMebEntryDO e where e.checkSum in (:checkSums)")
+            .setParameterList("checkSums", checkSumSet).list();
+        final Set<String> importedKeys = new HashSet<String>();
+        for (final Object[] imported : importedList) {
+          importedKeys.add(getImportKey((String) imported[0], (Date) imported[1], (String) imported[2]));
         }
-        if (personalPhoneIdentifiers.contains(senderNumber) == true) {
+        final List<MebEntryDO> jdbcBatch = new ArrayList<MebEntryDO>();
+        for (final MebEntryDO entry : batch) {
+          final String checkSum = checkSums.get(entry);
+          if (importedKeys.contains(getImportKey(entry.getSender(), entry.getDate(), checkSum)) == true) {
+            continue;
+          }
+          entry.setStatus(MebEntryStatus.RECENT);
+          // Try to assign the owner from the sender string.
+          final Integer pk = index.getUserId(entry.getSender());
           if (pk != null) {
-            log.warn("Sender string '" + entry.getSender() + "' found twice (user pk's): " + pk + ", " + user[0]);
-          } else {
-            pk = (Integer) user[0];
+            entry.setOwner((PFUserDO) session.load(PFUserDO.class, pk));
+          }
+          entry.setCreated();
+          entry.setLastUpdate();
+          onSave(entry);
+          onSaveOrModify(entry);
+          session.save(entry);
+          prepareHibernateSearch(entry, OperationType.INSERT);
+          final ImportedMebEntryDO imported = new ImportedMebEntryDO();
+          imported.setCheckSum(checkSum);
+          imported.setDate(entry.getDate());
+          imported.setSender(entry.getSender());
+          imported.setCreated();
+          imported.setLastUpdate();
+          imported.setSource(source);
+          session.save(imported);
+          ++counter;
+          jdbcBatch.add(entry);
+          if (jdbcBatch.size() >= JDBC_BATCH_SIZE) {
+            flushAndClear(fullTextSession, jdbcBatch);
           }
         }
+        flushAndClear(fullTextSession, jdbcBatch);
       }
-      if (pk != null) {
-        final PFUserDO user = (PFUserDO) getSession().load(PFUserDO.class, pk);
-        entry.setOwner(user);
-      }
-      internalSave(entry);
-      final ImportedMebEntryDO imported = new ImportedMebEntryDO();
-      imported.setCheckSum(checkSum);
-      imported.setDate(entry.getDate());
-      imported.setSender(entry.getSender());
-      imported.setCreated();
-      imported.setLastUpdate();
-      imported.setSource(source);
-      getHibernateTemplate().save(imported);
-      return true;
     }
+    if (counter > 0) {
+      log.info(counter + " MEB entries imported from " + source + " (" + (entryMap.size() - counter) + " already imported).");
+    }
+    return counter;
+  }
+
+  /**
+   * Writes the pending inserts (in jdbc batches, see hibernate.jdbc.batch_size) and the search index, calls the after save hooks of the
+   * saved entries and releases the saved objects.
+   * @param savedEntries The entries saved since the last flush. The list is cleared.
+   */
+  private void flushAndClear(final FullTextSession fullTextSession, final List<MebEntryDO> savedEntries)
+  {
+    fullTextSession.flush();
+    fullTextSession.flushToIndexes();
+    for (final MebEntryDO entry : savedEntries) {
+      afterSaveOrModify(entry);
+      afterSave(entry);
+    }
+    savedEntries.clear();
+    fullTextSession.clear();
+  }
+
+  private static String getImportKey(final String sender, final Date date, final String checkSum)
+  {
+    return sender + "|" + date.getTime() + "|" + checkSum;
+  }
+
+  /**
+   * @return The phone number index of all users. The index is rebuilt if any user was modified since the last call.
+   */
+  @SuppressWarnings("unchecked")
+  private MebPhoneNumberIndex getPhoneNumberIndex()
+  {
+    final ModificationStamp stamp = ModificationStamp.create((Object[]) getSession().createQuery(
+        "select max(lastUpdate), count(id) from PFUserDO").uniqueResult());
+    final MebPhoneNumberIndex index = this.phoneNumberIndex;
+    if (index != null && index.getStamp().equals(stamp) == true) {
+      return index;
+    }
+    final List<Object[]> userList = getSession().createQuery(
+        "select id, personalMebMobileNumbers from PFUserDO u where deleted = false and personalMebMobileNumbers is not null").list();
+    final MebPhoneNumberIndex newIndex = new MebPhoneNumberIndex(userList, stamp);
+    this.phoneNumberIndex = newIndex;
+    return newIndex;
   }
 
   @Override
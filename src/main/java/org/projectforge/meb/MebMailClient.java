@@ -26,7 +26,9 @@ package org.projectforge.meb;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import javax.mail.Flags;
 import javax.mail.MessagingException;
@@ -71,6 +73,7 @@ public class MebMailClient
       mailAccount.connect("INBOX", markRecentMailsAsSeen);
       final Mail[] mails = mailAccount.getMails(filter);
       if (mails != null) {
+        final List<MebEntryDO> entries = new ArrayList<MebEntryDO>(mails.length);
         for (final Mail mail : mails) {
           final MebEntryDO entry = new MebEntryDO();
           entry.setDate(mail.getDate());
@@ -113,10 +116,17 @@ public class MebMailClient
           } catch (IOException ex) {
             log.fatal("Exception encountered " + ex, ex);
           }
-          if (mebDao.checkAndAddEntry(entry, "MAIL") == true) {
-            counter++;
+          if (entry.getSender() == null || entry.getDate() == null || entry.getMessage() == null) {
+            log.warn("Mail ignored, because sender, date or message is missing: " + mail);
+            continue;
           }
-          if (markRecentMailsAsSeen == true) {
+          entries.add(entry);
+          // log.info(mail);
+        }
+        // Import all entries at once (one duplicate check per batch instead of per message):
+        counter = mebDao.checkAndAddEntries(entries, "MAIL");
+        if (markRecentMailsAsSeen == true) {
+          for (final Mail mail : mails) {
             try {
               mail.getMessage().setFlag(Flags.Flag.SEEN, true);
               //mail.getMessage().saveChanges();
@@ -124,7 +134,6 @@ public class MebMailClient
               log.error("Exception encountered while setting message flag SEEN as true: " + ex, ex);
             }
           }
-          // log.info(mail);
         }
       }
       return counter;
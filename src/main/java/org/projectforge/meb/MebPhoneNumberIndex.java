@@ -0,0 +1,114 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.meb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.projectforge.common.StringHelper;
+import org.projectforge.core.ModificationStamp;
+
+/**
+ * Index of the normalized (digits only) personal MEB mobile numbers of all users for finding the owner of a received message. Immutable,
+ * MebDao replaces the index if the users are modified (detected by the modification stamp of the users).
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class MebPhoneNumberIndex
+{
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(MebPhoneNumberIndex.class);
+
+  private final ModificationStamp stamp;
+
+  /** Key is the normalized phone number, value is the id of the first user with this phone number. */
+  private final Map<String, Integer> userIdByNumber = new HashMap<String, Integer>();
+
+  /** All normalized numbers of a user concatenated, used for matching parts of phone numbers. */
+  private final List<Object[]> userNumbers = new ArrayList<Object[]>();
+
+  /**
+   * @param userList Result of "select id, personalMebMobileNumbers from PFUserDO ...".
+   * @param stamp The modification stamp of the users.
+   */
+  MebPhoneNumberIndex(final List<Object[]> userList, final ModificationStamp stamp)
+  {
+    this.stamp = stamp;
+    for (final Object[] user : userList) {
+      final Integer userId = (Integer) user[0];
+      final String numbers = (String) user[1];
+      final String allDigits = StringHelper.removeNonDigits(numbers);
+      if (allDigits.length() == 0) {
+        continue;
+      }
+      userNumbers.add(new Object[] { userId, allDigits});
+      for (final String number : StringUtils.split(numbers, ",;")) {
+        final String digits = StringHelper.removeNonDigits(number);
+        if (digits.length() == 0) {
+          continue;
+        }
+        final Integer other = userIdByNumber.get(digits);
+        if (other == null) {
+          userIdByNumber.put(digits, userId);
+        } else if (other.equals(userId) == false) {
+          log.warn("Phone number '" + digits + "' found twice (user pk's): " + other + ", " + userId);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param sender The sender of the message.
+   * @return The id of the user with the given phone number or null, if not found. If the sender isn't equal to a registered phone number,
+   *         the first user with a phone number containing the sender's digits is returned (as of older versions).
+   */
+  Integer getUserId(final String sender)
+  {
+    final String senderNumber = StringHelper.removeNonDigits(sender);
+    if (senderNumber.length() == 0) {
+      return null;
+    }
+    final Integer userId = userIdByNumber.get(senderNumber);
+    if (userId != null) {
+      return userId;
+    }
+    Integer pk = null;
+    for (final Object[] user : userNumbers) {
+      if (((String) user[1]).contains(senderNumber) == true) {
+        if (pk != null) {
+          log.warn("Sender string '" + sender + "' found twice (user pk's): " + pk + ", " + user[0]);
+        } else {
+          pk = (Integer) user[0];
+        }
+      }
+    }
+    return pk;
+  }
+
+  ModificationStamp getStamp()
+  {
+    return stamp;
+  }
+}
@@ -116,6 +116,16 @@ public class MemoListPage extends AbstractListPage<MemoListForm, MemoDao, MemoDO
     form.add(dataTable);
   }
 
+  /**
+   * Memos are loaded page by page (the memos of the other users are skipped by the access check of the dao).
+   * @see org.projectforge.web.wicket.AbstractListPage#getKeysetProperty()
+   */
+  @Override
+  protected String getKeysetProperty()
+  {
+    return "id";
+  }
+
   @Override
   protected MemoListForm newListForm(final AbstractListPage< ? , ? , ? > parentPage)
   {
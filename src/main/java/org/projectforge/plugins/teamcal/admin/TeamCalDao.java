@@ -32,6 +32,7 @@ import org.projectforge.common.StringHelper;
 import org.projectforge.core.BaseDao;
 import org.projectforge.core.BaseSearchFilter;
 import org.projectforge.core.DisplayHistoryEntry;
+import org.projectforge.core.ModificationStamp;
 import org.projectforge.core.QueryFilter;
 import org.projectforge.plugins.teamcal.admin.TeamCalFilter.OwnerType;
 import org.projectforge.plugins.teamcal.externalsubscription.TeamEventExternalSubscriptionCache;
@@ -146,6 +147,16 @@ public class TeamCalDao extends BaseDao<TeamCalDO>
     return getList(filter);
   }
 
+  /**
+   * @return The stamp of all calendars, which may be used as fingerprint (e. g. ETag) of any list of calendars.
+   */
+  public ModificationStamp getModificationStamp()
+  {
+    @SuppressWarnings("unchecked")
+    final List<Object[]> list = getHibernateTemplate().find("select max(lastUpdate), count(id) from TeamCalDO");
+    return ModificationStamp.create(CollectionUtils.isEmpty(list) == false ? list.get(0) : null);
+  }
+
   /**
    * Please note: Only the string group.fullAccessGroupIds will be modified (but not be saved)!
    * @param calendar
@@ -36,6 +36,7 @@ import org.projectforge.common.DateHelper;
 import org.projectforge.core.BaseDao;
 import org.projectforge.core.BaseSearchFilter;
 import org.projectforge.core.DisplayHistoryEntry;
+import org.projectforge.core.ModificationStamp;
 import org.projectforge.core.QueryFilter;
 import org.projectforge.plugins.teamcal.TeamCalConfig;
 import org.projectforge.plugins.teamcal.admin.TeamCalCache;
@@ -70,6 +71,10 @@ public class TeamEventDao extends BaseDao<TeamEventDO>
 
   private TeamCalDao teamCalDao;
 
+  private final Map<Integer, ModificationStamp> modificationStampByCalendar = new HashMap<Integer, ModificationStamp>();
+
+  private final TeamEventRecurrenceCache recurrenceCache = new TeamEventRecurrenceCache();
+
   public TeamEventDao()
   {
     super(TeamEventDO.class);
@@ -137,6 +142,43 @@ public class TeamEventDao extends BaseDao<TeamEventDO>
     event.setRecurrenceUntil(recurrenceUntil);
   }
 
+  /**
+   * Resets the cached modification stamps and recurrence events.
+   * @see org.projectforge.core.BaseDao#afterSaveOrModify(org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  protected void afterSaveOrModify(final TeamEventDO obj)
+  {
+    super.afterSaveOrModify(obj);
+    recurrenceCache.remove(obj.getId());
+    synchronized (modificationStampByCalendar) {
+      // Clear all, because the event may be moved from one calendar to another.
+      modificationStampByCalendar.clear();
+    }
+  }
+
+  /**
+   * The modification stamp (time of the last modification and number of events) of all events of the given calendar. The stamp is cached
+   * and reset on every modification of any event.
+   * @param calendarId
+   * @return The stamp, which may be used as fingerprint (e. g. ETag) of any view of the calendar's events.
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public ModificationStamp getModificationStamp(final Integer calendarId)
+  {
+    synchronized (modificationStampByCalendar) {
+      ModificationStamp stamp = modificationStampByCalendar.get(calendarId);
+      if (stamp == null) {
+        @SuppressWarnings("unchecked")
+        final List<Object[]> list = getHibernateTemplate().find(
+            "select max(lastUpdate), count(id) from TeamEventDO where calendar.id = ?", calendarId);
+        stamp = ModificationStamp.create(CollectionUtils.isNotEmpty(list) == true ? list.get(0) : null);
+        modificationStampByCalendar.put(calendarId, stamp);
+      }
+      return stamp;
+    }
+  }
+
   /**
    * This method also returns recurrence events outside the time period of the given filter but affecting the time-period (e. g. older
    * recurrence events without end date or end date inside or after the given time period). If calculateRecurrenceEvents is true, only the
@@ -165,12 +207,18 @@ public class TeamEventDao extends BaseDao<TeamEventDO>
     qFilter.add(Restrictions.isNotNull("recurrenceRule"));
     list = getList(qFilter);
     list = selectUnique(list);
-    // add all abo events
-    List<TeamEventDO> recurrenceEvents = TeamEventExternalSubscriptionCache.instance().getRecurrenceEvents(teamEventFilter);
-    if(recurrenceEvents != null && recurrenceEvents.size() > 0) {
-        list.addAll(recurrenceEvents);
-    }
     final TimeZone timeZone = PFUserContext.getTimeZone();
+    // add all abo events (the occurrences of the abo events are expanded and cached by the subscriptions)
+    final TeamEventExternalSubscriptionCache aboCache = TeamEventExternalSubscriptionCache.instance();
+    if (calculateRecurrenceEvents == false) {
+      result.addAll(aboCache.getRecurrenceEvents(teamEventFilter));
+    } else {
+      for (final TeamEvent event : aboCache.getRecurrenceEvents(teamEventFilter, timeZone)) {
+        if (matches(event.getStartDate(), event.getEndDate(), event.isAllDay(), teamEventFilter) == true) {
+          result.add(event);
+        }
+      }
+    }
     if (list != null) {
       for (final TeamEventDO eventDO : list) {
         if (eventDO.hasRecurrence() == false) {
@@ -182,7 +230,7 @@ public class TeamEventDao extends BaseDao<TeamEventDO>
           result.add(eventDO);
           continue;
         }
-        final Collection<TeamEvent> events = TeamEventUtils.getRecurrenceEvents(teamEventFilter.getStartDate(),
+        final Collection<TeamEvent> events = recurrenceCache.getRecurrenceEvents(teamEventFilter.getStartDate(),
             teamEventFilter.getEndDate(), eventDO, timeZone);
         if (events == null) {
           continue;
@@ -0,0 +1,181 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.teamcal.event;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Cache of the already expanded occurrences of recurring team events. Only the start times of the occurrences are stored per event (not
+ * the TeamEventDO objects of any Hibernate session), so the TeamEvent objects are re-created on every request by using the given event.
+ * An entry is only valid for the same last update time stamp and time zone of the event. If the requested time period differs from the
+ * cached one (e. g. the calendar view was shifted by one week or month), only the missing time periods will be expanded.<br/>
+ * The number of cached events is limited, the least recently used ones are removed.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class TeamEventRecurrenceCache
+{
+  private static final int MAX_SIZE = 1000;
+
+  /**
+   * The covered time period of an entry isn't extended beyond this period (the entry will be replaced).
+   */
+  private static final long MAX_COVERED_PERIOD = 3L * 366 * 24 * 60 * 60 * 1000;
+
+  private static class Entry
+  {
+    final long lastUpdate;
+
+    final String timeZoneId;
+
+    final long coveredStart, coveredEnd;
+
+    /**
+     * Key is the start time of an occurrence, value is true if the occurrence is represented by the event itself.
+     */
+    final NavigableMap<Long, Boolean> occurrences;
+
+    Entry(final long lastUpdate, final String timeZoneId, final long coveredStart, final long coveredEnd,
+        final NavigableMap<Long, Boolean> occurrences)
+    {
+      this.lastUpdate = lastUpdate;
+      this.timeZoneId = timeZoneId;
+      this.coveredStart = coveredStart;
+      this.coveredEnd = coveredEnd;
+      this.occurrences = occurrences;
+    }
+  }
+
+  private final Map<Integer, Entry> entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+    private static final long serialVersionUID = -4386405726413394735L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<Integer, Entry> eldest)
+    {
+      return size() > MAX_SIZE;
+    }
+  };
+
+  /**
+   * @param startDate
+   * @param endDate
+   * @param event The recurring event (master).
+   * @param timeZone
+   * @return The same occurrences as {@link TeamEventUtils#getRecurrenceEvents(Date, Date, TeamEventDO, TimeZone)}.
+   */
+  Collection<TeamEvent> getRecurrenceEvents(final Date startDate, final Date endDate, final TeamEventDO event, final TimeZone timeZone)
+  {
+    if (event.hasRecurrence() == false) {
+      return null;
+    }
+    if (event.getId() == null || event.getLastUpdate() == null || startDate == null || endDate == null) {
+      // Not cacheable.
+      return expand(startDate, endDate, event, timeZone);
+    }
+    final long start = startDate.getTime();
+    final long end = endDate.getTime();
+    final long lastUpdate = event.getLastUpdate().getTime();
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(event.getId());
+    }
+    if (entry != null && (entry.lastUpdate != lastUpdate || entry.timeZoneId.equals(timeZone.getID()) == false)) {
+      entry = null;
+    }
+    Entry newEntry = null;
+    if (entry == null || Math.max(end, entry.coveredEnd) - Math.min(start, entry.coveredStart) > MAX_COVERED_PERIOD) {
+      final NavigableMap<Long, Boolean> occurrences = new TreeMap<Long, Boolean>();
+      add(occurrences, expand(startDate, endDate, event, timeZone), event);
+      newEntry = new Entry(lastUpdate, timeZone.getID(), start, end, occurrences);
+    } else if (start < entry.coveredStart || end > entry.coveredEnd) {
+      // Expand only the missing time periods (including any gap between the covered and the requested time period):
+      final NavigableMap<Long, Boolean> occurrences = new TreeMap<Long, Boolean>(entry.occurrences);
+      if (start < entry.coveredStart) {
+        add(occurrences, expand(startDate, new Date(entry.coveredStart), event, timeZone), event);
+      }
+      if (end > entry.coveredEnd) {
+        add(occurrences, expand(new Date(entry.coveredEnd), endDate, event, timeZone), event);
+      }
+      newEntry = new Entry(lastUpdate, timeZone.getID(), Math.min(start, entry.coveredStart), Math.max(end, entry.coveredEnd), occurrences);
+    }
+    if (newEntry != null) {
+      entry = newEntry;
+      synchronized (entries) {
+        entries.put(event.getId(), newEntry);
+      }
+    }
+    final List<TeamEvent> result = new ArrayList<TeamEvent>();
+    for (final Map.Entry<Long, Boolean> occurrence : entry.occurrences.subMap(start, true, end, true).entrySet()) {
+      if (occurrence.getValue() == true) {
+        result.add(event);
+      } else {
+        final Calendar cal = Calendar.getInstance(timeZone);
+        cal.setTimeInMillis(occurrence.getKey());
+        result.add(new TeamRecurrenceEvent(event, cal));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Should be called after any modification of the given event.
+   * @param eventId
+   */
+  void remove(final Integer eventId)
+  {
+    synchronized (entries) {
+      entries.remove(eventId);
+    }
+  }
+
+  int size()
+  {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  protected Collection<TeamEvent> expand(final Date startDate, final Date endDate, final TeamEventDO event, final TimeZone timeZone)
+  {
+    return TeamEventUtils.getRecurrenceEvents(startDate, endDate, event, timeZone);
+  }
+
+  private void add(final NavigableMap<Long, Boolean> occurrences, final Collection<TeamEvent> events, final TeamEventDO event)
+  {
+    if (events == null) {
+      return;
+    }
+    for (final TeamEvent ev : events) {
+      occurrences.put(ev.getStartDate().getTime(), ev == event);
+    }
+  }
+}
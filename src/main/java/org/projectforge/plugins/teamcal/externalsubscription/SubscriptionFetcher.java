@@ -0,0 +1,200 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.teamcal.externalsubscription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.model.Calendar;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+/**
+ * Downloads a subscribed calendar. The download is done conditional (If-None-Match, If-Modified-Since) if the ETag or Last-Modified header
+ * of the previous download is given. The calendar is parsed directly from the response stream, the MD5 hash is calculated on the fly. The
+ * raw content is copied into a buffer spilling to a temporary file for large calendars ({@link #CONTENT_BUFFER_THRESHOLD}), so the
+ * response is never held twice in memory.<br/>
+ * Instances aren't thread safe, every subscription should use its own instance.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class SubscriptionFetcher
+{
+  static final int DEFAULT_CONNECTION_TIMEOUT = 10000;
+
+  static final int DEFAULT_READ_TIMEOUT = 60000;
+
+  /**
+   * Contents larger than this size (in bytes) are buffered in a temporary file instead of memory.
+   */
+  static final int CONTENT_BUFFER_THRESHOLD = 1024 * 1024;
+
+  enum Status
+  {
+    /** The calendar was downloaded and parsed. */
+    OK,
+    /** The calendar wasn't modified since the last download (response code 304). */
+    NOT_MODIFIED,
+    /** The server responded with an unexpected status code. */
+    ERROR;
+  }
+
+  /**
+   * Result of a download.
+   */
+  static class Result
+  {
+    Status status;
+
+    int statusCode;
+
+    Calendar calendar;
+
+    /** The buffered raw content (for storing in the data base as fall back), see {@link #getContent()}. */
+    DeferredFileOutputStream content;
+
+    String md5;
+
+    String eTag;
+
+    String lastModified;
+
+    /**
+     * Large contents are read from the temporary file, so call this method only if the content is really needed (e. g. if the hash was
+     * modified).
+     * @return The raw content or null if not downloaded.
+     */
+    byte[] getContent() throws IOException
+    {
+      if (content == null) {
+        return null;
+      }
+      return content.isInMemory() == true ? content.getData() : FileUtils.readFileToByteArray(content.getFile());
+    }
+
+    /**
+     * Deletes the temporary file of the content (if any). Should be called after usage of this result.
+     */
+    void release()
+    {
+      if (content != null && content.isInMemory() == false) {
+        content.getFile().delete();
+      }
+    }
+  }
+
+  private final HttpClient client;
+
+  int contentBufferThreshold = CONTENT_BUFFER_THRESHOLD;
+
+  SubscriptionFetcher()
+  {
+    this(DEFAULT_CONNECTION_TIMEOUT, DEFAULT_READ_TIMEOUT);
+  }
+
+  /**
+   * @param connectionTimeout in millis.
+   * @param readTimeout in millis.
+   */
+  SubscriptionFetcher(final int connectionTimeout, final int readTimeout)
+  {
+    client = new HttpClient();
+    final HttpConnectionManagerParams params = client.getHttpConnectionManager().getParams();
+    params.setConnectionTimeout(connectionTimeout);
+    params.setSoTimeout(readTimeout);
+  }
+
+  /**
+   * @param url
+   * @param eTag The ETag of the previous download or null.
+   * @param lastModified The Last-Modified header of the previous download or null.
+   * @return The result, never null.
+   * @throws Exception on any network or parse error.
+   */
+  Result fetch(final String url, final String eTag, final String lastModified) throws Exception
+  {
+    final Result result = new Result();
+    final GetMethod method = new GetMethod(url);
+    try {
+      if (eTag != null) {
+        method.setRequestHeader("If-None-Match", eTag);
+      }
+      if (lastModified != null) {
+        method.setRequestHeader("If-Modified-Since", lastModified);
+      }
+      result.statusCode = client.executeMethod(method);
+      if (result.statusCode == HttpStatus.SC_NOT_MODIFIED) {
+        result.status = Status.NOT_MODIFIED;
+        result.eTag = eTag;
+        result.lastModified = lastModified;
+        return result;
+      }
+      if (result.statusCode != HttpStatus.SC_OK) {
+        result.status = Status.ERROR;
+        return result;
+      }
+      result.eTag = getHeaderValue(method, "ETag");
+      result.lastModified = getHeaderValue(method, "Last-Modified");
+      final MessageDigest md = MessageDigest.getInstance("MD5");
+      result.content = new DeferredFileOutputStream(contentBufferThreshold, "projectforge-subscription-", ".ics", null);
+      final InputStream stream = method.getResponseBodyAsStream();
+      boolean success = false;
+      try {
+        final InputStream in = new DigestInputStream(new TeeInputStream(stream, result.content), md);
+        result.calendar = new CalendarBuilder().build(in);
+        // Consume any trailing bytes for the hash:
+        IOUtils.copy(in, new NullOutputStream());
+        success = true;
+      } finally {
+        IOUtils.closeQuietly(stream);
+        IOUtils.closeQuietly(result.content);
+        if (success == false) {
+          result.release();
+        }
+      }
+      result.md5 = new String(md.digest());
+      result.status = Status.OK;
+      return result;
+    } finally {
+      method.releaseConnection();
+    }
+  }
+
+  private String getHeaderValue(final GetMethod method, final String name)
+  {
+    final Header header = method.getResponseHeader(name);
+    return header != null ? header.getValue() : null;
+  }
+}
@@ -23,15 +23,28 @@
 
 package org.projectforge.plugins.teamcal.externalsubscription;
 
+import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.apache.commons.lang.StringUtils;
 import org.hibernate.criterion.Restrictions;
+import org.projectforge.common.BackgroundExecutors;
 import org.projectforge.core.QueryFilter;
 import org.projectforge.plugins.teamcal.admin.TeamCalDO;
 import org.projectforge.plugins.teamcal.admin.TeamCalDao;
+import org.projectforge.plugins.teamcal.event.TeamEvent;
 import org.projectforge.plugins.teamcal.event.TeamEventDO;
 import org.projectforge.plugins.teamcal.event.TeamEventFilter;
 
@@ -40,15 +53,35 @@ import org.projectforge.plugins.teamcal.event.TeamEventFilter;
  */
 public class TeamEventExternalSubscriptionCache
 {
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(TeamEventExternalSubscriptionCache.class);
+
   private static final TeamEventExternalSubscriptionCache instance = new TeamEventExternalSubscriptionCache();
 
-  private final Map<Integer, TeamEventSubscription> subscriptions;
+  private final ConcurrentHashMap<Integer, TeamEventSubscription> subscriptions;
 
   private static final Long SUBSCRIPTION_UPDATE_TIME = 5L * 60 * 1000; // 5 min
 
+  /**
+   * Maximum number of parallel downloads of all subscriptions.
+   */
+  private static final int MAX_PARALLEL_DOWNLOADS = 8;
+
+  private static final String DOWNLOAD_EXECUTOR_NAME = "CalendarSubscription";
+
+  /**
+   * Maximum number of parallel downloads from one host.
+   */
+  private static final int MAX_PARALLEL_DOWNLOADS_PER_HOST = 2;
+
+  /**
+   * Maximum time for waiting for the update of all subscriptions. Single downloads are limited by the time outs of the
+   * {@link SubscriptionFetcher}.
+   */
+  private static final long UPDATE_TIMEOUT = 10L * 60 * 1000; // 10 min
+
   private TeamEventExternalSubscriptionCache()
   {
-    subscriptions = new HashMap<Integer, TeamEventSubscription>();
+    subscriptions = new ConcurrentHashMap<Integer, TeamEventSubscription>();
   }
 
   public static TeamEventExternalSubscriptionCache instance()
@@ -56,6 +89,11 @@ public class TeamEventExternalSubscriptionCache
     return instance;
   }
 
+  /**
+   * Updates all subscribed calendars in parallel. One slow server delays only the calendars of its own host: the calendars are grouped by
+   * their host and every host is processed by at most {@link #MAX_PARALLEL_DOWNLOADS_PER_HOST} threads.
+   * @param dao
+   */
   public void updateCache(final TeamCalDao dao)
   {
     final QueryFilter filter = new QueryFilter();
@@ -63,8 +101,50 @@ public class TeamEventExternalSubscriptionCache
     // internalGetList is valid at this point, because we are calling this method in an asyn thread
     final List<TeamCalDO> subscribedCalendars = dao.internalGetList(filter);
 
+    final Map<String, Queue<TeamCalDO>> calendarsByHost = new LinkedHashMap<String, Queue<TeamCalDO>>();
     for (final TeamCalDO calendar : subscribedCalendars) {
-      updateCache(dao, calendar);
+      final String host = getHost(calendar.getExternalSubscriptionUrl());
+      Queue<TeamCalDO> queue = calendarsByHost.get(host);
+      if (queue == null) {
+        queue = new ConcurrentLinkedQueue<TeamCalDO>();
+        calendarsByHost.put(host, queue);
+      }
+      queue.add(calendar);
+    }
+    final ExecutorService executor = BackgroundExecutors.getInstance().getExecutor(DOWNLOAD_EXECUTOR_NAME, MAX_PARALLEL_DOWNLOADS);
+    final List<Future< ? >> futures = new ArrayList<Future< ? >>();
+    for (final Queue<TeamCalDO> queue : calendarsByHost.values()) {
+      final int workers = Math.min(MAX_PARALLEL_DOWNLOADS_PER_HOST, queue.size());
+      for (int i = 0; i < workers; i++) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run()
+          {
+            TeamCalDO calendar;
+            while ((calendar = queue.poll()) != null) {
+              try {
+                updateCache(dao, calendar);
+              } catch (final Exception ex) {
+                log.error("Error while updating subscribed calendar #" + calendar.getId() + ": " + ex.getMessage(), ex);
+              }
+            }
+          }
+        }));
+      }
+    }
+    final long timeout = System.currentTimeMillis() + UPDATE_TIMEOUT;
+    for (final Future< ? > future : futures) {
+      try {
+        future.get(Math.max(0, timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch (final TimeoutException ex) {
+        log.warn("Update of subscribed calendars not finished after " + (UPDATE_TIMEOUT / 60000) + " minutes, continuing in background.");
+        break;
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (final Exception ex) {
+        log.error("Error while updating subscribed calendars: " + ex.getMessage(), ex);
+      }
     }
 
     List<Integer> idsToRemove = new ArrayList<Integer>();
@@ -77,6 +157,21 @@ public class TeamEventExternalSubscriptionCache
     removeCalendarsFromCache(idsToRemove);
   }
 
+  /**
+   * @return The host of the given url or the url itself, if it can't be parsed.
+   */
+  static String getHost(final String url)
+  {
+    if (StringUtils.isBlank(url) == true) {
+      return "";
+    }
+    try {
+      return new URL(StringUtils.replace(url, "webcal", "http")).getHost().toLowerCase();
+    } catch (final Exception ex) {
+      return url;
+    }
+  }
+
   private void removeCalendarsFromCache(List<Integer> idsToRemove)
   {
     for (Integer calendarId : idsToRemove) {
@@ -102,7 +197,7 @@ public class TeamEventExternalSubscriptionCache
     if (compareSubscription == null) {
       // create the calendar
       final TeamEventSubscription teamEventSubscription = new TeamEventSubscription(dao, calendar);
-      subscriptions.put(calendar.getId(), teamEventSubscription);
+      subscriptions.putIfAbsent(calendar.getId(), teamEventSubscription);
 
     } else if (compareSubscription.getLastUpdated() == null || compareSubscription.getLastUpdated() + addedTime <= now) {
       // update the calendar
@@ -142,4 +237,24 @@ public class TeamEventExternalSubscriptionCache
     return result;
   }
 
+  /**
+   * @param filter The time period of the filter must be given.
+   * @param timeZone
+   * @return All occurrences of the recurrence events of all subscribed calendars of the filter inside the filter's time period.
+   * @see TeamEventSubscription#getRecurrenceEvents(Date, Date, TimeZone)
+   */
+  public List<TeamEvent> getRecurrenceEvents(final TeamEventFilter filter, final TimeZone timeZone)
+  {
+    final List<TeamEvent> result = new ArrayList<TeamEvent>();
+    if (filter.getTeamCals() == null || filter.getStartDate() == null || filter.getEndDate() == null) {
+      return result;
+    }
+    for (final Integer calendarId : filter.getTeamCals()) {
+      final TeamEventSubscription eventSubscription = subscriptions.get(calendarId);
+      if (eventSubscription != null) {
+        result.addAll(eventSubscription.getRecurrenceEvents(filter.getStartDate(), filter.getEndDate(), timeZone));
+      }
+    }
+    return result;
+  }
 }
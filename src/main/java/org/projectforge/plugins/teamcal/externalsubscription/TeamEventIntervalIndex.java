@@ -0,0 +1,137 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.teamcal.externalsubscription;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.projectforge.plugins.teamcal.event.TeamEventDO;
+
+/**
+ * Immutable interval index of (non recurring) events. In contrast to a RangeMap overlapping events are supported. The events are sorted by
+ * their start dates and the maximum end date of all preceding events is stored for every position (augmented sorted array). Therefore a
+ * query for a time period needs a binary search and visits (except of very long lasting events) only the matching events.<br/>
+ * The index is never modified after construction, so it may be replaced by a new one without any synchronization of readers.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class TeamEventIntervalIndex implements Serializable
+{
+  private static final long serialVersionUID = -2871946284529126402L;
+
+  private final long[] startTimes;
+
+  private final long[] endTimes;
+
+  /**
+   * maxEndTimes[i] is the maximum of endTimes[0..i].
+   */
+  private final long[] maxEndTimes;
+
+  private final TeamEventDO[] events;
+
+  /**
+   * @param col Events without start or end date are ignored.
+   */
+  TeamEventIntervalIndex(final Collection<TeamEventDO> col)
+  {
+    final List<TeamEventDO> list = new ArrayList<TeamEventDO>(col != null ? col.size() : 0);
+    if (col != null) {
+      for (final TeamEventDO event : col) {
+        if (event.getStartDate() != null && event.getEndDate() != null) {
+          list.add(event);
+        }
+      }
+    }
+    Collections.sort(list, new Comparator<TeamEventDO>() {
+      @Override
+      public int compare(final TeamEventDO o1, final TeamEventDO o2)
+      {
+        return o1.getStartDate().compareTo(o2.getStartDate());
+      }
+    });
+    final int size = list.size();
+    startTimes = new long[size];
+    endTimes = new long[size];
+    maxEndTimes = new long[size];
+    events = new TeamEventDO[size];
+    long maxEndTime = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      final TeamEventDO event = list.get(i);
+      events[i] = event;
+      startTimes[i] = event.getStartDate().getTime();
+      endTimes[i] = event.getEndDate().getTime();
+      maxEndTime = Math.max(maxEndTime, endTimes[i]);
+      maxEndTimes[i] = maxEndTime;
+    }
+  }
+
+  /**
+   * @param startTime
+   * @param endTime
+   * @return All events intersecting the given time period (including the bounds) ordered by their start dates. The returned list may be
+   *         modified by the caller.
+   */
+  List<TeamEventDO> getEvents(final long startTime, final long endTime)
+  {
+    final List<TeamEventDO> result = new ArrayList<TeamEventDO>();
+    // All events starting after endTime don't match:
+    int pos = upperBound(endTime) - 1;
+    // No event before pos ends at or after startTime if the maximum end time is before startTime:
+    while (pos >= 0 && maxEndTimes[pos] >= startTime) {
+      if (endTimes[pos] >= startTime) {
+        result.add(events[pos]);
+      }
+      --pos;
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  int size()
+  {
+    return events.length;
+  }
+
+  /**
+   * @return The index of the first event starting after the given time or size() if no such event exists.
+   */
+  private int upperBound(final long time)
+  {
+    int low = 0;
+    int high = startTimes.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (startTimes[mid] <= time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
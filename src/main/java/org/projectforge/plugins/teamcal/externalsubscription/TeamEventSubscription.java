@@ -24,12 +24,15 @@
 package org.projectforge.plugins.teamcal.externalsubscription;
 
 import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.io.Serializable;
-import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
 
 import net.fortuna.ical4j.data.CalendarBuilder;
 import net.fortuna.ical4j.model.Calendar;
@@ -37,21 +40,14 @@ import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.component.VEvent;
 
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpStatus;
-import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.projectforge.plugins.teamcal.admin.TeamCalDO;
 import org.projectforge.plugins.teamcal.admin.TeamCalDao;
+import org.projectforge.plugins.teamcal.event.TeamEvent;
 import org.projectforge.plugins.teamcal.event.TeamEventDO;
 import org.projectforge.plugins.teamcal.event.TeamEventUtils;
 import org.projectforge.web.calendar.CalendarFeed;
 
-import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
-
 /**
  * @author Johannes Unterstein (j.unterstein@micromata.de)
  */
@@ -61,19 +57,46 @@ public class TeamEventSubscription implements Serializable
 
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(TeamEventSubscription.class);
 
+  private static final int MAX_RECURRENCE_CACHE_SIZE = 50;
+
   private final Integer teamCalId;
 
-  private final RangeMap<Long, TeamEventDO> eventDurationAccess;
+  /**
+   * Index of all non recurring events. Replaced (not modified) on every update.
+   */
+  private volatile TeamEventIntervalIndex eventIndex;
+
+  /**
+   * List of all recurring events. Replaced (not modified) on every update.
+   */
+  private volatile List<TeamEventDO> recurrenceEvents;
 
-  private final List<TeamEventDO> recurrenceEvents;
+  /**
+   * Already expanded recurrence events per time period (and time zone). Key is built by {@link #getRecurrenceCacheKey(Date, Date, TimeZone)}.
+   * The least recently used entries are removed if the maximum size is exceeded. Cleared on every update.
+   */
+  private final Map<String, List<TeamEvent>> recurrenceCache = new LinkedHashMap<String, List<TeamEvent>>(16, 0.75f, true) {
+    private static final long serialVersionUID = 2946578306219384623L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, List<TeamEvent>> eldest)
+    {
+      return size() > MAX_RECURRENCE_CACHE_SIZE;
+    }
+  };
 
   private final TeamCalDao teamCalDao;
 
   private String currentInitializedHash;
 
-  private Long lastUpdated;
+  /**
+   * ETag and Last-Modified header of the last download used for conditional requests.
+   */
+  private String eTag, lastModified;
 
-  private final HttpClient client;
+  private volatile Long lastUpdated;
+
+  private final transient SubscriptionFetcher fetcher;
 
   private static final Long TIME_IN_THE_PAST = 60L * 24 * 60 * 60 * 1000; // 60 days in millis in the past to subscribe
 
@@ -81,15 +104,20 @@ public class TeamEventSubscription implements Serializable
   {
     this.teamCalDao = teamCalDao;
     this.teamCalId = teamCalDo.getId();
-    eventDurationAccess = TreeRangeMap.create();
-    recurrenceEvents = new ArrayList<TeamEventDO>();
+    eventIndex = new TeamEventIntervalIndex(null);
+    recurrenceEvents = Collections.emptyList();
     currentInitializedHash = null;
     lastUpdated = null;
-    client = new HttpClient();
+    fetcher = new SubscriptionFetcher();
     initOrUpdate(teamCalDo);
   }
 
-  public void initOrUpdate(final TeamCalDO teamCalDo)
+  /**
+   * Downloads the subscribed calendar (conditional if already initialized) and updates the events if the calendar was modified. If the
+   * download fails, the calendar stored in the data base will be used.
+   * @param teamCalDo
+   */
+  public synchronized void initOrUpdate(final TeamCalDO teamCalDo)
   {
     String url = teamCalDo.getExternalSubscriptionUrl();
     if (teamCalDo.isExternalSubscription() == false || StringUtils.isEmpty(url) == true) {
@@ -116,59 +144,69 @@ public class TeamEventSubscription implements Serializable
     }
     final String displayUrl = buf.toString();
     log.info("Getting subscribed calendar #" + teamCalDo.getId() + " from: " + displayUrl);
-    final CalendarBuilder builder = new CalendarBuilder();
-    byte[] bytes = null;
+    Calendar calendar = null;
+    String hash = null;
     try {
-
-      // Create a method instance.
-      final GetMethod method = new GetMethod(url);
-
-      final int statusCode = client.executeMethod(method);
-
-      if (statusCode != HttpStatus.SC_OK) {
+      final boolean initialized = currentInitializedHash != null;
+      final SubscriptionFetcher.Result result = fetcher.fetch(url, initialized == true ? eTag : null, initialized == true ? lastModified
+          : null);
+      if (result.status == SubscriptionFetcher.Status.NOT_MODIFIED) {
+        lastUpdated = System.currentTimeMillis();
+        log.info("No modification of subscribed calendar #" + teamCalDo.getId() + " found from: " + displayUrl + " (not modified).");
+        return;
+      }
+      if (result.status != SubscriptionFetcher.Status.OK) {
         log.error("Unable to gather subscription calendar #"
             + teamCalDo.getId()
             + " information, using database from url '"
             + displayUrl
             + "'. Received statusCode: "
-            + statusCode);
+            + result.statusCode);
         return;
       }
-
-      final MessageDigest md = MessageDigest.getInstance("MD5");
-
-      // Read the response body.
-      final InputStream stream = method.getResponseBodyAsStream();
-      bytes = IOUtils.toByteArray(stream);
-
-      final String md5 = new String(md.digest(bytes));
-      if (StringUtils.equals(md5, teamCalDo.getExternalSubscriptionHash()) == false) {
-        teamCalDo.setExternalSubscriptionHash(md5);
-        teamCalDo.setExternalSubscriptionCalendarBinary(bytes);
-        // internalUpdate is valid at this point, because we are calling this method in an async thread
-        teamCalDao.internalUpdate(teamCalDo);
+      try {
+        eTag = result.eTag;
+        lastModified = result.lastModified;
+        hash = result.md5;
+        if (StringUtils.equals(hash, teamCalDo.getExternalSubscriptionHash()) == false) {
+          teamCalDo.setExternalSubscriptionHash(hash);
+          teamCalDo.setExternalSubscriptionCalendarBinary(result.getContent());
+          // internalUpdate is valid at this point, because we are calling this method in an async thread
+          teamCalDao.internalUpdate(teamCalDo);
+        }
+        calendar = result.calendar;
+      } finally {
+        result.release();
       }
     } catch (final Exception e) {
-      bytes = teamCalDo.getExternalSubscriptionCalendarBinary();
       log.error("Unable to gather subscription calendar #"
           + teamCalDo.getId()
           + " information, using database from url '"
           + displayUrl
           + "': "
           + e.getMessage(), e);
+      hash = teamCalDo.getExternalSubscriptionHash();
     }
-    if (bytes == null) {
-      log.error("Unable to use database subscription calendar #" + teamCalDo.getId() + " information, quit from url '" + displayUrl + "'.");
-      return;
-    }
-    if (currentInitializedHash != null && StringUtils.equals(currentInitializedHash, teamCalDo.getExternalSubscriptionHash()) == true) {
+    if (currentInitializedHash != null && StringUtils.equals(currentInitializedHash, hash) == true) {
       // nothing to do here if the hashes are equal
+      lastUpdated = System.currentTimeMillis();
       log.info("No modification of subscribed calendar #" + teamCalDo.getId() + " found from: " + displayUrl + " (OK, nothing to be done).");
       return;
     }
     try {
+      if (calendar == null) {
+        final byte[] bytes = teamCalDo.getExternalSubscriptionCalendarBinary();
+        if (bytes == null) {
+          log.error("Unable to use database subscription calendar #"
+              + teamCalDo.getId()
+              + " information, quit from url '"
+              + displayUrl
+              + "'.");
+          return;
+        }
+        calendar = new CalendarBuilder().build(new ByteArrayInputStream(bytes));
+      }
       final Date timeInPast = new Date(System.currentTimeMillis() - TIME_IN_THE_PAST);
-      final Calendar calendar = builder.build(new ByteArrayInputStream(bytes));
       @SuppressWarnings("unchecked")
       final List<Component> list = calendar.getComponents(Component.VEVENT);
       final List<VEvent> vEvents = new ArrayList<VEvent>();
@@ -184,9 +222,8 @@ public class TeamEventSubscription implements Serializable
         }
         vEvents.add(event);
       }
-      // clear
-      eventDurationAccess.clear();
-
+      final List<TeamEventDO> events = new ArrayList<TeamEventDO>();
+      final List<TeamEventDO> newRecurrenceEvents = new ArrayList<TeamEventDO>();
       // the event id must (!) be negative and decrementing (different on each event)
       Integer startId = -1;
       for (final VEvent event : vEvents) {
@@ -196,15 +233,21 @@ public class TeamEventSubscription implements Serializable
 
         if (teamEvent.hasRecurrence() == true) {
           // special treatment for recurrence events ..
-          recurrenceEvents.add(teamEvent);
+          newRecurrenceEvents.add(teamEvent);
         } else {
-          eventDurationAccess.put(Range.closed(teamEvent.getStartDate().getTime(), teamEvent.getEndDate().getTime()), teamEvent);
+          events.add(teamEvent);
         }
 
         startId--;
       }
+      // Replace the old data (readers may use the old data until now):
+      eventIndex = new TeamEventIntervalIndex(events);
+      recurrenceEvents = Collections.unmodifiableList(newRecurrenceEvents);
+      synchronized (recurrenceCache) {
+        recurrenceCache.clear();
+      }
       lastUpdated = System.currentTimeMillis();
-      currentInitializedHash = teamCalDo.getExternalSubscriptionHash();
+      currentInitializedHash = hash;
       log.info("Subscribed calendar #" + teamCalDo.getId() + " successfully received from: " + displayUrl);
     } catch (final Exception e) {
       log.error("Unable to instantiate team event list for calendar #"
@@ -216,12 +259,14 @@ public class TeamEventSubscription implements Serializable
     }
   }
 
+  /**
+   * @param startTime
+   * @param endTime
+   * @return All non recurring events intersecting the given time period (overlapping events are supported).
+   */
   public List<TeamEventDO> getEvents(final Long startTime, final Long endTime)
   {
-    // first: gather all "normal" events
-    final RangeMap<Long, TeamEventDO> rangeMap = eventDurationAccess.subRangeMap(Range.closed(startTime, endTime));
-    // then gather
-    return new ArrayList<TeamEventDO>(rangeMap.asMapOfRanges().values());
+    return eventIndex.getEvents(startTime, endTime);
   }
 
   public Integer getTeamCalId()
@@ -234,8 +279,55 @@ public class TeamEventSubscription implements Serializable
     return lastUpdated;
   }
 
+  /**
+   * @return The origin recurrence events (unmodifiable).
+   */
   public List<TeamEventDO> getRecurrenceEvents()
   {
     return recurrenceEvents;
   }
+
+  /**
+   * The recurrence events are expanded only once per time period and time zone, the results are cached until the next update of this
+   * subscription.
+   * @param startDate
+   * @param endDate
+   * @param timeZone
+   * @return All occurrences of all recurrence events inside the given time period (unmodifiable).
+   * @see TeamEventUtils#getRecurrenceEvents(Date, Date, TeamEventDO, TimeZone)
+   */
+  public List<TeamEvent> getRecurrenceEvents(final Date startDate, final Date endDate, final TimeZone timeZone)
+  {
+    final List<TeamEventDO> origins = this.recurrenceEvents;
+    if (origins.isEmpty() == true) {
+      return Collections.emptyList();
+    }
+    final String key = getRecurrenceCacheKey(startDate, endDate, timeZone);
+    synchronized (recurrenceCache) {
+      final List<TeamEvent> cached = recurrenceCache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final List<TeamEvent> result = new ArrayList<TeamEvent>();
+    for (final TeamEventDO eventDO : origins) {
+      final Collection<TeamEvent> events = TeamEventUtils.getRecurrenceEvents(startDate, endDate, eventDO, timeZone);
+      if (events != null) {
+        result.addAll(events);
+      }
+    }
+    final List<TeamEvent> unmodifiableResult = Collections.unmodifiableList(result);
+    synchronized (recurrenceCache) {
+      if (origins == this.recurrenceEvents) {
+        // Don't cache if the subscription was updated in the meantime.
+        recurrenceCache.put(key, unmodifiableResult);
+      }
+    }
+    return unmodifiableResult;
+  }
+
+  private String getRecurrenceCacheKey(final Date startDate, final Date endDate, final TimeZone timeZone)
+  {
+    return startDate.getTime() + "-" + endDate.getTime() + "-" + timeZone.getID();
+  }
 }
@@ -47,7 +47,10 @@ import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
 import org.projectforge.calendar.CalendarUtils;
 import org.projectforge.calendar.ICal4JUtils;
+import org.projectforge.core.ModificationStamp;
 import org.projectforge.plugins.teamcal.TeamCalConfig;
+import org.projectforge.plugins.teamcal.admin.TeamCalCache;
+import org.projectforge.plugins.teamcal.admin.TeamCalDO;
 import org.projectforge.plugins.teamcal.event.ReminderDurationUnit;
 import org.projectforge.plugins.teamcal.event.TeamEvent;
 import org.projectforge.plugins.teamcal.event.TeamEventDO;
@@ -85,6 +88,38 @@ public class TeamCalCalendarFeedHook implements CalendarFeedHook
     return getUrl(teamCalId != null ? teamCalId.toString() : "", additionalParameterString);
   }
 
+  /**
+   * The stamp is built of the events of all requested calendars and of the calendars themselves (the title of the calendars is exported).
+   * @see org.projectforge.web.calendar.CalendarFeedHook#getModificationStamp(java.util.Map)
+   */
+  @Override
+  public ModificationStamp getModificationStamp(final Map<String, String> params)
+  {
+    ModificationStamp stamp = new ModificationStamp(0, 0);
+    final String teamCals = params.get("teamCals");
+    if (teamCals == null) {
+      return stamp;
+    }
+    final String[] teamCalIds = StringUtils.split(teamCals, ";");
+    if (teamCalIds == null) {
+      return stamp;
+    }
+    final TeamEventDao teamEventDao = Registry.instance().getDao(TeamEventDao.class);
+    for (int i = 0; i < teamCalIds.length; i++) {
+      final Integer id = Integer.valueOf(teamCalIds[i]);
+      final TeamCalDO teamCal = TeamCalCache.getInstance().getCalendar(id);
+      if (teamCal == null) {
+        // Unknown calendar, let getEvents handle it.
+        return null;
+      }
+      if (teamCal.getLastUpdate() != null) {
+        stamp = stamp.merge(new ModificationStamp(teamCal.getLastUpdate().getTime(), 0));
+      }
+      stamp = stamp.merge(teamEventDao.getModificationStamp(id));
+    }
+    return stamp;
+  }
+
   /**
    * @see org.projectforge.web.calendar.CalendarFeedHook#getEvents(net.fortuna.ical4j.model.TimeZone, java.util.Calendar)
    */
@@ -28,14 +28,18 @@ import java.util.List;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.projectforge.plugins.teamcal.admin.TeamCalDO;
 import org.projectforge.plugins.teamcal.admin.TeamCalDao;
 import org.projectforge.plugins.teamcal.admin.TeamCalFilter;
 import org.projectforge.registry.Registry;
-import org.projectforge.rest.JsonUtils;
+import org.projectforge.rest.JsonStreamingOutput;
+import org.projectforge.rest.RestHelper;
 
 /**
  * REST-Schnittstelle für {@link TeamCalDao}
@@ -61,11 +65,15 @@ public class TeamCalDaoRest
   @GET
   @Path("callist")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getList()
+  public Response getList(@Context final Request request)
   {
+    final EntityTag eTag = RestHelper.getETag(teamCalDao.getModificationStamp(), "callist");
+    final Response notModified = RestHelper.getNotModifiedResponse(request, eTag);
+    if (notModified != null) {
+      return notModified;
+    }
     final TeamCalFilter filter = new TeamCalFilter();
     final List<TeamCalDO> list = teamCalDao.getList(filter);
-    final String json = JsonUtils.toJson(list);
-    return Response.ok(json).build();
+    return Response.ok(new JsonStreamingOutput(list)).tag(eTag).build();
   }
 }
@@ -0,0 +1,154 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.renderer;
+
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.projectforge.core.ResultHandler;
+import org.projectforge.user.PFUserContext;
+import org.projectforge.user.PFUserDO;
+
+/**
+ * Renders many pdfs concurrently (e. g. the reports of many users). The data maps are added one by one and are rendered by the background
+ * thread pool of the {@link PdfRenderer}. The rendered pdfs are given to the handler in the calling thread and in the order of the added
+ * data maps. At most {@link #getMaxPending()} pdfs are rendered ahead of the handler, so the memory is bounded and the first pdfs may be
+ * written (e. g. to the servlet response) while the following ones are still rendered.<br/>
+ * The logged-in user of the creating thread is used for all pdfs. Instances aren't thread-safe.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ * @see PdfRenderer#createBatch(String, String, ResultHandler)
+ */
+public class PdfBatch
+{
+  private final PdfRenderer renderer;
+
+  private final String stylesheet;
+
+  private final String groovyXml;
+
+  private final ResultHandler<byte[]> handler;
+
+  private final ExecutorService executor;
+
+  private final int maxPending;
+
+  private final PFUserDO user;
+
+  private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+
+  private boolean stopped;
+
+  PdfBatch(final PdfRenderer renderer, final String stylesheet, final String groovyXml, final ResultHandler<byte[]> handler,
+      final ExecutorService executor, final int maxPending)
+  {
+    this.renderer = renderer;
+    this.stylesheet = stylesheet;
+    this.groovyXml = groovyXml;
+    this.handler = handler;
+    this.executor = executor;
+    this.maxPending = maxPending;
+    this.user = PFUserContext.getUser();
+  }
+
+  /**
+   * Schedules the rendering of the given data. If too many pdfs are pending, the calling thread waits for the next pdf and gives it to the
+   * handler.
+   * @param data
+   * @return false if the handler stopped the processing (the given data isn't rendered), otherwise true.
+   * @throws RuntimeException If the rendering of any pdf failed (all pending pdfs are cancelled).
+   */
+  public boolean add(final Map<String, Object> data)
+  {
+    if (stopped == true) {
+      return false;
+    }
+    pending.add(executor.submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception
+      {
+        PFUserContext.setUser(user);
+        try {
+          return renderer.render(stylesheet, groovyXml, data);
+        } finally {
+          PFUserContext.setUser(null);
+        }
+      }
+    }));
+    while (stopped == false && pending.size() > maxPending) {
+      handleNext();
+    }
+    return stopped == false;
+  }
+
+  /**
+   * Waits for all pending pdfs and gives them to the handler.
+   * @throws RuntimeException If the rendering of any pdf failed (all pending pdfs are cancelled).
+   */
+  public void finish()
+  {
+    while (stopped == false && pending.isEmpty() == false) {
+      handleNext();
+    }
+  }
+
+  /**
+   * Cancels the rendering of all pending pdfs. Should be called in a finally block if the batch isn't finished.
+   */
+  public void cancel()
+  {
+    stopped = true;
+    for (final Future<byte[]> future : pending) {
+      future.cancel(false);
+    }
+    pending.clear();
+  }
+
+  public int getMaxPending()
+  {
+    return maxPending;
+  }
+
+  private void handleNext()
+  {
+    final byte[] pdf;
+    try {
+      pdf = pending.removeFirst().get();
+    } catch (final InterruptedException ex) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while rendering pdfs with stylesheet '" + stylesheet + "'.", ex);
+    } catch (final ExecutionException ex) {
+      cancel();
+      throw new RuntimeException("Error while rendering pdfs with stylesheet '" + stylesheet + "': " + ex.getCause().getMessage(), ex
+          .getCause());
+    }
+    if (handler.handle(pdf) == false) {
+      cancel();
+    }
+  }
+}
@@ -23,16 +23,24 @@
 
 package org.projectforge.renderer;
 
+import groovy.text.Template;
+
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -41,6 +49,7 @@ import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamSource;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
@@ -49,11 +58,14 @@ import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.MimeConstants;
 import org.apache.log4j.Logger;
 import org.projectforge.AppVersion;
+import org.projectforge.common.BackgroundExecutors;
 import org.projectforge.core.ConfigXml;
 import org.projectforge.core.Configuration;
 import org.projectforge.core.ConfigurationParam;
 import org.projectforge.core.InternalErrorException;
+import org.projectforge.core.ResultHandler;
 import org.projectforge.scripting.GroovyEngine;
+import org.projectforge.scripting.GroovyScriptCache;
 import org.projectforge.user.PFUserContext;
 import org.projectforge.user.PFUserDO;
 
@@ -70,12 +82,29 @@ public class PdfRenderer
 
   public final static String DEFAULT_FO_STYLE = "default-style-fo.xsl";
 
+  /**
+   * Name of the background thread pool used for rendering pdfs concurrently.
+   */
+  public static final String RENDER_EXECUTOR_NAME = "PdfRenderer";
+
+  /**
+   * Pdfs rendered for an output stream are buffered in memory up to this size, larger pdfs in a temporary file.
+   */
+  private static final int STREAM_BUFFER_THRESHOLD = 1024 * 1024;
+
   private ConfigXml configXml;
 
   private String fontResourceDir;
 
   private String fontResourcePath;
 
+  private volatile FopFactory fopFactory;
+
+  private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+  // Compiled xsl stylesheets by stylesheet path.
+  private final Map<String, CachedResource<Templates>> xslTemplatesCache = new ConcurrentHashMap<String, CachedResource<Templates>>();
+
   // private FontMap fontMap;
 
   /**
@@ -109,7 +138,88 @@ public class PdfRenderer
    * loading fonts.'"); return; } fontMap.loadFonts(fontDir); return; }
    */
 
+  /**
+   * @see #render(String, String, Map, OutputStream)
+   */
   public byte[] render(final String stylesheet, final String groovyXml, final Map<String, Object> data)
+  {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    renderPdf(stylesheet, groovyXml, data, baos);
+    return baos.toByteArray();
+  }
+
+  /**
+   * Renders the given data concurrently (one pdf per data map). Useful for rendering reports of many users at once. The logged-in user of
+   * the calling thread is used for all pdfs.
+   * @param dataList
+   * @return The pdfs in the order of the given data list.
+   * @see #createBatch(String, String, ResultHandler)
+   */
+  public List<byte[]> render(final String stylesheet, final String groovyXml, final List<Map<String, Object>> dataList)
+  {
+    final List<byte[]> result = new ArrayList<byte[]>(dataList.size());
+    final PdfBatch batch = createBatch(stylesheet, groovyXml, new ResultHandler<byte[]>() {
+      @Override
+      public boolean handle(final byte[] pdf)
+      {
+        result.add(pdf);
+        return true;
+      }
+    });
+    try {
+      for (final Map<String, Object> data : dataList) {
+        batch.add(data);
+      }
+      batch.finish();
+    } finally {
+      batch.cancel();
+    }
+    return result;
+  }
+
+  /**
+   * Creates a batch for rendering many pdfs concurrently on the background thread pool {@link #RENDER_EXECUTOR_NAME}. The pdfs are given to
+   * the handler in the order of the added data as soon as they're rendered.
+   * @param stylesheet
+   * @param groovyXml
+   * @param handler Called in the thread adding the data.
+   * @see PdfBatch
+   */
+  public PdfBatch createBatch(final String stylesheet, final String groovyXml, final ResultHandler<byte[]> handler)
+  {
+    final int threads = Runtime.getRuntime().availableProcessors();
+    return new PdfBatch(this, stylesheet, groovyXml, handler, BackgroundExecutors.getInstance().getExecutor(RENDER_EXECUTOR_NAME, threads),
+        2 * threads);
+  }
+
+  /**
+   * Renders the pdf into the given output stream (e. g. the output stream of the servlet response). The pdf is written to the given stream
+   * not until the rendering is finished: If the rendering fails, nothing is written and the exception is thrown (so the servlet response
+   * isn't committed and an error may be shown instead of a truncated pdf).
+   * @param stylesheet
+   * @param groovyXml
+   * @param data
+   * @param out
+   */
+  public void render(final String stylesheet, final String groovyXml, final Map<String, Object> data, final OutputStream out)
+  {
+    final DeferredFileOutputStream buffer = new DeferredFileOutputStream(STREAM_BUFFER_THRESHOLD, "projectforge-", ".pdf", null);
+    try {
+      renderPdf(stylesheet, groovyXml, data, buffer);
+      buffer.close();
+      buffer.writeTo(out);
+    } catch (final IOException ex) {
+      log.error(ex.getMessage(), ex);
+      throw new RuntimeException(ex);
+    } finally {
+      IOUtils.closeQuietly(buffer);
+      if (buffer.isInMemory() == false) {
+        buffer.getFile().delete();
+      }
+    }
+  }
+
+  private void renderPdf(final String stylesheet, final String groovyXml, final Map<String, Object> data, final OutputStream out)
   {
     // initialize();
     final PFUserDO user = PFUserContext.getUser();
@@ -120,7 +230,6 @@ public class PdfRenderer
     data.put("appVersion", AppVersion.NUMBER);
     data.put("organization",
         StringUtils.defaultString(Configuration.getInstance().getStringValue(ConfigurationParam.ORGANIZATION), AppVersion.APP_ID));
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
     log.info("stylesheet="
         + stylesheet
         + ", jellyXml="
@@ -132,60 +241,34 @@ public class PdfRenderer
     // fopRenderer.processFo(styleSheet, xmlData, data, new PdfFopOutput(baos));
     // return baos.toByteArray();
 
-    // configure fopFactory as desired
-    final FopFactory fopFactory = FopFactory.newInstance();
-    // Configuration cfg = fopFactory.getUserConfig();
-
-    try {
-      fopFactory.getFontManager().setFontBaseURL(getFontResourcePath());
-    } catch (final MalformedURLException ex) {
-      log.error(ex.getMessage(), ex);
-    }
-    /*
-     * try { fopFactory.setUserConfig(baseDir + "/fop.config"); } catch (SAXException ex) { log.error(ex.getMessage(), ex); throw new
-     * RuntimeException(ex); } catch (IOException ex) { log.error(ex.getMessage(), ex); throw new RuntimeException(ex); }
-     */
+    final FopFactory fopFactory = getFopFactory();
     final FOUserAgent foUserAgent = fopFactory.newFOUserAgent();
-    try {
-      foUserAgent.getFactory().getFontManager().setFontBaseURL(getFontResourcePath());
-    } catch (final MalformedURLException ex) {
-      log.error(ex.getMessage(), ex);
-    }
     // configure foUserAgent as desired
 
-    InputStream xsltInputStream = null;
     try {
       // Construct fop with desired output format
-      final Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, foUserAgent, baos);
+      final Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, foUserAgent, out);
 
       // Setup XSLT
-      final TransformerFactory factory = TransformerFactory.newInstance();
-      Object[] result = configXml.getInputStream(stylesheet);
-      xsltInputStream = (InputStream) result[0];
-      final StreamSource xltStreamSource = new StreamSource(xsltInputStream);
-      final String url = (String) result[1];
-      if (url == null) {
-        log.error("Url of xsl resource is null.");
-        throw new InternalErrorException();
-      }
-      xltStreamSource.setSystemId(url);
-
-      final Transformer transformer = factory.newTransformer(xltStreamSource);
+      final Transformer transformer = getXslTemplates(stylesheet).newTransformer();
 
       // Set the value of a <param> in the stylesheet
       for (final Map.Entry<String, Object> entry : data.entrySet()) {
         transformer.setParameter(entry.getKey(), entry.getValue());
       }
 
-      // First run jelly through xmlData:
-      result = configXml.getContent(groovyXml);
+      // First run groovy through xmlData:
       final GroovyEngine groovyEngine = new GroovyEngine(data, PFUserContext.getLocale(), PFUserContext.getTimeZone());
-      final String groovyXmlInput = groovyEngine.preprocessGroovyXml((String) result[0]);
-      final String xmlData = groovyEngine.executeTemplate(groovyXmlInput);
+      final Template template = getGroovyTemplate(groovyEngine, groovyXml);
+      final StringWriter xmlData = new StringWriter();
+      try {
+        groovyEngine.executeTemplate(template, xmlData);
+      } finally {
+        groovyEngine.releaseTemplate(template);
+      }
 
       // Setup input for XSLT transformation
-      final StringReader xmlDataReader = new StringReader(xmlData);
-      final Source src = new StreamSource(xmlDataReader);
+      final Source src = new StreamSource(new StringReader(xmlData.toString()));
 
       // Resulting SAX events (the generated FO) must be piped through to FOP
       final Result res = new SAXResult(fop.getDefaultHandler());
@@ -201,15 +284,113 @@ public class PdfRenderer
     } catch (final TransformerException ex) {
       log.error(ex.getMessage(), ex);
       throw new RuntimeException(ex);
-    } finally {
-      try {
-        baos.close();
-      } catch (final IOException ex) {
-        log.error(ex.getMessage(), ex);
-        throw new RuntimeException(ex);
+    } catch (final IOException ex) {
+      log.error(ex.getMessage(), ex);
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * The FopFactory is thread-safe and expensive to create, so it's created only once.
+   */
+  private FopFactory getFopFactory()
+  {
+    if (fopFactory == null) {
+      synchronized (this) {
+        if (fopFactory == null) {
+          // configure fopFactory as desired
+          final FopFactory factory = FopFactory.newInstance();
+          // Configuration cfg = fopFactory.getUserConfig();
+          try {
+            factory.getFontManager().setFontBaseURL(getFontResourcePath());
+          } catch (final MalformedURLException ex) {
+            log.error(ex.getMessage(), ex);
+          }
+          /*
+           * try { fopFactory.setUserConfig(baseDir + "/fop.config"); } catch (SAXException ex) { log.error(ex.getMessage(), ex); throw new
+           * RuntimeException(ex); } catch (IOException ex) { log.error(ex.getMessage(), ex); throw new RuntimeException(ex); }
+           */
+          fopFactory = factory;
+        }
+      }
+    }
+    return fopFactory;
+  }
+
+  /**
+   * @return The compiled (thread-safe) xsl stylesheet. The stylesheet is compiled again if the file was modified since last compilation.
+   */
+  private Templates getXslTemplates(final String stylesheet) throws TransformerConfigurationException
+  {
+    final long lastModified = getLastModified(stylesheet);
+    final CachedResource<Templates> cached = xslTemplatesCache.get(stylesheet);
+    if (cached != null && cached.lastModified == lastModified) {
+      return cached.value;
+    }
+    final Object[] result = configXml.getInputStream(stylesheet);
+    final InputStream xsltInputStream = (InputStream) result[0];
+    try {
+      final StreamSource xltStreamSource = new StreamSource(xsltInputStream);
+      final String url = (String) result[1];
+      if (url == null) {
+        log.error("Url of xsl resource is null.");
+        throw new InternalErrorException();
       }
+      xltStreamSource.setSystemId(url);
+      final Templates templates;
+      synchronized (transformerFactory) {
+        // TransformerFactory isn't thread-safe.
+        templates = transformerFactory.newTemplates(xltStreamSource);
+      }
+      xslTemplatesCache.put(stylesheet, new CachedResource<Templates>(templates, lastModified));
+      return templates;
+    } finally {
       IOUtils.closeQuietly(xsltInputStream);
     }
-    return baos.toByteArray();
+  }
+
+  /**
+   * @return The compiled groovy template of the given file. The compiled templates are cached by their content including all included
+   *         files (#INCLUDE{...}), see {@link GroovyScriptCache}, so the template is compiled again if the file or any included file was
+   *         modified. The template must be given back via {@link GroovyEngine#releaseTemplate(Template)} after usage.
+   */
+  Template getGroovyTemplate(final GroovyEngine groovyEngine, final String groovyXml)
+  {
+    final Object[] result = configXml.getContent(groovyXml);
+    final String groovyXmlInput = groovyEngine.preprocessGroovyXml((String) result[0]);
+    final Template template = groovyEngine.compileTemplate(groovyXmlInput);
+    if (template == null) {
+      throw new RuntimeException("Can't compile groovy template '" + groovyXml + "' (see log files for details).");
+    }
+    return template;
+  }
+
+  /**
+   * @return The modification time of the given file in the resource directory (see {@link ConfigXml#getInputStream(String)}) or 0 if the
+   *         file is loaded from the class path.
+   */
+  private long getLastModified(final String filename)
+  {
+    final File base = new File(configXml.getResourcePath());
+    if (base.isDirectory() == true) {
+      final File file = new File(base, filename);
+      if (file.exists() == true) {
+        return file.lastModified();
+      }
+    }
+    return 0;
+  }
+
+  private static class CachedResource<T>
+  {
+    private final T value;
+
+    private final long lastModified;
+
+    private CachedResource(final T value, final long lastModified)
+    {
+      this.value = value;
+      this.lastModified = lastModified;
+    }
   }
 }
@@ -0,0 +1,79 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.rest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the given entities as json array directly into the response stream (UTF-8). Every entity is converted (e. g. to a rest object)
+ * not until it's written, so neither the list of converted objects nor the whole json string have to be held in memory.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ * 
+ */
+public abstract class JsonArrayStreamingOutput<T> implements StreamingOutput
+{
+  private final Iterable<T> entities;
+
+  /**
+   * @param entities If null, an empty array is written.
+   */
+  public JsonArrayStreamingOutput(final Iterable<T> entities)
+  {
+    this.entities = entities;
+  }
+
+  /**
+   * @param entity
+   * @return The object to serialize or null if the entity should be skipped.
+   */
+  protected abstract Object convert(T entity);
+
+  /**
+   * @see javax.ws.rs.core.StreamingOutput#write(java.io.OutputStream)
+   */
+  @Override
+  public void write(final OutputStream output) throws IOException, WebApplicationException
+  {
+    final JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(output, JsonStreamingOutput.ENCODING)));
+    writer.beginArray();
+    if (entities != null) {
+      for (final T entity : entities) {
+        final Object obj = convert(entity);
+        if (obj != null) {
+          JsonUtils.toJson(obj, writer);
+        }
+      }
+    }
+    writer.endArray();
+    writer.flush();
+  }
+}
@@ -0,0 +1,62 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.rest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes the json representation of the given object directly into the response stream (UTF-8) instead of building the whole json string
+ * in memory first.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ * 
+ */
+public class JsonStreamingOutput implements StreamingOutput
+{
+  static final String ENCODING = "UTF-8";
+
+  private final Object obj;
+
+  public JsonStreamingOutput(final Object obj)
+  {
+    this.obj = obj;
+  }
+
+  /**
+   * @see javax.ws.rs.core.StreamingOutput#write(java.io.OutputStream)
+   */
+  @Override
+  public void write(final OutputStream output) throws IOException, WebApplicationException
+  {
+    final Writer writer = new BufferedWriter(new OutputStreamWriter(output, ENCODING));
+    JsonUtils.toJson(obj, writer);
+    writer.flush();
+  }
+}
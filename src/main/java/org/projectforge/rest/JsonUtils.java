@@ -23,6 +23,8 @@
 
 package org.projectforge.rest;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.util.Date;
 
@@ -32,35 +34,66 @@ import org.projectforge.user.PFUserDO;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
 
 /**
- * Serialization and deserialization for rest calls.
+ * Serialization and deserialization for rest calls. The Gson instance is configured only once and shared by all calls (Gson is
+ * thread-safe).
  * @author Kai Reinhard (k.reinhard@micromata.de)
  * 
  */
 public class JsonUtils
 {
+  private static final Gson gson = new GsonBuilder().registerTypeAdapter(Date.class, new UTCDateTypeAdapter())
+      .registerTypeAdapter(PFUserDO.class, new PFUserDOTypeAdapter()).create();
+
+  /**
+   * @return The shared and pre-configured Gson instance.
+   */
+  public static Gson getGson()
+  {
+    return gson;
+  }
+
   public static String toJson(final Object obj)
   {
-    return createGson().toJson(obj);
+    return gson.toJson(obj);
   }
 
-  public static <T> T fromJson(final String json, final Class<T> classOfT) throws JsonSyntaxException
+  /**
+   * Serializes the given object directly to the given writer without building the whole json string in memory. The writer isn't flushed
+   * or closed.
+   */
+  public static void toJson(final Object obj, final Writer writer) throws JsonIOException
   {
-    return createGson().fromJson(json, classOfT);
+    gson.toJson(obj, writer);
+  }
 
+  /**
+   * Serializes the given object as next value of the given json writer (e. g. as element of an array opened by
+   * {@link JsonWriter#beginArray()}).
+   * @param obj If null, json null is written.
+   */
+  public static void toJson(final Object obj, final JsonWriter writer) throws JsonIOException, IOException
+  {
+    if (obj == null) {
+      writer.nullValue();
+      return;
+    }
+    gson.toJson(obj, obj.getClass(), writer);
   }
 
-  @SuppressWarnings("unchecked")
-  public static <T> T fromJson(final String json, final Type typeOfT) throws JsonSyntaxException
+  public static <T> T fromJson(final String json, final Class<T> classOfT) throws JsonSyntaxException
   {
-    return (T)createGson().fromJson(json, typeOfT); // Cast (T) needed for Java 1.6.
+    return gson.fromJson(json, classOfT);
+
   }
 
-  private static Gson createGson()
+  @SuppressWarnings("unchecked")
+  public static <T> T fromJson(final String json, final Type typeOfT) throws JsonSyntaxException
   {
-    return new GsonBuilder().registerTypeAdapter(Date.class, new UTCDateTypeAdapter())
-        .registerTypeAdapter(PFUserDO.class, new PFUserDOTypeAdapter()).create();
+    return (T)gson.fromJson(json, typeOfT); // Cast (T) needed for Java 1.6.
   }
 }
@@ -0,0 +1,88 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.rest;
+
+import java.util.Collection;
+import java.util.TreeSet;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.projectforge.core.ModificationStamp;
+import org.projectforge.registry.Registry;
+import org.projectforge.user.PFUserContext;
+import org.projectforge.user.PFUserDO;
+
+/**
+ * Helper for conditional rest calls (ETag / If-None-Match).
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ * 
+ */
+public class RestHelper
+{
+  /**
+   * The ETag depends on the logged-in user and its groups (the result lists depend on the access rights), on the given request params and
+   * on the modification stamp of the returned entries.
+   * @param stamp
+   * @param params The request params (null values are allowed).
+   */
+  public static EntityTag getETag(final ModificationStamp stamp, final Object... params)
+  {
+    final StringBuffer buf = new StringBuffer();
+    final PFUserDO user = PFUserContext.getUser();
+    if (user != null) {
+      buf.append(user.getId()).append('|');
+      final Collection<Integer> groupIds = Registry.instance().getUserGroupCache().getUserGroups(user);
+      if (groupIds != null) {
+        buf.append(new TreeSet<Integer>(groupIds));
+      }
+      buf.append('|');
+    }
+    if (params != null) {
+      for (final Object param : params) {
+        buf.append(param).append('&');
+      }
+    }
+    buf.append('|').append(stamp);
+    return new EntityTag(DigestUtils.md5Hex(buf.toString()));
+  }
+
+  /**
+   * Should be called before querying the result, so nothing has to be queried and serialized if the client's version is up-to-date.
+   * @param request
+   * @param eTag
+   * @return 304 (not modified) if the If-None-Match header of the request matches the given ETag, otherwise null.
+   */
+  public static Response getNotModifiedResponse(final Request request, final EntityTag eTag)
+  {
+    final ResponseBuilder notModified = request.evaluatePreconditions(eTag);
+    if (notModified == null) {
+      return null;
+    }
+    return notModified.tag(eTag).build();
+  }
+}
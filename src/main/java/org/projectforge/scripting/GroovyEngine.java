@@ -23,6 +23,10 @@
 
 package org.projectforge.scripting;
 
+import groovy.text.Template;
+
+import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Locale;
@@ -53,6 +57,8 @@ public class GroovyEngine
 {
   private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(GroovyEngine.class);
 
+  private static final Pattern INCLUDE_PATTERN = Pattern.compile("#INCLUDE\\{([0-9\\.a-zA-Z/]*)\\}", Pattern.MULTILINE);
+
   private Locale locale;
 
   private TimeZone timeZone;
@@ -130,14 +136,47 @@ public class GroovyEngine
     return groovyExecutor.executeTemplate(content, variables);
   }
 
+  /**
+   * Compiles the given template (after replacing the includes). The compiled template is independent of the variables of this engine and
+   * may be executed multiple times via {@link #executeTemplate(Template, Writer)}. It must be given back via
+   * {@link #releaseTemplate(Template)} after usage.
+   * @param template
+   * @see GroovyExecutor#acquireTemplate(String)
+   */
+  public Template compileTemplate(final String template)
+  {
+    final String content = replaceIncludes(template).replaceAll("#HURZ#", "\\$");
+    return groovyExecutor.acquireTemplate(content);
+  }
+
+  /**
+   * @param template A template got by {@link #compileTemplate(String)}, null is ignored.
+   * @see GroovyExecutor#release(Object)
+   */
+  public void releaseTemplate(final Template template)
+  {
+    groovyExecutor.release(template);
+  }
+
+  /**
+   * Executes the given compiled template with the variables of this engine.
+   * @param template
+   * @param writer The output of the template is written directly to this writer.
+   * @throws IOException
+   * @see #compileTemplate(String)
+   */
+  public void executeTemplate(final Template template, final Writer writer) throws IOException
+  {
+    groovyExecutor.executeTemplate(template, variables, writer);
+  }
+
   private String replaceIncludes(final String template)
   {
     if (template == null) {
       return null;
     }
-    final Pattern p = Pattern.compile("#INCLUDE\\{([0-9\\.a-zA-Z/]*)\\}", Pattern.MULTILINE);
     final StringBuffer buf = new StringBuffer();
-    final Matcher m = p.matcher(template);
+    final Matcher m = INCLUDE_PATTERN.matcher(template);
     while (m.find()) {
       if (m.group(1) != null) {
         final String filename = m.group(1);
@@ -24,16 +24,15 @@
 package org.projectforge.scripting;
 
 import groovy.lang.Binding;
-import groovy.lang.GroovyClassLoader;
 import groovy.lang.Script;
 import groovy.lang.Writable;
-import groovy.text.SimpleTemplateEngine;
 import groovy.text.Template;
 import groovy.text.TemplateEngine;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
@@ -54,29 +53,64 @@ public class GroovyExecutor
     if (script == null) {
       return new GroovyResult();
     }
-    final Script groovyObject = compileGroovy(script, true);
-    if (groovyObject == null) {
-      return new GroovyResult();
-    }
-    return execute(groovyObject, variables);
+    return execute(new GroovyResult(), script, variables);
   }
 
+  /**
+   * The compiled script class is cached (see {@link GroovyScriptCache}) and released after execution.
+   */
   public GroovyResult execute(final GroovyResult result, final String script, final Map<String, Object> variables)
   {
     if (script == null) {
       return result;
     }
-    final Script groovyObject = compileGroovy(result, script, true);
-    if (groovyObject == null) {
+    securityChecks(script);
+    final Class< ? > groovyClass;
+    try {
+      groovyClass = GroovyScriptCache.instance().acquireScriptClass(script);
+    } catch (final CompilationFailedException ex) {
+      log.info("Groovy-CompilationFailedException: " + ex.getMessage());
+      if (result != null) {
+        result.setException(ex);
+      }
       return result;
     }
-    return execute(result, groovyObject, variables);
+    try {
+      final Script groovyObject = newScript(result, groovyClass, true);
+      if (groovyObject == null) {
+        return result;
+      }
+      return execute(result, groovyObject, variables);
+    } finally {
+      GroovyScriptCache.instance().release(groovyClass);
+    }
   }
 
+  /**
+   * The compiled template is cached (see {@link GroovyScriptCache}).
+   * @param template
+   * @param variables
+   * @return The result or null if the template couldn't be compiled or executed (the error is logged).
+   */
   public String executeTemplate(final String template, final Map<String, Object> variables)
   {
-    securityChecks(template);
-    return executeTemplate(new SimpleTemplateEngine(), template, variables);
+    final Template templateObject = acquireTemplate(template);
+    if (templateObject == null) {
+      return null;
+    }
+    final StringWriter writer = new StringWriter();
+    try {
+      executeTemplate(templateObject, variables, writer);
+    } catch (final IOException ex) {
+      log.error(ex.getMessage() + " while executing template: " + template, ex);
+      return null;
+    } finally {
+      release(templateObject);
+    }
+    if (log.isDebugEnabled() == true) {
+      log.debug(writer.toString());
+    }
+    return writer.toString();
   }
 
   public String executeTemplate(final TemplateEngine templateEngine, final String template, final Map<String, Object> variables)
@@ -107,6 +141,73 @@ public class GroovyExecutor
     return null;
   }
 
+  /**
+   * Compiles the given template. The returned template is thread-safe and may be executed multiple times via
+   * {@link #executeTemplate(Template, Map, Writer)}. Compiled templates are cached (see {@link GroovyScriptCache}).
+   * @param template
+   * @return The compiled template or null if the template couldn't be compiled (the error is logged).
+   * @see #acquireTemplate(String)
+   */
+  public Template createTemplate(final String template)
+  {
+    return createTemplate(template, false);
+  }
+
+  /**
+   * Same as {@link #createTemplate(String)}, but the returned template must be given back via {@link #release(Object)} after execution, so
+   * its classes can be released if it's evicted from the {@link GroovyScriptCache}.
+   * @param template
+   * @return The compiled template or null if the template couldn't be compiled (the error is logged).
+   */
+  public Template acquireTemplate(final String template)
+  {
+    return createTemplate(template, true);
+  }
+
+  /**
+   * @param compiled A template got by {@link #acquireTemplate(String)}, null is ignored.
+   * @see GroovyScriptCache#release(Object)
+   */
+  public void release(final Object compiled)
+  {
+    GroovyScriptCache.instance().release(compiled);
+  }
+
+  private Template createTemplate(final String template, final boolean acquire)
+  {
+    securityChecks(template);
+    if (template == null) {
+      return null;
+    }
+    try {
+      if (acquire == true) {
+        return GroovyScriptCache.instance().acquireTemplate(template);
+      }
+      return GroovyScriptCache.instance().getTemplate(template);
+    } catch (final CompilationFailedException ex) {
+      log.error(ex.getMessage() + " while compiling template: " + template, ex);
+    } catch (final ClassNotFoundException ex) {
+      log.error(ex.getMessage() + " while compiling template: " + template, ex);
+    } catch (final IOException ex) {
+      log.error(ex.getMessage() + " while compiling template: " + template, ex);
+    }
+    return null;
+  }
+
+  /**
+   * Writes the output of the given compiled template directly to the given writer.
+   * @param template
+   * @param variables
+   * @param writer
+   * @throws IOException
+   */
+  public void executeTemplate(final Template template, final Map<String, Object> variables, final Writer writer) throws IOException
+  {
+    final Writable writable = template.make(variables);
+    writable.writeTo(writer);
+    writer.flush();
+  }
+
   /**
    * @param script
    * @param bindScriptResult If true then "scriptResult" from type GroovyResult is binded.
@@ -118,6 +219,7 @@ public class GroovyExecutor
   }
 
   /**
+   * The compiled script class is cached (see {@link GroovyScriptCache}), a new script instance is returned on every call.
    * @param script
    * @param bindScriptResult If true then "scriptResult" from type GroovyResult is binded.
    * @return
@@ -125,10 +227,9 @@ public class GroovyExecutor
   public Script compileGroovy(final GroovyResult result, final String script, final boolean bindScriptResult)
   {
     securityChecks(script);
-    final GroovyClassLoader gcl = new GroovyClassLoader();
     Class< ? > groovyClass = null;
     try {
-      groovyClass = gcl.parseClass(script);
+      groovyClass = GroovyScriptCache.instance().getScriptClass(script);
     } catch (final CompilationFailedException ex) {
       log.info("Groovy-CompilationFailedException: " + ex.getMessage());
       if (result != null) {
@@ -136,6 +237,11 @@ public class GroovyExecutor
       }
       return null;
     }
+    return newScript(result, groovyClass, bindScriptResult);
+  }
+
+  private Script newScript(final GroovyResult result, final Class< ? > groovyClass, final boolean bindScriptResult)
+  {
     Script groovyObject = null;
     try {
       groovyObject = (Script) groovyClass.newInstance();
@@ -160,6 +266,28 @@ public class GroovyExecutor
     return groovyObject;
   }
 
+  /**
+   * Compiles the given script into the script cache without executing it (e. g. on start-up).
+   * @param script
+   * @return true if the script was compiled successfully (or was already compiled), otherwise false (the error is logged).
+   */
+  public boolean precompile(final String script)
+  {
+    if (script == null) {
+      return false;
+    }
+    try {
+      securityChecks(script);
+      GroovyScriptCache.instance().release(GroovyScriptCache.instance().acquireScriptClass(script));
+      return true;
+    } catch (final AccessException ex) {
+      log.info("Script not precompiled due to security violation: " + ex.getMessage());
+    } catch (final CompilationFailedException ex) {
+      log.info("Groovy-CompilationFailedException: " + ex.getMessage());
+    }
+    return false;
+  }
+
   public GroovyResult execute(final Script groovyScript)
   {
     return execute(groovyScript, null);
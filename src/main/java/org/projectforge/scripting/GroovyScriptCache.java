@@ -0,0 +1,381 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.scripting;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyShell;
+import groovy.lang.GroovySystem;
+import groovy.lang.MetaClassRegistry;
+import groovy.text.SimpleTemplateEngine;
+import groovy.text.Template;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.codehaus.groovy.control.CompilationFailedException;
+
+/**
+ * Bounded cache of compiled groovy scripts and templates. The entries are keyed by the hash of the source code, so modified scripts are
+ * compiled again and unchanged scripts are compiled only once, independent of their origin (data base, file or source code). Every entry
+ * has its own class loader.<br/>
+ * Scripts and templates executed once should be got via {@link #acquireScriptClass(String)} or {@link #acquireTemplate(String)} and given
+ * back via {@link #release(Object)} after execution. If such an entry is evicted by the LRU strategy (or the cache is cleared), its meta
+ * classes are removed from the groovy registry and its class loader cache is cleared as soon as the last usage is released (otherwise the
+ * classes would never be garbage collected). Entries got via {@link #getScriptClass(String)} or {@link #getTemplate(String)} may be used
+ * by the caller for an unknown time, so they are only dropped on eviction.<br/>
+ * The cached script classes and templates are thread-safe: a new script instance is created for every execution.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class GroovyScriptCache
+{
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(GroovyScriptCache.class);
+
+  static final int MAX_SIZE = 200;
+
+  private static final GroovyScriptCache instance = new GroovyScriptCache(MAX_SIZE);
+
+  private final Map<String, Entry> entries;
+
+  /**
+   * Entries in use (acquired, but not yet released) by their compiled script class or template.
+   */
+  private final Map<Object, Entry> usedEntries = new IdentityHashMap<Object, Entry>();
+
+  private long hits;
+
+  private long misses;
+
+  private long evictions;
+
+  private long releasedEntries;
+
+  private long compileTimeMillis;
+
+  public static GroovyScriptCache instance()
+  {
+    return instance;
+  }
+
+  GroovyScriptCache(final int maxSize)
+  {
+    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 8470390785716362839L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest)
+      {
+        if (size() <= maxSize) {
+          return false;
+        }
+        evictions++;
+        evict(eldest.getValue());
+        return true;
+      }
+    };
+  }
+
+  /**
+   * The returned class may be used by the caller for an unknown time, so the classes of this entry aren't released on eviction. Prefer
+   * {@link #acquireScriptClass(String)} for scripts executed only once.
+   * @param script The source code.
+   * @return The compiled script class (compiled on first call).
+   * @throws CompilationFailedException Compilation failures aren't cached.
+   */
+  public Class< ? > getScriptClass(final String script) throws CompilationFailedException
+  {
+    return (Class< ? >) getScriptEntry(script, false).compiled;
+  }
+
+  /**
+   * The returned class must be given back via {@link #release(Object)} after usage.
+   * @param script The source code.
+   * @return The compiled script class (compiled on first call).
+   * @throws CompilationFailedException Compilation failures aren't cached.
+   */
+  public Class< ? > acquireScriptClass(final String script) throws CompilationFailedException
+  {
+    return (Class< ? >) getScriptEntry(script, true).compiled;
+  }
+
+  /**
+   * The returned template may be used by the caller for an unknown time, so the classes of this entry aren't released on eviction. Prefer
+   * {@link #acquireTemplate(String)} for templates executed only once.
+   * @param template The source code of the template.
+   * @return The compiled template (compiled on first call).
+   * @throws CompilationFailedException Compilation failures aren't cached.
+   * @see SimpleTemplateEngine#createTemplate(String)
+   */
+  public Template getTemplate(final String template) throws CompilationFailedException, ClassNotFoundException, IOException
+  {
+    return (Template) getTemplateEntry(template, false).compiled;
+  }
+
+  /**
+   * The returned template must be given back via {@link #release(Object)} after usage.
+   * @param template The source code of the template.
+   * @return The compiled template (compiled on first call).
+   * @throws CompilationFailedException Compilation failures aren't cached.
+   * @see SimpleTemplateEngine#createTemplate(String)
+   */
+  public Template acquireTemplate(final String template) throws CompilationFailedException, ClassNotFoundException, IOException
+  {
+    return (Template) getTemplateEntry(template, true).compiled;
+  }
+
+  /**
+   * Gives back a script class or template got by {@link #acquireScriptClass(String)} or {@link #acquireTemplate(String)}. The classes of
+   * an evicted entry are released after its last usage.
+   * @param compiled The acquired script class or template, null is ignored.
+   */
+  public synchronized void release(final Object compiled)
+  {
+    if (compiled == null) {
+      return;
+    }
+    final Entry entry = usedEntries.get(compiled);
+    if (entry == null) {
+      log.warn("Compiled script or template released, but not acquired (released twice?): " + compiled);
+      return;
+    }
+    if (--entry.usages > 0) {
+      return;
+    }
+    usedEntries.remove(compiled);
+    if (entry.evicted == true && entry.pinned == false) {
+      releaseClasses(entry);
+      ++releasedEntries;
+    }
+  }
+
+  /**
+   * Removes all entries. Scripts and templates already in use aren't affected, their classes are released after their last usage.
+   */
+  public synchronized void clear()
+  {
+    for (final Entry entry : entries.values()) {
+      evict(entry);
+    }
+    entries.clear();
+  }
+
+  public synchronized int getSize()
+  {
+    return entries.size();
+  }
+
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+
+  public synchronized long getEvictions()
+  {
+    return evictions;
+  }
+
+  /**
+   * @return The number of evicted entries whose classes were removed from the meta class registry and class loader.
+   */
+  public synchronized long getReleasedEntries()
+  {
+    return releasedEntries;
+  }
+
+  /**
+   * @return The number of evicted entries still in use, their classes will be released after their last usage.
+   */
+  public synchronized int getPendingReleases()
+  {
+    int counter = 0;
+    for (final Entry entry : usedEntries.values()) {
+      if (entry.evicted == true && entry.pinned == false) {
+        ++counter;
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * @return The total time in millis spent in compiling scripts and templates (including failed compilations).
+   */
+  public synchronized long getCompileTimeMillis()
+  {
+    return compileTimeMillis;
+  }
+
+  public synchronized String getStatistics()
+  {
+    return "size=" + entries.size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", released=" + releasedEntries
+        + ", compileTime=" + compileTimeMillis + "ms";
+  }
+
+  private Entry getScriptEntry(final String script, final boolean acquire) throws CompilationFailedException
+  {
+    final String key = "script:" + DigestUtils.md5Hex(script);
+    final Entry cached = get(key, acquire);
+    if (cached != null) {
+      return cached;
+    }
+    final long start = System.currentTimeMillis();
+    final GroovyClassLoader loader = new GroovyClassLoader();
+    final Class< ? > groovyClass;
+    try {
+      groovyClass = loader.parseClass(script);
+    } finally {
+      addCompileTime(System.currentTimeMillis() - start);
+    }
+    return put(key, new Entry(loader, groovyClass), acquire);
+  }
+
+  private Entry getTemplateEntry(final String template, final boolean acquire) throws CompilationFailedException, ClassNotFoundException,
+      IOException
+  {
+    final String key = "template:" + DigestUtils.md5Hex(template);
+    final Entry cached = get(key, acquire);
+    if (cached != null) {
+      return cached;
+    }
+    final long start = System.currentTimeMillis();
+    final GroovyShell shell = new GroovyShell();
+    final Template templateObject;
+    try {
+      templateObject = new SimpleTemplateEngine(shell).createTemplate(template);
+    } finally {
+      addCompileTime(System.currentTimeMillis() - start);
+    }
+    return put(key, new Entry(shell.getClassLoader(), templateObject), acquire);
+  }
+
+  private synchronized Entry get(final String key, final boolean acquire)
+  {
+    final Entry entry = entries.get(key);
+    if (entry != null) {
+      hits++;
+      use(entry, acquire);
+    } else {
+      misses++;
+    }
+    return entry;
+  }
+
+  /**
+   * @return The given entry or the entry already put by another thread compiling the same source code in the meantime.
+   */
+  private synchronized Entry put(final String key, final Entry entry, final boolean acquire)
+  {
+    final Entry existing = entries.get(key);
+    if (existing != null) {
+      // The given entry was never used by anybody:
+      releaseClasses(entry);
+      use(existing, acquire);
+      return existing;
+    }
+    entries.put(key, entry);
+    use(entry, acquire);
+    return entry;
+  }
+
+  /**
+   * Must be called inside synchronized block.
+   */
+  private void use(final Entry entry, final boolean acquire)
+  {
+    if (acquire == false) {
+      entry.pinned = true;
+      return;
+    }
+    if (entry.usages++ == 0) {
+      usedEntries.put(entry.compiled, entry);
+    }
+  }
+
+  /**
+   * Must be called inside synchronized block.
+   */
+  private void evict(final Entry entry)
+  {
+    entry.evicted = true;
+    if (entry.pinned == true) {
+      // Used by callers for an unknown time, so the classes are only garbage collected with the class loader when unreferenced.
+      return;
+    }
+    if (entry.usages == 0) {
+      releaseClasses(entry);
+      ++releasedEntries;
+    }
+  }
+
+  /**
+   * Removes the meta classes of all classes of the given entry and clears the class cache of its class loader, so the classes may be
+   * garbage collected. Must be called inside synchronized block.
+   */
+  private void releaseClasses(final Entry entry)
+  {
+    final MetaClassRegistry registry = GroovySystem.getMetaClassRegistry();
+    for (final Class< ? > cls : entry.loader.getLoadedClasses()) {
+      registry.removeMetaClass(cls);
+    }
+    if (entry.compiled instanceof Class< ? >) {
+      registry.removeMetaClass((Class< ? >) entry.compiled);
+    }
+    entry.loader.clearCache();
+  }
+
+  private synchronized void addCompileTime(final long millis)
+  {
+    compileTimeMillis += millis;
+    if (log.isDebugEnabled() == true) {
+      log.debug("Groovy compilation took " + millis + "ms.");
+    }
+  }
+
+  private static class Entry
+  {
+    final GroovyClassLoader loader;
+
+    final Object compiled;
+
+    /** Number of acquired, but not yet released usages. */
+    int usages;
+
+    /** Got by callers without release, so the classes can't be released safely. */
+    boolean pinned;
+
+    boolean evicted;
+
+    Entry(final GroovyClassLoader loader, final Object compiled)
+    {
+      this.loader = loader;
+      this.compiled = compiled;
+    }
+  }
+}
@@ -49,6 +49,8 @@ import org.projectforge.user.ProjectForgeGroup;
  */
 public class ScriptDao extends BaseDao<ScriptDO>
 {
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(ScriptDao.class);
+
   private TaskTree taskTree;
 
   private GroovyExecutor groovyExecutor;
@@ -107,6 +109,34 @@ public class ScriptDao extends BaseDao<ScriptDO>
     return groovyResult;
   }
 
+  /**
+   * Compiles all (not deleted) scripts into the script cache, so the first execution of a script doesn't need to wait for the groovy
+   * compiler. Should be called on start-up (in a background thread).
+   * @return The number of successfully compiled scripts.
+   * @see GroovyScriptCache
+   */
+  public int precompileAll()
+  {
+    final long start = System.currentTimeMillis();
+    final List<ScriptDO> scripts = internalLoadAll();
+    int counter = 0;
+    if (scripts != null) {
+      for (final ScriptDO script : scripts) {
+        if (script.isDeleted() == true) {
+          continue;
+        }
+        if (groovyExecutor.precompile(script.getScriptAsString()) == true) {
+          counter++;
+        } else {
+          log.warn("Script '" + script.getName() + "' (id=" + script.getId() + ") couldn't be precompiled.");
+        }
+      }
+    }
+    log.info(counter + " scripts precompiled in " + (System.currentTimeMillis() - start) + "ms, script cache: "
+        + GroovyScriptCache.instance().getStatistics());
+    return counter;
+  }
+
   /**
    * Adds all registered dao's and other variables, such as appId, appVersion and task-tree. These variables are available in Groovy scripts
    * @param scriptVariables
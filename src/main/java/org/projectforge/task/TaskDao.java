@@ -26,7 +26,10 @@ package org.projectforge.task;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.ObjectUtils;
@@ -40,6 +43,7 @@ import org.projectforge.access.OperationType;
 import org.projectforge.continuousdb.DatabaseSupport;
 import org.projectforge.core.BaseDao;
 import org.projectforge.core.BaseSearchFilter;
+import org.projectforge.core.ModificationStamp;
 import org.projectforge.core.ModificationStatus;
 import org.projectforge.core.QueryFilter;
 import org.projectforge.core.UserException;
@@ -95,6 +99,20 @@ public class TaskDao extends BaseDao<TaskDO>
     this.userDao = userDao;
   }
 
+  /**
+   * The visible tasks depend on the tasks themselves and on the group task accesses, so both are part of the stamp.
+   * @return The stamp, which may be used as fingerprint (e. g. ETag) of any view of the task tree.
+   */
+  public ModificationStamp getModificationStamp()
+  {
+    @SuppressWarnings("unchecked")
+    final List<Object[]> tasks = getHibernateTemplate().find("select max(lastUpdate), count(id) from TaskDO");
+    @SuppressWarnings("unchecked")
+    final List<Object[]> accesses = getHibernateTemplate().find("select max(lastUpdate), count(id) from GroupTaskAccessDO");
+    return ModificationStamp.create(CollectionUtils.isNotEmpty(tasks) == true ? tasks.get(0) : null).merge(
+        ModificationStamp.create(CollectionUtils.isNotEmpty(accesses) == true ? accesses.get(0) : null));
+  }
+
   @Override
   protected String[] getAdditionalSearchFields()
   {
@@ -192,6 +210,50 @@ public class TaskDao extends BaseDao<TaskDO>
     return list;
   }
 
+  /**
+   * Gets the total durations of all tasks with time sheets modified (inserted, updated or marked as deleted) since the given time stamp.
+   * Used by the delta refresh of the task tree: only the durations of the affected tasks are read instead of the durations of all tasks.
+   * @param since
+   * @return The total durations in seconds (value) by task id (key). Tasks without any remaining time sheet are contained with duration 0.
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public Map<Integer, Long> readTotalDurationsOfModifiedTimesheets(final Date since)
+  {
+    Validate.notNull(since);
+    final Map<Integer, Long> result = new HashMap<Integer, Long>();
+    @SuppressWarnings("unchecked")
+    final List<Integer> taskIds = getHibernateTemplate().find("select distinct task.id from TimesheetDO where lastUpdate > ?", since);
+    if (CollectionUtils.isEmpty(taskIds) == true) {
+      return result;
+    }
+    for (final Integer taskId : taskIds) {
+      result.put(taskId, 0L);
+    }
+    final String modifiedTasks = "task.id in (select t.task.id from TimesheetDO t where t.lastUpdate > ?)";
+    final String intervalInSeconds = DatabaseSupport.getInstance().getIntervalInSeconds("startTime", "stopTime");
+    if (intervalInSeconds != null) {
+      @SuppressWarnings("unchecked")
+      final List<Object[]> list = getHibernateTemplate().find(
+          "select " + intervalInSeconds + ", task.id from TimesheetDO where deleted=false and " + modifiedTasks + " group by task.id", since);
+      for (final Object[] oa : list) {
+        if (oa[0] != null) {
+          result.put((Integer) oa[1], ((Number) oa[0]).longValue());
+        }
+      }
+      return result;
+    }
+    @SuppressWarnings("unchecked")
+    final List<Object[]> list = getHibernateTemplate().find(
+        "select startTime, stopTime, task.id from TimesheetDO where deleted=false and " + modifiedTasks, since);
+    for (final Object[] oa : list) {
+      final Timestamp startTime = (Timestamp) oa[0];
+      final Timestamp stopTime = (Timestamp) oa[1];
+      final Integer taskId = (Integer) oa[2];
+      result.put(taskId, result.get(taskId) + (stopTime.getTime() - startTime.getTime()) / 1000);
+    }
+    return result;
+  }
+
   /**
    * Gets the total duration of all time sheets of the given task (excluding the child tasks).
    * @param node
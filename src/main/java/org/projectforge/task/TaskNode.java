@@ -60,7 +60,13 @@ public class TaskNode implements IdObject<Integer>, Serializable
   ProjektDO projekt;
 
   /** Total duration of all time sheets of this task (excluding the child tasks) in seconds. */
-  long totalDuration = 0;
+  volatile long totalDuration = 0;
+
+  /**
+   * Total duration of all time sheets of this task including all descendant tasks in seconds. Maintained by the TaskTree (updated along the
+   * ancestor path on every modification of time sheets).
+   */
+  volatile long recursiveDuration = 0;
 
   /**
    * Sum of all ordered person days excluding descendant nodes. Ordered person days are defined by the sum of all assigned order position's
@@ -69,9 +75,10 @@ public class TaskNode implements IdObject<Integer>, Serializable
   BigDecimal orderedPersonDays;
 
   /**
-   * References to all child nodes in an ArrayList from element typ TaskNode.
+   * References to all child nodes in an ArrayList from element typ TaskNode. The list is replaced on every modification (copy on write), so
+   * readers may iterate it while the task tree is modified.
    */
-  List<TaskNode> childs = null;
+  volatile List<TaskNode> childs = null;
 
   /** The data of this TaskNode. */
   TaskDO task = null;
@@ -325,10 +332,9 @@ public class TaskNode implements IdObject<Integer>, Serializable
         log.error("Oups, cyclic reference detection: taskId = " + getId() + ", parentTaskId = " + parent.getId());
         return;
       }
-      if (this.childs == null) {
-        this.childs = new ArrayList<TaskNode>();
-      }
-      this.childs.add(child);
+      final List<TaskNode> newChilds = this.childs != null ? new ArrayList<TaskNode>(this.childs) : new ArrayList<TaskNode>();
+      newChilds.add(child);
+      this.childs = newChilds;
     }
   }
 
@@ -345,7 +351,9 @@ public class TaskNode implements IdObject<Integer>, Serializable
       log.error("Oups, this node doesn't contain given child.");
     } else {
       log.debug("Removing child " + child.getTaskId() + " from parent " + this.getTaskId());
-      this.childs.remove(child);
+      final List<TaskNode> newChilds = new ArrayList<TaskNode>(this.childs);
+      newChilds.remove(child);
+      this.childs = newChilds;
     }
   }
 
@@ -394,6 +402,16 @@ public class TaskNode implements IdObject<Integer>, Serializable
     return null;
   }
 
+  /**
+   * @return A copy of the list of all explicit defined group task accesses of this node.
+   */
+  List<GroupTaskAccessDO> getGroupTaskAccessList()
+  {
+    synchronized (groupTaskAccessList) {
+      return new ArrayList<GroupTaskAccessDO>(groupTaskAccessList);
+    }
+  }
+
   /**
    * Sets the task group access to this task node for the given group. Removes any previous stored GroupTaskAccessDO for the same group if
    * exists. Multiple GroupTaskAccessDO entries for one group will be avoided.
@@ -436,23 +454,13 @@ public class TaskNode implements IdObject<Integer>, Serializable
   }
 
   /**
-   * Gets the total duration of all time sheets in seconds.
+   * Gets the total duration of all time sheets in seconds. The durations are maintained by the task tree, so no data base access is needed.
    * @param recursive If true, then the durations of all time sheets of the sub tasks will be added.
    * @return
    */
   public long getDuration(final TaskTree taskTree, final boolean recursive)
   {
-    if (totalDuration < 0) {
-      taskTree.readTotalDuration(this.getId());
-    }
-    if (recursive == false || childs == null) {
-      return totalDuration;
-    }
-    long duration = totalDuration;
-    for (final TaskNode child : childs) {
-      duration += child.getDuration(taskTree, true);
-    }
-    return duration;
+    return recursive == true ? recursiveDuration : totalDuration;
   }
 
   @Override
@@ -0,0 +1,260 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.task;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.projectforge.access.AccessType;
+import org.projectforge.access.GroupTaskAccessDO;
+import org.projectforge.access.OperationType;
+
+/**
+ * Compiled index of the effective group permissions of all task nodes. For every task the effective rights (inherited from the ancestor
+ * tasks if no explicit access is defined) of every group with any permission are stored as a bit set (one bit per combination of
+ * AccessType and OperationType). A permission check results in a few map lookups instead of walking up the task tree for every group of
+ * the user.<br/>
+ * The index is maintained by the TaskTree: only the affected sub trees will be recalculated after modifications of group task accesses or
+ * of the task hierarchy. Modifications of several nodes should be done as batch (see {@link #update(Collection)}): the index is copied and
+ * published only once per batch.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class TaskPermissionIndex implements Serializable
+{
+  private static final long serialVersionUID = 5238046146404612215L;
+
+  private static final int OPERATION_TYPES = OperationType.values().length;
+
+  /**
+   * Key is the task id, value is a map of the effective permission bits (value) per group id (key). Tasks without any permission aren't
+   * stored. The maps are never modified after publishing, they are replaced (copy on write), so read access needs no synchronization. The
+   * permission maps of child tasks inheriting all permissions of their parent task are shared with the parent task.
+   */
+  private volatile Map<Integer, Map<Integer, Integer>> permissions = new HashMap<Integer, Map<Integer, Integer>>();
+
+  /**
+   * @return The bit representing the given combination of access and operation type.
+   */
+  static int getBit(final AccessType accessType, final OperationType opType)
+  {
+    return 1 << (accessType.ordinal() * OPERATION_TYPES + opType.ordinal());
+  }
+
+  /**
+   * @return The permission bits of the explicit defined access or 0 if no access is given.
+   */
+  static int getBits(final GroupTaskAccessDO access)
+  {
+    if (access == null) {
+      return 0;
+    }
+    int bits = 0;
+    for (final AccessType accessType : AccessType.values()) {
+      for (final OperationType opType : OperationType.values()) {
+        if (access.hasPermission(accessType, opType) == true) {
+          bits |= getBit(accessType, opType);
+        }
+      }
+    }
+    return bits;
+  }
+
+  /**
+   * @param groupIds The groups of the user.
+   * @param taskId
+   * @param accessType
+   * @param opType
+   * @return true if at least one of the given groups has the desired permission for the given task.
+   */
+  boolean hasPermission(final Collection<Integer> groupIds, final Integer taskId, final AccessType accessType, final OperationType opType)
+  {
+    if (groupIds == null || taskId == null) {
+      return false;
+    }
+    final Map<Integer, Integer> groupPermissions = this.permissions.get(taskId);
+    if (groupPermissions == null) {
+      return false;
+    }
+    final int bit = getBit(accessType, opType);
+    for (final Integer groupId : groupIds) {
+      final Integer bits = groupPermissions.get(groupId);
+      if (bits != null && (bits & bit) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the given group has the desired permission for the given task.
+   */
+  boolean hasPermission(final Integer groupId, final Integer taskId, final AccessType accessType, final OperationType opType)
+  {
+    final Map<Integer, Integer> groupPermissions = this.permissions.get(taskId);
+    if (groupPermissions == null) {
+      return false;
+    }
+    final Integer bits = groupPermissions.get(groupId);
+    return bits != null && (bits & getBit(accessType, opType)) != 0;
+  }
+
+  /**
+   * Rebuilds the whole index.
+   * @param root The root node of the task tree.
+   */
+  synchronized void rebuild(final TaskNode root)
+  {
+    final Map<Integer, Map<Integer, Integer>> newPermissions = new HashMap<Integer, Map<Integer, Integer>>();
+    if (root != null) {
+      calculate(root, newPermissions, null);
+    }
+    this.permissions = newPermissions;
+  }
+
+  /**
+   * Recalculates the permissions of all groups for the given node and all descendant nodes. Should be called after inserting, updating or
+   * deleting a GroupTaskAccessDO, after adding a new task node or after moving a task node to another parent.
+   * @param node
+   * @see #update(Collection)
+   */
+  void update(final TaskNode node)
+  {
+    if (node == null) {
+      return;
+    }
+    update(Collections.singleton(node));
+  }
+
+  /**
+   * Recalculates the permissions of all groups for the given nodes and all their descendant nodes. The index is copied only once and the
+   * result is published at once (readers see either the old or the new permissions of all given nodes).
+   * @param nodes
+   */
+  synchronized void update(final Collection<TaskNode> nodes)
+  {
+    if (nodes == null || nodes.isEmpty() == true) {
+      return;
+    }
+    final Map<Integer, Map<Integer, Integer>> newPermissions = new HashMap<Integer, Map<Integer, Integer>>(this.permissions);
+    final Set<Integer> nodeIds = new HashSet<Integer>();
+    for (final TaskNode node : nodes) {
+      nodeIds.add(node.getId());
+    }
+    final Set<Integer> processed = new HashSet<Integer>();
+    for (final TaskNode node : nodes) {
+      if (processed.contains(node.getId()) == true || hasAncestor(nodeIds, node) == true) {
+        // The sub tree of this node is already or will be recalculated.
+        continue;
+      }
+      calculate(node, newPermissions, processed);
+    }
+    this.permissions = newPermissions;
+  }
+
+  /**
+   * @return true, if any ancestor of the given node is part of the given node ids.
+   */
+  private boolean hasAncestor(final Set<Integer> nodeIds, final TaskNode node)
+  {
+    if (nodeIds.size() == 1) {
+      return false;
+    }
+    TaskNode ancestor = node.getParent();
+    while (ancestor != null) {
+      if (nodeIds.contains(ancestor.getId()) == true) {
+        return true;
+      }
+      ancestor = ancestor.getParent();
+    }
+    return false;
+  }
+
+  /**
+   * Calculates the effective permissions of the given node by using the already calculated permissions of the parent node and walks
+   * recursively through all descendants.
+   * @param processed If not null, the ids of all calculated nodes are added.
+   */
+  private void calculate(final TaskNode node, final Map<Integer, Map<Integer, Integer>> newPermissions, final Set<Integer> processed)
+  {
+    final TaskNode parent = node.getParent();
+    final Map<Integer, Integer> parentPermissions = parent != null ? newPermissions.get(parent.getId()) : null;
+    final List<GroupTaskAccessDO> accessList = node.getGroupTaskAccessList();
+    Map<Integer, Integer> groupPermissions = null;
+    if (parentPermissions != null) {
+      boolean inheritAll = accessList.isEmpty();
+      for (final Integer groupId : parentPermissions.keySet()) {
+        if (parent.isPermissionRecursive(groupId) == false) {
+          inheritAll = false;
+          break;
+        }
+      }
+      if (inheritAll == true) {
+        // Share the immutable map of the parent:
+        groupPermissions = parentPermissions;
+      } else {
+        groupPermissions = new HashMap<Integer, Integer>();
+        for (final Map.Entry<Integer, Integer> entry : parentPermissions.entrySet()) {
+          if (parent.isPermissionRecursive(entry.getKey()) == true) {
+            groupPermissions.put(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+    }
+    if (accessList.isEmpty() == false) {
+      if (groupPermissions == null) {
+        groupPermissions = new HashMap<Integer, Integer>();
+      }
+      for (final GroupTaskAccessDO access : accessList) {
+        if (access.getGroupId() == null) {
+          continue;
+        }
+        final int bits = getBits(access);
+        if (bits != 0) {
+          groupPermissions.put(access.getGroupId(), bits);
+        } else {
+          groupPermissions.remove(access.getGroupId());
+        }
+      }
+    }
+    if (groupPermissions != null && groupPermissions.isEmpty() == false) {
+      newPermissions.put(node.getId(), groupPermissions);
+    } else {
+      newPermissions.remove(node.getId());
+    }
+    if (processed != null) {
+      processed.add(node.getId());
+    }
+    if (node.hasChilds() == true) {
+      for (final TaskNode child : node.getChilds()) {
+        calculate(child, newPermissions, processed);
+      }
+    }
+  }
+}
@@ -28,16 +28,20 @@ import java.io.Serializable;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.Validate;
 import org.apache.log4j.Logger;
 import org.apache.wicket.spring.injection.annot.SpringBean;
@@ -48,6 +52,7 @@ import org.dom4j.io.OutputFormat;
 import org.dom4j.io.XMLWriter;
 import org.hibernate.Hibernate;
 import org.projectforge.access.AccessDao;
+import org.projectforge.access.AccessType;
 import org.projectforge.access.GroupTaskAccessDO;
 import org.projectforge.access.OperationType;
 import org.projectforge.common.AbstractCache;
@@ -97,8 +102,14 @@ public class TaskTree extends AbstractCache implements Serializable
   /** Time of last modification in milliseconds from 1970-01-01. */
   private long timeOfLastModification = 0;
 
-  /** For faster searching of entries. */
-  private Map<Integer, TaskNode> taskMap;
+  /** For faster searching of entries. Readers may access the map while the tree is modified. */
+  private volatile Map<Integer, TaskNode> taskMap;
+
+  /**
+   * Task id (value) of every explicit group task access (key) of the tree. Used for detecting deleted accesses by the delta refresh without
+   * walking through all nodes.
+   */
+  private final Map<Integer, Integer> taskIdByAccessId = new ConcurrentHashMap<Integer, Integer>();
 
   /** The root node of all tasks. The only node with parent null. */
   private TaskNode root = null;
@@ -107,6 +118,26 @@ public class TaskTree extends AbstractCache implements Serializable
 
   private boolean orderPositionReferencesDirty = true;
 
+  /**
+   * Safety overlap of the delta refresh for objects saved (with a last update time stamp before the refresh) but not yet committed while
+   * reading.
+   */
+  private static final long DELTA_REFRESH_OVERLAP = 5 * TICKS_PER_MINUTE;
+
+  /** Interval of full reloads (delta refreshes are used in between). */
+  private long fullReloadInterval = 24 * TICKS_PER_HOUR;
+
+  /** Time stamp of the last refresh (full or delta). The next delta refresh reads all objects modified after this time stamp. */
+  private Date refreshWatermark;
+
+  private long timeOfLastFullReload;
+
+  /** If true, the next refresh will be a full reload. */
+  private boolean fullReloadRequested = true;
+
+  /** Compiled permissions of all groups for all tasks. */
+  private final TaskPermissionIndex permissionIndex = new TaskPermissionIndex();
+
   public TaskNode getRootTaskNode()
   {
     checkRefresh();
@@ -149,7 +180,9 @@ public class TaskTree extends AbstractCache implements Serializable
     final TimesheetDO timesheet = new TimesheetDO().setTask(task);
     final boolean bookable = timesheetDao.checkTaskBookable(timesheet, null, OperationType.INSERT, false);
     node.bookableForTimesheets = bookable;
-    return addTaskNode(node, parent);
+    addTaskNode(node, parent);
+    permissionIndex.update(node);
+    return node;
   }
 
   /**
@@ -342,17 +375,63 @@ public class TaskTree extends AbstractCache implements Serializable
   }
 
   /**
-   * Should be called after modification of a time sheet assigned to the given task id.
+   * Should be called after modification of a time sheet assigned to the given task id if the modification can't be expressed as delta (see
+   * {@link #addTotalDuration(Integer, long)}). The total duration of the given task is re-read from the data base.
    * @param taskId
    */
   public void resetTotalDuration(final Integer taskId)
+  {
+    readTotalDuration(taskId);
+  }
+
+  /**
+   * Adds the given duration to the total duration of the given task and to the recursive durations of the task and all ancestor tasks.
+   * Should be called after inserting, updating or deleting time sheets.
+   * @param taskId
+   * @param durationInSeconds The delta (negative for deletions).
+   */
+  public void addTotalDuration(final Integer taskId, final long durationInSeconds)
   {
     final TaskNode node = getTaskNodeById(taskId);
     if (node == null) {
       log.error("Task id '" + taskId + "' not found.");
       return;
     }
-    node.totalDuration = -1;
+    if (durationInSeconds == 0) {
+      return;
+    }
+    synchronized (this) {
+      node.totalDuration += durationInSeconds;
+      addRecursiveDuration(node, durationInSeconds);
+    }
+  }
+
+  /**
+   * Adds the given duration to the recursive durations of the given node and all its ancestors.
+   */
+  private void addRecursiveDuration(final TaskNode node, final long durationInSeconds)
+  {
+    TaskNode current = node;
+    while (current != null) {
+      current.recursiveDuration += durationInSeconds;
+      current = current.parent;
+    }
+  }
+
+  /**
+   * Calculates the recursive durations of the given node and all descendant nodes from the total durations of the nodes.
+   * @return The recursive duration of the given node.
+   */
+  private long calculateRecursiveDurations(final TaskNode node)
+  {
+    long duration = node.totalDuration;
+    if (node.hasChilds() == true) {
+      for (final TaskNode child : node.getChilds()) {
+        duration += calculateRecursiveDurations(child);
+      }
+    }
+    node.recursiveDuration = duration;
+    return duration;
   }
 
   /**
@@ -375,10 +454,15 @@ public class TaskTree extends AbstractCache implements Serializable
       }
       final TaskNode oldParent = node.getParent();
       Validate.notNull(oldParent);
-      oldParent.removeChild(node);
       final TaskNode newParent = getTaskNodeById(task.getParentTaskId());
-      node.setParent(newParent);
-      newParent.addChild(node);
+      synchronized (this) {
+        oldParent.removeChild(node);
+        addRecursiveDuration(oldParent, -node.recursiveDuration);
+        node.setParent(newParent);
+        newParent.addChild(node);
+        addRecursiveDuration(newParent, node.recursiveDuration);
+      }
+      permissionIndex.update(node);
     }
     this.timeOfLastModification = new Date().getTime();
     return node;
@@ -394,7 +478,8 @@ public class TaskTree extends AbstractCache implements Serializable
     checkRefresh();
     final Integer taskId = groupTaskAccess.getTaskId();
     final TaskNode node = taskMap.get(taskId);
-    node.setGroupTaskAccess(groupTaskAccess);
+    putGroupTaskAccess(node, groupTaskAccess);
+    permissionIndex.update(node);
   }
 
   /**
@@ -407,7 +492,46 @@ public class TaskTree extends AbstractCache implements Serializable
     checkRefresh();
     final Integer taskId = groupTaskAccess.getTaskId();
     final TaskNode node = taskMap.get(taskId);
-    node.removeGroupTaskAccess(groupTaskAccess.getGroupId());
+    removeGroupTaskAccess(node, groupTaskAccess.getGroupId());
+    permissionIndex.update(node);
+  }
+
+  private void putGroupTaskAccess(final TaskNode node, final GroupTaskAccessDO access)
+  {
+    final GroupTaskAccessDO old = node.getGroupTaskAccess(access.getGroupId());
+    if (old != null && old.getId() != null) {
+      taskIdByAccessId.remove(old.getId());
+    }
+    node.setGroupTaskAccess(access);
+    if (access.getId() != null) {
+      taskIdByAccessId.put(access.getId(), node.getId());
+    }
+  }
+
+  private void removeGroupTaskAccess(final TaskNode node, final Integer groupId)
+  {
+    final GroupTaskAccessDO old = node.getGroupTaskAccess(groupId);
+    if (old != null && old.getId() != null) {
+      taskIdByAccessId.remove(old.getId());
+    }
+    node.removeGroupTaskAccess(groupId);
+  }
+
+  /**
+   * Checks the desired permission for the given groups by using the compiled permission index (no walk through the ancestor tasks is
+   * needed).
+   * @param groupIds The ids of the groups to check.
+   * @param taskId
+   * @param accessType
+   * @param opType
+   * @return true, if at least one of the given groups has the desired permission to the given task.
+   * @see TaskNode#hasPermission(Integer, AccessType, OperationType)
+   */
+  public boolean hasPermission(final Collection<Integer> groupIds, final Integer taskId, final AccessType accessType,
+      final OperationType opType)
+  {
+    checkRefresh();
+    return permissionIndex.hasPermission(groupIds, taskId, accessType, opType);
   }
 
   public long getTimeOfLastModification()
@@ -736,14 +860,18 @@ public class TaskTree extends AbstractCache implements Serializable
   }
 
   /**
-   * Reads the sum of all time sheet durations grouped by task id and set the total duration of found taskNodes.
+   * Reads the sum of all time sheet durations grouped by task id and set the total duration of all taskNodes. The recursive durations are
+   * calculated afterwards.
    */
   private void readTotalDurations()
   {
     final List<Object[]> list = taskDao.readTotalDurations();
+    for (final TaskNode node : taskMap.values()) {
+      node.totalDuration = 0;
+    }
     for (final Object[] res : list) {
       final Integer taskId = (Integer) res[1];
-      final TaskNode node = getTaskNodeById(taskId);
+      final TaskNode node = taskMap.get(taskId);
       if (node == null) {
         log.warn("Task not found: " + taskId);
       } else {
@@ -754,10 +882,12 @@ public class TaskTree extends AbstractCache implements Serializable
         }
       }
     }
+    calculateRecursiveDurations(this.root);
   }
 
   /**
-   * Reads the sum of all time sheet durations grouped by task id and set the total duration of found taskNodes.
+   * Reads the sum of all time sheet durations of the given task and set the total duration of the found taskNode. The recursive durations
+   * of the task node and all ancestor nodes are updated.
    */
   public void readTotalDuration(final Integer taskId)
   {
@@ -766,7 +896,10 @@ public class TaskTree extends AbstractCache implements Serializable
     if (node == null) {
       log.warn("Task not found: " + taskId);
     } else {
-      node.totalDuration = duration;
+      synchronized (this) {
+        addRecursiveDuration(node, duration - node.totalDuration);
+        node.totalDuration = duration;
+      }
     }
   }
 
@@ -779,18 +912,219 @@ public class TaskTree extends AbstractCache implements Serializable
     this.setExpired();
   }
 
+  /**
+   * The next refresh will be a full reload of all tasks, accesses and projects (e. g. after setting up or restoring the data base).
+   * @see org.projectforge.common.AbstractCache#setExpired()
+   */
+  @Override
+  public void setExpired()
+  {
+    this.fullReloadRequested = true;
+    super.setExpired();
+  }
+
+  /**
+   * Full reloads are done in this interval, in between only delta refreshes are done after expiring.
+   * @param fullReloadInterval in hours.
+   */
+  public void setFullReloadIntervalInHours(final long fullReloadInterval)
+  {
+    this.fullReloadInterval = fullReloadInterval * TICKS_PER_HOUR;
+  }
+
+  /**
+   * Refreshes the tree after expiring. A delta refresh is done if the tree is already initialized, otherwise (or after explicit expiring via
+   * {@link #setExpired()} or if the full reload interval is reached) the tree is fully reloaded.
+   * @see org.projectforge.common.AbstractCache#refresh()
+   */
+  @Override
+  protected void refresh()
+  {
+    if (fullReloadRequested == false
+        && root != null
+        && refreshWatermark != null
+        && System.currentTimeMillis() - timeOfLastFullReload < fullReloadInterval) {
+      try {
+        final Date newWatermark = new Date(System.currentTimeMillis() - DELTA_REFRESH_OVERLAP);
+        refreshDelta(refreshWatermark);
+        refreshWatermark = newWatermark;
+        return;
+      } catch (final Exception ex) {
+        log.error("Error while refreshing task tree incrementally, trying full reload: " + ex.getMessage(), ex);
+      }
+    }
+    reload();
+  }
+
+  /**
+   * Reads only the tasks, group task accesses, projects and time sheet durations modified since the given time stamp and patches the
+   * existing task nodes. All data is read before the tree is patched. The permissions are recalculated as one batch and
+   * {@link TaskNode#isBookableForTimesheets()} is only recalculated for the affected sub trees. Durations of tasks from which time sheets
+   * were moved away by other instances are corrected not until the next full reload.
+   * @param since
+   */
+  private void refreshDelta(final Date since)
+  {
+    log.info("Refreshing task tree (delta since " + since + ") ...");
+    final List<TaskDO> taskList = taskDao.internalLoadModifiedSince(since);
+    final List<GroupTaskAccessDO> accessList = accessDao.internalLoadModifiedSince(since);
+    final List<ProjektDO> projects = projektDao.internalLoadModifiedSince(since);
+    final Map<Integer, Long> durations = taskDao.readTotalDurationsOfModifiedTimesheets(since);
+    final long accessCount = accessDao.internalCountAll();
+    // Nodes (by id, hash code of TaskNode depends on the parent) whose sub trees have to be recalculated (bookable flag and permissions):
+    final Map<Integer, TaskNode> modifiedNodes = new HashMap<Integer, TaskNode>();
+    for (final TaskDO task : taskList) {
+      TaskNode node = taskMap.get(task.getId());
+      if (node == null) {
+        node = new TaskNode();
+        node.setTask(task);
+        taskMap.put(task.getId(), node);
+      } else {
+        node.setTask(task);
+      }
+      modifiedNodes.put(node.getId(), node);
+    }
+    for (final TaskDO task : taskList) {
+      final TaskNode node = taskMap.get(task.getId());
+      final Integer parentId = task.getParentTaskId();
+      if (parentId == null || ObjectUtils.equals(parentId, node.getParentId()) == true) {
+        continue;
+      }
+      final TaskNode newParent = taskMap.get(parentId);
+      if (newParent == null) {
+        throw new InternalErrorException("Parent task " + parentId + " of task " + task.getId() + " not found.");
+      }
+      synchronized (this) {
+        if (node.getParent() != null) {
+          node.getParent().removeChild(node);
+          addRecursiveDuration(node.getParent(), -node.recursiveDuration);
+        }
+        node.setParent(newParent);
+        newParent.addChild(node);
+        addRecursiveDuration(newParent, node.recursiveDuration);
+      }
+    }
+    // Group task accesses:
+    for (final GroupTaskAccessDO access : accessList) {
+      final TaskNode node = taskMap.get(access.getTaskId());
+      if (node == null) {
+        log.error("Oups, should not occur: access references a non existing task: " + access);
+        continue;
+      }
+      if (access.isDeleted() == true) {
+        removeGroupTaskAccess(node, access.getGroupId());
+        taskIdByAccessId.remove(access.getId());
+      } else {
+        putGroupTaskAccess(node, access);
+      }
+      modifiedNodes.put(node.getId(), node);
+    }
+    if (accessCount != taskIdByAccessId.size()) {
+      // Accesses were deleted from the data base:
+      final Set<Integer> accessIds = new HashSet<Integer>(accessDao.internalLoadAllIds());
+      for (final Map.Entry<Integer, Integer> entry : new ArrayList<Map.Entry<Integer, Integer>>(taskIdByAccessId.entrySet())) {
+        if (accessIds.contains(entry.getKey()) == true) {
+          continue;
+        }
+        taskIdByAccessId.remove(entry.getKey());
+        final TaskNode node = taskMap.get(entry.getValue());
+        if (node == null) {
+          continue;
+        }
+        for (final GroupTaskAccessDO access : node.getGroupTaskAccessList()) {
+          if (entry.getKey().equals(access.getId()) == true) {
+            node.removeGroupTaskAccess(access.getGroupId());
+            modifiedNodes.put(node.getId(), node);
+          }
+        }
+      }
+    }
+    // Projects:
+    if (CollectionUtils.isNotEmpty(projects) == true) {
+      final Map<Integer, TaskNode> nodesByProjectId = new HashMap<Integer, TaskNode>();
+      for (final TaskNode node : taskMap.values()) {
+        if (node.projekt != null) {
+          nodesByProjectId.put(node.projekt.getId(), node);
+        }
+      }
+      for (final ProjektDO project : projects) {
+        final TaskNode oldNode = nodesByProjectId.get(project.getId());
+        if (oldNode != null) {
+          oldNode.projekt = null;
+          modifiedNodes.put(oldNode.getId(), oldNode);
+        }
+        if (project.isDeleted() == true || project.getTaskId() == null) {
+          continue;
+        }
+        final TaskNode node = taskMap.get(project.getTaskId());
+        if (node == null) {
+          log.error("Oups, should not occur: project references a non existing task: " + project);
+        } else {
+          node.projekt = project;
+          modifiedNodes.put(node.getId(), node);
+        }
+      }
+    }
+    // Recalculate the permissions (one batch) and the bookable status only for the affected sub trees:
+    permissionIndex.update(modifiedNodes.values());
+    final TimesheetDao timesheetDao = Registry.instance().getDao(TimesheetDao.class);
+    final TimesheetDO timesheet = new TimesheetDO();
+    final Set<Integer> processed = new HashSet<Integer>();
+    for (final TaskNode node : modifiedNodes.values()) {
+      if (processed.contains(node.getId()) == true) {
+        continue;
+      }
+      updateBookableForTimesheets(node, timesheetDao, timesheet, processed);
+    }
+    // Durations only of the tasks with modified time sheets (time sheets may be modified by other instances):
+    for (final Map.Entry<Integer, Long> entry : durations.entrySet()) {
+      final TaskNode node = taskMap.get(entry.getKey());
+      if (node == null) {
+        log.warn("Task not found: " + entry.getKey());
+        continue;
+      }
+      synchronized (this) {
+        addRecursiveDuration(node, entry.getValue() - node.totalDuration);
+        node.totalDuration = entry.getValue();
+      }
+    }
+    if (taskList.isEmpty() == false) {
+      this.timeOfLastModification = new Date().getTime();
+    }
+    refreshOrderPositionReferences();
+    log.info("Refreshing task tree (delta) done: "
+        + taskList.size()
+        + " modified tasks, "
+        + accessList.size()
+        + " modified accesses, "
+        + durations.size()
+        + " tasks with modified time sheets.");
+  }
+
+  private void updateBookableForTimesheets(final TaskNode node, final TimesheetDao timesheetDao, final TimesheetDO timesheet,
+      final Set<Integer> processed)
+  {
+    processed.add(node.getId());
+    timesheet.setTask(node.getTask());
+    node.bookableForTimesheets = timesheetDao.checkTaskBookable(timesheet, null, OperationType.INSERT, false);
+    if (node.hasChilds() == true) {
+      for (final TaskNode child : node.getChilds()) {
+        updateBookableForTimesheets(child, timesheetDao, timesheet, processed);
+      }
+    }
+  }
+
   /**
    * All tasks from database will be read and cached into this TaskTree. Also all explicit group task access' will be read from database and
    * will be cached in this tree (implicit access' will be created too).<br/>
    * The generation of the task tree will be done manually, not by hibernate because the task hierarchy is very sensible. Manipulations of
    * the task tree should be done carefully for single task nodes.
    * 
-   * @see org.projectforge.common.AbstractCache#refresh()
    */
-  @Override
-  protected void refresh()
+  private void reload()
   {
     log.info("Initializing task tree ...");
+    final Date newWatermark = new Date(System.currentTimeMillis() - DELTA_REFRESH_OVERLAP);
     if (taskDao == null) {
       log.info("Can't initialize task tree, taskDao isn't set yet (shouldn't occur):");
       // Stack trace for debugging refresh() call without TaskDao (does only occur in productive mode):
@@ -799,14 +1133,14 @@ public class TaskTree extends AbstractCache implements Serializable
       return;
     }
     TaskNode newRoot = null;
-    taskMap = new HashMap<Integer, TaskNode>();
+    final Map<Integer, TaskNode> newTaskMap = new ConcurrentHashMap<Integer, TaskNode>();
     final List<TaskDO> taskList = taskDao.internalLoadAll();
     TaskNode node;
     log.debug("Loading list of tasks ...");
     for (final TaskDO task : taskList) {
       node = new TaskNode();
       node.setTask(task);
-      taskMap.put(node.getTaskId(), node);
+      newTaskMap.put(node.getTaskId(), node);
       if (node.isRootNode() == true) {
         if (newRoot != null) {
           log.error("Duplicate root node found: " + newRoot.getId() + " and " + node.getId());
@@ -828,18 +1162,17 @@ public class TaskTree extends AbstractCache implements Serializable
       taskDao.internalSave(rootTask);
       newRoot = new TaskNode();
       newRoot.setTask(rootTask);
-      taskMap.put(newRoot.getTaskId(), newRoot);
+      newTaskMap.put(newRoot.getTaskId(), newRoot);
     }
-    this.root = newRoot;
     if (log.isDebugEnabled() == true) {
       log.debug("Creating tree for " + taskList.size() + " tasks ...");
     }
     for (final TaskDO task : taskList) {
       TaskNode parentNode = null;
-      node = taskMap.get(task.getId());
+      node = newTaskMap.get(task.getId());
       final Integer parentId = task.getParentTaskId();
       if (parentId != null) {
-        parentNode = taskMap.get(parentId);
+        parentNode = newTaskMap.get(parentId);
       }
       // log.debug("Processing node: " + node.getId() + ", parent: " + parentId);
       if (parentNode != null) {
@@ -852,18 +1185,24 @@ public class TaskTree extends AbstractCache implements Serializable
     }
 
     if (log.isDebugEnabled() == true) {
-      log.debug(this.root);
+      log.debug(newRoot);
     }
 
     // Now read all explicit group task access' from the database:
     final List<GroupTaskAccessDO> accessList = accessDao.internalLoadAll();
+    taskIdByAccessId.clear();
     for (final GroupTaskAccessDO access : accessList) {
-      node = taskMap.get(access.getTaskId());
+      node = newTaskMap.get(access.getTaskId());
       node.setGroupTaskAccess(access);
+      taskIdByAccessId.put(access.getId(), node.getId());
       if (log.isDebugEnabled() == true) {
         log.debug(access.toString());
       }
     }
+    // Publish the new tree:
+    this.root = newRoot;
+    this.taskMap = newTaskMap;
+    permissionIndex.rebuild(this.root);
     // Now read all projects with their references to tasks:
     final List<ProjektDO> projects = projektDao.internalLoadAll();
     if (projects != null) {
@@ -871,7 +1210,7 @@ public class TaskTree extends AbstractCache implements Serializable
         if (project.isDeleted() == true || project.getTaskId() == null) {
           continue;
         }
-        node = taskMap.get(project.getTaskId());
+        node = newTaskMap.get(project.getTaskId());
         if (node == null) {
           log.error("Oups, should not occur: project references a non existing task: " + project);
         } else {
@@ -888,11 +1227,14 @@ public class TaskTree extends AbstractCache implements Serializable
     final TimesheetDao timesheetDao = Registry.instance().getDao(TimesheetDao.class);
     final TimesheetDO timesheet = new TimesheetDO();
     for (final TaskDO task : taskList) {
-      node = taskMap.get(task.getId());
+      node = newTaskMap.get(task.getId());
       timesheet.setTask(task);
       final boolean bookable = timesheetDao.checkTaskBookable(timesheet, null, OperationType.INSERT, false);
       node.bookableForTimesheets = bookable;
     }
+    this.refreshWatermark = newWatermark;
+    this.timeOfLastFullReload = System.currentTimeMillis();
+    this.fullReloadRequested = false;
     log.info("Initializing task tree done.");
   }
 }
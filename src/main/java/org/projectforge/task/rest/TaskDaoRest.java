@@ -32,11 +32,16 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.projectforge.registry.Registry;
-import org.projectforge.rest.JsonUtils;
+import org.projectforge.rest.JsonArrayStreamingOutput;
+import org.projectforge.rest.JsonStreamingOutput;
+import org.projectforge.rest.RestHelper;
 import org.projectforge.task.TaskDO;
 import org.projectforge.task.TaskDao;
 import org.projectforge.task.TaskFilter;
@@ -75,22 +80,27 @@ public class TaskDaoRest
   @GET
   @Path("list")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getList( //
+  public Response getList(@Context final Request request, //
       @QueryParam("search") final String searchTerm, //
       @QueryParam("notopened") final Boolean notOpened, //
       @QueryParam("opened") final Boolean opened, //
       @QueryParam("closed") final Boolean closed, //
       @QueryParam("deleted") final Boolean deleted)
   {
+    final EntityTag eTag = RestHelper.getETag(taskDao.getModificationStamp(), "list", searchTerm, notOpened, opened, closed, deleted);
+    final Response notModified = RestHelper.getNotModifiedResponse(request, eTag);
+    if (notModified != null) {
+      return notModified;
+    }
     final List<TaskDO> list = queryList(searchTerm, notOpened, opened, closed, deleted);
-    final List<RTask> result = new ArrayList<RTask>();
-    if (list != null) {
-      for (final TaskDO task : list) {
-        result.add(createRTask(task));
+    final JsonArrayStreamingOutput<TaskDO> output = new JsonArrayStreamingOutput<TaskDO>(list) {
+      @Override
+      protected Object convert(final TaskDO task)
+      {
+        return createRTask(task);
       }
-    }
-    final String json = JsonUtils.toJson(result);
-    return Response.ok(json).build();
+    };
+    return Response.ok(output).tag(eTag).build();
   }
 
   /**
@@ -101,17 +111,21 @@ public class TaskDaoRest
   @GET
   @Path("tree")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getTree( //
+  public Response getTree(@Context final Request request, //
       @QueryParam("search") final String searchTerm, //
       @QueryParam("notopened") final Boolean notOpened, //
       @QueryParam("opened") final Boolean opened, //
       @QueryParam("closed") final Boolean closed, //
       @QueryParam("deleted") final Boolean deleted)
   {
+    final EntityTag eTag = RestHelper.getETag(taskDao.getModificationStamp(), "tree", searchTerm, notOpened, opened, closed, deleted);
+    final Response notModified = RestHelper.getNotModifiedResponse(request, eTag);
+    if (notModified != null) {
+      return notModified;
+    }
     final List<TaskDO> list = queryList(searchTerm, notOpened, opened, closed, deleted);
     final List<RTask> result = convertTasks(list);
-    final String json = JsonUtils.toJson(result);
-    return Response.ok(json).build();
+    return Response.ok(new JsonStreamingOutput(result)).tag(eTag).build();
   }
 
   private List<TaskDO> queryList(final String searchTerm, final Boolean notOpened, final Boolean opened, final Boolean closed,
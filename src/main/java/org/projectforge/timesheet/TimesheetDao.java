@@ -29,7 +29,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,8 +52,12 @@ import org.projectforge.common.NumberHelper;
 import org.projectforge.core.BaseDao;
 import org.projectforge.core.BaseSearchFilter;
 import org.projectforge.core.MessageParam;
+import org.projectforge.core.ModificationStamp;
 import org.projectforge.core.OrderDirection;
+import org.projectforge.core.PageToken;
 import org.projectforge.core.QueryFilter;
+import org.projectforge.core.ResultHandler;
+import org.projectforge.core.ResultPage;
 import org.projectforge.core.UserException;
 import org.projectforge.database.SQLHelper;
 import org.projectforge.fibu.kost.Kost2DO;
@@ -69,6 +72,7 @@ import org.projectforge.user.PFUserDO;
 import org.projectforge.user.ProjectForgeGroup;
 import org.projectforge.user.UserDao;
 import org.projectforge.web.timesheet.TimesheetListFilter;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -105,7 +109,13 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
 
   private Kost2Dao kost2Dao;
 
-  private final Map<Integer, Set<Integer>> timesheetsWithOverlapByUser = new HashMap<Integer, Set<Integer>>();
+  /** In-memory indices of the time periods of the time sheets per user for overlap detection. */
+  private final Map<Integer, TimesheetIntervalIndex> intervalIndexByUser = new HashMap<Integer, TimesheetIntervalIndex>();
+
+  /** Number of index updates, for detecting modifications committed while an index is loaded (guarded by intervalIndexByUser). */
+  private long intervalIndexUpdateCounter;
+
+  private final Map<Integer, ModificationStamp> modificationStampByUser = new HashMap<Integer, ModificationStamp>();
 
   public void setTaskTree(final TaskTree taskTree)
   {
@@ -228,6 +238,7 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   public TimesheetDao()
   {
     super(TimesheetDO.class);
+    this.supportAfterUpdate = true; // Needed for updating the task durations of the task tree by delta.
   }
 
   /**
@@ -251,6 +262,33 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   @Override
   @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
   public List<TimesheetDO> getList(final BaseSearchFilter filter) throws AccessException
+  {
+    final QueryFilter queryFilter = createQueryFilter(filter);
+    List<TimesheetDO> result = getList(queryFilter);
+    if (result == null) {
+      return null;
+    }
+    markTimeOverlaps(result);
+    if (((TimesheetFilter) queryFilter.getFilter()).isMarked() == true) {
+      // Show only time sheets with time period violation (overlap):
+      final List<TimesheetDO> list = result;
+      result = new ArrayList<TimesheetDO>();
+      for (final TimesheetDO entry : list) {
+        if (entry.isMarked() == true) {
+          result.add(entry);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Converts the given filter to a {@link TimesheetFilter} (if not already) and sets the stop time to the end of the day.
+   * @see org.projectforge.core.BaseDao#createQueryFilter(org.projectforge.core.BaseSearchFilter)
+   * @see #buildQueryFilter(TimesheetFilter)
+   */
+  @Override
+  protected QueryFilter createQueryFilter(final BaseSearchFilter filter)
   {
     final TimesheetFilter myFilter;
     if (filter instanceof TimesheetFilter) {
@@ -263,34 +301,115 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
       date.setEndOfDay();
       myFilter.setStopTime(date.getDate());
     }
-    final QueryFilter queryFilter = buildQueryFilter(myFilter);
-    List<TimesheetDO> result = getList(queryFilter);
-    if (result == null) {
-      return null;
+    return buildQueryFilter(myFilter);
+  }
+
+  /**
+   * Filtering time sheets with time period overlaps isn't supported by keyset pagination (the overlaps are detected in-memory).
+   * @see org.projectforge.core.BaseDao#isKeysetPagingSupported(org.projectforge.core.BaseSearchFilter)
+   */
+  @Override
+  public boolean isKeysetPagingSupported(final BaseSearchFilter filter)
+  {
+    if (filter instanceof TimesheetFilter && ((TimesheetFilter) filter).isMarked() == true) {
+      return false;
     }
-    // Check time period overlaps:
-    for (final TimesheetDO entry : result) {
+    return super.isKeysetPagingSupported(filter);
+  }
+
+  /**
+   * Marks the time sheets of the page with time period overlaps.
+   * @see org.projectforge.core.BaseDao#getPage(org.projectforge.core.QueryFilter, java.lang.String, boolean,
+   *      org.projectforge.core.PageToken, int)
+   */
+  @Override
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public ResultPage<TimesheetDO> getPage(final QueryFilter filter, final String keysetProperty, final boolean ascending,
+      final PageToken token, final int pageSize) throws AccessException
+  {
+    final ResultPage<TimesheetDO> page = super.getPage(filter, keysetProperty, ascending, token, pageSize);
+    markTimeOverlaps(page.getEntries());
+    return page;
+  }
+
+  /**
+   * The time sheets are processed one by one (see {@link #processList(BaseSearchFilter, ResultHandler)}), so the total duration of a list
+   * shown by keyset pagination can be calculated without loading the complete list.
+   * @param filter
+   * @return The total duration of all time sheets matching the given filter in millis.
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public long getTotalDuration(final TimesheetFilter filter)
+  {
+    final long[] duration = new long[1];
+    processList(filter, new ResultHandler<TimesheetDO>() {
+      @Override
+      public boolean handle(final TimesheetDO timesheet)
+      {
+        duration[0] += timesheet.getDuration();
+        return true;
+      }
+    });
+    return duration[0];
+  }
+
+  private void markTimeOverlaps(final List<TimesheetDO> list)
+  {
+    final Map<Integer, Set<Integer>> overlapsByUser = new HashMap<Integer, Set<Integer>>();
+    for (final TimesheetDO entry : list) {
       Validate.notNull(entry.getUserId());
       if (entry.isMarked() == true) {
         continue; // Is already marked.
       }
-      final Set<Integer> overlapSet = getTimesheetsWithTimeoverlap(entry.getUserId());
+      Set<Integer> overlapSet = overlapsByUser.get(entry.getUserId());
+      if (overlapSet == null) {
+        overlapSet = getTimesheetsWithTimeoverlap(entry.getUserId());
+        overlapsByUser.put(entry.getUserId(), overlapSet);
+      }
       if (overlapSet.contains(entry.getId()) == true) {
         log.info("Overlap of time sheet decteced: " + entry);
         entry.setMarked(true);
       }
     }
-    if (myFilter.isMarked() == true) {
-      // Show only time sheets with time period violation (overlap):
-      final List<TimesheetDO> list = result;
-      result = new ArrayList<TimesheetDO>();
-      for (final TimesheetDO entry : list) {
-        if (entry.isMarked() == true) {
-          result.add(entry);
-        }
+  }
+
+  /**
+   * The modification stamp (time of the last modification and number of time sheets) of all time sheets of the given user. The stamp is
+   * cached and reset on every modification of the user's time sheets. Deleted time sheets are included, because marking as deleted
+   * modifies the last update time stamp.
+   * @param userId
+   * @return The stamp, which may be used as fingerprint (e. g. ETag) of any view of the user's time sheets.
+   */
+  @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+  public ModificationStamp getModificationStamp(final Integer userId)
+  {
+    Validate.notNull(userId);
+    synchronized (modificationStampByUser) {
+      ModificationStamp stamp = modificationStampByUser.get(userId);
+      if (stamp == null) {
+        stamp = readModificationStamp(userId);
+        modificationStampByUser.put(userId, stamp);
       }
+      return stamp;
+    }
+  }
+
+  private ModificationStamp readModificationStamp(final Integer userId)
+  {
+    @SuppressWarnings("unchecked")
+    final List<Object[]> list = getHibernateTemplate().find("select max(lastUpdate), count(id) from TimesheetDO where user.id = ?",
+        userId);
+    return ModificationStamp.create(CollectionUtils.isNotEmpty(list) == true ? list.get(0) : null);
+  }
+
+  private void resetModificationStamp(final Integer userId)
+  {
+    if (userId == null) {
+      return;
+    }
+    synchronized (modificationStampByUser) {
+      modificationStampByUser.remove(userId);
     }
-    return result;
   }
 
   public List<TimesheetDO> getTimeperiodOverlapList(final TimesheetListFilter actionFilter)
@@ -314,18 +433,139 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   }
 
   /**
-   * Rechecks the time sheet overlaps.
+   * Updates the time period index of the user after commit (for rechecking the time sheet overlaps).
    * @see org.projectforge.core.BaseDao#afterSaveOrModify(org.projectforge.core.ExtendedBaseDO)
    */
   @Override
   protected void afterSaveOrModify(final TimesheetDO obj)
   {
     super.afterSaveOrModify(obj);
-    if (obj.getUser() != null) {
-      // Force re-analysis of time sheet overlaps after any modification of time sheets.
-      recheckTimesheetOverlap(obj.getUserId());
+    updateIntervalIndexAfterCommit(obj.getUserId(), obj, obj.isDeleted());
+    resetModificationStamp(obj.getUserId());
+  }
+
+  /**
+   * Removes the time period from the index of the user after commit (marked as deleted).
+   * @see org.projectforge.core.BaseDao#afterDelete(org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  protected void afterDelete(final TimesheetDO obj)
+  {
+    super.afterDelete(obj);
+    updateIntervalIndexAfterCommit(obj.getUserId(), obj, true);
+  }
+
+  /**
+   * Adds the duration of the new time sheet to the durations of the task tree (after commit).
+   * @see org.projectforge.core.BaseDao#afterSave(org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  protected void afterSave(final TimesheetDO obj)
+  {
+    super.afterSave(obj);
+    updateTotalDurationsAfterCommit(null, obj);
+  }
+
+  /**
+   * Updates the durations of the task tree by the difference of the old and the new time sheet (the task may be changed).
+   * @see org.projectforge.core.BaseDao#afterUpdate(org.projectforge.core.ExtendedBaseDO, org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  protected void afterUpdate(final TimesheetDO obj, final TimesheetDO dbObj)
+  {
+    super.afterUpdate(obj, dbObj);
+    if (dbObj != null && dbObj.getUserId() != null && dbObj.getUserId().equals(obj.getUserId()) == false) {
+      // Time sheet was moved to another user:
+      updateIntervalIndexAfterCommit(dbObj.getUserId(), obj, true);
+      resetModificationStamp(dbObj.getUserId());
+    }
+    if (dbObj == null) {
+      final Integer taskId = obj.getTaskId();
+      runAfterCommit(new Runnable() {
+        public void run()
+        {
+          taskTree.resetTotalDuration(taskId);
+        }
+      });
+      return;
+    }
+    if (dbObj.isDeleted() == true) {
+      // Update doesn't modify the deleted flag, so deleted time sheets don't contribute to the durations.
+      return;
+    }
+    updateTotalDurationsAfterCommit(dbObj, obj);
+  }
+
+  /**
+   * Subtracts the duration of the time sheet as it was before marking as deleted (the user may have changed the task in the same step).
+   * @see org.projectforge.core.BaseDao#internalMarkAsDeleted(org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
+  public void internalMarkAsDeleted(final TimesheetDO obj)
+  {
+    final TimesheetDO dbObj = internalGetById(obj.getId());
+    final TimesheetDO backup = dbObj != null ? getBackupObject(dbObj) : null;
+    super.internalMarkAsDeleted(obj);
+    updateTotalDurationsAfterCommit(backup, null);
+  }
+
+  /**
+   * Adds the duration of the undeleted time sheet.
+   * @see org.projectforge.core.BaseDao#internalUndelete(org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
+  public void internalUndelete(final TimesheetDO obj)
+  {
+    final TimesheetDO dbObj = internalGetById(obj.getId());
+    final TimesheetDO backup = dbObj != null ? getBackupObject(dbObj) : null;
+    super.internalUndelete(obj);
+    updateTotalDurationsAfterCommit(backup, obj);
+  }
+
+  /**
+   * The durations of the task tree are updated after the commit of the transaction, so a rollback doesn't falsify the durations.
+   * @param oldObj The time sheet before the modification or null if not existing before. Deleted time sheets are ignored.
+   * @param newObj The time sheet after the modification or null if deleted. Deleted time sheets are ignored.
+   */
+  private void updateTotalDurationsAfterCommit(final TimesheetDO oldObj, final TimesheetDO newObj)
+  {
+    final Integer oldTaskId = oldObj != null && oldObj.isDeleted() == false ? oldObj.getTaskId() : null;
+    final long oldDuration = oldTaskId != null ? oldObj.getDuration() / 1000 : 0;
+    final Integer newTaskId = newObj != null && newObj.isDeleted() == false ? newObj.getTaskId() : null;
+    final long newDuration = newTaskId != null ? newObj.getDuration() / 1000 : 0;
+    if (oldTaskId == null && newTaskId == null) {
+      return;
     }
-    taskTree.resetTotalDuration(obj.getTaskId());
+    runAfterCommit(new Runnable() {
+      public void run()
+      {
+        if (oldTaskId != null) {
+          taskTree.addTotalDuration(oldTaskId, -oldDuration);
+        }
+        if (newTaskId != null) {
+          taskTree.addTotalDuration(newTaskId, newDuration);
+        }
+      }
+    });
+  }
+
+  /**
+   * Only the fields needed by {@link #afterUpdate(TimesheetDO, TimesheetDO)} are copied (task, user and time period).
+   * @see org.projectforge.core.BaseDao#getBackupObject(org.projectforge.core.ExtendedBaseDO)
+   */
+  @Override
+  protected TimesheetDO getBackupObject(final TimesheetDO dbObj)
+  {
+    final TimesheetDO backup = new TimesheetDO();
+    backup.setId(dbObj.getId());
+    backup.setTask(dbObj.getTask());
+    backup.setUser(dbObj.getUser());
+    backup.setStartTime(dbObj.getStartTime());
+    backup.setStopTime(dbObj.getStopTime());
+    backup.setDeleted(dbObj.isDeleted());
+    return backup;
   }
 
   /**
@@ -357,14 +597,6 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
     }
   }
 
-  @Override
-  protected void onChange(final TimesheetDO obj, final TimesheetDO dbObj)
-  {
-    if (obj.getTaskId().compareTo(dbObj.getTaskId()) != 0) {
-      taskTree.resetTotalDuration(dbObj.getTaskId());
-    }
-  }
-
   /**
    * @see org.projectforge.core.BaseDao#prepareHibernateSearch(org.projectforge.core.ExtendedBaseDO, org.projectforge.access.OperationType)
    */
@@ -395,88 +627,133 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
   }
 
   /**
-   * Analyses all time sheets of the user and detects any collision (overlap) of the user's time sheets. The result will be cached and the
-   * duration of a new analysis is only a few milliseconds!
+   * Analyses all time sheets of the user and detects any collision (overlap) of the user's time sheets. The result is maintained by an
+   * in-memory index, which is updated after every committed modification of the user's time sheets.
    * @param user
    * @return
    */
   public Set<Integer> getTimesheetsWithTimeoverlap(final Integer userId)
   {
     Validate.notNull(userId);
-    final PFUserDO user = userGroupCache.getUser(userId);
-    Validate.notNull(user);
-    synchronized (timesheetsWithOverlapByUser) {
-      if (timesheetsWithOverlapByUser.get(userId) != null) {
-        return timesheetsWithOverlapByUser.get((userId));
-      }
-      // log.info("Getting time sheet overlaps for user: " + user.getUsername());
-      final Set<Integer> result = new HashSet<Integer>();
-      final QueryFilter queryFilter = new QueryFilter();
-      queryFilter.add(Restrictions.eq("user", user));
-      queryFilter.addOrder(Order.asc("startTime"));
-      final List<TimesheetDO> list = getList(queryFilter);
-      long endTime = 0;
-      TimesheetDO lastEntry = null;
-      for (final TimesheetDO entry : list) {
-        if (entry.getStartTime().getTime() < endTime) {
-          // Time collision!
-          result.add(entry.getId());
-          if (lastEntry != null) { // Only for first iteration
-            result.add(lastEntry.getId()); // Also collision for last entry.
-          }
-        }
-        endTime = entry.getStopTime().getTime();
-        lastEntry = entry;
-      }
-      timesheetsWithOverlapByUser.put(user.getId(), result);
-      if (CollectionUtils.isNotEmpty(result) == true) {
-        log.info("Time sheet overlaps for user '" + user.getUsername() + "': " + result);
+    return getIntervalIndex(userId).getOverlaps();
+  }
+
+  /**
+   * Gets the index of all time periods of the user's time sheets. If not yet initialized, the time periods will be read from the data base
+   * (only id, start and stop time, no entities).
+   * @param userId
+   */
+  private TimesheetIntervalIndex getIntervalIndex(final Integer userId)
+  {
+    final long updateCounter;
+    synchronized (intervalIndexByUser) {
+      final TimesheetIntervalIndex index = intervalIndexByUser.get(userId);
+      if (index != null) {
+        return index;
       }
-      return result;
+      updateCounter = intervalIndexUpdateCounter;
+    }
+    // Not holding the lock while reading from the data base:
+    final TimesheetIntervalIndex index = new TimesheetIntervalIndex();
+    @SuppressWarnings("unchecked")
+    final List<Object[]> list = getHibernateTemplate().find(
+        "select id, startTime, stopTime from TimesheetDO where user.id = ? and deleted = false order by startTime", userId);
+    for (final Object[] oa : list) {
+      index.put((Integer) oa[0], ((Date) oa[1]).getTime(), ((Date) oa[2]).getTime());
     }
+    synchronized (intervalIndexByUser) {
+      if (updateCounter == intervalIndexUpdateCounter) {
+        intervalIndexByUser.put(userId, index);
+      } // else: Modifications were committed while loading, they may be missed by this index, so it's only used once.
+    }
+    final Set<Integer> overlaps = index.getOverlaps();
+    if (CollectionUtils.isNotEmpty(overlaps) == true) {
+      log.info("Time sheet overlaps for user '" + userId + "': " + overlaps);
+    }
+    return index;
+  }
+
+  /**
+   * Updates the in-memory index of the time periods of the given user after commit, nothing to do on rollback. The time period is taken
+   * from the time sheet now, because the object may be modified by the caller until commit.
+   * @param userId The user of the index to update.
+   * @param timesheet
+   * @param remove If true, the time sheet is removed from the index (deleted or moved to another user).
+   */
+  private void updateIntervalIndexAfterCommit(final Integer userId, final TimesheetDO timesheet, final boolean remove)
+  {
+    final Integer id = timesheet.getId();
+    if (userId == null || id == null) {
+      return;
+    }
+    final boolean removeEntry = remove == true || timesheet.getStartTime() == null || timesheet.getStopTime() == null;
+    final long startTime = removeEntry == true ? 0 : timesheet.getStartTime().getTime();
+    final long stopTime = removeEntry == true ? 0 : timesheet.getStopTime().getTime();
+    runAfterCommit(new Runnable() {
+      public void run()
+      {
+        final TimesheetIntervalIndex index;
+        synchronized (intervalIndexByUser) {
+          ++intervalIndexUpdateCounter;
+          index = intervalIndexByUser.get(userId);
+        }
+        if (index == null) {
+          // Not yet loaded, nothing to do.
+          return;
+        }
+        if (removeEntry == true) {
+          index.remove(id);
+        } else {
+          index.put(id, startTime, stopTime);
+        }
+      }
+    });
   }
 
   /**
    * Deletes any existing time sheet overlap analysis and forces therefore a new analysis before next time sheet list selection. (The
-   * analysis will not be started inside this method!)
+   * analysis will not be started inside this method!)<br/>
+   * Normally not needed because the index is updated on every modification via this dao. Needed after modifications bypassing this dao
+   * (e. g. data base restore or imports by direct sql).
    * @param userId
    */
   public void recheckTimesheetOverlap(final Integer userId)
   {
     Validate.notNull(userId);
-    timesheetsWithOverlapByUser.remove(userId);
+    synchronized (intervalIndexByUser) {
+      ++intervalIndexUpdateCounter;
+      intervalIndexByUser.remove(userId);
+    }
   }
 
   /**
    * Checks if the time sheet overlaps with another time sheet of the same user. Should be checked on every insert or update (also
-   * undelete). For time collision detection deleted time sheets are ignored.
+   * undelete). For time collision detection deleted time sheets are ignored. The check is done by the in-memory index without data base
+   * access (the index contains all committed time sheets of the user).
    * @return The existing time sheet with the time period collision.
    */
   public boolean hasTimeOverlap(final TimesheetDO timesheet, final boolean throwException)
   {
     Validate.notNull(timesheet);
     Validate.notNull(timesheet.getUser());
-    final QueryFilter queryFilter = new QueryFilter();
-    queryFilter.add(Restrictions.eq("user", timesheet.getUser()));
-    queryFilter.add(Restrictions.lt("startTime", timesheet.getStopTime()));
-    queryFilter.add(Restrictions.gt("stopTime", timesheet.getStartTime()));
-    if (timesheet.getId() != null) {
-      // Update time sheet, do not compare with itself.
-      queryFilter.add(Restrictions.ne("id", timesheet.getId()));
-    }
-    final List<TimesheetDO> list = getList(queryFilter);
-    if (list != null && list.size() > 0) {
-      final TimesheetDO ts = list.get(0);
-      if (throwException == true) {
-        log.info("Time sheet collision detected of time sheet " + timesheet + " with existing time sheet " + ts);
-        final String startTime = DateHelper.formatIsoTimestamp(ts.getStartTime());
-        final String stopTime = DateHelper.formatIsoTimestamp(ts.getStopTime());
-        throw new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(ts.getId()), new MessageParam(startTime),
-            new MessageParam(stopTime));
+    final TimesheetIntervalIndex index = getIntervalIndex(timesheet.getUserId());
+    final Integer id;
+    final long startTime, stopTime;
+    synchronized (index) {
+      final int pos = index.getFirstOverlap(timesheet.getStartTime().getTime(), timesheet.getStopTime().getTime(), timesheet.getId());
+      if (pos < 0) {
+        return false;
       }
-      return true;
+      id = index.getId(pos);
+      startTime = index.getStartTime(pos);
+      stopTime = index.getStopTime(pos);
     }
-    return false;
+    if (throwException == true) {
+      log.info("Time sheet collision detected of time sheet " + timesheet + " with existing time sheet " + id);
+      throw new UserException("timesheet.error.timeperiodOverlapDetection", new MessageParam(id), new MessageParam(
+          DateHelper.formatIsoTimestamp(new Date(startTime))), new MessageParam(DateHelper.formatIsoTimestamp(new Date(stopTime))));
+    }
+    return true;
   }
 
   /**
@@ -547,6 +824,22 @@ public class TimesheetDao extends BaseDao<TimesheetDO>
     return super.hasSelectAccess(user, obj, throwException);
   }
 
+  /**
+   * Checks the select access for time sheets of the given time sheet user booked on the given task without loading any time sheet (the
+   * select access depends only on the user and the task of a time sheet). Used by aggregations such as the HR view.
+   * @param user The user to check.
+   * @param timesheetUser The owner of the time sheets.
+   * @param task
+   * @see #hasSelectAccess(PFUserDO, TimesheetDO, boolean)
+   */
+  public boolean hasSelectAccess(final PFUserDO user, final PFUserDO timesheetUser, final TaskDO task)
+  {
+    final TimesheetDO timesheet = new TimesheetDO();
+    timesheet.setUser(timesheetUser);
+    timesheet.setTask(task);
+    return hasSelectAccess(user, timesheet, false);
+  }
+
   @Override
   public boolean hasHistoryAccess(final PFUserDO user, final TimesheetDO obj, final boolean throwException)
   {
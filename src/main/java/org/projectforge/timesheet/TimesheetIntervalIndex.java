@@ -0,0 +1,232 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.timesheet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of all (not deleted) time sheets of one user for detecting time period overlaps without data base access. The time
+ * periods are stored in primitive arrays sorted by start time. Because the duration of time sheets is limited, an overlap query only has to
+ * check the entries starting within the maximum duration before the given period: O(log n + k).<br/>
+ * The set of all time sheets with collisions is maintained incrementally on every modification.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+class TimesheetIntervalIndex
+{
+  private static final int INITIAL_CAPACITY = 64;
+
+  private long[] startTimes = new long[INITIAL_CAPACITY];
+
+  private long[] stopTimes = new long[INITIAL_CAPACITY];
+
+  private int[] ids = new int[INITIAL_CAPACITY];
+
+  private int size;
+
+  /** Maximum duration of all entries, used for limiting the search range. */
+  private long maxDuration;
+
+  /** For finding the position of a time sheet by binary search. */
+  private final Map<Integer, Long> startTimeById = new HashMap<Integer, Long>();
+
+  /** Ids of all time sheets overlapping with at least one other time sheet. */
+  private final Set<Integer> overlaps = new HashSet<Integer>();
+
+  /**
+   * Adds the given time sheet. Any existing entry with the same id will be replaced.
+   * @param id
+   * @param startTime
+   * @param stopTime
+   */
+  synchronized void put(final int id, final long startTime, final long stopTime)
+  {
+    remove(id);
+    if (size == ids.length) {
+      final int capacity = ids.length * 2;
+      startTimes = Arrays.copyOf(startTimes, capacity);
+      stopTimes = Arrays.copyOf(stopTimes, capacity);
+      ids = Arrays.copyOf(ids, capacity);
+    }
+    final int pos = upperBound(startTime);
+    System.arraycopy(startTimes, pos, startTimes, pos + 1, size - pos);
+    System.arraycopy(stopTimes, pos, stopTimes, pos + 1, size - pos);
+    System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+    startTimes[pos] = startTime;
+    stopTimes[pos] = stopTime;
+    ids[pos] = id;
+    size++;
+    startTimeById.put(id, startTime);
+    if (stopTime - startTime > maxDuration) {
+      maxDuration = stopTime - startTime;
+    }
+    final List<Integer> colliding = getOverlaps(startTime, stopTime, id);
+    if (colliding.isEmpty() == false) {
+      overlaps.add(id);
+      overlaps.addAll(colliding);
+    }
+  }
+
+  /**
+   * Removes the time sheet with the given id if exists.
+   * @param id
+   * @return true if the entry was found and removed.
+   */
+  synchronized boolean remove(final int id)
+  {
+    final int pos = indexOf(id);
+    if (pos < 0) {
+      return false;
+    }
+    final long startTime = startTimes[pos];
+    final long stopTime = stopTimes[pos];
+    System.arraycopy(startTimes, pos + 1, startTimes, pos, size - pos - 1);
+    System.arraycopy(stopTimes, pos + 1, stopTimes, pos, size - pos - 1);
+    System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+    size--;
+    startTimeById.remove(id);
+    if (overlaps.remove(id) == true) {
+      // Former collision partners may be collision free now:
+      for (final Integer other : getOverlaps(startTime, stopTime, id)) {
+        final int otherPos = indexOf(other);
+        if (getOverlaps(startTimes[otherPos], stopTimes[otherPos], other).isEmpty() == true) {
+          overlaps.remove(other);
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param startTime
+   * @param stopTime
+   * @param excludeId Id of the time sheet to ignore (the time sheet itself on update) or null.
+   * @return The position of the first time sheet overlapping the given time period or -1 if no overlap exists. Synchronize on this index
+   *         for reading the entry at this position (see {@link #getId(int)} etc.).
+   */
+  synchronized int getFirstOverlap(final long startTime, final long stopTime, final Integer excludeId)
+  {
+    final int from = lowerBound(startTime - maxDuration);
+    for (int i = from; i < size && startTimes[i] < stopTime; i++) {
+      if (stopTimes[i] > startTime && (excludeId == null || ids[i] != excludeId)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  synchronized int getId(final int pos)
+  {
+    return ids[pos];
+  }
+
+  synchronized long getStartTime(final int pos)
+  {
+    return startTimes[pos];
+  }
+
+  synchronized long getStopTime(final int pos)
+  {
+    return stopTimes[pos];
+  }
+
+  /**
+   * @return The ids of all time sheets with a time collision with at least one other time sheet (unmodifiable copy).
+   */
+  synchronized Set<Integer> getOverlaps()
+  {
+    return Collections.unmodifiableSet(new HashSet<Integer>(overlaps));
+  }
+
+  synchronized int size()
+  {
+    return size;
+  }
+
+  private List<Integer> getOverlaps(final long startTime, final long stopTime, final int excludeId)
+  {
+    final List<Integer> result = new ArrayList<Integer>();
+    final int from = lowerBound(startTime - maxDuration);
+    for (int i = from; i < size && startTimes[i] < stopTime; i++) {
+      if (stopTimes[i] > startTime && ids[i] != excludeId) {
+        result.add(ids[i]);
+      }
+    }
+    return result;
+  }
+
+  private int indexOf(final int id)
+  {
+    final Long startTime = startTimeById.get(id);
+    if (startTime == null) {
+      return -1;
+    }
+    for (int i = lowerBound(startTime); i < size && startTimes[i] == startTime; i++) {
+      if (ids[i] == id) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return The first position with a start time greater or equal to the given time.
+   */
+  private int lowerBound(final long time)
+  {
+    int low = 0, high = size;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (startTimes[mid] < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return The first position with a start time greater than the given time.
+   */
+  private int upperBound(final long time)
+  {
+    int low = 0, high = size;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (startTimes[mid] <= time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
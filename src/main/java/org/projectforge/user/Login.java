@@ -47,9 +47,23 @@ public class Login
   private LoginHandler loginHandler;
 
   /**
-   * @see LoginHandler#checkLogin(String, String)
+   * @see #checkLogin(String, String, String)
    */
   public LoginResult checkLogin(final String username, final String password)
+  {
+    return checkLogin(username, password, null);
+  }
+
+  /**
+   * Failed logins are counted by {@link LoginProtection} (shared by all login handlers and the rest authentication). If the user or the
+   * client ip is locked due to too many failed logins, the status {@link LoginResultStatus#LOCKED} is returned immediately without asking
+   * the login handler.
+   * @param username
+   * @param password
+   * @param clientIp The remote address of the client, may be null.
+   * @see LoginHandler#checkLogin(String, String)
+   */
+  public LoginResult checkLogin(final String username, final String password, final String clientIp)
   {
     if (loginHandler == null) {
       log.warn("No login possible because no login handler is defined yet.");
@@ -58,14 +72,18 @@ public class Login
     if (username == null || password == null) {
       return new LoginResult().setLoginResultStatus(LoginResultStatus.FAILED);
     }
+    final LoginProtection loginProtection = LoginProtection.instance();
+    final long lockTime = loginProtection.getLockTime(username, clientIp);
+    if (lockTime > 0) {
+      // Avoid brute force attack:
+      log.warn("Login of user '" + username + "' from ip '" + clientIp + "' rejected (locked for further " + lockTime / 1000 + "s).");
+      return new LoginResult().setLoginResultStatus(LoginResultStatus.LOCKED);
+    }
     final LoginResult result = loginHandler.checkLogin(username, password);
     if (result.getLoginResultStatus() == LoginResultStatus.FAILED) {
-      try {
-        // Avoid brute force attack:
-        Thread.sleep(1000);
-      } catch (final InterruptedException ex) {
-        log.fatal("Exception encountered while Thread.sleep(1000): " + ex, ex);
-      }
+      loginProtection.loginFailed(username, clientIp);
+    } else if (result.getLoginResultStatus() == LoginResultStatus.SUCCESS) {
+      loginProtection.loginSucceeded(username, clientIp);
     }
     return result;
   }
@@ -0,0 +1,311 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.user;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.projectforge.common.DateHelper;
+
+/**
+ * Protection against brute force attacks for all kinds of authentication (login page via any login handler and rest calls). The failed
+ * attempts are counted per user name and client ip and per client ip. After a number of free attempts the user name (for this ip only, so
+ * an attacker can't lock out a user from other ip's) or the ip is locked for a time period which is doubled by every further failed
+ * attempt (exponential backoff). Requests of locked users or ip's should be rejected immediately (no thread is blocked by sleeping).<br/>
+ * A successful login of a user after failed attempts of this user from the same ip decrements the counter of the ip, so an ip shared by
+ * many users (e. g. the company's proxy) isn't locked by the occasional typos of its users. Successful logins without preceding failures
+ * don't decrement the counter, otherwise an attacker owning one account could spray passwords by alternating failed and valid logins.<br/>
+ * The counters are kept in two maps limited to {@link #MAX_ENTRIES} entries each, the least recently used entries are evicted (so random
+ * user names can't exhaust the memory). User entries are removed after a successful login, expired entries (no failed attempt for
+ * {@link #EXPIRE_TIME}) are reset on the next failure.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class LoginProtection
+{
+  private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(LoginProtection.class);
+
+  private static final LoginProtection instance = new LoginProtection();
+
+  /** Number of failed attempts of a user from one ip without any lock. */
+  static final int FREE_ATTEMPTS_PER_USER = 3;
+
+  /** Number of failed attempts of an ip without any lock (higher, because many users may share one ip). */
+  static final int FREE_ATTEMPTS_PER_IP = 10;
+
+  static final long INITIAL_LOCK_TIME = 1000;
+
+  static final long MAX_LOCK_TIME = DateHelper.MILLIS_HOUR;
+
+  static final long EXPIRE_TIME = DateHelper.MILLIS_HOUR;
+
+  static final int MAX_ENTRIES = 10000;
+
+  private final AtomicLong failedCounter = new AtomicLong();
+
+  private final AtomicLong blockedCounter = new AtomicLong();
+
+  private final AtomicLong evictedCounter = new AtomicLong();
+
+  private final AttemptsMap userAttempts = new AttemptsMap(MAX_ENTRIES, evictedCounter);
+
+  private final AttemptsMap ipAttempts = new AttemptsMap(MAX_ENTRIES, evictedCounter);
+
+  public static LoginProtection instance()
+  {
+    return instance;
+  }
+
+  /**
+   * @param username May be null (e. g. for authentication tokens use the user id instead).
+   * @param clientIp May be null.
+   * @return The remaining lock time in millis or 0 if the login is allowed. Every call returning a lock time is counted as blocked attempt.
+   */
+  public long getLockTime(final String username, final String clientIp)
+  {
+    final long now = System.currentTimeMillis();
+    final long lockTime = Math.max(getLockTime(userAttempts, getUserKey(username, clientIp), now), getLockTime(ipAttempts, clientIp, now));
+    if (lockTime > 0) {
+      blockedCounter.incrementAndGet();
+    }
+    return lockTime;
+  }
+
+  /**
+   * Should be called after every failed authentication.
+   * @param username
+   * @param clientIp
+   */
+  public void loginFailed(final String username, final String clientIp)
+  {
+    failedCounter.incrementAndGet();
+    final long now = System.currentTimeMillis();
+    final long userLockTime = increment(userAttempts, getUserKey(username, clientIp), FREE_ATTEMPTS_PER_USER, now);
+    final long ipLockTime = increment(ipAttempts, clientIp, FREE_ATTEMPTS_PER_IP, now);
+    if (userLockTime > 0 || ipLockTime > 0) {
+      log.warn("Login of user '" + username + "' from ip '" + clientIp + "' locked for " + Math.max(userLockTime, ipLockTime) / 1000
+          + "s due to failed login attempts.");
+    }
+  }
+
+  /**
+   * Should be called after a successful authentication by password (not for authentication tokens). Resets the failed attempts of the
+   * given user from the given ip. Only if this user had failed attempts from this ip, the failed attempts of the ip are decremented by one
+   * (not reset, because an attacker may own an account).
+   * @param username
+   * @param clientIp
+   */
+  public void loginSucceeded(final String username, final String clientIp)
+  {
+    final String userKey = getUserKey(username, clientIp);
+    if (userKey == null || userAttempts.remove(userKey) == null) {
+      return;
+    }
+    if (clientIp != null) {
+      final Attempts attempts = ipAttempts.get(clientIp);
+      if (attempts != null) {
+        attempts.decrement();
+      }
+    }
+  }
+
+  /**
+   * @return The total number of failed authentications.
+   */
+  public long getFailedCount()
+  {
+    return failedCounter.get();
+  }
+
+  /**
+   * @return The total number of rejected authentication requests due to locked user names or ip's.
+   */
+  public long getBlockedCount()
+  {
+    return blockedCounter.get();
+  }
+
+  /**
+   * @return The number of user names and ip's with failed attempts.
+   */
+  public int getNumberOfEntries()
+  {
+    return userAttempts.size() + ipAttempts.size();
+  }
+
+  /**
+   * @return The total number of entries evicted because the maximum number of entries was reached.
+   */
+  public long getEvictedCount()
+  {
+    return evictedCounter.get();
+  }
+
+  public String getStatistics()
+  {
+    return "failed=" + getFailedCount() + ", blocked=" + getBlockedCount() + ", users=" + userAttempts.size() + ", ips=" + ipAttempts.size()
+        + ", evicted=" + getEvictedCount();
+  }
+
+  /**
+   * Only for test cases.
+   */
+  void clear()
+  {
+    userAttempts.clear();
+    ipAttempts.clear();
+  }
+
+  /**
+   * @return The key of the user attempts: the user name combined with the client ip (if given).
+   */
+  private String getUserKey(final String username, final String clientIp)
+  {
+    if (username == null) {
+      return null;
+    }
+    return clientIp != null ? username + "|" + clientIp : username;
+  }
+
+  private long getLockTime(final AttemptsMap map, final String key, final long now)
+  {
+    if (key == null) {
+      return 0;
+    }
+    final Attempts attempts = map.get(key);
+    return attempts != null ? attempts.getLockTime(now) : 0;
+  }
+
+  /**
+   * @return The lock time after this failed attempt.
+   */
+  private long increment(final AttemptsMap map, final String key, final int freeAttempts, final long now)
+  {
+    if (key == null) {
+      return 0;
+    }
+    return map.getOrCreate(key).increment(freeAttempts, now);
+  }
+
+  /**
+   * Access ordered map with a maximum number of entries: the least recently used entry is evicted if the maximum is exceeded. All methods
+   * are synchronized, every call is O(1).
+   */
+  private static class AttemptsMap
+  {
+    private final Map<String, Attempts> map;
+
+    AttemptsMap(final int maxEntries, final AtomicLong evictedCounter)
+    {
+      map = new LinkedHashMap<String, Attempts>(16, 0.75f, true) {
+        private static final long serialVersionUID = 6313853318367364758L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Attempts> eldest)
+        {
+          if (size() > maxEntries) {
+            evictedCounter.incrementAndGet();
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+
+    synchronized Attempts get(final String key)
+    {
+      return map.get(key);
+    }
+
+    synchronized Attempts getOrCreate(final String key)
+    {
+      Attempts attempts = map.get(key);
+      if (attempts == null) {
+        attempts = new Attempts();
+        map.put(key, attempts);
+      }
+      return attempts;
+    }
+
+    synchronized Attempts remove(final String key)
+    {
+      return map.remove(key);
+    }
+
+    synchronized int size()
+    {
+      return map.size();
+    }
+
+    synchronized void clear()
+    {
+      map.clear();
+    }
+  }
+
+  private static class Attempts
+  {
+    private int counter;
+
+    private long lastFailure;
+
+    private long lockedUntil;
+
+    synchronized long increment(final int freeAttempts, final long now)
+    {
+      if (isExpired(now) == true) {
+        counter = 0;
+        lockedUntil = 0;
+      }
+      lastFailure = now;
+      if (++counter <= freeAttempts) {
+        return 0;
+      }
+      final int exponent = Math.min(counter - freeAttempts - 1, 30);
+      final long lockTime = Math.min(INITIAL_LOCK_TIME << exponent, MAX_LOCK_TIME);
+      lockedUntil = now + lockTime;
+      return lockTime;
+    }
+
+    /**
+     * A successful login doesn't remove an existing lock, but the next lock after a failure will be shorter.
+     */
+    synchronized void decrement()
+    {
+      if (counter > 0) {
+        --counter;
+      }
+    }
+
+    synchronized long getLockTime(final long now)
+    {
+      return lockedUntil > now ? lockedUntil - now : 0;
+    }
+
+    synchronized boolean isExpired(final long now)
+    {
+      return now - lastFailure > EXPIRE_TIME && lockedUntil <= now;
+    }
+  }
+}
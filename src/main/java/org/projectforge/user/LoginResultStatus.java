@@ -32,7 +32,8 @@ import org.projectforge.core.I18nEnum;
  */
 public enum LoginResultStatus implements I18nEnum
 {
-  ADMIN_LOGIN_REQUIRED("adminLoginRequired"), FAILED("error.loginFailed"), LOGIN_EXPIRED("error.loginExpired"), SUCCESS("success");
+  ADMIN_LOGIN_REQUIRED("adminLoginRequired"), FAILED("error.loginFailed"), LOGIN_EXPIRED("error.loginExpired"), LOCKED("error.loginLocked"),
+  SUCCESS("success");
 
   private String key;
 
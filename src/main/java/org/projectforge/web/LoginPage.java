@@ -218,7 +218,8 @@ public class LoginPage extends AbstractUnsecureBasePage
   public static String internalCheckLogin(final WebPage page, final UserDao userDao, final String username, final String password,
       final boolean userWantsToStayLoggedIn, final Class< ? extends WebPage> defaultPage)
   {
-    final LoginResult loginResult = Login.getInstance().checkLogin(username, password);
+    final String clientIp = UserFilter.getClientIp(WicketUtils.getHttpServletRequest(page.getRequest()));
+    final LoginResult loginResult = Login.getInstance().checkLogin(username, password, clientIp);
     final PFUserDO user = loginResult.getUser();
     if (user == null || loginResult.getLoginResultStatus() != LoginResultStatus.SUCCESS) {
       return loginResult.getLoginResultStatus().getI18nKey();
@@ -44,6 +44,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.MDC;
 import org.projectforge.common.NumberHelper;
 import org.projectforge.common.StringHelper;
+import org.projectforge.core.ConfigXml;
 import org.projectforge.user.Login;
 import org.projectforge.user.PFUserContext;
 import org.projectforge.user.PFUserDO;
@@ -182,6 +183,38 @@ public class UserFilter implements Filter
     return (PFUserDO) session.getAttribute(SESSION_KEY_USER);
   }
 
+  /**
+   * @return The address of the client. If a client ip header is configured (reverse proxy) the address given by this header is returned,
+   *         otherwise the remote address of the request.
+   * @see ConfigXml#getClientIpHeader()
+   */
+  public static String getClientIp(final HttpServletRequest request)
+  {
+    final String clientIpHeader = ConfigXml.isInitialized() == true ? ConfigXml.getInstance().getClientIpHeader() : null;
+    return getClientIp(request, clientIpHeader);
+  }
+
+  /**
+   * Proxies append the address of their client to headers such as X-Forwarded-For ("client, proxy1, proxy2"). Therefore the last address is
+   * used: it's set by the own reverse proxy, whereas the preceding addresses may be forged by the client.
+   * @param request
+   * @param clientIpHeader The name of the header containing the client's address, may be null.
+   * @return The last address of the given header if given, otherwise the remote address of the request.
+   */
+  static String getClientIp(final HttpServletRequest request, final String clientIpHeader)
+  {
+    if (StringUtils.isNotBlank(clientIpHeader) == true) {
+      final String value = request.getHeader(clientIpHeader);
+      if (StringUtils.isNotBlank(value) == true) {
+        final String clientIp = StringUtils.substringAfterLast("," + value, ",").trim();
+        if (clientIp.length() > 0) {
+          return clientIp;
+        }
+      }
+    }
+    return request.getRemoteAddr();
+  }
+
   public void destroy()
   {
     // do nothing
@@ -218,7 +251,7 @@ public class UserFilter implements Filter
     final HttpServletResponse response = (HttpServletResponse) resp;
     PFUserDO user = null;
     try {
-      MDC.put("ip", request.getRemoteAddr());
+      MDC.put("ip", getClientIp(request));
       MDC.put("session", request.getSession().getId());
       if (ignoreFilterFor(request) == true) {
         // Ignore the filter for this request:
@@ -394,6 +394,26 @@ public class AddressListPage extends AbstractListPage<AddressListForm, AddressDa
     return MY_BOOKMARKABLE_INITIAL_PROPERTIES;
   }
 
+  /**
+   * Addresses are loaded page by page, ordered by the name if no other sort column is chosen (the newest addresses and the favorites are
+   * loaded completely).
+   * @see org.projectforge.web.wicket.AbstractListPage#getKeysetProperty()
+   */
+  @Override
+  protected String getKeysetProperty()
+  {
+    return "name";
+  }
+
+  /**
+   * @see org.projectforge.web.wicket.AbstractListPage#isKeysetAscending()
+   */
+  @Override
+  protected boolean isKeysetAscending()
+  {
+    return true;
+  }
+
   @Override
   public void refresh()
   {
@@ -33,6 +33,7 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.model.PropertyModel;
 import org.projectforge.AppVersion;
 import org.projectforge.common.DateHelper;
+import org.projectforge.database.ReindexProgress;
 import org.projectforge.user.PFUserContext;
 import org.projectforge.web.wicket.AbstractStandardForm;
 import org.projectforge.web.wicket.WicketApplication;
@@ -141,6 +142,46 @@ public class AdminForm extends AbstractStandardForm<AdminForm, AdminPage>
           parentPage.reindex();
         }
       }.getButtonPanel());
+      fs.add(new MyButtonPanel(fs.newChildId(), "reindex.cancel") {
+        @Override
+        public void onSubmit()
+        {
+          parentPage.cancelReindex();
+        }
+
+        @Override
+        public boolean isVisible()
+        {
+          for (final ReindexProgress progress : parentPage.getReindexProgress()) {
+            if (progress.isRunning() == true) {
+              return true;
+            }
+          }
+          return false;
+        }
+      }.getButtonPanel());
+    }
+    {
+      final FieldsetPanel fs = new FieldsetPanel(gridBuilder.getPanel(), getString("system.admin.reindex.progress")) {
+        @Override
+        public boolean isVisible()
+        {
+          return parentPage.getReindexProgress().isEmpty() == false;
+        }
+      }.suppressLabelForWarning();
+      final DivTextPanel progressPanel = new DivTextPanel(fs.newChildId(), new Model<String>() {
+        @Override
+        public String getObject()
+        {
+          final StringBuffer buf = new StringBuffer();
+          for (final ReindexProgress progress : parentPage.getReindexProgress()) {
+            buf.append(progress.toString()).append("<br/>\n");
+          }
+          return buf.toString();
+        }
+      });
+      progressPanel.getLabel().setEscapeModelStrings(false);
+      fs.add(progressPanel);
     }
 
     gridBuilder.newGridPanel();
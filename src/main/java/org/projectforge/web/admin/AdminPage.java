@@ -23,9 +23,9 @@
 
 package org.projectforge.web.admin;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -38,6 +38,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
 import org.projectforge.book.BookDO;
 import org.projectforge.book.BookDao;
 import org.projectforge.book.BookStatus;
@@ -48,7 +49,9 @@ import org.projectforge.core.ConfigurationParam;
 import org.projectforge.core.HibernateSearchReindexer;
 import org.projectforge.core.ReindexSettings;
 import org.projectforge.core.SystemDao;
+import org.projectforge.database.DatabaseDao;
 import org.projectforge.database.MyDatabaseUpdater;
+import org.projectforge.database.ReindexProgress;
 import org.projectforge.database.XmlDump;
 import org.projectforge.meb.MebMailClient;
 import org.projectforge.plugins.core.AbstractPlugin;
@@ -83,6 +86,9 @@ public class AdminPage extends AbstractStandardFormPage implements ISelectCaller
   @SpringBean(name = "xmlDump")
   private XmlDump xmlDump;
 
+  @SpringBean(name = "databaseDao")
+  private DatabaseDao databaseDao;
+
   @SpringBean(name = "systemDao")
   private SystemDao systemDao;
 
@@ -508,9 +514,22 @@ public class AdminPage extends AbstractStandardFormPage implements ISelectCaller
     myDatabaseUpdater.getDatabaseUpdateDao().fixDBHistoryEntries();
     final String ts = DateHelper.getTimestampAsFilenameSuffix(new Date());
     final String filename = "projectforgedump_" + ts + ".xml.gz";
-    final ByteArrayOutputStream out = new ByteArrayOutputStream();
-    xmlDump.dumpDatabase(filename, out);
-    DownloadUtils.setDownloadTarget(out.toByteArray(), filename);
+    // The dump is streamed directly to the response.
+    DownloadUtils.setDownloadTarget(new AbstractResourceStreamWriter() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void write(final OutputStream output)
+      {
+        xmlDump.dumpDatabaseAsStream(filename, output);
+      }
+
+      @Override
+      public String getContentType()
+      {
+        return DownloadUtils.getContentType(filename);
+      }
+    }, filename);
   }
 
   protected void reindex()
@@ -522,6 +541,21 @@ public class AdminPage extends AbstractStandardFormPage implements ISelectCaller
     setResponsePage(new MessagePage("administration.databaseSearchIndicesRebuild", tables));
   }
 
+  protected void cancelReindex()
+  {
+    log.info("Administration: cancel re-index.");
+    checkAccess();
+    databaseDao.cancelReindex();
+  }
+
+  /**
+   * @return The progress of the current or last full re-index run (entities per class and throughput).
+   */
+  protected List<ReindexProgress> getReindexProgress()
+  {
+    return databaseDao.getReindexProgress();
+  }
+
   protected void schemaExport()
   {
     log.info("Administration: schema export.");
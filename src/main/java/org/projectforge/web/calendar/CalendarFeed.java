@@ -24,22 +24,22 @@
 package org.projectforge.web.calendar;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import net.fortuna.ical4j.data.CalendarOutputter;
-import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.PropertyList;
 import net.fortuna.ical4j.model.TimeZone;
-import net.fortuna.ical4j.model.ValidationException;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.CalScale;
 import net.fortuna.ical4j.model.property.Description;
@@ -48,6 +48,7 @@ import net.fortuna.ical4j.model.property.ProdId;
 import net.fortuna.ical4j.model.property.Version;
 import net.ftlines.wicket.fullcalendar.Event;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.MDC;
@@ -57,8 +58,11 @@ import org.projectforge.calendar.DayHolder;
 import org.projectforge.calendar.ICal4JUtils;
 import org.projectforge.common.NumberHelper;
 import org.projectforge.common.StringHelper;
+import org.projectforge.core.ModificationStamp;
+import org.projectforge.core.ResultHandler;
 import org.projectforge.plugins.teamcal.TeamCalConfig;
 import org.projectforge.registry.Registry;
+import org.projectforge.task.TaskDao;
 import org.projectforge.timesheet.TimesheetDO;
 import org.projectforge.timesheet.TimesheetDao;
 import org.projectforge.timesheet.TimesheetFilter;
@@ -71,7 +75,9 @@ import org.projectforge.web.timesheet.TimesheetEventsProvider;
 
 /**
  * Feed Servlet, which generates a 'text/calendar' output of the last four mounts. Currently relevant informations are date, start- and stop
- * time and last but not least the location of an event.
+ * time and last but not least the location of an event.<br/>
+ * The events are streamed to the client. An ETag and the Last-Modified header are sent (built from the modification stamps of the
+ * exported entries), so unmodified calendars are answered with 304 (not modified) without any data base access.
  * 
  * @author Kai Reinhard (k.reinhard@micromata.de)
  * 
@@ -92,6 +98,11 @@ public class CalendarFeed extends HttpServlet
 
   private static final List<CalendarFeedHook> feedHooks = new LinkedList<CalendarFeedHook>();
 
+  /**
+   * Marker for invalid time sheet users.
+   */
+  private static final PFUserDO NO_USER = new PFUserDO();
+
   /**
    * setup event is needed for empty calendars
    */
@@ -178,7 +189,6 @@ public class CalendarFeed extends HttpServlet
         return;
       }
       final Map<String, String> params = StringHelper.getKeyValues(decryptedParams, "&");
-      final Calendar calendar = createCal(params, userId, params.get("token"), params.get(PARAM_NAME_TIMESHEET_USER));
       final StringBuffer buf = new StringBuffer();
       boolean first = true;
       for (final Map.Entry<String, String> entry : params.entrySet()) {
@@ -191,19 +201,35 @@ public class CalendarFeed extends HttpServlet
       logMessage = buf.toString();
       log.info("Getting calendar entries for: " + logMessage);
 
-      if (calendar == null) {
+      final PFUserDO loggedInUser = authenticate(userId, params.get("token"));
+      if (loggedInUser == null) {
         resp.sendError(HttpStatus.SC_BAD_REQUEST);
         log.error("Bad request, can't find calendar.");
         return;
       }
-
-      resp.setContentType("text/calendar");
-      final CalendarOutputter output = new CalendarOutputter(false);
-      try {
-        output.output(calendar, resp.getOutputStream());
-      } catch (final ValidationException ex) {
-        ex.printStackTrace();
+      final PFUserDO timesheetUser = getTimesheetUser(loggedInUser, params.get(PARAM_NAME_TIMESHEET_USER));
+      if (timesheetUser == NO_USER) {
+        resp.sendError(HttpStatus.SC_BAD_REQUEST);
+        log.error("Bad request, can't find calendar.");
+        return;
       }
+      final ModificationStamp stamp = getModificationStamp(params, timesheetUser);
+      if (stamp != null) {
+        final String eTag = getETag(loggedInUser, params, stamp);
+        if (isNotModified(req, eTag, stamp) == true) {
+          log.info("Calendar not modified (ETag=" + eTag + "), nothing to be sent.");
+          resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+          return;
+        }
+        resp.setHeader("ETag", eTag);
+        if (stamp.getLastModified() > 0) {
+          resp.setDateHeader("Last-Modified", stamp.getLastModified());
+        }
+      }
+      resp.setContentType("text/calendar");
+      resp.setCharacterEncoding("UTF-8");
+      final CalendarFeedWriter writer = new CalendarFeedWriter(resp.getOutputStream());
+      writeCal(writer, params, loggedInUser, timesheetUser);
     } finally {
       log.info("Finished request: " + logMessage);
       PFUserContext.setUser(null);
@@ -216,66 +242,160 @@ public class CalendarFeed extends HttpServlet
   }
 
   /**
-   * creates a calendar for the user, identified by his name and authentication key.
-   * @param params
-   * 
-   * @param userName
-   * @param userKey
-   * @return a calendar, null if authentication fails
+   * The user is authenticated by the user group cache if the token of the cached user matches, so no data base access is needed for
+   * unmodified calendars. Otherwise the data base is asked (the cache may be outdated).
+   * @param userId
+   * @param authKey
+   * @return The authenticated user or null if the authentication fails.
    */
-  private Calendar createCal(final Map<String, String> params, final Integer userId, final String authKey, final String timesheetUserParam)
+  private PFUserDO authenticate(final Integer userId, final String authKey)
   {
+    if (StringUtils.isBlank(authKey) == true) {
+      return null;
+    }
     final UserDao userDao = Registry.instance().getDao(UserDao.class);
-    final PFUserDO loggedInUser = userDao.getUserByAuthenticationToken(userId, authKey);
+    final PFUserDO cachedUser = userDao.getUserGroupCache().getUser(userId);
+    if (cachedUser != null && authKey.equals(cachedUser.getAuthenticationToken()) == true && cachedUser.hasSystemAccess() == true) {
+      return cachedUser;
+    }
+    return userDao.getUserByAuthenticationToken(userId, authKey);
+  }
 
-    if (loggedInUser == null) {
+  /**
+   * @return The time sheet user, null if no time sheets are requested or {@link #NO_USER} if the requested time sheet user isn't allowed or
+   *         doesn't exist.
+   */
+  private PFUserDO getTimesheetUser(final PFUserDO loggedInUser, final String timesheetUserParam)
+  {
+    if (StringUtils.isBlank(timesheetUserParam) == true) {
       return null;
     }
-    PFUserDO timesheetUser = null;
-    if (StringUtils.isNotBlank(timesheetUserParam) == true) {
-      final Integer timesheetUserId = NumberHelper.parseInteger(timesheetUserParam);
-      if (timesheetUserId != null) {
-        if (timesheetUserId.equals(loggedInUser.getId()) == false) {
-          log.error("Not yet allowed: all users are only allowed to download their own time-sheets.");
-          return null;
-        }
-        timesheetUser = userDao.getUserGroupCache().getUser(timesheetUserId);
-        if (timesheetUser == null) {
-          log.error("Time-sheet user with id '" + timesheetUserParam + "' not found.");
-          return null;
+    final Integer timesheetUserId = NumberHelper.parseInteger(timesheetUserParam);
+    if (timesheetUserId == null) {
+      return null;
+    }
+    if (timesheetUserId.equals(loggedInUser.getId()) == false) {
+      log.error("Not yet allowed: all users are only allowed to download their own time-sheets.");
+      return NO_USER;
+    }
+    final PFUserDO timesheetUser = Registry.instance().getUserGroupCache().getUser(timesheetUserId);
+    if (timesheetUser == null) {
+      log.error("Time-sheet user with id '" + timesheetUserParam + "' not found.");
+      return NO_USER;
+    }
+    return timesheetUser;
+  }
+
+  /**
+   * @return The merged modification stamps of the time sheets (including tasks and access rights, because the task titles are exported and
+   *         the visible fields depend on the access rights) and of all feed hooks or null, if any feed hook doesn't support modification
+   *         stamps for the given params.
+   */
+  private ModificationStamp getModificationStamp(final Map<String, String> params, final PFUserDO timesheetUser)
+  {
+    ModificationStamp stamp = new ModificationStamp(0, 0);
+    if (timesheetUser != null) {
+      stamp = stamp.merge(Registry.instance().getDao(TimesheetDao.class).getModificationStamp(timesheetUser.getId()));
+      stamp = stamp.merge(Registry.instance().getDao(TaskDao.class).getModificationStamp());
+    }
+    for (final CalendarFeedHook hook : feedHooks) {
+      final ModificationStamp hookStamp = hook.getModificationStamp(params);
+      if (hookStamp == null) {
+        // Hook doesn't support conditional requests.
+        return null;
+      }
+      stamp = stamp.merge(hookStamp);
+    }
+    return stamp;
+  }
+
+  /**
+   * The ETag depends on the user and its groups (access rights), the requested params (without token), the user's locale and time zone,
+   * the current day (the time periods of the exported entries depend on the current day) and on the modification stamp of the exported
+   * entries.
+   */
+  private String getETag(final PFUserDO loggedInUser, final Map<String, String> params, final ModificationStamp stamp)
+  {
+    final StringBuffer buf = new StringBuffer();
+    buf.append(loggedInUser.getId());
+    final Collection<Integer> groupIds = Registry.instance().getUserGroupCache().getUserGroups(loggedInUser);
+    if (groupIds != null) {
+      buf.append('|').append(new TreeSet<Integer>(groupIds));
+    }
+    for (final Map.Entry<String, String> entry : new TreeMap<String, String>(params).entrySet()) {
+      if ("token".equals(entry.getKey()) == true) {
+        continue;
+      }
+      buf.append('&').append(entry.getKey()).append('=').append(entry.getValue());
+    }
+    buf.append('|').append(PFUserContext.getLocale()).append('|').append(PFUserContext.getTimeZone().getID());
+    buf.append('|').append(new DayHolder().getDate().getTime()).append('|').append(stamp);
+    return "\"" + DigestUtils.md5Hex(buf.toString()) + "\"";
+  }
+
+  /**
+   * If-None-Match has precedence over If-Modified-Since.
+   */
+  private boolean isNotModified(final HttpServletRequest req, final String eTag, final ModificationStamp stamp)
+  {
+    final String ifNoneMatch = req.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (final String tag : StringUtils.split(ifNoneMatch, ',')) {
+        final String trimmed = tag.trim();
+        if ("*".equals(trimmed) == true || eTag.equals(trimmed) == true || eTag.equals("W/" + trimmed) == true
+            || ("W/" + eTag).equals(trimmed) == true) {
+          return true;
         }
       }
+      return false;
+    }
+    final long ifModifiedSince;
+    try {
+      ifModifiedSince = req.getDateHeader("If-Modified-Since");
+    } catch (final IllegalArgumentException ex) {
+      return false;
     }
-    // creating a new calendar
-    final Calendar calendar = new Calendar();
+    // The current day is part of the content (time period of the exported entries), so Last-Modified is only valid for today.
+    return ifModifiedSince >= 0
+        && stamp.getLastModified() > 0
+        && stamp.getLastModified() / 1000 <= ifModifiedSince / 1000
+        && ifModifiedSince >= new DayHolder().getDate().getTime();
+  }
+
+  /**
+   * Writes the calendar for the user, identified by his name and authentication key, event by event.
+   * @param writer
+   * @param params
+   * @param loggedInUser
+   * @param timesheetUser
+   */
+  private void writeCal(final CalendarFeedWriter writer, final Map<String, String> params, final PFUserDO loggedInUser,
+      final PFUserDO timesheetUser) throws IOException
+  {
+    final PropertyList properties = new PropertyList();
     final Locale locale = PFUserContext.getLocale();
-    calendar.getProperties().add(
-        new ProdId("-//" + loggedInUser.getDisplayUsername() + "//ProjectForge//" + locale.toString().toUpperCase()));
-    calendar.getProperties().add(Version.VERSION_2_0);
-    calendar.getProperties().add(CalScale.GREGORIAN);
+    properties.add(new ProdId("-//" + loggedInUser.getDisplayUsername() + "//ProjectForge//" + locale.toString().toUpperCase()));
+    properties.add(Version.VERSION_2_0);
+    properties.add(CalScale.GREGORIAN);
+    writer.begin(properties);
 
     // setup event is needed for empty calendars
-    calendar.getComponents().add(new VEvent(new net.fortuna.ical4j.model.Date(0), SETUP_EVENT));
+    writer.write(new VEvent(new net.fortuna.ical4j.model.Date(0), SETUP_EVENT));
 
     // adding events
-    for (final VEvent event : getEvents(params, timesheetUser)) {
-      calendar.getComponents().add(event);
-    }
-    return calendar;
+    writeEvents(writer, params, timesheetUser);
+    writer.end();
   }
 
   /**
-   * builds the list of events
-   * 
-   * @return
+   * Writes the events. The time sheets are read from the data base one by one and aren't held in memory.
    */
-  private List<VEvent> getEvents(final Map<String, String> params, PFUserDO timesheetUser)
+  private void writeEvents(final CalendarFeedWriter writer, final Map<String, String> params, PFUserDO timesheetUser) throws IOException
   {
     final PFUserDO loggedInUser = PFUserContext.getUser();
     if (loggedInUser == null) {
       throw new AccessException("No logged-in-user found!");
     }
-    final List<VEvent> events = new ArrayList<VEvent>();
     final TimeZone timezone = ICal4JUtils.getUserTimeZone();
     final java.util.Calendar cal = java.util.Calendar.getInstance(PFUserContext.getTimeZone());
 
@@ -283,7 +403,9 @@ public class CalendarFeed extends HttpServlet
     for (final CalendarFeedHook hook : feedHooks) {
       final List<VEvent> list = hook.getEvents(params, timezone);
       if (list != null && list.size() > 0) {
-        events.addAll(list);
+        for (final VEvent event : list) {
+          writer.write(event);
+        }
         eventsExist = true;
       }
     }
@@ -309,25 +431,39 @@ public class CalendarFeed extends HttpServlet
       filter.setStartTime(cal.getTime());
 
       final TimesheetDao timesheetDao = Registry.instance().getDao(TimesheetDao.class);
-      final List<TimesheetDO> timesheetList = timesheetDao.getList(filter);
-
-      // iterate over all timesheets and adds each event to the calendar
-      for (final TimesheetDO timesheet : timesheetList) {
-        final String uid = TeamCalConfig.get().createTimesheetUid(timesheet.getId());
-        String summary;
-        if (eventsExist == true) {
-          summary = TimesheetEventsProvider.getTitle(timesheet) + " (ts)";
-        } else {
-          summary = TimesheetEventsProvider.getTitle(timesheet);
-        }
-        final VEvent vEvent = ICal4JUtils.createVEvent(timesheet.getStartTime(), timesheet.getStopTime(), uid, summary);
-        if (StringUtils.isNotBlank(timesheet.getDescription()) == true) {
-          vEvent.getProperties().add(new Description(timesheet.getDescription()));
-        }
-        if (StringUtils.isNotBlank(timesheet.getLocation()) == true) {
-          vEvent.getProperties().add(new Location(timesheet.getLocation()));
+      final boolean addTimesheetMarker = eventsExist;
+      // iterate over all timesheets and writes each event to the calendar
+      final IOException[] ioException = new IOException[1];
+      timesheetDao.processList(filter, new ResultHandler<TimesheetDO>() {
+        @Override
+        public boolean handle(final TimesheetDO timesheet)
+        {
+          final String uid = TeamCalConfig.get().createTimesheetUid(timesheet.getId());
+          String summary;
+          if (addTimesheetMarker == true) {
+            summary = TimesheetEventsProvider.getTitle(timesheet) + " (ts)";
+          } else {
+            summary = TimesheetEventsProvider.getTitle(timesheet);
+          }
+          final VEvent vEvent = ICal4JUtils.createVEvent(timesheet.getStartTime(), timesheet.getStopTime(), uid, summary);
+          if (StringUtils.isNotBlank(timesheet.getDescription()) == true) {
+            vEvent.getProperties().add(new Description(timesheet.getDescription()));
+          }
+          if (StringUtils.isNotBlank(timesheet.getLocation()) == true) {
+            vEvent.getProperties().add(new Location(timesheet.getLocation()));
+          }
+          try {
+            writer.write(vEvent);
+          } catch (final IOException ex) {
+            // Client may have closed the connection, stop reading.
+            ioException[0] = ex;
+            return false;
+          }
+          return true;
         }
-        events.add(vEvent);
+      });
+      if (ioException[0] != null) {
+        throw ioException[0];
       }
     }
     final String holidays = params.get(PARAM_NAME_HOLIDAYS);
@@ -340,7 +476,7 @@ public class CalendarFeed extends HttpServlet
         final Date fromDate = event.getStart().toDate();
         final Date toDate = event.getEnd() != null ? event.getEnd().toDate() : fromDate;
         final VEvent vEvent = ICal4JUtils.createVEvent(fromDate, toDate, "pf-holiday" + event.getId(), event.getTitle(), true);
-        events.add(vEvent);
+        writer.write(vEvent);
       }
     }
     final String weeksOfYear = params.get(PARAM_NAME_WEEK_OF_YEARS);
@@ -356,7 +492,7 @@ public class CalendarFeed extends HttpServlet
             + current.getYear()
             + "-"
             + paranoiaCounter, PFUserContext.getLocalizedString("calendar.weekOfYearShortLabel") + " " + current.getWeekOfYear(), true);
-        events.add(vEvent);
+        writer.write(vEvent);
         current.add(java.util.Calendar.WEEK_OF_YEAR, 1);
         if (++paranoiaCounter > 500) {
           log.warn("Dear developer, please have a look here, paranoiaCounter exceeded! Aborting calculation of weeks of year.");
@@ -380,10 +516,9 @@ public class CalendarFeed extends HttpServlet
     // final Date fromDate = event.getStart().toDate();
     // final Date toDate = event.getEnd() != null ? event.getEnd().toDate() : fromDate;
     // final VEvent vEvent = ICal4JUtils.createVEvent(fromDate, toDate, "pf-hr-planning" + event.getId(), event.getTitle(), true);
-    // events.add(vEvent);
+    // writer.write(vEvent);
     // }
     // }
-    return events;
   }
 
   /**
@@ -29,6 +29,7 @@ import java.util.Map;
 import net.fortuna.ical4j.model.TimeZone;
 import net.fortuna.ical4j.model.component.VEvent;
 
+import org.projectforge.core.ModificationStamp;
 import org.projectforge.user.PFUserContext;
 
 /**
@@ -45,4 +46,12 @@ public interface CalendarFeedHook
    */
   public List<VEvent> getEvents(final Map<String, String> params, TimeZone timeZone);
 
+  /**
+   * Used for building the ETag of the calendar feed, so unmodified calendars don't need to be sent again.
+   * @param params
+   * @return The modification stamp of all events returned by {@link #getEvents(Map, TimeZone)} for the given params, an empty stamp if no
+   *         events are returned for the given params or null if not supported (the feed will be sent on every request).
+   */
+  public ModificationStamp getModificationStamp(final Map<String, String> params);
+
 }
@@ -0,0 +1,105 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.web.calendar;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import net.fortuna.ical4j.data.FoldingWriter;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.util.Strings;
+
+/**
+ * Writes a calendar in iCal format event by event to the given output stream. In contrast to the CalendarOutputter of ical4j the
+ * calendar with all of its events needn't to be built as object graph in memory before writing. The output is the same as the output of
+ * the (non-validating) CalendarOutputter.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class CalendarFeedWriter
+{
+  private final Writer writer;
+
+  private boolean begun;
+
+  /**
+   * @param out The output stream (e. g. of the servlet response).
+   * @throws IOException
+   */
+  public CalendarFeedWriter(final OutputStream out) throws IOException
+  {
+    this.writer = new FoldingWriter(new OutputStreamWriter(out, "UTF-8"));
+  }
+
+  /**
+   * Writes the header of the calendar including the given properties (e. g. ProdId, Version and CalScale).
+   * @param properties
+   * @throws IOException
+   */
+  public CalendarFeedWriter begin(final PropertyList properties) throws IOException
+  {
+    writer.write(Calendar.BEGIN);
+    writer.write(':');
+    writer.write(Calendar.VCALENDAR);
+    writer.write(Strings.LINE_SEPARATOR);
+    if (properties != null) {
+      for (final Object property : properties) {
+        writer.write(((Property) property).toString());
+      }
+    }
+    begun = true;
+    return this;
+  }
+
+  /**
+   * Writes the given event. The event may be garbage collected afterwards.
+   * @param event
+   * @throws IOException
+   */
+  public CalendarFeedWriter write(final VEvent event) throws IOException
+  {
+    if (begun == false) {
+      throw new IllegalStateException("Please call begin(PropertyList) first.");
+    }
+    writer.write(event.toString());
+    return this;
+  }
+
+  /**
+   * Writes the footer of the calendar and flushes the writer. The underlying output stream isn't closed.
+   * @throws IOException
+   */
+  public void end() throws IOException
+  {
+    writer.write(Calendar.END);
+    writer.write(':');
+    writer.write(Calendar.VCALENDAR);
+    writer.write(Strings.LINE_SEPARATOR);
+    writer.flush();
+  }
+}
@@ -23,9 +23,14 @@
 
 package org.projectforge.web.fibu;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
@@ -40,8 +45,10 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
 import org.projectforge.common.NumberHelper;
 import org.projectforge.core.Configuration;
+import org.projectforge.core.ResultHandler;
 import org.projectforge.fibu.KostFormatter;
 import org.projectforge.fibu.KundeDO;
 import org.projectforge.fibu.MonthlyEmployeeReport;
@@ -54,11 +61,13 @@ import org.projectforge.fibu.kost.Kost1DO;
 import org.projectforge.fibu.kost.Kost1Dao;
 import org.projectforge.fibu.kost.Kost2ArtDO;
 import org.projectforge.fibu.kost.Kost2DO;
+import org.projectforge.renderer.PdfBatch;
 import org.projectforge.renderer.PdfRenderer;
 import org.projectforge.task.TaskDO;
 import org.projectforge.user.PFUserDO;
 import org.projectforge.user.UserDao;
 import org.projectforge.user.UserGroupCache;
+import org.projectforge.user.UserRights;
 import org.projectforge.web.calendar.DateTimeFormatter;
 import org.projectforge.web.common.OutputType;
 import org.projectforge.web.task.TaskFormatter;
@@ -81,6 +90,15 @@ public class MonthlyEmployeeReportPage extends AbstractStandardFormPage implemen
 
   private static final String USER_PREF_KEY_FILTER = "monthlyEmployeeReportFilter";
 
+  private static final String PDF_STYLE_SHEET = "fo-styles/monthlyEmployeeReport-template-fo.xsl";
+
+  private static final String PDF_XML_DATA = "fo-styles/monthlyEmployeeReport2pdf.xml";
+
+  /**
+   * Entry of the zip file of all employees containing the error message if the export failed.
+   */
+  private static final String ZIP_ERROR_ENTRY_NAME = "ERROR.txt";
+
   @SpringBean(name = "userDao")
   private UserDao userDao;
 
@@ -138,6 +156,16 @@ public class MonthlyEmployeeReportPage extends AbstractStandardFormPage implemen
       }, getString("exportAsPdf"));
       addContentMenuEntry(exportAsPdf);
     }
+    if (UserRights.getAccessChecker().hasLoggedInUserAccessToTimesheetsOfOtherUsers() == true) {
+      final ContentMenuEntryPanel exportAllAsPdf = new ContentMenuEntryPanel(getNewContentMenuChildId(), new SubmitLink("link", form) {
+        @Override
+        public void onSubmit()
+        {
+          exportAllAsPdfZip();
+        };
+      }, getString("fibu.monthlyEmployeeReport.exportAllAsPdfZip"));
+      addContentMenuEntry(exportAllAsPdf);
+    }
     gridBuilder = form.newGridBuilder(body, "fields");
     final GridSize gridSize = costConfigured == true ? GridSize.COL33 : GridSize.COL50;
     gridBuilder.newSplitPanel(gridSize);
@@ -415,19 +443,114 @@ public class MonthlyEmployeeReportPage extends AbstractStandardFormPage implemen
     .append(".pdf");
     final String filename = buf.toString();
 
-    // get the sheets of the given format
-    final String styleSheet = "fo-styles/monthlyEmployeeReport-template-fo.xsl";
-    final String xmlData = "fo-styles/monthlyEmployeeReport2pdf.xml";
-
     report = monthlyEmployeeReportDao.getReport(form.filter.getYear(), form.filter.getMonth(), employee);
+    final Map<String, Object> data = createPdfData(report, employee);
+    // render the PDF with fop
+    // (streamed directly to the response)
+    DownloadUtils.setDownloadTarget(new AbstractResourceStreamWriter() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void write(final OutputStream output)
+      {
+        pdfRenderer.render(PDF_STYLE_SHEET, PDF_XML_DATA, data, output);
+      }
+
+      @Override
+      public String getContentType()
+      {
+        return DownloadUtils.getContentType(filename);
+      }
+    }, filename);
+  }
+
+  /**
+   * Exports the reports of all active employees of the selected month as zip archive (one pdf file per employee). The reports are
+   * calculated and rendered in parallel and every pdf is written to the response as soon as it and its predecessors are rendered. The
+   * response is already committed if an error occurs, so the zip file is finished with an error entry ({@link #ZIP_ERROR_ENTRY_NAME})
+   * instead of being truncated.
+   */
+  protected void exportAllAsPdfZip()
+  {
+    log.info("Monthly employee reports of all employees: " + form.filter.getYear() + "-" + form.filter.getFormattedMonth());
+    final int year = form.filter.getYear();
+    final int month = form.filter.getMonth();
+    final String prefix = getString("menu.monthlyEmployeeReport.fileprefix");
+    final String filename = prefix + "_" + year + "-" + form.filter.getFormattedMonth() + ".zip";
+    DownloadUtils.setDownloadTarget(new AbstractResourceStreamWriter() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void write(final OutputStream output)
+      {
+        final ZipOutputStream zip = new ZipOutputStream(output);
+        // Names of the zip entries of the pdfs not yet written (in the order of the rendered pdfs):
+        final LinkedList<String> entryNames = new LinkedList<String>();
+        final PdfBatch batch = pdfRenderer.createBatch(PDF_STYLE_SHEET, PDF_XML_DATA, new ResultHandler<byte[]>() {
+          @Override
+          public boolean handle(final byte[] pdf)
+          {
+            writeZipEntry(zip, entryNames.removeFirst(), pdf);
+            return true;
+          }
+        });
+        try {
+          monthlyEmployeeReportDao.processReports(year, month, null, new ResultHandler<MonthlyEmployeeReport>() {
+            @Override
+            public boolean handle(final MonthlyEmployeeReport monthlyReport)
+            {
+              final PFUserDO employee = monthlyReport.getUser();
+              entryNames.add(prefix + "_" + employee.getLastname() + "_" + employee.getId() + "_" + monthlyReport.getYear() + "-"
+                  + monthlyReport.getFormmattedMonth() + ".pdf");
+              return batch.add(createPdfData(monthlyReport, employee));
+            }
+          });
+          batch.finish();
+        } catch (final RuntimeException ex) {
+          log.error("Exception encountered while exporting zip file '" + filename + "': " + ex.getMessage(), ex);
+          batch.cancel();
+          writeZipEntry(zip, ZIP_ERROR_ENTRY_NAME, ("Export incomplete due to an error: " + ex.getMessage()).getBytes());
+        } finally {
+          batch.cancel();
+        }
+        try {
+          zip.finish();
+        } catch (final IOException ex) {
+          log.error("Exception encountered while finishing zip file '" + filename + "': " + ex.getMessage(), ex);
+          throw new RuntimeException(ex);
+        }
+      }
+
+      @Override
+      public String getContentType()
+      {
+        return DownloadUtils.getContentType(filename);
+      }
+    }, filename);
+  }
+
+  private static void writeZipEntry(final ZipOutputStream zip, final String entryName, final byte[] content)
+  {
+    try {
+      zip.putNextEntry(new ZipEntry(entryName));
+      zip.write(content);
+      zip.closeEntry();
+    } catch (final IOException ex) {
+      log.error("Exception encountered while writing zip entry '" + entryName + "': " + ex.getMessage(), ex);
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private Map<String, Object> createPdfData(final MonthlyEmployeeReport report, final PFUserDO employee)
+  {
     final Map<String, Object> data = new HashMap<String, Object>();
     data.put("systemDate", dateTimeFormatter.getFormattedDateTime(new Date()));
     data.put("title", getString("menu.monthlyEmployeeReport"));
     data.put("employeeLabel", getString("timesheet.user"));
     data.put("employee", employee.getFullname());
     data.put("monthLabel", getString("calendar.month"));
-    data.put("year", form.filter.getYear());
-    data.put("month", form.filter.getFormattedMonth());
+    data.put("year", report.getYear());
+    data.put("month", report.getFormmattedMonth());
     data.put("workingDaysLabel", getString("fibu.common.workingDays"));
     data.put("workingDays", report.getNumberOfWorkingDays());
     data.put("kost1Label", getString("fibu.kost1"));
@@ -444,9 +567,7 @@ public class MonthlyEmployeeReportPage extends AbstractStandardFormPage implemen
     data.put("signatureEmployeeLabel", getString("timesheet.signatureEmployee") + ": " + employee.getFullname());
     data.put("signatureProjectLeaderLabel", getString("timesheet.signatureProjectLeader"));
     data.put("unbookedWorkingDaysLabel", getString("fibu.monthlyEmployeeReport.withoutTimesheets"));
-    // render the PDF with fop
-    final byte[] ba = pdfRenderer.render(styleSheet, xmlData, data);
-    DownloadUtils.setDownloadTarget(ba, filename);
+    return data;
   }
 
   @Override
@@ -83,7 +83,12 @@ IListPageColumnsCreator<RechnungDO>
   RechnungsStatistik getRechnungsStatistik()
   {
     if (rechnungsStatistik == null) {
-      rechnungsStatistik = rechnungDao.buildStatistik(getList());
+      if (keysetDataProvider == null || keysetDataProvider.isCompleteListUsed() == true) {
+        rechnungsStatistik = rechnungDao.buildStatistik(getList());
+      } else {
+        // Don't load the complete list:
+        rechnungsStatistik = rechnungDao.buildStatistik(form.getSearchFilter());
+      }
     }
     return rechnungsStatistik;
   }
@@ -98,6 +103,16 @@ IListPageColumnsCreator<RechnungDO>
     super(caller, selectProperty, "fibu.rechnung");
   }
 
+  /**
+   * Invoices are loaded page by page, ordered by the date if no other sort column is chosen.
+   * @see org.projectforge.web.wicket.AbstractListPage#getKeysetProperty()
+   */
+  @Override
+  protected String getKeysetProperty()
+  {
+    return "datum";
+  }
+
   /**
    * Forces the statistics to be reloaded.
    * @see org.projectforge.web.wicket.AbstractListPage#refresh()
@@ -83,6 +83,10 @@ public class GanttChartEditPage extends AbstractEditPage<GanttChartDO, GanttChar
 
   void export(final String exportFormat)
   {
+    if (ganttChartData != null) {
+      // Any field of the form may be modified:
+      ganttChartData.getScheduler().invalidate();
+    }
     final GanttChart ganttChart = createGanttChart();
     if (ganttChart == null) {
       return;
@@ -149,7 +153,7 @@ public class GanttChartEditPage extends AbstractEditPage<GanttChartDO, GanttChar
     }
     ganttChartData.getRootObject().sortChildren();
     final GanttChart ganttChart = new GanttChart(ganttChartData.getRootObject(), getGanttChartStyle(), getSettings(), getData().getName());
-    // chart.getRootObject().recalculate();
+    ganttChart.setScheduler(ganttChartData.getScheduler());
     return ganttChart;
   }
 
@@ -236,6 +240,10 @@ public class GanttChartEditPage extends AbstractEditPage<GanttChartDO, GanttChar
         }
       }
     }
+    if (ganttChartData != null) {
+      // Any field of the form may be modified, so recalculate all dates:
+      ganttChartData.getScheduler().invalidate();
+    }
     form.ganttChartEditTreeTablePanel.setGanttChartData(ganttChartData).refresh();
     redraw();
   }
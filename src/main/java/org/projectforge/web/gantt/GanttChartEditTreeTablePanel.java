@@ -469,6 +469,7 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
             void onSubmit()
             {
               ganttObject.setPredecessor(clipboard);
+              updateSchedule(ganttObject);
             };
           }.addTooltip(new Model<String>() {
             @Override
@@ -788,6 +789,7 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
       protected void onReject()
       {
         ganttObject.setStartDate(task.getStartDate());
+        updateSchedule(ganttObject);
       }
     };
   }
@@ -812,6 +814,7 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
       protected void onReject()
       {
         ganttObject.setDuration(task.getDuration());
+        updateSchedule(ganttObject);
       }
     };
   }
@@ -837,6 +840,7 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
       protected void onReject()
       {
         ganttObject.setEndDate(task.getEndDate());
+        updateSchedule(ganttObject);
       }
     };
   }
@@ -910,6 +914,7 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
       public void onSubmit()
       {
         ganttObject.setPredecessor(null);
+        updateSchedule(ganttObject);
       }
 
       @Override
@@ -933,6 +938,7 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
       protected void onReject()
       {
         ganttObject.setPredecessor(findById(task.getGanttPredecessorId()));
+        updateSchedule(ganttObject);
       }
     };
   }
@@ -957,6 +963,7 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
       protected void onReject()
       {
         ganttObject.setPredecessorOffset(task.getGanttPredecessorOffset());
+        updateSchedule(ganttObject);
       }
     };
   }
@@ -990,6 +997,7 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
       protected void onReject()
       {
         ganttObject.setRelationType(task.getGanttRelationType());
+        updateSchedule(ganttObject);
       }
     };
   }
@@ -1134,6 +1142,18 @@ public class GanttChartEditTreeTablePanel extends DefaultTreeTablePanel<GanttTre
     return obj;
   }
 
+  /**
+   * Recalculates only the dates depending on the given (modified) Gantt object and redraws the chart.
+   */
+  private void updateSchedule(final GanttTask ganttObject)
+  {
+    if (ganttChartData == null) {
+      return;
+    }
+    ganttChartData.getScheduler().update(ganttObject);
+    form.getParentPage().redraw();
+  }
+
   private abstract class RejectSaveLinksFragment extends Fragment
   {
     private static final long serialVersionUID = 2462093138788881814L;
@@ -35,9 +35,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.projectforge.common.NumberHelper;
+import org.projectforge.user.LoginProtection;
 import org.projectforge.user.PFUserContext;
 import org.projectforge.user.PFUserDO;
 import org.projectforge.user.UserDao;
+import org.projectforge.web.UserFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -58,6 +60,11 @@ public class RestUserFilter implements Filter
 
   static final String AUTHENTICATION_PASSWORD = "authenticationPassword";
 
+  /**
+   * Too many requests (not defined in HttpServletResponse).
+   */
+  static final int SC_TOO_MANY_REQUESTS = 429;
+
   @Autowired
   UserDao userDao;
 
@@ -80,8 +87,22 @@ public class RestUserFilter implements Filter
   ServletException
   {
     final HttpServletRequest req = (HttpServletRequest) request;
+    final String clientIp = UserFilter.getClientIp(req);
     String userString = getAttribute(req, AUTHENTICATION_USER_ID);
+    // Failed attempts are counted per user (shared with the login page) and per client ip:
+    final String lockKey = userString != null ? "id:" + userString : getAttribute(req, AUTHENTICATION_USERNAME);
+    final LoginProtection loginProtection = LoginProtection.instance();
+    final long lockTime = loginProtection.getLockTime(lockKey, clientIp);
+    if (lockTime > 0) {
+      // Avoid brute force attack (reject immediately instead of blocking the thread):
+      log.warn("Rest call of '" + lockKey + "' from ip '" + clientIp + "' rejected (locked for further " + lockTime / 1000 + "s).");
+      final HttpServletResponse resp = (HttpServletResponse) response;
+      resp.setHeader("Retry-After", String.valueOf((lockTime + 999) / 1000));
+      resp.sendError(SC_TOO_MANY_REQUESTS);
+      return;
+    }
     PFUserDO user = null;
+    boolean passwordAuthentication = false;
     if (userString != null) {
       final Integer userId = NumberHelper.parseInteger(userString);
       if (userId != null) {
@@ -102,6 +123,7 @@ public class RestUserFilter implements Filter
       userString = getAttribute(req, AUTHENTICATION_USERNAME);
       final String password = getAttribute(req, AUTHENTICATION_PASSWORD);
       if (userString != null && password != null) {
+        passwordAuthentication = true;
         final String encryptedPassword = userDao.encryptPassword(password);
         user = userDao.authenticateUser(userString, encryptedPassword);
         if (user == null) {
@@ -122,16 +144,15 @@ public class RestUserFilter implements Filter
       }
     }
     if (user == null) {
-      try {
-        // Avoid brute force attack:
-        Thread.sleep(1000);
-      } catch (final InterruptedException ex) {
-        log.fatal("Exception encountered while Thread.sleep(1000): " + ex, ex);
-      }
+      loginProtection.loginFailed(lockKey, clientIp);
       final HttpServletResponse resp = (HttpServletResponse) response;
       resp.sendError(HttpServletResponse.SC_FORBIDDEN);
       return;
     }
+    if (passwordAuthentication == true) {
+      // Token authenticated calls are no logins, they mustn't decrement the failed attempts of the ip:
+      loginProtection.loginSucceeded(lockKey, clientIp);
+    }
     try {
       PFUserContext.setUser(user);
       chain.doFilter(request, response);
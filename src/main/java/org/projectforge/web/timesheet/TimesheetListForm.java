@@ -36,7 +36,6 @@ import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.projectforge.task.TaskDO;
 import org.projectforge.task.TaskTree;
-import org.projectforge.timesheet.TimesheetDO;
 import org.projectforge.timesheet.TimesheetFilter;
 import org.projectforge.user.PFUserDO;
 import org.projectforge.web.CSSColor;
@@ -208,13 +207,7 @@ public class TimesheetListForm extends AbstractListForm<TimesheetListFilter, Tim
         @Override
         public String getObject()
         {
-          long duration = 0;
-          if (parentPage.getList() != null) {
-            for (final TimesheetDO sheet : parentPage.getList()) {
-              duration += sheet.getDuration();
-            }
-          }
-          return dateTimeFormatter.getPrettyFormattedDuration(duration);
+          return dateTimeFormatter.getPrettyFormattedDuration(parentPage.getTotalDuration());
         }
       }));
     }
@@ -23,6 +23,7 @@
 
 package org.projectforge.web.timesheet;
 
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -46,6 +47,7 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
 import org.hibernate.Hibernate;
 import org.projectforge.common.DateFormatType;
 import org.projectforge.common.DateFormats;
@@ -79,9 +81,9 @@ import org.projectforge.web.wicket.CellItemListener;
 import org.projectforge.web.wicket.CellItemListenerPropertyColumn;
 import org.projectforge.web.wicket.DownloadUtils;
 import org.projectforge.web.wicket.IListPageColumnsCreator;
+import org.projectforge.web.wicket.KeysetListPageDataProvider;
 import org.projectforge.web.wicket.ListPage;
 import org.projectforge.web.wicket.ListSelectActionPanel;
-import org.projectforge.web.wicket.MyListPageSortableDataProvider;
 import org.projectforge.web.wicket.WicketUtils;
 import org.projectforge.web.wicket.components.ContentMenuEntryPanel;
 import org.projectforge.web.wicket.flowlayout.CheckBoxPanel;
@@ -137,6 +139,8 @@ IListPageColumnsCreator<TimesheetDO>
   @SpringBean(name = "userGroupCache")
   private UserGroupCache userGroupCache;
 
+  private Long totalDuration;
+
   private TimesheetsICSExportDialog icsExportDialog;
 
   public TimesheetListPage(final PageParameters parameters)
@@ -524,9 +528,22 @@ IListPageColumnsCreator<TimesheetDO>
     final Map<String, Object> data = formatter.getData(timeSheets, taskId, getRequest(), getResponse(), filter);
 
     // render the PDF with fop
-    final byte[] content = pdfRenderer.render(styleSheet, xmlData, data);
+    // (streamed directly to the response)
+    DownloadUtils.setDownloadTarget(new AbstractResourceStreamWriter() {
+      private static final long serialVersionUID = 1L;
 
-    DownloadUtils.setDownloadTarget(content, filename);
+      @Override
+      public void write(final OutputStream output)
+      {
+        pdfRenderer.render(styleSheet, xmlData, data, output);
+      }
+
+      @Override
+      public String getContentType()
+      {
+        return DownloadUtils.getContentType(filename);
+      }
+    }, filename);
   }
 
   void exportExcel()
@@ -555,39 +572,97 @@ IListPageColumnsCreator<TimesheetDO>
   @Override
   protected ISortableDataProvider<TimesheetDO, String> createSortableDataProvider(final String sortProperty, final SortOrder sortOrder)
   {
-    this.listPageSortableDataProvider = new MyListPageSortableDataProvider<TimesheetDO>(sortProperty, sortOrder, this) {
-      @Override
-      protected Comparator<TimesheetDO> getComparator(final String sortProperty, final boolean ascending)
-      {
-        return new MyBeanComparator<TimesheetDO>(sortProperty, ascending) {
-          @Override
-          public int compare(final TimesheetDO t1, final TimesheetDO t2)
-          {
-            if ("user.fullname".equals(sortProperty) == true) {
-              PFUserDO user = t1.getUser();
-              if (user != null && Hibernate.isInitialized(user) == false) {
-                t1.setUser(userGroupCache.getUser(user.getId()));
-              }
-              user = t2.getUser();
-              if (user != null && Hibernate.isInitialized(user) == false) {
-                t2.setUser(userGroupCache.getUser(user.getId()));
-              }
-            } else if ("task.title".equals(sortProperty) == true) {
-              TaskDO task = t1.getTask();
-              if (task != null && Hibernate.isInitialized(task) == false) {
-                t1.setTask(taskTree.getTaskById(task.getId()));
-              }
-              task = t2.getTask();
-              if (task != null && Hibernate.isInitialized(task) == false) {
-                t2.setTask(taskTree.getTaskById(task.getId()));
+    if (keysetDataProvider == null) {
+      keysetDataProvider = new KeysetListPageDataProvider<TimesheetDO>(sortProperty, sortOrder, this) {
+        @Override
+        protected Comparator<TimesheetDO> getComparator(final String sortProperty, final boolean ascending)
+        {
+          return new MyBeanComparator<TimesheetDO>(sortProperty, ascending) {
+            @Override
+            public int compare(final TimesheetDO t1, final TimesheetDO t2)
+            {
+              if ("user.fullname".equals(sortProperty) == true) {
+                PFUserDO user = t1.getUser();
+                if (user != null && Hibernate.isInitialized(user) == false) {
+                  t1.setUser(userGroupCache.getUser(user.getId()));
+                }
+                user = t2.getUser();
+                if (user != null && Hibernate.isInitialized(user) == false) {
+                  t2.setUser(userGroupCache.getUser(user.getId()));
+                }
+              } else if ("task.title".equals(sortProperty) == true) {
+                TaskDO task = t1.getTask();
+                if (task != null && Hibernate.isInitialized(task) == false) {
+                  t1.setTask(taskTree.getTaskById(task.getId()));
+                }
+                task = t2.getTask();
+                if (task != null && Hibernate.isInitialized(task) == false) {
+                  t2.setTask(taskTree.getTaskById(task.getId()));
+                }
               }
+              return super.compare(t1, t2);
             }
-            return super.compare(t1, t2);
-          }
-        };
+          };
+        }
+      };
+    }
+    return keysetDataProvider;
+  }
+
+  /**
+   * Time sheets are loaded page by page, ordered by the start time if no other sort column is chosen.
+   * @see org.projectforge.web.wicket.AbstractListPage#getKeysetProperty()
+   */
+  @Override
+  protected String getKeysetProperty()
+  {
+    return "startTime";
+  }
+
+  /**
+   * Nothing is selected without time period or task (same as {@link #buildList()}).
+   * @see org.projectforge.web.wicket.AbstractListPage#isKeysetPagingAllowed()
+   */
+  @Override
+  protected boolean isKeysetPagingAllowed()
+  {
+    final TimesheetFilter filter = form.getSearchFilter();
+    return filter.getStartTime() != null || filter.getStopTime() != null || filter.getTaskId() != null;
+  }
+
+  /**
+   * @return The total duration of all time sheets of the current filter (not only of the displayed page).
+   */
+  long getTotalDuration()
+  {
+    if (totalDuration != null) {
+      return totalDuration;
+    }
+    long duration = 0;
+    if (isKeysetPagingAllowed() == false) {
+      // Nothing selected.
+    } else if (keysetDataProvider == null || keysetDataProvider.isCompleteListUsed() == true) {
+      if (getList() != null) {
+        for (final TimesheetDO sheet : getList()) {
+          duration += sheet.getDuration();
+        }
       }
-    };
-    return this.listPageSortableDataProvider;
+    } else {
+      duration = timesheetDao.getTotalDuration(form.getSearchFilter());
+    }
+    totalDuration = duration;
+    return duration;
+  }
+
+  /**
+   * Forces the total duration to be recalculated.
+   * @see org.projectforge.web.wicket.AbstractListPage#refresh()
+   */
+  @Override
+  public void refresh()
+  {
+    super.refresh();
+    this.totalDuration = null;
   }
 
   /**
@@ -125,6 +125,11 @@ extends AbstractSecuredPage implements ISelectCallerPage
 
   protected MyListPageSortableDataProvider<O> listPageSortableDataProvider;
 
+  /**
+   * Only used if {@link #getKeysetProperty()} is given.
+   */
+  protected KeysetListPageDataProvider<O> keysetDataProvider;
+
   /**
    * Change this value if the recent search terms should be stored. Should be set in setup-method of derived page class.
    */
@@ -489,6 +494,9 @@ extends AbstractSecuredPage implements ISelectCallerPage
   {
     this.resultList = null; // Force reload of list
     this.refreshResultList = true;
+    if (keysetDataProvider != null) {
+      keysetDataProvider.reset();
+    }
     final long itemsPerPage = dataTable.getItemsPerPage();
     if (form.getPageSize() != null && form.getPageSize().longValue() != itemsPerPage) {
       dataTable.setItemsPerPage(form.getPageSize());
@@ -504,7 +512,9 @@ extends AbstractSecuredPage implements ISelectCallerPage
     this.refreshResultList = false;
     try {
       this.resultList = buildList();
-      listPageSortableDataProvider.setCompleteList(this.resultList);
+      if (listPageSortableDataProvider != null) {
+        listPageSortableDataProvider.setCompleteList(this.resultList);
+      }
       if (this.resultList == null) {
         // An error occured:
         form.addError("search.error");
@@ -533,7 +543,10 @@ extends AbstractSecuredPage implements ISelectCallerPage
   @Override
   protected void onBeforeRender()
   {
-    if (this.refreshResultList == true) {
+    if (keysetDataProvider != null) {
+      // The pages are loaded on demand by the data provider.
+      this.refreshResultList = false;
+    } else if (this.refreshResultList == true) {
       getList();
     }
     super.onBeforeRender();
@@ -627,6 +640,47 @@ extends AbstractSecuredPage implements ISelectCallerPage
     return false;
   }
 
+  /**
+   * Overwrite this method for using keyset pagination: only the displayed page is loaded from the data base instead of the complete result
+   * list. The entries are ordered by the sort column (and the id), this property is only used if no sort column is given. The data base
+   * query must be built by {@link BaseDao#createQueryFilter(BaseSearchFilter)}.
+   * @return null at default (the complete result list is loaded).
+   * @see BaseDao#getPage(BaseSearchFilter, String, boolean, org.projectforge.core.PageToken, int)
+   */
+  protected String getKeysetProperty()
+  {
+    return null;
+  }
+
+  /**
+   * @return true at default. Return false if nothing should be selected for the current filter settings (e. g. no time period given).
+   * @see #getKeysetProperty()
+   */
+  protected boolean isKeysetPagingAllowed()
+  {
+    return true;
+  }
+
+  /**
+   * @return false at default (newest entries first).
+   * @see #getKeysetProperty()
+   */
+  protected boolean isKeysetAscending()
+  {
+    return false;
+  }
+
+  /**
+   * @return The items per page of the data table.
+   */
+  protected int getKeysetPageSize()
+  {
+    if (dataTable != null) {
+      return (int) dataTable.getItemsPerPage();
+    }
+    return form.getPageSize() != null ? form.getPageSize() : 50;
+  }
+
   /**
    * Later: Try AjaxFallBackDatatable again.
    * @param columns
@@ -649,6 +703,12 @@ extends AbstractSecuredPage implements ISelectCallerPage
    */
   protected ISortableDataProvider<O, String> createSortableDataProvider(final String sortProperty, final SortOrder sortOrder)
   {
+    if (getKeysetProperty() != null && getBaseDao() instanceof BaseDao) {
+      if (keysetDataProvider == null) {
+        keysetDataProvider = new KeysetListPageDataProvider<O>(sortProperty, sortOrder, this);
+      }
+      return keysetDataProvider;
+    }
     if (listPageSortableDataProvider == null) {
       listPageSortableDataProvider = new MyListPageSortableDataProvider<O>(sortProperty, sortOrder, this);
     }
@@ -29,6 +29,7 @@ import org.apache.wicket.request.Response;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.handler.resource.ResourceStreamRequestHandler;
 import org.apache.wicket.request.resource.ContentDisposition;
+import org.apache.wicket.util.resource.IResourceStreamWriter;
 import org.projectforge.common.MimeType;
 
 public class DownloadUtils
@@ -89,6 +90,20 @@ public class DownloadUtils
     log.info("Starting download for file. filename:" + filename + ", content-type:" + byteArrayResourceStream.getContentType());
   }
 
+  /**
+   * The content is written directly to the response by the given writer (the content isn't buffered as byte array). Mime type is determined
+   * by the file name.
+   * @param resourceStreamWriter Writes the content of the file to download.
+   * @param filename
+   */
+  public static void setDownloadTarget(final IResourceStreamWriter resourceStreamWriter, final String filename)
+  {
+    final ResourceStreamRequestHandler handler = new ResourceStreamRequestHandler(resourceStreamWriter);
+    handler.setFileName(filename).setContentDisposition(ContentDisposition.ATTACHMENT);
+    RequestCycle.get().scheduleRequestHandlerAfterCurrent(handler);
+    log.info("Starting download for file. filename:" + filename + ", content-type:" + resourceStreamWriter.getContentType());
+  }
+
   /**
    * Determines content type dependent on the file name suffix. Yet supported: application/pdf (*.pdf), application/vnd.ms-excel (*.xls),
    * image/jpeg (*.jpg, *.jpeg), image/svg+xml (*.svg), image/png (*.xml), application/xml (*.xml) and text (*.txt, *.csv).
@@ -0,0 +1,281 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.web.wicket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.projectforge.common.MyBeanComparator;
+import org.projectforge.core.BaseDao;
+import org.projectforge.core.BaseSearchFilter;
+import org.projectforge.core.IdObject;
+import org.projectforge.core.PageToken;
+import org.projectforge.core.ResultPage;
+
+/**
+ * Data provider for list pages using keyset pagination ({@link BaseDao#getPage(BaseSearchFilter, String, boolean, PageToken, int)}). Only
+ * the displayed page is loaded from the data base. The total number of entries is unknown, therefore the size is the number of already
+ * visited entries plus one further page if more entries exist (the navigator offers the next page).<br/>
+ * The pages are ordered by the sort column, so changing the sort column restarts the keyset pagination with the new column. Columns which
+ * can't be used as keyset property (see {@link BaseDao#isKeysetPropertySupported(String)}, e. g. transient or nested properties) and
+ * filters not supported by keyset pagination (e. g. full text search) fall back to the complete list of the list page, which is sorted
+ * completely and paged by offset.
+ * @author Kai Reinhard (k.reinhard@micromata.de)
+ */
+public class KeysetListPageDataProvider<T extends IdObject< ? >> extends SortableDataProvider<T, String>
+{
+  private static final long serialVersionUID = -3476234907316328437L;
+
+  private final AbstractListPage< ? , ? , T> listPage;
+
+  /**
+   * The tokens for fetching the already visited pages and the next page (the token of page n is stored at index n, null for the first
+   * page).
+   */
+  private final List<PageToken> tokens = new ArrayList<PageToken>();
+
+  /**
+   * Number of entries of the already visited pages.
+   */
+  private final List<Integer> pageSizes = new ArrayList<Integer>();
+
+  private long visitedSize;
+
+  private boolean hasNext;
+
+  private boolean initialized;
+
+  /**
+   * Keyset property and order of the visited pages.
+   */
+  private String keysetProperty;
+
+  private boolean keysetAscending;
+
+  /**
+   * The complete list, used only if keyset pagination isn't supported.
+   */
+  private List<T> completeList;
+
+  /**
+   * The sort order of the complete list, e. g. "title+".
+   */
+  private String completeListSortOrder;
+
+  private transient List<T> currentPage;
+
+  private transient int currentPageIndex = -1;
+
+  public KeysetListPageDataProvider(final String property, final SortOrder sortOrder, final AbstractListPage< ? , ? , T> listPage)
+  {
+    this.listPage = listPage;
+    if (property != null) {
+      setSort(property, sortOrder);
+    } else {
+      setSort("NOSORT", sortOrder);
+    }
+  }
+
+  /**
+   * Forces a reload of the first page (e. g. after modifying the filter settings).
+   */
+  public void reset()
+  {
+    tokens.clear();
+    pageSizes.clear();
+    visitedSize = 0;
+    hasNext = false;
+    initialized = false;
+    completeList = null;
+    completeListSortOrder = null;
+    currentPage = null;
+    currentPageIndex = -1;
+  }
+
+  /**
+   * @see org.apache.wicket.markup.repeater.data.IDataProvider#iterator(long, long)
+   */
+  @Override
+  public Iterator<T> iterator(final long first, final long count)
+  {
+    init();
+    if (completeList != null) {
+      sortCompleteList();
+      final int fromIndex = (int) Math.max(0, first);
+      final int toIndex = (int) Math.min(first + count, completeList.size());
+      if (fromIndex >= toIndex) {
+        return Collections.<T> emptyList().iterator();
+      }
+      return new ArrayList<T>(completeList.subList(fromIndex, toIndex)).iterator();
+    }
+    final int pageSize = listPage.getKeysetPageSize();
+    final int pageIndex = (int) (first / pageSize);
+    while (pageIndex >= pageSizes.size() && hasNext == true) {
+      // Fetch the next page (normally the navigator offers only the next page):
+      fetchPage(pageSizes.size());
+    }
+    if (pageIndex >= pageSizes.size()) {
+      return Collections.<T> emptyList().iterator();
+    }
+    if (pageIndex != currentPageIndex || currentPage == null) {
+      // Already visited page: seek again from the token of this page.
+      fetchPage(pageIndex);
+    }
+    final List<T> result = currentPage;
+    currentPage = null;
+    return result.iterator();
+  }
+
+  /**
+   * @see org.apache.wicket.markup.repeater.data.IDataProvider#size()
+   */
+  @Override
+  public long size()
+  {
+    init();
+    if (completeList != null) {
+      return completeList.size();
+    }
+    return visitedSize + (hasNext == true ? 1 : 0);
+  }
+
+  /**
+   * @return true if the complete list is used (keyset pagination isn't supported by the current filter or sort column).
+   */
+  public boolean isCompleteListUsed()
+  {
+    init();
+    return completeList != null;
+  }
+
+  /**
+   * Override this method e. g. for avoiding LazyInitializationExceptions due to sorting of the complete list.
+   * @param sortProperty
+   * @param ascending
+   */
+  protected Comparator<T> getComparator(final String sortProperty, final boolean ascending)
+  {
+    return new MyBeanComparator<T>(sortProperty, ascending);
+  }
+
+  private void init()
+  {
+    final SortParam<String> sp = getSort();
+    final String property;
+    final boolean ascending;
+    if (sp == null || "NOSORT".equals(sp.getProperty()) == true) {
+      property = listPage.getKeysetProperty();
+      ascending = listPage.isKeysetAscending();
+    } else {
+      property = sp.getProperty();
+      ascending = sp.isAscending();
+    }
+    if (initialized == true && ObjectUtils.equals(property, keysetProperty) == true && ascending == keysetAscending) {
+      return;
+    }
+    reset();
+    initialized = true;
+    keysetProperty = property;
+    keysetAscending = ascending;
+    final BaseDao< ? > baseDao = (BaseDao< ? >) listPage.getBaseDao();
+    final BaseSearchFilter filter = listPage.form.getSearchFilter();
+    if (listPage.isKeysetPagingAllowed() == false) {
+      completeList = new ArrayList<T>();
+      return;
+    }
+    if (baseDao.isKeysetPagingSupported(filter) == false || baseDao.isKeysetPropertySupported(property) == false) {
+      // Offset paging of the complete list (the list page caches the complete list until the next refresh):
+      completeList = listPage.getList();
+      if (completeList == null) {
+        completeList = new ArrayList<T>();
+      }
+      return;
+    }
+    fetchPage(0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void fetchPage(final int pageIndex)
+  {
+    final BaseDao< ? > baseDao = (BaseDao< ? >) listPage.getBaseDao();
+    final PageToken token = pageIndex > 0 ? tokens.get(pageIndex) : null;
+    final ResultPage<T> page = (ResultPage<T>) baseDao.getPage(listPage.form.getSearchFilter(), keysetProperty, keysetAscending, token,
+        listPage.getKeysetPageSize());
+    final int size = page.getEntries().size();
+    if (pageIndex == pageSizes.size()) {
+      // New page:
+      if (pageIndex == 0) {
+        tokens.add(null);
+      }
+      tokens.add(page.getNextToken());
+      pageSizes.add(size);
+      visitedSize += size;
+      hasNext = page.hasNext();
+    }
+    currentPage = page.getEntries();
+    currentPageIndex = pageIndex;
+  }
+
+  private void sortCompleteList()
+  {
+    final SortParam<String> sp = getSort();
+    if (sp == null || "NOSORT".equals(sp.getProperty()) == true) {
+      return;
+    }
+    final String sortOrder = sp.getProperty() + (sp.isAscending() == true ? "+" : "-");
+    if (sortOrder.equals(completeListSortOrder) == true) {
+      return;
+    }
+    completeList = new ArrayList<T>(completeList);
+    Collections.sort(completeList, getComparator(sp.getProperty(), sp.isAscending()));
+    completeListSortOrder = sortOrder;
+  }
+
+  /**
+   * @see org.apache.wicket.markup.repeater.data.IDataProvider#model(java.lang.Object)
+   */
+  @Override
+  public IModel<T> model(final T object)
+  {
+    return new Model<T>(object);
+  }
+
+  /**
+   * @see org.apache.wicket.model.IDetachable#detach()
+   */
+  @Override
+  public void detach()
+  {
+    this.currentPage = null;
+  }
+}
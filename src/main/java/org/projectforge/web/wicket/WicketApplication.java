@@ -71,6 +71,7 @@ import org.projectforge.database.MyDatabaseUpdater;
 import org.projectforge.plugins.core.AbstractPlugin;
 import org.projectforge.plugins.core.PluginsRegistry;
 import org.projectforge.registry.DaoRegistry;
+import org.projectforge.scripting.ScriptDao;
 import org.projectforge.storage.StorageClient;
 import org.projectforge.user.Login;
 import org.projectforge.user.LoginDefaultHandler;
@@ -133,6 +134,9 @@ public class WicketApplication extends WebApplication implements WicketApplicati
   @SpringBean(name = "daoRegistry")
   private DaoRegistry daoRegistry;
 
+  @SpringBean(name = "scriptDao")
+  private ScriptDao scriptDao;
+
   @SpringBean(name = "initDatabaseDao")
   private InitDatabaseDao initDatabaseDao;
 
@@ -448,6 +452,21 @@ public class WicketApplication extends WebApplication implements WicketApplicati
     log.info("system cronJobs are initialized.");
     pluginsRegistry.registerCronJobs(cronSetup);
     log.info("plugin cronJobs are initialized.");
+    if (missingDatabaseSchema == false) {
+      final Thread precompiler = new Thread("ScriptPrecompiler") {
+        @Override
+        public void run()
+        {
+          try {
+            scriptDao.precompileAll();
+          } catch (final Exception ex) {
+            log.error("Exception encountered while precompiling scripts: " + ex.getMessage(), ex);
+          }
+        }
+      };
+      precompiler.setDaemon(true);
+      precompiler.start();
+    }
     log.info(AppVersion.APP_ID + " " + AppVersion.NUMBER + " (" + AppVersion.RELEASE_TIMESTAMP + ") initialized.");
 
     try {
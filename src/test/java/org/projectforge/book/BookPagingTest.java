@@ -0,0 +1,172 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.book;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.criterion.Restrictions;
+import org.junit.Test;
+import org.projectforge.core.PageToken;
+import org.projectforge.core.QueryFilter;
+import org.projectforge.core.ResultPage;
+import org.projectforge.test.TestBase;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tests the keyset pagination of BaseDao.
+ */
+public class BookPagingTest extends TestBase
+{
+  private BookDao bookDao;
+
+  public void setBookDao(final BookDao bookDao)
+  {
+    this.bookDao = bookDao;
+  }
+
+  private TransactionTemplate txTemplate;
+
+  public void setTxTemplate(final TransactionTemplate txTemplate)
+  {
+    this.txTemplate = txTemplate;
+  }
+
+  @Test
+  public void keysetPagination()
+  {
+    final List<Integer> ids = new ArrayList<Integer>();
+    txTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+    txTemplate.execute(new TransactionCallback() {
+      public Object doInTransaction(final TransactionStatus status)
+      {
+        for (int i = 0; i < 7; i++) {
+          final BookDO book = new BookDO();
+          book.setTask(getTask("root"));
+          book.setSignature("KP-" + i);
+          book.setTitle("Keyset paging " + (i % 3));
+          book.setStatus(BookStatus.PRESENT);
+          ids.add((Integer) bookDao.internalSave(book));
+        }
+        return null;
+      }
+    });
+    logon(TEST_ADMIN_USER);
+    // Ordered by id descending:
+    final List<Integer> result = new ArrayList<Integer>();
+    PageToken token = null;
+    int pages = 0;
+    do {
+      final ResultPage<BookDO> page = bookDao.getPage(createFilter(), null, false, token, 3);
+      for (final BookDO book : page.getEntries()) {
+        result.add(book.getId());
+      }
+      token = page.getNextToken();
+      ++pages;
+    } while (token != null);
+    assertEquals(3, pages);
+    assertEquals(7, result.size());
+    for (int i = 0; i < 7; i++) {
+      assertEquals(ids.get(6 - i), result.get(i));
+    }
+    // Ordered by a non unique property (title) ascending:
+    result.clear();
+    ResultPage<BookDO> page = bookDao.getPage(createFilter(), "title", true, null, 4);
+    assertTrue(page.hasNext());
+    for (final BookDO book : page.getEntries()) {
+      result.add(book.getId());
+    }
+    page = bookDao.getPage(createFilter(), "title", true, page.getNextToken(), 4);
+    assertFalse(page.hasNext());
+    assertNull(page.getNextToken());
+    for (final BookDO book : page.getEntries()) {
+      result.add(book.getId());
+    }
+    assertEquals(7, result.size());
+    final int[] expectedOrder = { 0, 3, 6, 1, 4, 2, 5};
+    for (int i = 0; i < 7; i++) {
+      assertEquals(ids.get(expectedOrder[i]), result.get(i));
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes"})
+  @Test
+  public void nullableKeysetProperty()
+  {
+    final List<Integer> ids = new ArrayList<Integer>();
+    txTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+    txTemplate.execute(new TransactionCallback() {
+      public Object doInTransaction(final TransactionStatus status)
+      {
+        final String[] authors = { "KPN-b", null, "KPN-a", null, "KPN-c"};
+        for (int i = 0; i < authors.length; i++) {
+          final BookDO book = new BookDO();
+          book.setTask(getTask("root"));
+          book.setSignature("KPN-" + i);
+          book.setTitle("Keyset paging nullable " + i);
+          book.setAuthors(authors[i]);
+          book.setStatus(BookStatus.PRESENT);
+          ids.add((Integer) bookDao.internalSave(book));
+        }
+        return null;
+      }
+    });
+    logon(TEST_ADMIN_USER);
+    assertTrue(bookDao.isKeysetPropertySupported("authors"));
+    assertFalse(bookDao.isKeysetPropertySupported("task"));
+    assertFalse(bookDao.isKeysetPropertySupported("task.title"));
+    assertFalse(bookDao.isKeysetPropertySupported("signature4Sort"));
+    // Other books of the test data base may exist, so only the relative order of the books of this test is checked:
+    final List<Integer> result = new ArrayList<Integer>();
+    PageToken token = null;
+    do {
+      final ResultPage<BookDO> page = bookDao.getPage(new BookFilter(), "authors", true, token, 2);
+      for (final BookDO book : page.getEntries()) {
+        if (ids.contains(book.getId()) == true) {
+          result.add(book.getId());
+        }
+      }
+      token = page.getNextToken();
+    } while (token != null);
+    final int[] expectedOrder = { 2, 0, 4, 1, 3}; // Books without authors last (ordered by id).
+    assertEquals(5, result.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(ids.get(expectedOrder[i]), result.get(i));
+    }
+  }
+
+  private QueryFilter createFilter()
+  {
+    final QueryFilter filter = new QueryFilter();
+    filter.add(Restrictions.like("signature", "KP-%"));
+    return filter;
+  }
+}
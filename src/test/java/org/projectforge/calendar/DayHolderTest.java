@@ -72,6 +72,14 @@ public class DayHolderTest
     assertBigDecimal(21, DayHolder.getNumberOfWorkingDays(fromDay, toDay));
     toDay.setDate(2009, Calendar.FEBRUARY, 28, 0, 0, 0);
     assertBigDecimal(41, DayHolder.getNumberOfWorkingDays(fromDay, toDay));
+    assertBigDecimal(0, DayHolder.getNumberOfWorkingDays(fromDay, fromDay)); // New year
+    fromDay.setDate(2009, Calendar.DECEMBER, 24, 0, 0, 0);
+    assertBigDecimal(0.5, DayHolder.getNumberOfWorkingDays(fromDay, fromDay)); // Work fraction of Christmas eve
+    fromDay.setDate(2009, Calendar.DECEMBER, 1, 0, 0, 0);
+    toDay.setDate(2009, Calendar.DECEMBER, 31, 0, 0, 0);
+    assertBigDecimal(21, DayHolder.getNumberOfWorkingDays(fromDay, toDay));
+    toDay.setDate(2010, Calendar.JANUARY, 31, 0, 0, 0);
+    assertBigDecimal(41, DayHolder.getNumberOfWorkingDays(fromDay, toDay));
   }
 
   @Test
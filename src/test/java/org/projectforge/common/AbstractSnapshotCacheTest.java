@@ -0,0 +1,103 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AbstractSnapshotCacheTest
+{
+  private static class TestCache extends AbstractSnapshotCache<Integer>
+  {
+    private final AtomicInteger data = new AtomicInteger();
+
+    private volatile boolean fail;
+
+    private final AtomicInteger builds = new AtomicInteger();
+
+    @Override
+    protected Integer buildSnapshot()
+    {
+      builds.incrementAndGet();
+      if (fail == true) {
+        throw new RuntimeException("Simulated data base error.");
+      }
+      return data.get();
+    }
+
+    Integer get()
+    {
+      return getSnapshot();
+    }
+  }
+
+  @Test
+  public void readYourWrites()
+  {
+    final TestCache cache = new TestCache();
+    assertEquals(0, (int) cache.get());
+    cache.data.set(1);
+    assertEquals("Not expired, so the old snapshot is returned.", 0, (int) cache.get());
+    cache.setExpired();
+    assertEquals("Explicit expiry is refreshed synchronously also in background mode.", 1, (int) cache.get());
+    assertEquals(2, cache.builds.get());
+  }
+
+  @Test
+  public void failingInitialRefresh()
+  {
+    final TestCache cache = new TestCache();
+    cache.fail = true;
+    try {
+      cache.get();
+      fail("IllegalStateException expected.");
+    } catch (final IllegalStateException ex) {
+      // OK
+    }
+    assertEquals(false, cache.isInitialized());
+    cache.fail = false;
+    cache.data.set(42);
+    assertEquals("Initial refresh is retried.", 42, (int) cache.get());
+    assertTrue(cache.isInitialized());
+  }
+
+  @Test
+  public void failingRefreshKeepsOldSnapshot()
+  {
+    final TestCache cache = new TestCache();
+    cache.data.set(5);
+    assertEquals(5, (int) cache.get());
+    cache.fail = true;
+    cache.setExpired();
+    assertEquals(5, (int) cache.get());
+    cache.fail = false;
+    cache.data.set(6);
+    assertEquals("Still expired after failed refresh, so refreshed again.", 6, (int) cache.get());
+  }
+}
@@ -33,6 +33,7 @@ import java.util.Locale;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.projectforge.calendar.DayHolder;
 import org.projectforge.test.TestConfiguration;
 
 public class DateHolderTest
@@ -221,6 +222,28 @@ public class DateHolderTest
     dateHolder.addWorkingDays(1); // Skip saturday, sunday and whit monday and weekend.
     dateHolder.addWorkingDays(-6); // Skip saturday, sunday and whit monday and weekends.
     assertEquals("2010-05-14 04:50:00.000", DateHelper.getForTestCase(dateHolder.getDate()));
+    dateHolder.setDate(2010, Calendar.DECEMBER, 23, 4, 50, 23);
+    dateHolder.addWorkingDays(7); // Skip christmas and turn of the year.
+    assertEquals("2011-01-03 04:50:00.000", DateHelper.getForTestCase(dateHolder.getDate()));
+    dateHolder.addWorkingDays(-7);
+    assertEquals("2010-12-23 04:50:00.000", DateHelper.getForTestCase(dateHolder.getDate()));
+    // Compare with adding day by day:
+    final DateHolder start = new DateHolder(DatePrecision.MINUTE, DateHelper.UTC, Locale.GERMAN);
+    start.setDate(2011, Calendar.FEBRUARY, 3, 4, 50, 0);
+    for (final int days : new int[] { 1, 7, 100, 365, 1000, -1, -7, -100, -365, -1000}) {
+      final DateHolder expected = (DateHolder) start.clone();
+      int counter = 0;
+      while (counter != days) {
+        do {
+          expected.add(Calendar.DAY_OF_MONTH, days > 0 ? 1 : -1);
+        } while (new DayHolder(expected).isWorkingDay() == false);
+        counter += days > 0 ? 1 : -1;
+      }
+      final DateHolder dh = (DateHolder) start.clone();
+      dh.addWorkingDays(days);
+      assertEquals("Adding " + days + " working days", DateHelper.getForTestCase(expected.getDate()), DateHelper.getForTestCase(dh
+          .getDate()));
+    }
   }
 
   private int daysBetween(final DateHolder date1, final DateHolder date2)
@@ -0,0 +1,132 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.hibernate.Session;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.junit.Test;
+import org.projectforge.task.TaskDO;
+import org.projectforge.test.TestBase;
+
+public class ReindexPipelineTest extends TestBase
+{
+  @Test
+  public void reindexAndResume() throws Exception
+  {
+    final File checkpointFile = new File(TEST_DIR, "reindex-checkpoints.properties");
+    checkpointFile.delete();
+    final ReindexPipeline pipeline = new ReindexPipeline(hibernate.getSessionFactory(), checkpointFile, 2);
+    assertTrue(pipeline.supports(TaskDO.class));
+    @SuppressWarnings("unchecked")
+    final List<Integer> ids = hibernate.find("select id from TaskDO order by id");
+    assertTrue("Test data expected.", ids.size() > 2);
+
+    assertEquals(ids.size(), pipeline.reindex(TaskDO.class));
+    ReindexProgress progress = pipeline.getProgress().get(0);
+    assertFalse(progress.isRunning());
+    assertFalse(progress.isFailed());
+    assertEquals(ids.size(), progress.getTotal());
+    assertNull(progress.getResumedFromId());
+    assertNull("Checkpoint should be removed after successful run.", readCheckpoint(checkpointFile));
+
+    // Simulate a cancelled run: resume after the checkpoint.
+    final Integer checkpoint = ids.get(ids.size() / 2);
+    final Properties props = new Properties();
+    props.setProperty(TaskDO.class.getName(), String.valueOf(checkpoint));
+    final FileOutputStream out = new FileOutputStream(checkpointFile);
+    props.store(out, null);
+    out.close();
+    pipeline.reset();
+    assertTrue(pipeline.getProgress().isEmpty());
+    final int remaining = ids.size() - ids.indexOf(checkpoint) - 1;
+    assertEquals(remaining, pipeline.reindex(TaskDO.class));
+    progress = pipeline.getProgress().get(0);
+    assertEquals(remaining, progress.getTotal());
+    assertEquals(checkpoint.longValue(), ((Number) progress.getResumedFromId()).longValue());
+    assertNull(readCheckpoint(checkpointFile));
+
+    // A cancelled run skips all partitions.
+    pipeline.cancel();
+    assertEquals(0, pipeline.reindex(TaskDO.class));
+    assertTrue(pipeline.getProgress().get(0).isCancelled());
+    checkpointFile.delete();
+  }
+
+  @Test
+  public void purgeDocumentsOfDeletedEntities()
+  {
+    final File checkpointFile = new File(TEST_DIR, "reindex-checkpoints-purge.properties");
+    checkpointFile.delete();
+    final ReindexPipeline pipeline = new ReindexPipeline(hibernate.getSessionFactory(), checkpointFile, 2);
+    final TaskDO task = new TaskDO().setTitle("ReindexPipelineTest.purge");
+    task.setCreated();
+    task.setLastUpdate();
+    final Integer id = (Integer) hibernate.save(task);
+    pipeline.reindex(TaskDO.class);
+    assertEquals(1, getNumberOfDocuments(id));
+    // Bulk deletion bypasses the index, so the document of the task is stale:
+    hibernate.bulkUpdate("delete from TaskDO where id = ?", id);
+    assertEquals(1, getNumberOfDocuments(id));
+    pipeline.reindex(TaskDO.class);
+    assertEquals("Document of deleted task should be purged.", 0, getNumberOfDocuments(id));
+    checkpointFile.delete();
+  }
+
+  private int getNumberOfDocuments(final Integer taskId)
+  {
+    final Session session = hibernate.getSessionFactory().openSession();
+    try {
+      final FullTextSession fullTextSession = Search.getFullTextSession(session);
+      return fullTextSession.createFullTextQuery(new TermQuery(new Term("id", String.valueOf(taskId))), TaskDO.class).getResultSize();
+    } finally {
+      session.close();
+    }
+  }
+
+  private String readCheckpoint(final File file) throws Exception
+  {
+    if (file.exists() == false) {
+      return null;
+    }
+    final Properties props = new Properties();
+    final FileInputStream in = new FileInputStream(file);
+    props.load(in);
+    in.close();
+    return props.getProperty(TaskDO.class.getName());
+  }
+}
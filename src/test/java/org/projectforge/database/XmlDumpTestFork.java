@@ -26,10 +26,34 @@ package org.projectforge.database;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.projectforge.calendar.DayHolder;
+import org.projectforge.database.xstream.HibernateEntityReferenceConverter;
+import org.projectforge.database.xstream.HibernateXmlConverter;
 import org.projectforge.database.xstream.XStreamSavingConverter;
+import org.projectforge.fibu.AuftragDO;
+import org.projectforge.fibu.AuftragsPositionDO;
+import org.projectforge.fibu.EingangsrechnungDO;
+import org.projectforge.fibu.EingangsrechnungsPositionDO;
+import org.projectforge.fibu.RechnungDO;
+import org.projectforge.fibu.RechnungsPositionDO;
+import org.projectforge.fibu.kost.Kost1DO;
+import org.projectforge.fibu.kost.Kost2DO;
+import org.projectforge.fibu.kost.KostZuweisungDO;
 import org.projectforge.plugins.teamcal.TeamCalTestHelper;
+import org.projectforge.task.TaskDO;
+import org.projectforge.task.TaskDao;
 import org.projectforge.test.TestBase;
 import org.projectforge.user.PFUserDO;
 import org.projectforge.user.UserGroupCache;
@@ -42,6 +66,8 @@ public class XmlDumpTestFork extends TestBase
 
   private UserGroupCache userGroupCache;
 
+  private TaskDao taskDao;
+
   private XmlDump xmlDump;
 
   public void setInitDatabaseDao(final InitDatabaseDao initDatabaseDao)
@@ -54,6 +80,11 @@ public class XmlDumpTestFork extends TestBase
     this.userGroupCache = userGroupCache;
   }
 
+  public void setTaskDao(final TaskDao taskDao)
+  {
+    this.taskDao = taskDao;
+  }
+
   public void setXmlDump(final XmlDump xmlDump)
   {
     this.xmlDump = xmlDump;
@@ -67,7 +98,7 @@ public class XmlDumpTestFork extends TestBase
   }
 
   @Test
-  public void verifyDump()
+  public void verifyDump() throws Exception
   {
     userGroupCache.setExpired(); // Force reload (because it's may be expired due to previous tests).
     assertTrue(initDatabaseDao.isEmpty());
@@ -82,5 +113,182 @@ public class XmlDumpTestFork extends TestBase
     log.info("The following import error from XmlDump are OK.");
     assertEquals("Error should be detected.", -counter, xmlDump.verifyDump(converter));
     log.info("The previous import error from XmlDump are OK.");
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    xmlDump.dumpDatabaseAsStream("dump.xml", out);
+    final String xml = new String(out.toByteArray(), "utf-8");
+    assertTrue(xml.contains("<" + HibernateXmlConverter.STREAM_ROOT_ELEMENT + ">"));
+    assertTrue(xml.contains("<" + HibernateXmlConverter.STREAM_ENTITIES_ELEMENT + " class=\"" + PFUserDO.class.getName() + "\">"));
+    assertTrue("References should be written as ids.", xml.contains(HibernateEntityReferenceConverter.ATTR_ENTITY_REF + "=\""));
+    assertTrue("Users have to be written before the tasks.",
+        xml.indexOf("class=\"" + PFUserDO.class.getName() + "\"") < xml.indexOf("class=\"" + TaskDO.class.getName() + "\""));
+  }
+
+  @Test
+  public void streamingDumpRoundTrip() throws Exception
+  {
+    clearDatabase();
+    userGroupCache.setExpired();
+    xmlDump.restoreDatabaseFromClasspathResource(InitDatabaseDao.TEST_DATA_BASE_DUMP_FILE, "utf-8");
+    // Move the task with the lowest id below a new task, so the task references a parent task written after it (forward reference):
+    TaskDO task = null;
+    for (final TaskDO t : taskDao.internalLoadAll()) {
+      if (t.getParentTaskId() != null && (task == null || t.getId() < task.getId())) {
+        task = t;
+      }
+    }
+    final TaskDO parent = new TaskDO().setTitle("xml-dump-forward-parent");
+    parent.setParentTask(task.getParentTask());
+    parent.setCreated();
+    parent.setLastUpdate();
+    hibernate.save(parent);
+    task.setParentTask(parent);
+    hibernate.update(task);
+    createInvoices();
+    final List<String> tasks = getTasks();
+    final List<String> invoicePositions = getInvoicePositions();
+    final List<String> costAssignments = getCostAssignments();
+    assertTrue(invoicePositions.size() >= 3);
+    assertTrue(costAssignments.size() >= 3);
+    final int numberOfUsers = userDao.internalLoadAll().size();
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    xmlDump.dumpDatabaseAsStream("dump.xml", out);
+    clearDatabase();
+    userGroupCache.setExpired();
+    assertTrue(initDatabaseDao.isEmpty());
+    final XStreamSavingConverter converter = xmlDump.restoreDatabase(new InputStreamReader(new ByteArrayInputStream(out.toByteArray()),
+        "utf-8"));
+    assertTrue(converter.isStreaming());
+    final int counter = xmlDump.verifyDump(converter);
+    assertTrue("Import was not successful.", counter >= 50);
+    assertEquals(numberOfUsers, userDao.internalLoadAll().size());
+    assertEquals("Tasks and their parent tasks should be restored.", tasks, getTasks());
+    assertEquals("Invoice positions and their order positions should be restored.", invoicePositions, getInvoicePositions());
+    assertEquals("Cost assignments and their invoice positions should be restored.", costAssignments, getCostAssignments());
+    clearDatabase();
+  }
+
+  /**
+   * Creates an order with two positions, an invoice with positions referencing the order positions and an incoming invoice. All invoice
+   * positions have cost assignments.
+   */
+  private void createInvoices()
+  {
+    final Kost1DO kost1 = hibernate.loadAll(Kost1DO.class).get(0);
+    final Kost2DO kost2 = hibernate.loadAll(Kost2DO.class).get(0);
+    int auftragNummer = 0;
+    for (final AuftragDO auftrag : hibernate.loadAll(AuftragDO.class)) {
+      auftragNummer = Math.max(auftragNummer, auftrag.getNummer());
+    }
+    final AuftragDO auftrag = new AuftragDO().setNummer(auftragNummer + 1).setTitel("xml-dump-order");
+    auftrag.addPosition(new AuftragsPositionDO().setTitel("xml-dump-order-pos 1"));
+    auftrag.addPosition(new AuftragsPositionDO().setTitel("xml-dump-order-pos 2"));
+    auftrag.setCreated();
+    auftrag.setLastUpdate();
+    hibernate.save(auftrag);
+
+    int rechnungNummer = 0;
+    for (final RechnungDO rechnung : hibernate.loadAll(RechnungDO.class)) {
+      if (rechnung.getNummer() != null) {
+        rechnungNummer = Math.max(rechnungNummer, rechnung.getNummer());
+      }
+    }
+    final RechnungDO rechnung = new RechnungDO().setNummer(rechnungNummer + 1);
+    rechnung.setDatum(new DayHolder().getSQLDate());
+    for (short i = 2; i >= 1; i--) {
+      // Positions in reverse order of the order positions.
+      final RechnungsPositionDO pos = new RechnungsPositionDO();
+      pos.setAuftragsPosition(auftrag.getPosition(i)).setEinzelNetto(new BigDecimal(100 * i)).setText("xml-dump-invoice-pos " + i);
+      pos.addKostZuweisung(new KostZuweisungDO().setKost1(kost1).setKost2(kost2).setNetto(new BigDecimal(60 * i)));
+      pos.addKostZuweisung(new KostZuweisungDO().setKost1(kost1).setKost2(kost2).setNetto(new BigDecimal(40 * i)));
+      rechnung.addPosition(pos);
+    }
+    rechnung.setCreated();
+    rechnung.setLastUpdate();
+    hibernate.save(rechnung);
+
+    final EingangsrechnungDO eingangsrechnung = new EingangsrechnungDO();
+    eingangsrechnung.setKreditor("xml-dump-creditor");
+    eingangsrechnung.setDatum(new DayHolder().getSQLDate());
+    final EingangsrechnungsPositionDO pos = new EingangsrechnungsPositionDO();
+    pos.setEinzelNetto(new BigDecimal(50)).setText("xml-dump-incoming-invoice-pos");
+    pos.addKostZuweisung(new KostZuweisungDO().setKost1(kost1).setKost2(kost2).setNetto(new BigDecimal(50)));
+    eingangsrechnung.addPosition(pos);
+    eingangsrechnung.setCreated();
+    eingangsrechnung.setLastUpdate();
+    hibernate.save(eingangsrechnung);
+  }
+
+  /**
+   * @return The sorted list of all invoice positions as "invoice number.position number: text -> order number.order position number".
+   */
+  private List<String> getInvoicePositions()
+  {
+    final List<String> result = new ArrayList<String>();
+    for (final RechnungDO rechnung : hibernate.loadAll(RechnungDO.class)) {
+      for (final RechnungsPositionDO pos : rechnung.getPositionen()) {
+        final AuftragsPositionDO auftragsPosition = pos.getAuftragsPosition();
+        result.add(rechnung.getNummer()
+            + "."
+            + pos.getNumber()
+            + ": "
+            + pos.getText()
+            + " -> "
+            + (auftragsPosition != null ? auftragsPosition.getAuftrag().getNummer() + "." + auftragsPosition.getNumber() : ""));
+      }
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * @return The sorted list of all cost assignments as "invoice position/index: netto kost1 kost2".
+   */
+  private List<String> getCostAssignments()
+  {
+    final List<String> result = new ArrayList<String>();
+    for (final KostZuweisungDO zuweisung : hibernate.loadAll(KostZuweisungDO.class)) {
+      final String position;
+      if (zuweisung.getRechnungsPosition() != null) {
+        final RechnungsPositionDO pos = zuweisung.getRechnungsPosition();
+        position = "invoice " + pos.getRechnung().getNummer() + "." + pos.getNumber() + " " + pos.getText();
+      } else if (zuweisung.getEingangsrechnungsPosition() != null) {
+        final EingangsrechnungsPositionDO pos = zuweisung.getEingangsrechnungsPosition();
+        position = "incoming invoice " + pos.getEingangsrechnung().getKreditor() + "." + pos.getNumber() + " " + pos.getText();
+      } else {
+        position = "";
+      }
+      result.add(position
+          + "/"
+          + zuweisung.getIndex()
+          + ": "
+          + (zuweisung.getNetto() != null ? zuweisung.getNetto().stripTrailingZeros().toPlainString() : "")
+          + " "
+          + zuweisung.getKost1().getFormattedNumber()
+          + " "
+          + zuweisung.getKost2().getFormattedNumber());
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * @return The sorted list of all tasks as "parent title/title".
+   */
+  private List<String> getTasks()
+  {
+    final List<TaskDO> list = taskDao.internalLoadAll();
+    final Map<Integer, String> titles = new HashMap<Integer, String>();
+    for (final TaskDO task : list) {
+      titles.put(task.getId(), task.getTitle());
+    }
+    final List<String> result = new ArrayList<String>();
+    for (final TaskDO task : list) {
+      final Integer parentId = task.getParentTaskId();
+      result.add((parentId != null ? titles.get(parentId) : "") + "/" + task.getTitle());
+    }
+    Collections.sort(result);
+    return result;
   }
 }
@@ -0,0 +1,127 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.fibu;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Test;
+import org.projectforge.common.DateHelper;
+import org.projectforge.common.DateHolder;
+import org.projectforge.core.ResultHandler;
+import org.projectforge.task.TaskDO;
+import org.projectforge.test.TestBase;
+import org.projectforge.user.PFUserDO;
+
+public class MonthlyEmployeeReportDaoTest extends TestBase
+{
+  private MonthlyEmployeeReportDao monthlyEmployeeReportDao;
+
+  public void setMonthlyEmployeeReportDao(final MonthlyEmployeeReportDao monthlyEmployeeReportDao)
+  {
+    this.monthlyEmployeeReportDao = monthlyEmployeeReportDao;
+  }
+
+  @Test
+  public void getReports()
+  {
+    logon(TestBase.TEST_FINANCE_USER); // Access to all time sheets.
+    final PFUserDO user1 = initTestDB.addUser("MonthlyEmployeeReportDaoTestUser1");
+    final PFUserDO user2 = initTestDB.addUser("MonthlyEmployeeReportDaoTestUser2");
+    final PFUserDO user3 = initTestDB.addUser("MonthlyEmployeeReportDaoTestUser3");
+    final TaskDO task = initTestDB.addTask("MonthlyEmployeeReportDaoTest", "root");
+    final DateHolder date = new DateHolder();
+    date.add(Calendar.MONTH, -2);
+    date.setBeginOfMonth();
+    date.add(Calendar.DAY_OF_MONTH, 2);
+    initTestDB.addTimesheet(user1, task, date, 10, 14, "MonthlyEmployeeReportDaoTest"); // 4 hours
+    initTestDB.addTimesheet(user2, task, date, 8, 9, "MonthlyEmployeeReportDaoTest"); // 1 hour
+    date.add(Calendar.DAY_OF_MONTH, 1);
+    initTestDB.addTimesheet(user1, task, date, 10, 12, "MonthlyEmployeeReportDaoTest"); // 2 hours
+    final int year = date.getYear();
+    final int month = date.getMonth();
+    final List<PFUserDO> users = new ArrayList<PFUserDO>();
+    users.add(user3);
+    users.add(user1);
+    users.add(user2);
+    final List<MonthlyEmployeeReport> reports = monthlyEmployeeReportDao.getReports(year, month, users);
+    assertEquals(3, reports.size());
+    for (int i = 0; i < users.size(); i++) {
+      final PFUserDO user = users.get(i);
+      final MonthlyEmployeeReport report = reports.get(i);
+      assertEquals(user.getId(), report.getUser().getId());
+      // Same result as the single report:
+      assertEquals(monthlyEmployeeReportDao.getReport(year, month, user).getTotalGrossDuration(), report.getTotalGrossDuration());
+    }
+    assertEquals(0, reports.get(0).getTotalGrossDuration());
+    assertEquals(6 * DateHelper.MILLIS_HOUR, reports.get(1).getTotalGrossDuration());
+    assertEquals(DateHelper.MILLIS_HOUR, reports.get(2).getTotalGrossDuration());
+  }
+
+  @Test
+  public void processReportsInOrder()
+  {
+    logon(TestBase.TEST_FINANCE_USER);
+    final TaskDO task = initTestDB.addTask("MonthlyEmployeeReportDaoTest.processReports", "root");
+    final DateHolder date = new DateHolder();
+    date.add(Calendar.MONTH, -3);
+    date.setBeginOfMonth();
+    date.add(Calendar.DAY_OF_MONTH, 2);
+    final List<PFUserDO> users = new ArrayList<PFUserDO>();
+    // More users than reports calculated ahead:
+    for (int i = 0; i < MonthlyEmployeeReportDao.MAX_PENDING_REPORTS + 3; i++) {
+      final PFUserDO user = initTestDB.addUser("MonthlyEmployeeReportDaoTest.processReports" + i);
+      initTestDB.addTimesheet(user, task, date, 8, 9 + i % 5, "MonthlyEmployeeReportDaoTest");
+      users.add(user);
+    }
+    final List<Integer> handledUserIds = new ArrayList<Integer>();
+    monthlyEmployeeReportDao.processReports(date.getYear(), date.getMonth(), users, new ResultHandler<MonthlyEmployeeReport>() {
+      @Override
+      public boolean handle(final MonthlyEmployeeReport report)
+      {
+        assertEquals((1 + handledUserIds.size() % 5) * DateHelper.MILLIS_HOUR, report.getTotalGrossDuration());
+        handledUserIds.add(report.getUser().getId());
+        return true;
+      }
+    });
+    assertEquals(users.size(), handledUserIds.size());
+    for (int i = 0; i < users.size(); i++) {
+      assertEquals("Reports are handled in the order of the users.", users.get(i).getId(), handledUserIds.get(i));
+    }
+    // Stop processing:
+    handledUserIds.clear();
+    monthlyEmployeeReportDao.processReports(date.getYear(), date.getMonth(), users, new ResultHandler<MonthlyEmployeeReport>() {
+      @Override
+      public boolean handle(final MonthlyEmployeeReport report)
+      {
+        handledUserIds.add(report.getUser().getId());
+        return handledUserIds.size() < 2;
+      }
+    });
+    assertEquals(2, handledUserIds.size());
+  }
+}
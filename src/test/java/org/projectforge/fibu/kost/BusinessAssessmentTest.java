@@ -64,6 +64,41 @@ public class BusinessAssessmentTest
     assertEquals(new BigDecimal("0.68"), bwa.getRow("relativePerformance").getAmount()); // profit / revenue
   }
 
+  @Test
+  public void testRowIndex()
+  {
+    final BusinessAssessmentConfig bwaConfig = BusinessAssessmentConfigTest.getBusinessAssessmentConfig();
+    final BusinessAssessmentRowIndex rowIndex = bwaConfig.getRowIndex();
+    final List<BusinessAssessmentRowConfig> rows = bwaConfig.getRows();
+    for (int accountNumber = -1; accountNumber <= 10000; accountNumber++) {
+      int expected = -1;
+      for (int i = 0; i < rows.size(); i++) {
+        if (rows.get(i).getAccountNumberRanges().doesMatch(accountNumber) == true) {
+          expected = i;
+          break;
+        }
+      }
+      assertEquals("Account number " + accountNumber, expected, rowIndex.getRowIndex(accountNumber));
+    }
+    assertEquals(-1, rowIndex.getRowIndex(Integer.MIN_VALUE));
+    assertEquals(-1, rowIndex.getRowIndex(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testAmountAccumulation()
+  {
+    final BusinessAssessmentConfig bwaConfig = BusinessAssessmentConfigTest.getBusinessAssessmentConfig();
+    final BusinessAssessment bwa = new BusinessAssessment(bwaConfig);
+    final BusinessAssessmentRow row = bwa.getRow("umsatzErloese");
+    row.addAccountRecord(createRecord(8.08, 4000));
+    final BuchungssatzDO record = createRecord(0, 4000);
+    record.setBetrag(null);
+    row.addAccountRecord(record);
+    assertEquals(new BigDecimal("8.08"), row.getAmount());
+    row.addAccountRecord(createRecord(-10.00, 4000));
+    assertEquals(new BigDecimal("-1.92"), row.getAmount());
+  }
+
   private BuchungssatzDO createRecord(final double amount, final int accountNumber)
   {
     final BuchungssatzDO record = new BuchungssatzDO();
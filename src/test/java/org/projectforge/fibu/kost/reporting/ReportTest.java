@@ -32,6 +32,8 @@ import java.util.List;
 
 import org.junit.Test;
 import org.projectforge.core.Priority;
+import org.projectforge.fibu.kost.BuchungssatzDO;
+import org.projectforge.fibu.kost.Kost2DO;
 import org.projectforge.test.TestBase;
 
 
@@ -101,5 +103,62 @@ public class ReportTest extends TestBase
     regExpList.add("*.02");
     assertFalse(Report.match(regExpList, "5.200.01.03", true));
     assertTrue(Report.match(regExpList, "5.190.01.02", true));
+    regExpList = new ArrayList<String>();
+    assertTrue(Report.match(regExpList, "5.190.01.02", true));
+    assertFalse(Report.match(regExpList, "5.190.01.02", false));
+    regExpList.add("5.190.01.02");
+    assertTrue(Report.match(regExpList, "5.190.01.02", false));
+    assertFalse(Report.match(regExpList, "5.190.01.021", false));
+    assertFalse(Report.match(regExpList, "5x190.01.02", false));
+    regExpList = new ArrayList<String>();
+    regExpList.add("'5\\.1[89]0\\..*");
+    assertTrue(Report.match(regExpList, "5.180.01.02", false));
+    assertFalse(Report.match(regExpList, "5.170.01.02", false));
+    regExpList.add("6.*");
+    assertTrue(Report.match(regExpList, "6.170.01.02", false));
+  }
+
+  @Test
+  public void testSelect()
+  {
+    final ReportObjective objective = new ReportObjective();
+    objective.setId("root");
+    objective.addKost2IncludeRegExp("5.*");
+    objective.addKost2ExcludeRegExp("*.02.--"); // No kost2 art given.
+    final ReportObjective child1 = new ReportObjective();
+    child1.setId("child1");
+    child1.addKost2IncludeRegExp("5.100.*");
+    objective.addChildReportObjective(child1);
+    final ReportObjective child2 = new ReportObjective();
+    child2.setId("child2");
+    child2.addKost2IncludeRegExp("5.1*");
+    objective.addChildReportObjective(child2);
+    final Kost2DO[] kosts = new Kost2DO[] { createKost2(1, 5, 100, 1), createKost2(2, 5, 100, 2), createKost2(3, 5, 120, 1),
+        createKost2(4, 5, 200, 1), createKost2(5, 6, 100, 1)};
+    final List<BuchungssatzDO> list = new ArrayList<BuchungssatzDO>();
+    for (int i = 0; i < 2000; i++) {
+      final BuchungssatzDO satz = new BuchungssatzDO();
+      satz.setKost2(kosts[i % kosts.length]);
+      list.add(satz);
+    }
+    final Report report = new Report(objective);
+    report.setShowChilds(true);
+    report.select(list);
+    assertEquals(1200, report.getBuchungssaetze().size()); // 5.100.01.--, 5.120.01.--, 5.200.01.--
+    assertEquals(4, report.getChilds().size()); // child1, child2, other, duplicates
+    assertEquals(400, report.findById("child1").getBuchungssaetze().size());
+    assertEquals(800, report.findById("child2").getBuchungssaetze().size());
+    assertEquals(400, report.getOther().size());
+    assertEquals(400, report.getDuplicates().size());
+  }
+
+  private Kost2DO createKost2(final int id, final int nummernkreis, final int bereich, final int teilbereich)
+  {
+    final Kost2DO kost2 = new Kost2DO();
+    kost2.setId(id);
+    kost2.setNummernkreis(nummernkreis);
+    kost2.setBereich(bereich);
+    kost2.setTeilbereich(teilbereich);
+    return kost2;
   }
 }
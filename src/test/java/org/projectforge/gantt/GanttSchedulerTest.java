@@ -0,0 +1,153 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.gantt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.projectforge.calendar.DayHolder;
+import org.projectforge.common.DateHelper;
+import org.projectforge.core.ConfigXmlTest;
+import org.projectforge.test.TestConfiguration;
+
+public class GanttSchedulerTest
+{
+  private static int counter = 0;
+
+  @BeforeClass
+  public static void setUp()
+  {
+    // Needed if this tests runs before the ConfigurationTest.
+    ConfigXmlTest.createTestConfiguration();
+    TestConfiguration.initAsTestConfiguration();
+  }
+
+  @Test
+  public void longChain()
+  {
+    final GanttTaskImpl root = createActivity(-1);
+    final DayHolder day = new DayHolder();
+    day.setDate(2010, Calendar.FEBRUARY, 1);
+    GanttTaskImpl predecessor = null;
+    GanttTaskImpl last = null;
+    for (int i = 0; i < 3000; i++) {
+      last = createActivity(1);
+      if (predecessor == null) {
+        last.setStartDate(day.getDate());
+      } else {
+        last.setPredecessor(predecessor);
+      }
+      root.addChild(last);
+      predecessor = last;
+    }
+    new GanttScheduler(root).schedule(); // No stack overflow.
+    assertEquals("2010-02-01", DateHelper.formatIsoDate(root.getCalculatedStartDate()));
+    day.addWorkingDays(3000);
+    assertEquals(DateHelper.formatIsoDate(day.getDate()), DateHelper.formatIsoDate(last.getCalculatedEndDate()));
+    assertEquals(DateHelper.formatIsoDate(day.getDate()), DateHelper.formatIsoDate(root.getCalculatedEndDate()));
+  }
+
+  @Test
+  public void sameResultsAsGanttUtils()
+  {
+    final GanttTaskImpl root = createTestChart();
+    new GanttScheduler(root).schedule();
+    assertDates("2010-09-01", "2010-09-02", root.findById(1));
+    assertDates("2010-09-02", "2010-09-06", root.findById(3)); // 2010-09-04 to 2010-09-05 is a weekend.
+    assertDates("2010-09-06", "2010-09-08", root.findById(4));
+    assertDates("2010-09-02", "2010-09-08", root.findById(2));
+    assertDates("2010-09-08", "2010-09-10", root.findById(5));
+    assertDates("2010-09-01", "2010-09-10", root);
+  }
+
+  @Test
+  public void update()
+  {
+    final GanttTaskImpl root = createTestChart();
+    final GanttScheduler scheduler = new GanttScheduler(root);
+    scheduler.schedule();
+    final GanttTask a2_1 = root.findById(3);
+    a2_1.setDuration(new BigDecimal(4));
+    scheduler.update(a2_1);
+    assertDates("2010-09-02", "2010-09-08", root.findById(3));
+    assertDates("2010-09-08", "2010-09-10", root.findById(4));
+    assertDates("2010-09-02", "2010-09-10", root.findById(2));
+    assertDates("2010-09-10", "2010-09-14", root.findById(5));
+    // Change the predecessor:
+    final GanttTask a3 = root.findById(5);
+    a3.setPredecessor(root.findById(1));
+    scheduler.update(a3);
+    assertDates("2010-09-02", "2010-09-06", root.findById(5));
+    // Compare with full calculation:
+    new GanttScheduler(root).schedule();
+    assertDates("2010-09-02", "2010-09-10", root.findById(2));
+    assertDates("2010-09-02", "2010-09-06", root.findById(5));
+  }
+
+  /**
+   * a1 (fixed start date), a2 with children a2_1 (predecessor a1) and a2_2 (predecessor a2_1), a3 (predecessor a2).
+   */
+  private GanttTaskImpl createTestChart()
+  {
+    counter = 0;
+    final GanttTaskImpl root = createActivity(-1);
+    final DayHolder day = new DayHolder();
+    day.setDate(2010, Calendar.SEPTEMBER, 1);
+    final GanttTaskImpl a1 = createActivity(1);
+    a1.setStartDate(day.getDate());
+    root.addChild(a1);
+    final GanttTaskImpl a2 = createActivity(-1);
+    root.addChild(a2);
+    final GanttTaskImpl a2_1 = createActivity(2);
+    a2_1.setPredecessor(a1);
+    a2.addChild(a2_1);
+    final GanttTaskImpl a2_2 = createActivity(2);
+    a2_2.setPredecessor(a2_1);
+    a2.addChild(a2_2);
+    final GanttTaskImpl a3 = createActivity(2);
+    a3.setPredecessor(a2);
+    root.addChild(a3);
+    return root;
+  }
+
+  private GanttTaskImpl createActivity(final int durationDays)
+  {
+    final GanttTaskImpl activity = new GanttTaskImpl();
+    if (durationDays >= 0) {
+      activity.setDuration(new BigDecimal(durationDays));
+    }
+    activity.setId(counter++);
+    return activity;
+  }
+
+  private void assertDates(final String expectedCalculatedStartDate, final String expectedCalculatedEndDate, final GanttTask task)
+  {
+    assertEquals(expectedCalculatedStartDate, DateHelper.formatIsoDate(task.getCalculatedStartDate()));
+    assertEquals(expectedCalculatedEndDate, DateHelper.formatIsoDate(task.getCalculatedEndDate()));
+  }
+}
@@ -0,0 +1,118 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.humanresources;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+import org.junit.Test;
+import org.projectforge.common.DateHelper;
+import org.projectforge.common.DateHolder;
+import org.projectforge.task.TaskDO;
+import org.projectforge.test.TestBase;
+import org.projectforge.timesheet.TimesheetDO;
+import org.projectforge.timesheet.TimesheetDao;
+import org.projectforge.user.PFUserDO;
+
+public class HRDaoTest extends TestBase
+{
+  private HRDao hrDao;
+
+  private TimesheetDao timesheetDao;
+
+  public void setHrDao(final HRDao hrDao)
+  {
+    this.hrDao = hrDao;
+  }
+
+  public void setTimesheetDao(final TimesheetDao timesheetDao)
+  {
+    this.timesheetDao = timesheetDao;
+  }
+
+  @Test
+  public void getResourcesOfClosedWeek()
+  {
+    logon(TestBase.TEST_FINANCE_USER); // Access to all time sheets.
+    final PFUserDO user = initTestDB.addUser("HRDaoTestUser1");
+    final TaskDO task = initTestDB.addTask("HRDaoTest", "root");
+    final DateHolder date = new DateHolder();
+    date.add(Calendar.WEEK_OF_YEAR, -3);
+    date.setBeginOfWeek();
+    final HRFilter filter = new HRFilter();
+    filter.setShowBookedTimesheets(true);
+    filter.setShowPlanning(false);
+    filter.setStartTime(date.getDate());
+    initTestDB.addTimesheet(user, task, date, 10, 14, "HRDaoTest"); // 4 hours
+    date.add(Calendar.DAY_OF_YEAR, 1);
+    final TimesheetDO timesheet = initTestDB.addTimesheet(user, task, date, 10, 12, "HRDaoTest"); // 2 hours
+    date.setEndOfWeek();
+    filter.setStopTime(date.getDate());
+    assertActualDays("0.75", hrDao.getResources(filter), user);
+    // Cached result of closed week:
+    assertActualDays("0.75", hrDao.getResources(filter), user);
+    timesheetDao.internalMarkAsDeleted(timesheet);
+    // Modification of time sheets of the closed week detected:
+    assertActualDays("0.50", hrDao.getResources(filter), user);
+  }
+
+  @Test
+  public void detectTimesheetsMovedIntoAndOutOfClosedWeek()
+  {
+    logon(TestBase.TEST_FINANCE_USER);
+    final PFUserDO user = initTestDB.addUser("HRDaoTestUser2");
+    final TaskDO task = initTestDB.addTask("HRDaoTest2", "root");
+    final DateHolder date = new DateHolder();
+    date.add(Calendar.WEEK_OF_YEAR, -5);
+    date.setBeginOfWeek();
+    final DateHolder nextWeek = new DateHolder(date.getDate());
+    nextWeek.add(Calendar.WEEK_OF_YEAR, 1);
+    final HRFilter filter = new HRFilter();
+    filter.setShowBookedTimesheets(true);
+    filter.setShowPlanning(false);
+    filter.setStartTime(date.getDate());
+    final TimesheetDO outside = initTestDB.addTimesheet(user, task, nextWeek, 8, 10, "HRDaoTest"); // 2 hours
+    final TimesheetDO inside = initTestDB.addTimesheet(user, task, date, 10, 14, "HRDaoTest"); // 4 hours
+    date.add(Calendar.DAY_OF_YEAR, 1);
+    initTestDB.addTimesheet(user, task, date, 10, 12, "HRDaoTest"); // 2 hours
+    date.setEndOfWeek();
+    filter.setStopTime(date.getDate());
+    assertActualDays("0.75", hrDao.getResources(filter), user);
+    // Swap the weeks of two time sheets without modifying the time of last update (number and last update of the week are unchanged):
+    hibernate.bulkUpdate("update TimesheetDO set startTime = ?, stopTime = ? where id = ?", new Object[] { inside.getStartTime(),
+        new Timestamp(inside.getStartTime().getTime() + DateHelper.MILLIS_HOUR * 2), outside.getId()});
+    hibernate.bulkUpdate("update TimesheetDO set startTime = ?, stopTime = ? where id = ?", new Object[] { outside.getStartTime(),
+        outside.getStopTime(), inside.getId()});
+    assertActualDays("0.50", hrDao.getResources(filter), user);
+  }
+
+  private void assertActualDays(final String expected, final HRViewData data, final PFUserDO user)
+  {
+    final HRViewUserData userData = data.getUserData(user);
+    assertEquals(new BigDecimal(expected), userData.getActualDaysSum());
+  }
+}
@@ -0,0 +1,84 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.projectforge.user.GroupDO;
+import org.projectforge.user.PFUserDO;
+
+public class LdapEntryIndexTest
+{
+  @Test
+  public void getLdapUser()
+  {
+    final List<LdapUser> ldapUsers = new ArrayList<LdapUser>();
+    final LdapUser kai = PFUserDOConverter.convert(createUser(1, "kai"));
+    final LdapUser renamed = PFUserDOConverter.convert(createUser(2, "renamed"));
+    final LdapUser other = PFUserDOConverter.convert(createUser(3, "other"));
+    ldapUsers.add(kai);
+    ldapUsers.add(renamed);
+    ldapUsers.add(other);
+    final LdapEntryIndex<LdapUser> index = LdapEntryIndex.createUserIndex(ldapUsers);
+    Assert.assertSame(kai, LdapEntryIndex.getLdapUser(index, createUser(1, "kai")));
+    Assert.assertSame("Found by employee number.", renamed, LdapEntryIndex.getLdapUser(index, createUser(2, "newname")));
+    Assert.assertSame("Found by uid.", kai, LdapEntryIndex.getLdapUser(index, createUser(42, "kai")));
+    Assert.assertNull(LdapEntryIndex.getLdapUser(index, createUser(42, "unknown")));
+    // uid matches the third entry and employee number matches the second entry: the first entry of the list has to win.
+    Assert.assertSame(renamed, LdapEntryIndex.getLdapUser(index, createUser(2, "other")));
+    Assert.assertSame(kai, LdapEntryIndex.getLdapUser(index, createUser(3, "kai")));
+  }
+
+  @Test
+  public void getLdapGroup()
+  {
+    final List<LdapGroup> ldapGroups = new ArrayList<LdapGroup>();
+    final LdapGroup group1 = new LdapGroup().setBusinessCategory(GroupDOConverter.buildBusinessCategory(createGroup(1)));
+    final LdapGroup duplicate = new LdapGroup().setBusinessCategory(GroupDOConverter.buildBusinessCategory(createGroup(1)));
+    final LdapGroup withoutCategory = new LdapGroup();
+    ldapGroups.add(withoutCategory);
+    ldapGroups.add(group1);
+    ldapGroups.add(duplicate);
+    final LdapEntryIndex<LdapGroup> index = LdapEntryIndex.createGroupIndex(ldapGroups);
+    Assert.assertSame(group1, LdapEntryIndex.getLdapGroup(index, createGroup(1)));
+    Assert.assertNull(LdapEntryIndex.getLdapGroup(index, createGroup(2)));
+  }
+
+  private PFUserDO createUser(final Integer id, final String username)
+  {
+    final PFUserDO user = new PFUserDO().setUsername(username);
+    user.setId(id);
+    return user;
+  }
+
+  private GroupDO createGroup(final Integer id)
+  {
+    final GroupDO group = new GroupDO();
+    group.setId(id);
+    return group;
+  }
+}
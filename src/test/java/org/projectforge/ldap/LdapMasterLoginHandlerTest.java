@@ -24,12 +24,20 @@
 package org.projectforge.ldap;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -117,6 +125,77 @@ public class LdapMasterLoginHandlerTest extends TestBase
     // Assert.assertEquals("successful", createdLdapUser.get());
   }
 
+  @Test
+  public void updateLdapWithMocks() throws NamingException
+  {
+    final LdapMasterLoginHandler loginHandler = new LdapMasterLoginHandler();
+    loginHandler.ldapConfig = new LdapConfig().setUserBase("ou=pf-mock-test-users").setGroupBase("ou=pf-mock-test-groups");
+    loginHandler.userDao = userDao;
+    loginHandler.ldapUserDao = mock(LdapUserDao.class);
+    loginHandler.ldapOrganizationalUnitDao = mock(LdapOrganizationalUnitDao.class);
+    loginHandler.initialize();
+    // Replace the LDAP stuff created by initialize by mocks:
+    final DirContext ctx = mock(DirContext.class);
+    loginHandler.ldapConnector = mock(LdapConnector.class);
+    when(loginHandler.ldapConnector.createContext()).thenReturn(ctx);
+    final LdapUserDao ldapUserDao = loginHandler.ldapUserDao;
+    final LdapGroupDao ldapGroupDao = mock(LdapGroupDao.class);
+    loginHandler.ldapGroupDao = ldapGroupDao;
+
+    final PFUserDO newUser = createMockUser(1, "mockNew", "Mock");
+    final PFUserDO modifiedUser = createMockUser(2, "mockModified", "Modified");
+    final PFUserDO deletedUser = createMockUser(3, "mockDeleted", "Deleted");
+    deletedUser.setDeleted(true);
+    final PFUserDO unmodifiedUser = createMockUser(4, "mockUnmodified", "Unmodified");
+    final List<LdapUser> ldapUsers = new ArrayList<LdapUser>();
+    ldapUsers.add(PFUserDOConverter.convert(createMockUser(2, "mockModified", "Old lastname")));
+    ldapUsers.add(PFUserDOConverter.convert(createMockUser(3, "mockDeleted", "Deleted")));
+    ldapUsers.add(PFUserDOConverter.convert(unmodifiedUser));
+    when(ldapUserDao.findAll(Mockito.any(DirContext.class), Mockito.anyString())).thenReturn(ldapUsers);
+    when(ldapGroupDao.findAll(Mockito.any(DirContext.class), Mockito.anyString())).thenReturn(new ArrayList<LdapGroup>());
+    final List<PFUserDO> users = new ArrayList<PFUserDO>();
+    users.add(newUser);
+    users.add(modifiedUser);
+    users.add(deletedUser);
+    users.add(unmodifiedUser);
+    final GroupDO group = new GroupDO();
+    group.setId(1);
+    group.setName("mockGroup");
+    group.setAssignedUsers(new HashSet<PFUserDO>());
+    final List<GroupDO> groups = new ArrayList<GroupDO>();
+    groups.add(group);
+
+    Assert.assertTrue(loginHandler.updateLdap(users, groups));
+    final ArgumentCaptor<LdapUser> userCaptor = ArgumentCaptor.forClass(LdapUser.class);
+    verify(ldapUserDao).create(Mockito.eq(ctx), Mockito.anyString(), userCaptor.capture());
+    Assert.assertEquals("mockNew", userCaptor.getValue().getUid());
+    verify(ldapUserDao).update(Mockito.eq(ctx), Mockito.anyString(), userCaptor.capture());
+    Assert.assertEquals("mockModified", userCaptor.getValue().getUid());
+    Assert.assertEquals("Modified", userCaptor.getValue().getSurname());
+    verify(ldapUserDao).delete(Mockito.eq(ctx), userCaptor.capture());
+    Assert.assertEquals("mockDeleted", userCaptor.getValue().getUid());
+    final ArgumentCaptor<LdapGroup> groupCaptor = ArgumentCaptor.forClass(LdapGroup.class);
+    verify(ldapGroupDao).create(Mockito.eq(ctx), Mockito.anyString(), groupCaptor.capture());
+    Assert.assertEquals("mockGroup", groupCaptor.getValue().getCommonName());
+
+    // Nothing modified, so the LDAP update is skipped:
+    Assert.assertFalse(loginHandler.updateLdap(users, groups));
+    verify(ldapUserDao, times(1)).findAll(Mockito.any(DirContext.class), Mockito.anyString());
+
+    // Modification of an user results in a new LDAP update:
+    unmodifiedUser.setLastUpdate(new Date(unmodifiedUser.getLastUpdate().getTime() + 1000));
+    Assert.assertTrue(loginHandler.updateLdap(users, groups));
+    verify(ldapUserDao, times(2)).findAll(Mockito.any(DirContext.class), Mockito.anyString());
+  }
+
+  private PFUserDO createMockUser(final Integer id, final String username, final String lastname)
+  {
+    final PFUserDO user = new PFUserDO().setUsername(username).setFirstname("Mock").setLastname(lastname);
+    user.setId(id);
+    user.setLastUpdate(new Date(1000000L));
+    return user;
+  }
+
   @Test
   public void realTest()
   {
@@ -0,0 +1,271 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.mail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MailQueueTest
+{
+  private FakeSmtpServer server;
+
+  @Before
+  public void startServer() throws IOException
+  {
+    server = new FakeSmtpServer();
+  }
+
+  @After
+  public void stopServer() throws IOException
+  {
+    server.close();
+  }
+
+  @Test
+  public void sendBatch() throws Exception
+  {
+    final MailQueue queue = new MailQueue(getProperties(server.getPort()), null, null, null, 1, 10);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(queue.enqueue(createMail(i)));
+    }
+    queue.start();
+    waitFor(queue, 5, 0);
+    assertEquals(5, server.messages.get());
+    assertEquals("All queued mails are sent through one connection.", 1, queue.getConnectionCount());
+    assertEquals(1, queue.getBatchCount());
+    assertEquals(0, queue.getQueueSize());
+    queue.shutdown();
+  }
+
+  @Test
+  public void keepConnectionWhileBusy() throws Exception
+  {
+    final MailQueue queue = new MailQueue(getProperties(server.getPort()), null, null, null, 1, 10);
+    final int number = 2 * MailQueue.BATCH_SIZE + 1;
+    for (int i = 0; i < number; i++) {
+      assertTrue(queue.enqueue(createMail(i)));
+    }
+    queue.start();
+    waitFor(queue, number, 0);
+    assertEquals(3, queue.getBatchCount());
+    assertEquals("Transport is reused by all batches while mails are queued.", 1, queue.getConnectionCount());
+    // Queue was empty, so the connection was closed:
+    queue.enqueue(createMail(number));
+    waitFor(queue, number + 1, 0);
+    assertEquals(2, queue.getConnectionCount());
+    queue.shutdown();
+  }
+
+  @Test
+  public void permanentFailure() throws Exception
+  {
+    final File dir = File.createTempFile("mailqueue", "");
+    dir.delete();
+    dir.mkdir();
+    try {
+      final MailQueue queue = new MailQueue(getProperties(server.getPort()), null, null, dir, 1, 10);
+      queue.enqueue(createMail(0));
+      queue.enqueue(createMail("invalid@localhost", 1));
+      queue.enqueue(createMail(2));
+      queue.start();
+      waitFor(queue, 2, 1);
+      assertEquals("Rejected recipient (550) isn't retried.", 0, queue.getRetryCount());
+      assertEquals(2, server.messages.get());
+      final String[] files = dir.list();
+      assertEquals(1, files.length);
+      assertTrue(files[0].endsWith(".failed"));
+      queue.shutdown();
+    } finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  public void persistence() throws Exception
+  {
+    final File dir = File.createTempFile("mailqueue", "");
+    dir.delete();
+    dir.mkdir();
+    try {
+      final MailQueue queue = new MailQueue(getProperties(server.getPort()), null, null, dir, 1, 10);
+      for (int i = 0; i < 3; i++) {
+        queue.enqueue(createMail(i));
+      }
+      assertEquals(3, dir.list().length);
+      // Simulates a restart before the mails are sent:
+      final MailQueue restarted = new MailQueue(getProperties(server.getPort()), null, null, dir, 1, 10);
+      restarted.start();
+      waitFor(restarted, 3, 0);
+      assertEquals(3, server.messages.get());
+      assertEquals(0, dir.list().length);
+      restarted.shutdown();
+    } finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  public void retry() throws Exception
+  {
+    final int port = server.getPort();
+    server.close(); // No server available.
+    final MailQueue queue = new MailQueue(getProperties(port), null, null, null, 1, 10);
+    queue.start();
+    queue.enqueue(createMail(0));
+    waitFor(queue, 0, 1);
+    assertEquals(MailQueue.MAX_ATTEMPTS - 1, queue.getRetryCount());
+    assertEquals(0, queue.getSentCount());
+    queue.shutdown();
+  }
+
+  private void waitFor(final MailQueue queue, final long sent, final long failed) throws InterruptedException
+  {
+    for (int i = 0; i < 1000; i++) {
+      if (queue.getSentCount() >= sent && queue.getFailedCount() >= failed) {
+        break;
+      }
+      Thread.sleep(10);
+    }
+    assertEquals(sent, queue.getSentCount());
+    assertEquals(failed, queue.getFailedCount());
+  }
+
+  private Properties getProperties(final int port)
+  {
+    final Properties properties = new Properties();
+    properties.put("mail.from", "noreply@localhost");
+    properties.put("mail.transport.protocol", "smtp");
+    properties.put("mail.smtp.host", "localhost");
+    properties.put("mail.smtp.port", String.valueOf(port));
+    return properties;
+  }
+
+  private QueuedMail createMail(final int number)
+  {
+    return createMail("test@localhost", number);
+  }
+
+  private QueuedMail createMail(final String to, final int number)
+  {
+    final Mail mail = new Mail();
+    mail.setTo(to);
+    mail.setSubject("Test " + number);
+    mail.setContent("Content of test mail " + number);
+    return new QueuedMail(mail, "UTF-8");
+  }
+
+  /**
+   * Minimal smtp server accepting every mail except of mails to recipients starting with "invalid".
+   */
+  private static class FakeSmtpServer implements Runnable
+  {
+    private final ServerSocket serverSocket;
+
+    final AtomicInteger messages = new AtomicInteger();
+
+    FakeSmtpServer() throws IOException
+    {
+      serverSocket = new ServerSocket(0);
+      final Thread thread = new Thread(this, "FakeSmtpServer");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    int getPort()
+    {
+      return serverSocket.getLocalPort();
+    }
+
+    void close() throws IOException
+    {
+      serverSocket.close();
+    }
+
+    public void run()
+    {
+      while (serverSocket.isClosed() == false) {
+        try {
+          final Socket socket = serverSocket.accept();
+          try {
+            handle(socket);
+          } finally {
+            socket.close();
+          }
+        } catch (final IOException ex) {
+          // Server closed.
+        }
+      }
+    }
+
+    private void handle(final Socket socket) throws IOException
+    {
+      final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+      final Writer out = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+      reply(out, "220 localhost");
+      String line;
+      while ((line = in.readLine()) != null) {
+        final String command = line.toUpperCase();
+        if (command.startsWith("DATA") == true) {
+          reply(out, "354 End data with <CR><LF>.<CR><LF>");
+          while ((line = in.readLine()) != null && ".".equals(line) == false) {
+            // Skip content.
+          }
+          messages.incrementAndGet();
+          reply(out, "250 OK");
+        } else if (command.startsWith("RCPT TO:<INVALID") == true) {
+          reply(out, "550 No such user");
+        } else if (command.startsWith("QUIT") == true) {
+          reply(out, "221 Bye");
+          break;
+        } else if (command.startsWith("EHLO") == true || command.startsWith("HELO") == true) {
+          reply(out, "250 localhost");
+        } else {
+          reply(out, "250 OK");
+        }
+      }
+    }
+
+    private void reply(final Writer out, final String response) throws IOException
+    {
+      out.write(response + "\r\n");
+      out.flush();
+    }
+  }
+}
@@ -24,14 +24,21 @@
 package org.projectforge.meb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import org.junit.Test;
 import org.projectforge.access.AccessException;
+import org.projectforge.core.BaseSearchFilter;
 import org.projectforge.test.TestBase;
+import org.projectforge.user.PFUserDO;
 
 public class MebDaoTest extends TestBase
 {
@@ -92,6 +99,56 @@ public class MebDaoTest extends TestBase
     }
   }
 
+  @Test
+  public void checkAndAddEntries()
+  {
+    final PFUserDO user1 = new PFUserDO();
+    user1.setUsername("MebDaoTestUser1");
+    user1.setPersonalMebMobileNumbers("0170 1234567, 0123/987654");
+    initTestDB.addUser(user1);
+    logon(TestBase.TEST_USER);
+    assertEquals(0, mebDao.getRecentMEBEntries(user1.getId())); // Cached.
+    final Date date = new Date();
+    final List<MebEntryDO> entries = new ArrayList<MebEntryDO>();
+    final MebEntryDO entry1 = createEntry("01701234567", date, "checkAndAddEntries: first");
+    entries.add(entry1);
+    entries.add(createEntry("01701234567", date, "checkAndAddEntries: first")); // Duplicate
+    final MebEntryDO entry2 = createEntry("0123-987654", date, "checkAndAddEntries: second");
+    entries.add(entry2);
+    final MebEntryDO entry3 = createEntry("0999 111", date, "checkAndAddEntries: unknown sender checkandaddentriesunknown");
+    entries.add(entry3);
+    assertEquals(3, mebDao.checkAndAddEntries(entries, "TEST"));
+    assertEquals(user1.getId(), entry1.getOwnerId());
+    assertEquals(user1.getId(), entry2.getOwnerId());
+    assertNull(entry3.getOwnerId());
+    // The save hooks are called: cache is expired and the search index is up to date.
+    assertEquals(2, mebDao.getRecentMEBEntries(user1.getId()));
+    logon(TestBase.ADMIN);
+    final BaseSearchFilter filter = new BaseSearchFilter();
+    filter.setSearchString("checkandaddentriesunknown");
+    final List<MebEntryDO> found = mebDao.getList(filter);
+    assertEquals(1, found.size());
+    assertEquals(entry3.getId(), found.get(0).getId());
+    // Already imported:
+    assertEquals(0, mebDao.checkAndAddEntries(entries, "TEST"));
+    assertFalse(mebDao.checkAndAddEntry(createEntry("0123 987654", date, "checkAndAddEntries: second"), "TEST"));
+    // Phone number index is updated after modification of users:
+    final PFUserDO user2 = new PFUserDO();
+    user2.setUsername("MebDaoTestUser2");
+    user2.setPersonalMebMobileNumbers("0160 5555");
+    initTestDB.addUser(user2);
+    final MebEntryDO entry4 = createEntry("01605555", date, "checkAndAddEntries: new user");
+    assertTrue(mebDao.checkAndAddEntry(entry4, "TEST"));
+    assertEquals(user2.getId(), entry4.getOwnerId());
+  }
+
+  private MebEntryDO createEntry(final String sender, final Date date, final String message)
+  {
+    final MebEntryDO entry = new MebEntryDO().setSender(sender).setDate(date);
+    entry.setMessage(message);
+    return entry;
+  }
+
   public void setMebDao(MebDao mebDao)
   {
     this.mebDao = mebDao;
@@ -0,0 +1,134 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.teamcal.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class TeamEventRecurrenceCacheTest
+{
+  private static final long DAY = 24L * 3600 * 1000;
+
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+  /**
+   * Expands daily occurrences (without ical4j) and counts the expanded days.
+   */
+  private static class TestCache extends TeamEventRecurrenceCache
+  {
+    int expandedDays;
+
+    @Override
+    protected Collection<TeamEvent> expand(final Date startDate, final Date endDate, final TeamEventDO event, final TimeZone timeZone)
+    {
+      final List<TeamEvent> result = new ArrayList<TeamEvent>();
+      final long seed = event.getStartDate().getTime();
+      for (long time = Math.max(seed, startDate.getTime()); time <= endDate.getTime(); time += DAY) {
+        ++expandedDays;
+        if (time == seed) {
+          result.add(event);
+        } else {
+          final Calendar cal = Calendar.getInstance(timeZone);
+          cal.setTimeInMillis(time);
+          result.add(new TeamRecurrenceEvent(event, cal));
+        }
+      }
+      return result;
+    }
+  }
+
+  @Test
+  public void shiftedWindows()
+  {
+    final TestCache cache = new TestCache();
+    final TeamEventDO event = createEvent(1, 1000);
+    Collection<TeamEvent> events = cache.getRecurrenceEvents(new Date(0), new Date(6 * DAY), event, UTC);
+    assertEquals(7, events.size());
+    assertSame(event, events.iterator().next());
+    assertEquals(7, cache.expandedDays);
+
+    // Same window again, nothing to expand:
+    events = cache.getRecurrenceEvents(new Date(0), new Date(6 * DAY), event, UTC);
+    assertEquals(7, events.size());
+    assertEquals(7, cache.expandedDays);
+
+    // Shift by one week, only the new week is expanded (including the border day):
+    events = cache.getRecurrenceEvents(new Date(7 * DAY), new Date(13 * DAY), event, UTC);
+    assertEquals(7, events.size());
+    assertEquals(7 + 8, cache.expandedDays);
+    assertTrue(events.iterator().next() instanceof TeamRecurrenceEvent);
+    assertEquals(7 * DAY, events.iterator().next().getStartDate().getTime());
+
+    // Inside the covered period:
+    events = cache.getRecurrenceEvents(new Date(3 * DAY), new Date(9 * DAY), event, UTC);
+    assertEquals(7, events.size());
+    assertEquals(15, cache.expandedDays);
+  }
+
+  @Test
+  public void invalidation()
+  {
+    final TestCache cache = new TestCache();
+    final TeamEventDO event = createEvent(1, 1000);
+    cache.getRecurrenceEvents(new Date(0), new Date(6 * DAY), event, UTC);
+    assertEquals(7, cache.expandedDays);
+    // Other time zone:
+    cache.getRecurrenceEvents(new Date(0), new Date(6 * DAY), event, TimeZone.getTimeZone("Europe/Berlin"));
+    assertEquals(14, cache.expandedDays);
+    // Modified event:
+    event.setLastUpdate(new Timestamp(2000));
+    cache.getRecurrenceEvents(new Date(0), new Date(6 * DAY), event, UTC);
+    assertEquals(21, cache.expandedDays);
+    cache.remove(1);
+    assertEquals(0, cache.size());
+    cache.getRecurrenceEvents(new Date(0), new Date(6 * DAY), event, UTC);
+    assertEquals(28, cache.expandedDays);
+    // Disjoint window far away replaces the entry:
+    cache.getRecurrenceEvents(new Date(5000 * DAY), new Date(5001 * DAY), event, UTC);
+    assertEquals(30, cache.expandedDays);
+    assertEquals(1, cache.size());
+  }
+
+  private TeamEventDO createEvent(final int id, final long lastUpdate)
+  {
+    final TeamEventDO event = new TeamEventDO();
+    event.setId(id);
+    event.setStartDate(new Timestamp(0));
+    event.setEndDate(new Timestamp(3600000));
+    event.setRecurrenceRule("FREQ=DAILY;INTERVAL=1");
+    event.setLastUpdate(new Timestamp(lastUpdate));
+    return event;
+  }
+}
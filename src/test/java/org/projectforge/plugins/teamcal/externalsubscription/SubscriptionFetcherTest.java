@@ -0,0 +1,179 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.teamcal.externalsubscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.fortuna.ical4j.model.Component;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the downloading of subscribed calendars with a local http server serving ics files.
+ */
+public class SubscriptionFetcherTest
+{
+  private static final String ICS_1 = "BEGIN:VCALENDAR\r\n"
+      + "PRODID:-//Test//ProjectForge//EN\r\n"
+      + "VERSION:2.0\r\n"
+      + "BEGIN:VEVENT\r\n"
+      + "DTSTART:20131001T100000Z\r\n"
+      + "DTEND:20131001T110000Z\r\n"
+      + "UID:event-1\r\n"
+      + "SUMMARY:Meeting\r\n"
+      + "END:VEVENT\r\n"
+      + "END:VCALENDAR\r\n";
+
+  private static final String ICS_2 = ICS_1.replace("END:VCALENDAR", "BEGIN:VEVENT\r\n"
+      + "DTSTART:20131002T100000Z\r\n"
+      + "DTEND:20131002T110000Z\r\n"
+      + "UID:event-2\r\n"
+      + "SUMMARY:Second meeting\r\n"
+      + "END:VEVENT\r\n"
+      + "END:VCALENDAR");
+
+  private HttpServer server;
+
+  private volatile String content = ICS_1;
+
+  private volatile String eTag = "\"v1\"";
+
+  private final AtomicInteger requestCounter = new AtomicInteger();
+
+  @Before
+  public void startServer() throws IOException
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/calendar.ics", new HttpHandler() {
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException
+      {
+        requestCounter.incrementAndGet();
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (eTag.equals(ifNoneMatch) == true) {
+          exchange.sendResponseHeaders(304, -1);
+          exchange.close();
+          return;
+        }
+        final byte[] bytes = content.getBytes("UTF-8");
+        exchange.getResponseHeaders().add("ETag", eTag);
+        exchange.getResponseHeaders().add("Content-Type", "text/calendar");
+        exchange.sendResponseHeaders(200, bytes.length);
+        final OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void stopServer()
+  {
+    server.stop(0);
+  }
+
+  @Test
+  public void conditionalFetch() throws Exception
+  {
+    final SubscriptionFetcher fetcher = new SubscriptionFetcher(2000, 2000);
+    final String url = getUrl("/calendar.ics");
+    SubscriptionFetcher.Result result = fetcher.fetch(url, null, null);
+    assertEquals(SubscriptionFetcher.Status.OK, result.status);
+    assertEquals("\"v1\"", result.eTag);
+    assertEquals(1, result.calendar.getComponents(Component.VEVENT).size());
+    assertEquals(ICS_1, new String(result.getContent(), "UTF-8"));
+    assertTrue(result.content.isInMemory());
+    final String md5 = result.md5;
+    assertNotNull(md5);
+
+    result = fetcher.fetch(url, result.eTag, result.lastModified);
+    assertEquals(SubscriptionFetcher.Status.NOT_MODIFIED, result.status);
+    assertNull(result.calendar);
+    assertEquals("\"v1\"", result.eTag);
+
+    content = ICS_2;
+    eTag = "\"v2\"";
+    result = fetcher.fetch(url, "\"v1\"", null);
+    assertEquals(SubscriptionFetcher.Status.OK, result.status);
+    assertEquals("\"v2\"", result.eTag);
+    assertEquals(2, result.calendar.getComponents(Component.VEVENT).size());
+    assertFalse(md5.equals(result.md5));
+    assertEquals(3, requestCounter.get());
+  }
+
+  @Test
+  public void spillLargeContentToFile() throws Exception
+  {
+    final SubscriptionFetcher fetcher = new SubscriptionFetcher(2000, 2000);
+    fetcher.contentBufferThreshold = 10;
+    final SubscriptionFetcher.Result result = fetcher.fetch(getUrl("/calendar.ics"), null, null);
+    assertEquals(SubscriptionFetcher.Status.OK, result.status);
+    assertEquals(1, result.calendar.getComponents(Component.VEVENT).size());
+    assertFalse(result.content.isInMemory());
+    final File file = result.content.getFile();
+    assertTrue(file.exists());
+    assertEquals(ICS_1, new String(result.getContent(), "UTF-8"));
+    result.release();
+    assertFalse("Temporary file should be deleted.", file.exists());
+  }
+
+  @Test
+  public void error() throws Exception
+  {
+    final SubscriptionFetcher fetcher = new SubscriptionFetcher(2000, 2000);
+    final SubscriptionFetcher.Result result = fetcher.fetch(getUrl("/unknown.ics"), null, null);
+    assertEquals(SubscriptionFetcher.Status.ERROR, result.status);
+    assertEquals(404, result.statusCode);
+  }
+
+  @Test
+  public void getHost()
+  {
+    assertEquals("www.projectforge.org", TeamEventExternalSubscriptionCache.getHost("webcal://www.ProjectForge.org/cal.ics?user=42"));
+    assertEquals("localhost", TeamEventExternalSubscriptionCache.getHost("http://localhost:8080/cal.ics"));
+    assertEquals("", TeamEventExternalSubscriptionCache.getHost(null));
+  }
+
+  private String getUrl(final String path)
+  {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+}
@@ -0,0 +1,111 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.plugins.teamcal.externalsubscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.projectforge.plugins.teamcal.event.TeamEventDO;
+
+public class TeamEventIntervalIndexTest
+{
+  private static final long HOUR = 3600000;
+
+  @Test
+  public void overlappingEvents()
+  {
+    final List<TeamEventDO> list = new ArrayList<TeamEventDO>();
+    final TeamEventDO e1 = createEvent(-1, 10, 12);
+    final TeamEventDO e2 = createEvent(-2, 10, 12); // Same period as e1.
+    final TeamEventDO e3 = createEvent(-3, 11, 13);
+    final TeamEventDO e4 = createEvent(-4, 20, 21);
+    final TeamEventDO longEvent = createEvent(-5, 0, 100);
+    list.add(e4);
+    list.add(e3);
+    list.add(e2);
+    list.add(e1);
+    list.add(longEvent);
+    list.add(new TeamEventDO()); // Without dates, ignored.
+    final TeamEventIntervalIndex index = new TeamEventIntervalIndex(list);
+    assertEquals(5, index.size());
+
+    List<TeamEventDO> result = index.getEvents(11 * HOUR, 11 * HOUR);
+    assertEquals(4, result.size());
+    assertSame(longEvent, result.get(0));
+    assertTrue(result.contains(e1));
+    assertTrue(result.contains(e2));
+    assertSame(e3, result.get(3));
+
+    result = index.getEvents(12 * HOUR + 1, 19 * HOUR);
+    assertEquals(2, result.size());
+    assertSame(longEvent, result.get(0));
+    assertSame(e3, result.get(1));
+
+    // Bounds are included:
+    result = index.getEvents(21 * HOUR, 30 * HOUR);
+    assertEquals(2, result.size());
+    assertSame(e4, result.get(1));
+
+    assertEquals(0, index.getEvents(101 * HOUR, 200 * HOUR).size());
+    assertEquals(0, index.getEvents(-10 * HOUR, -1).size());
+    assertEquals(0, new TeamEventIntervalIndex(null).getEvents(0, Long.MAX_VALUE).size());
+  }
+
+  @Test
+  public void compareWithBruteForce()
+  {
+    final List<TeamEventDO> list = new ArrayList<TeamEventDO>();
+    for (int i = 0; i < 200; i++) {
+      final int start = (i * 7919) % 500;
+      list.add(createEvent(-i - 1, start, start + 1 + (i * 31) % 20));
+    }
+    final TeamEventIntervalIndex index = new TeamEventIntervalIndex(list);
+    for (int from = -5; from < 520; from += 3) {
+      final long startTime = from * HOUR;
+      final long endTime = startTime + (from % 7) * HOUR;
+      int expected = 0;
+      for (final TeamEventDO event : list) {
+        if (event.getStartDate().getTime() <= endTime && event.getEndDate().getTime() >= startTime) {
+          ++expected;
+        }
+      }
+      assertEquals(expected, index.getEvents(startTime, endTime).size());
+    }
+  }
+
+  private TeamEventDO createEvent(final int id, final long startHour, final long endHour)
+  {
+    final TeamEventDO event = new TeamEventDO();
+    event.setId(id);
+    event.setStartDate(new Timestamp(startHour * HOUR));
+    event.setEndDate(new Timestamp(endHour * HOUR));
+    return event;
+  }
+}
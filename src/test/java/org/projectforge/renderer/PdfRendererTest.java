@@ -0,0 +1,175 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.renderer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import groovy.text.Template;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.projectforge.common.DateHelper;
+import org.projectforge.core.ConfigXml;
+import org.projectforge.scripting.GroovyEngine;
+import org.projectforge.test.TestBase;
+
+public class PdfRendererTest extends TestBase
+{
+  private static final String DIR = "pdfrenderertest";
+
+  private static final String STYLESHEET = DIR + "/test.xsl";
+
+  private static final String TEMPLATE = DIR + "/template.xml";
+
+  private static final String INCLUDE = DIR + "/include.xml";
+
+  private PdfRenderer pdfRenderer;
+
+  public void setPdfRenderer(final PdfRenderer pdfRenderer)
+  {
+    this.pdfRenderer = pdfRenderer;
+  }
+
+  @Test
+  public void reloadModifiedInclude() throws IOException
+  {
+    writeFile(TEMPLATE, "<test>#INCLUDE{" + INCLUDE + "}</test>");
+    writeFile(INCLUDE, "version1");
+    final GroovyEngine engine = new GroovyEngine(new HashMap<String, Object>(), Locale.ENGLISH, DateHelper.UTC);
+    final Template template = pdfRenderer.getGroovyTemplate(engine, TEMPLATE);
+    assertEquals("<test>version1</test>", execute(engine, template));
+    assertSame("Unmodified template should be cached.", template, pdfRenderer.getGroovyTemplate(engine, TEMPLATE));
+    writeFile(INCLUDE, "version2");
+    final Template modifiedTemplate = pdfRenderer.getGroovyTemplate(engine, TEMPLATE);
+    assertNotSame("Template should be compiled again after modification of the included file.", template, modifiedTemplate);
+    assertEquals("<test>version2</test>", execute(engine, modifiedTemplate));
+    engine.releaseTemplate(template);
+    engine.releaseTemplate(template);
+    engine.releaseTemplate(modifiedTemplate);
+  }
+
+  @Test
+  public void renderToStream() throws IOException
+  {
+    logon(TEST_USER);
+    writeStylesheet();
+    writeFile(DIR + "/stream.xml", "<test>Hello</test>");
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    pdfRenderer.render(STYLESHEET, DIR + "/stream.xml", new HashMap<String, Object>(), out);
+    assertTrue("Pdf expected.", new String(out.toByteArray(), 0, 4, "ISO-8859-1").equals("%PDF"));
+  }
+
+  @Test
+  public void failedRenderWritesNothing() throws IOException
+  {
+    logon(TEST_USER);
+    writeStylesheet();
+    writeFile(DIR + "/failure.xml", "<test><groovy-out>unknownVariable.unknownProperty</groovy-out></test>");
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      pdfRenderer.render(STYLESHEET, DIR + "/failure.xml", new HashMap<String, Object>(), out);
+      fail("Exception expected.");
+    } catch (final RuntimeException ex) {
+      // OK.
+    }
+    assertEquals("No truncated pdf should be written.", 0, out.size());
+  }
+
+  @Test
+  public void renderBatch() throws IOException
+  {
+    logon(TEST_USER);
+    writeStylesheet();
+    writeFile(DIR + "/batch.xml", "<test><groovy-out>name</groovy-out></test>");
+    final List<Map<String, Object>> dataList = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < 10; i++) {
+      final Map<String, Object> data = new HashMap<String, Object>();
+      data.put("name", "Report " + i);
+      dataList.add(data);
+    }
+    final List<byte[]> pdfs = pdfRenderer.render(STYLESHEET, DIR + "/batch.xml", dataList);
+    assertEquals(10, pdfs.size());
+    for (final byte[] pdf : pdfs) {
+      assertEquals("%PDF", new String(pdf, 0, 4, "ISO-8859-1"));
+    }
+    // Failed pdf in a batch:
+    final Map<String, Object> data = new HashMap<String, Object>();
+    dataList.add(5, data); // name is missing.
+    try {
+      pdfRenderer.render(STYLESHEET, DIR + "/batch.xml", dataList);
+      fail("Exception expected.");
+    } catch (final RuntimeException ex) {
+      // OK.
+    }
+  }
+
+  private String execute(final GroovyEngine engine, final Template template) throws IOException
+  {
+    final StringWriter writer = new StringWriter();
+    engine.executeTemplate(template, writer);
+    return writer.toString();
+  }
+
+  private void writeStylesheet() throws IOException
+  {
+    writeFile(STYLESHEET, "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\"\n"
+        + "    xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+        + "  <xsl:template match=\"/\">\n"
+        + "    <fo:root>\n"
+        + "      <fo:layout-master-set>\n"
+        + "        <fo:simple-page-master master-name=\"A4\" page-height=\"29.7cm\" page-width=\"21cm\">\n"
+        + "          <fo:region-body />\n"
+        + "        </fo:simple-page-master>\n"
+        + "      </fo:layout-master-set>\n"
+        + "      <fo:page-sequence master-reference=\"A4\">\n"
+        + "        <fo:flow flow-name=\"xsl-region-body\">\n"
+        + "          <fo:block><xsl:value-of select=\"/test\" /></fo:block>\n"
+        + "        </fo:flow>\n"
+        + "      </fo:page-sequence>\n"
+        + "    </fo:root>\n"
+        + "  </xsl:template>\n"
+        + "</xsl:stylesheet>\n");
+  }
+
+  private File writeFile(final String filename, final String content) throws IOException
+  {
+    final File file = new File(ConfigXml.getInstance().getResourcePath(), filename);
+    file.getParentFile().mkdirs();
+    FileUtils.writeStringToFile(file, content, "UTF-8");
+    return file;
+  }
+}
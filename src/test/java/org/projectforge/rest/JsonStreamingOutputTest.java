@@ -0,0 +1,107 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.rest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.junit.Test;
+
+import com.google.gson.reflect.TypeToken;
+
+public class JsonStreamingOutputTest
+{
+  static class Entry
+  {
+    String name;
+
+    Date date;
+
+    Entry(final String name, final long time)
+    {
+      this.name = name;
+      this.date = new Date(time);
+    }
+  }
+
+  @Test
+  public void testArrayOutput() throws IOException
+  {
+    final List<String> names = Arrays.asList("Kai", null, "\u00c4hnlich \"quoted\"");
+    final JsonArrayStreamingOutput<String> output = new JsonArrayStreamingOutput<String>(names) {
+      @Override
+      protected Object convert(final String name)
+      {
+        return name != null ? new Entry(name, 1357000000000L) : null;
+      }
+    };
+    final String json = write(output);
+    final List<Entry> expected = new ArrayList<Entry>();
+    expected.add(new Entry("Kai", 1357000000000L));
+    expected.add(new Entry("\u00c4hnlich \"quoted\"", 1357000000000L));
+    assertEquals(JsonUtils.toJson(expected), json);
+    final Type type = new TypeToken<List<Entry>>() {
+    }.getType();
+    final List<Entry> result = JsonUtils.fromJson(json, type);
+    assertEquals(2, result.size());
+    assertEquals("\u00c4hnlich \"quoted\"", result.get(1).name);
+    assertEquals(1357000000000L, result.get(1).date.getTime());
+  }
+
+  @Test
+  public void testEmptyArrayOutput() throws IOException
+  {
+    final JsonArrayStreamingOutput<String> output = new JsonArrayStreamingOutput<String>(null) {
+      @Override
+      protected Object convert(final String name)
+      {
+        return name;
+      }
+    };
+    assertEquals("[]", write(output));
+  }
+
+  @Test
+  public void testObjectOutput() throws IOException
+  {
+    final Entry entry = new Entry("Kai", 1357000000000L);
+    assertEquals(JsonUtils.toJson(entry), write(new JsonStreamingOutput(entry)));
+  }
+
+  private String write(final StreamingOutput output) throws IOException
+  {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    output.write(bos);
+    return bos.toString("UTF-8");
+  }
+}
@@ -0,0 +1,143 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.scripting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import groovy.lang.Binding;
+import groovy.lang.GroovySystem;
+import groovy.lang.MetaClass;
+import groovy.lang.MetaClassRegistry;
+import groovy.lang.Script;
+import groovy.text.Template;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.junit.Test;
+
+public class GroovyScriptCacheTest
+{
+  @Test
+  public void scriptClasses() throws Exception
+  {
+    final GroovyScriptCache cache = new GroovyScriptCache(2);
+    final Class< ? > cls = cache.getScriptClass("return a + 1");
+    assertSame(cls, cache.getScriptClass("return a + 1"));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    final Script script = (Script) cls.newInstance();
+    final Binding binding = new Binding();
+    binding.setVariable("a", 41);
+    script.setBinding(binding);
+    assertEquals(42, script.run());
+    cache.getScriptClass("return 2");
+    cache.getScriptClass("return 3"); // Evicts "return a + 1".
+    assertEquals(2, cache.getSize());
+    assertEquals(1, cache.getEvictions());
+    // The evicted class is still executable:
+    final Script evictedScript = (Script) cls.newInstance();
+    evictedScript.setBinding(binding);
+    assertEquals(42, evictedScript.run());
+    assertNotSame(cls, cache.getScriptClass("return a + 1"));
+    assertEquals(2, cache.getEvictions());
+    try {
+      cache.getScriptClass("return (");
+      fail("CompilationFailedException expected.");
+    } catch (final CompilationFailedException ex) {
+      // OK
+    }
+    assertEquals(2, cache.getSize());
+    assertEquals("Classes got without release are never released explicitly.", 0, cache.getReleasedEntries());
+  }
+
+  @Test
+  public void releaseAfterUsage() throws Exception
+  {
+    final GroovyScriptCache cache = new GroovyScriptCache(1);
+    final MetaClassRegistry registry = GroovySystem.getMetaClassRegistry();
+    final Class< ? > cls = cache.acquireScriptClass("return 1");
+    final MetaClass metaClass = registry.getMetaClass(cls);
+    assertSame(cls, cache.acquireScriptClass("return 1"));
+    cache.release(cls);
+    final Class< ? > other = cache.acquireScriptClass("return 2"); // Evicts "return 1", but it's still in use.
+    assertEquals(1, cache.getEvictions());
+    assertEquals(0, cache.getReleasedEntries());
+    assertEquals(1, cache.getPendingReleases());
+    assertSame("Meta class of class in use isn't removed.", metaClass, registry.getMetaClass(cls));
+    assertEquals(1, ((Script) cls.newInstance()).run());
+    cache.release(cls); // Last usage.
+    assertEquals(1, cache.getReleasedEntries());
+    assertEquals(0, cache.getPendingReleases());
+    assertNotSame("Meta class is removed after last usage.", metaClass, registry.getMetaClass(cls));
+    // Not in use, so released immediately on clear:
+    cache.release(other);
+    cache.clear();
+    assertEquals(2, cache.getReleasedEntries());
+    assertEquals(0, cache.getSize());
+    // Released twice is ignored:
+    cache.release(other);
+    assertEquals(2, cache.getReleasedEntries());
+  }
+
+  @Test
+  public void templates() throws Exception
+  {
+    final GroovyScriptCache cache = new GroovyScriptCache(10);
+    final Template template = cache.getTemplate("Hello ${name}!");
+    assertSame(template, cache.getTemplate("Hello ${name}!"));
+    // Scripts and templates with the same source code are different entries:
+    cache.getScriptClass("Hello ${name}!");
+    assertEquals(2, cache.getSize());
+    final Map<String, Object> variables = new HashMap<String, Object>();
+    variables.put("name", "Kai");
+    final StringWriter writer = new StringWriter();
+    template.make(variables).writeTo(writer);
+    assertEquals("Hello Kai!", writer.toString());
+    cache.clear();
+    assertEquals(0, cache.getSize());
+    // Templates in use are still executable after removal from the cache:
+    final StringWriter writerAfterClear = new StringWriter();
+    template.make(variables).writeTo(writerAfterClear);
+    assertEquals("Hello Kai!", writerAfterClear.toString());
+  }
+
+  @Test
+  public void executor()
+  {
+    final GroovyExecutor executor = new GroovyExecutor();
+    final Map<String, Object> variables = new HashMap<String, Object>();
+    variables.put("a", 1);
+    assertEquals(2, executor.execute("return a + 1", variables).getResult());
+    variables.put("a", 2);
+    // Cached class, but new script instance with own binding:
+    assertEquals(3, executor.execute("return a + 1", variables).getResult());
+    assertEquals(true, executor.precompile("return a + 1"));
+    assertEquals(false, executor.precompile("return ("));
+  }
+}
@@ -0,0 +1,134 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.task;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.projectforge.access.AccessType;
+import org.projectforge.access.GroupTaskAccessDO;
+import org.projectforge.access.OperationType;
+import org.projectforge.user.GroupDO;
+
+public class TaskPermissionIndexTest
+{
+  @Test
+  public void inheritedPermissions()
+  {
+    final TaskNode root = createNode(1, null);
+    final TaskNode child = createNode(2, root);
+    final TaskNode grandChild = createNode(3, child);
+    final TaskPermissionIndex index = new TaskPermissionIndex();
+    final GroupTaskAccessDO rootAccess = createAccess(root, 10, true);
+    rootAccess.guest();
+    root.setGroupTaskAccess(rootAccess);
+    index.rebuild(root);
+    assertTrue(index.hasPermission(10, 3, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(index.hasPermission(10, 3, AccessType.TASKS, OperationType.UPDATE));
+    assertFalse(index.hasPermission(11, 3, AccessType.TASKS, OperationType.SELECT));
+
+    final GroupTaskAccessDO childAccess = createAccess(child, 10, false);
+    childAccess.leader();
+    child.setGroupTaskAccess(childAccess);
+    index.update(child);
+    assertTrue(index.hasPermission(10, 2, AccessType.TASKS, OperationType.UPDATE));
+    assertFalse("Access of child isn't recursive.", index.hasPermission(10, 3, AccessType.TASKS, OperationType.SELECT));
+    assertTrue(index.hasPermission(Arrays.asList(11, 10), 2, AccessType.TIMESHEETS, OperationType.SELECT));
+
+    child.removeGroupTaskAccess(10);
+    index.update(child);
+    assertFalse(index.hasPermission(10, 2, AccessType.TASKS, OperationType.UPDATE));
+    assertTrue(index.hasPermission(10, 3, AccessType.TASKS, OperationType.SELECT));
+
+    final TaskNode other = createNode(4, root);
+    index.update(other);
+    assertTrue(index.hasPermission(10, 4, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(index.hasPermission(Arrays.asList(11, 12), 4, AccessType.TASKS, OperationType.SELECT));
+  }
+
+  @Test
+  public void batchUpdate()
+  {
+    final TaskNode root = createNode(1, null);
+    final TaskNode a = createNode(2, root);
+    final TaskNode b = createNode(3, root);
+    final TaskNode a1 = createNode(4, a);
+    final TaskNode b1 = createNode(5, b);
+    final TaskPermissionIndex index = new TaskPermissionIndex();
+    index.rebuild(root);
+    assertFalse(index.hasPermission(10, 4, AccessType.TASKS, OperationType.SELECT));
+
+    final GroupTaskAccessDO accessA = createAccess(a, 10, true);
+    accessA.guest();
+    a.setGroupTaskAccess(accessA);
+    final GroupTaskAccessDO accessB = createAccess(b, 11, false);
+    accessB.leader();
+    b.setGroupTaskAccess(accessB);
+    // Move b1 from b to a1:
+    b.removeChild(b1);
+    b1.setParent(a1);
+    a1.addChild(b1);
+    index.update(new HashSet<TaskNode>(Arrays.asList(b1, a, b, a1)));
+    assertTrue(index.hasPermission(10, 2, AccessType.TASKS, OperationType.SELECT));
+    assertTrue(index.hasPermission(10, 4, AccessType.TASKS, OperationType.SELECT));
+    assertTrue("Inherited from new ancestor a.", index.hasPermission(10, 5, AccessType.TASKS, OperationType.SELECT));
+    assertTrue(index.hasPermission(11, 3, AccessType.TASKS, OperationType.UPDATE));
+    assertFalse(index.hasPermission(11, 5, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(index.hasPermission(10, 3, AccessType.TASKS, OperationType.SELECT));
+
+    // Non recursive access of a, so a1 and b1 have no access anymore:
+    accessA.setRecursive(false);
+    index.update(a);
+    assertTrue(index.hasPermission(10, 2, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(index.hasPermission(10, 4, AccessType.TASKS, OperationType.SELECT));
+    assertFalse(index.hasPermission(10, 5, AccessType.TASKS, OperationType.SELECT));
+  }
+
+  private TaskNode createNode(final int id, final TaskNode parent)
+  {
+    final TaskDO task = new TaskDO();
+    task.setId(id);
+    task.setTitle("task" + id);
+    final TaskNode node = new TaskNode();
+    node.setTask(task);
+    if (parent != null) {
+      node.setParent(parent);
+      parent.addChild(node);
+    }
+    return node;
+  }
+
+  private GroupTaskAccessDO createAccess(final TaskNode node, final int groupId, final boolean recursive)
+  {
+    final GroupDO group = new GroupDO();
+    group.setId(groupId);
+    final GroupTaskAccessDO access = new GroupTaskAccessDO().setGroup(group).setTask(node.getTask());
+    access.setRecursive(recursive);
+    return access;
+  }
+}
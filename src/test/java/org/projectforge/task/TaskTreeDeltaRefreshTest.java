@@ -0,0 +1,97 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+import org.projectforge.access.AccessType;
+import org.projectforge.access.GroupTaskAccessDO;
+import org.projectforge.access.OperationType;
+import org.projectforge.common.DateHelper;
+import org.projectforge.test.TestBase;
+import org.projectforge.timesheet.TimesheetDO;
+
+public class TaskTreeDeltaRefreshTest extends TestBase
+{
+  private TaskTree taskTree;
+
+  public void setTaskTree(final TaskTree taskTree)
+  {
+    this.taskTree = taskTree;
+  }
+
+  /**
+   * Modifications of another instance are simulated by modifying the data base directly (bypassing the task tree).
+   */
+  @Test
+  public void refreshDelta()
+  {
+    final TaskDO a = initTestDB.addTask("delta.a", "root");
+    final TaskDO b = initTestDB.addTask("delta.b", "root");
+    final TaskDO a1 = initTestDB.addTask("delta.a.1", "delta.a");
+    final long start = new Date().getTime() - 10 * DateHelper.MILLIS_HOUR;
+    initTestDB.addTimesheet(getUser(TEST_USER), a1, new Timestamp(start), new Timestamp(start + 2 * DateHelper.MILLIS_HOUR), "delta");
+    final GroupTaskAccessDO access = initTestDB.createGroupTaskAccess(getGroup("group1"), a, AccessType.TASKS, true, false, false, false);
+    final Integer groupId = getGroupId("group1");
+    taskTree.forceReload();
+    assertEquals(7200, taskTree.getTaskNodeById(a.getId()).getDuration(taskTree, true));
+    assertTrue(taskTree.hasPermission(Arrays.asList(groupId), a1.getId(), AccessType.TASKS, OperationType.SELECT));
+
+    final Date now = new Date();
+    // Move a.1 to b:
+    final TaskDO dbTask = hibernate.get(TaskDO.class, a1.getId());
+    dbTask.setParentTask(hibernate.get(TaskDO.class, b.getId()));
+    dbTask.setLastUpdate(now);
+    hibernate.update(dbTask);
+    // Delete the access (not only marked as deleted):
+    hibernate.delete(hibernate.get(GroupTaskAccessDO.class, access.getId()));
+    // Add a time sheet to b:
+    final TimesheetDO timesheet = new TimesheetDO();
+    timesheet.setUser(getUser(TEST_USER));
+    timesheet.setTask(hibernate.get(TaskDO.class, b.getId()));
+    timesheet.setStartTime(new Timestamp(start + 3 * DateHelper.MILLIS_HOUR));
+    timesheet.setStopTime(new Timestamp(start + 4 * DateHelper.MILLIS_HOUR));
+    timesheet.setCreated(now);
+    timesheet.setLastUpdate(now);
+    hibernate.save(timesheet);
+
+    taskTree.refresh(); // Delta refresh (no full reload requested).
+    final TaskNode nodeA1 = taskTree.getTaskNodeById(a1.getId());
+    assertEquals(b.getId(), nodeA1.getParentId());
+    assertFalse(taskTree.getTaskNodeById(a.getId()).hasChilds());
+    assertFalse("Deleted access detected.",
+        taskTree.hasPermission(Arrays.asList(groupId), a.getId(), AccessType.TASKS, OperationType.SELECT));
+    assertEquals(0, taskTree.getTaskNodeById(a.getId()).getDuration(taskTree, true));
+    assertEquals(3600, taskTree.getTaskNodeById(b.getId()).getDuration(taskTree, false));
+    assertEquals("Own time sheet and time sheet of moved task a.1.", 3 * 3600, taskTree.getTaskNodeById(b.getId()).getDuration(taskTree,
+        true));
+  }
+}
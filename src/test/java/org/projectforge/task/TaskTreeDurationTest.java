@@ -0,0 +1,129 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.task;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.junit.Test;
+import org.projectforge.common.DateHelper;
+import org.projectforge.test.TestBase;
+import org.projectforge.timesheet.TimesheetDO;
+import org.projectforge.timesheet.TimesheetDao;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class TaskTreeDurationTest extends TestBase
+{
+  private TaskTree taskTree;
+
+  private TimesheetDao timesheetDao;
+
+  private TransactionTemplate txTemplate;
+
+  public void setTaskTree(final TaskTree taskTree)
+  {
+    this.taskTree = taskTree;
+  }
+
+  public void setTimesheetDao(final TimesheetDao timesheetDao)
+  {
+    this.timesheetDao = timesheetDao;
+  }
+
+  public void setTxTemplate(final TransactionTemplate txTemplate)
+  {
+    this.txTemplate = txTemplate;
+  }
+
+  @Test
+  public void moveAndDelete()
+  {
+    logon(TEST_ADMIN_USER);
+    final TaskDO a = initTestDB.addTask("duration.a", "root");
+    final TaskDO b = initTestDB.addTask("duration.b", "root");
+    taskTree.forceReload();
+    final long start = new Date().getTime() - 100 * DateHelper.MILLIS_DAY;
+    final TimesheetDO timesheet = createTimesheet(a, start, 2);
+    timesheetDao.internalSave(timesheet);
+    assertDurations(a, 7200, b, 0);
+
+    // Move the time sheet to task b and mark it as deleted in one step:
+    final TimesheetDO modified = timesheetDao.internalGetById(timesheet.getId());
+    modified.setTask(b);
+    timesheetDao.internalMarkAsDeleted(modified);
+    assertDurations(a, 0, b, 0);
+
+    // Undelete it (the time sheet remains at task b):
+    timesheetDao.internalUndelete(timesheetDao.internalGetById(timesheet.getId()));
+    assertDurations(a, 0, b, 7200);
+
+    taskTree.forceReload();
+    assertDurations(a, 0, b, 7200);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes"})
+  @Test
+  public void rollback()
+  {
+    logon(TEST_ADMIN_USER);
+    final TaskDO a = initTestDB.addTask("duration.rollback.a", "root");
+    final TaskDO b = initTestDB.addTask("duration.rollback.b", "root");
+    taskTree.forceReload();
+    final long start = new Date().getTime() - 110 * DateHelper.MILLIS_DAY;
+    final TimesheetDO timesheet = createTimesheet(a, start, 3);
+    timesheetDao.internalSave(timesheet);
+    assertDurations(a, 3 * 3600, b, 0);
+    txTemplate.execute(new TransactionCallback() {
+      public Object doInTransaction(final TransactionStatus status)
+      {
+        final TimesheetDO modified = timesheetDao.internalGetById(timesheet.getId());
+        modified.setTask(b);
+        timesheetDao.internalUpdate(modified);
+        status.setRollbackOnly();
+        return null;
+      }
+    });
+    assertDurations(a, 3 * 3600, b, 0);
+  }
+
+  private TimesheetDO createTimesheet(final TaskDO task, final long start, final int hours)
+  {
+    final TimesheetDO timesheet = new TimesheetDO();
+    timesheet.setUser(getUser(TEST_ADMIN_USER));
+    timesheet.setTask(task);
+    timesheet.setStartTime(new Timestamp(start));
+    timesheet.setStopTime(new Timestamp(start + hours * DateHelper.MILLIS_HOUR));
+    return timesheet;
+  }
+
+  private void assertDurations(final TaskDO a, final long durationA, final TaskDO b, final long durationB)
+  {
+    assertEquals(durationA, taskTree.getTaskNodeById(a.getId()).getDuration(taskTree, true));
+    assertEquals(durationB, taskTree.getTaskNodeById(b.getId()).getDuration(taskTree, true));
+  }
+}
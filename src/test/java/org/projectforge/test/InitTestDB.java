@@ -36,6 +36,7 @@ import org.projectforge.access.AccessEntryDO;
 import org.projectforge.access.AccessType;
 import org.projectforge.access.GroupTaskAccessDO;
 import org.projectforge.common.DateHelper;
+import org.projectforge.common.DateHolder;
 import org.projectforge.core.ConfigurationDO;
 import org.projectforge.core.ConfigurationDao;
 import org.projectforge.core.ConfigurationParam;
@@ -247,6 +248,18 @@ public class InitTestDB
     return timesheet;
   }
 
+  /**
+   * Adds a time sheet of the given day from start hour to stop hour (full hours).
+   * @param day Only the date is used.
+   */
+  public TimesheetDO addTimesheet(final PFUserDO user, final TaskDO task, final DateHolder day, final int startHour, final int stopHour,
+      final String description)
+  {
+    final DateHolder start = new DateHolder(day.getDate()).setHourOfDay(startHour).setMinute(0).setSecond(0).setMilliSecond(0);
+    final DateHolder stop = new DateHolder(day.getDate()).setHourOfDay(stopHour).setMinute(0).setSecond(0).setMilliSecond(0);
+    return addTimesheet(user, task, start.getTimestamp(), stop.getTimestamp(), description);
+  }
+
   public ProjektDO addProjekt(final KundeDO kunde, final Integer projektNummer, final String projektName, final Integer... kost2ArtIds)
   {
     final ProjektDO projekt = new ProjektDO();
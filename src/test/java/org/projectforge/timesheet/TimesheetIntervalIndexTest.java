@@ -0,0 +1,70 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.timesheet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TimesheetIntervalIndexTest
+{
+  private static final long HOUR = 3600000;
+
+  @Test
+  public void overlaps()
+  {
+    final TimesheetIntervalIndex index = new TimesheetIntervalIndex();
+    index.put(1, 8 * HOUR, 10 * HOUR);
+    index.put(2, 10 * HOUR, 12 * HOUR);
+    index.put(3, 13 * HOUR, 14 * HOUR);
+    assertTrue(index.getOverlaps().isEmpty());
+    assertEquals(-1, index.getFirstOverlap(12 * HOUR, 13 * HOUR, null));
+    assertEquals(1, index.getId(index.getFirstOverlap(9 * HOUR, 11 * HOUR, null)));
+    assertEquals(2, index.getId(index.getFirstOverlap(9 * HOUR, 11 * HOUR, 1)));
+    assertEquals(-1, index.getFirstOverlap(8 * HOUR, 10 * HOUR, 1));
+
+    // Long time sheet overlapping all others:
+    index.put(4, 7 * HOUR, 15 * HOUR);
+    Set<Integer> overlaps = index.getOverlaps();
+    assertEquals(4, overlaps.size());
+    index.remove(4);
+    assertTrue(index.getOverlaps().isEmpty());
+
+    index.put(5, 11 * HOUR, 13 * HOUR + HOUR / 2);
+    overlaps = index.getOverlaps();
+    assertEquals(3, overlaps.size());
+    assertFalse(overlaps.contains(1));
+    // Move time sheet 5 (update):
+    index.put(5, 12 * HOUR, 13 * HOUR);
+    assertTrue(index.getOverlaps().isEmpty());
+    assertEquals(4, index.size());
+    assertTrue(index.remove(3));
+    assertFalse(index.remove(3));
+    assertEquals(3, index.size());
+  }
+}
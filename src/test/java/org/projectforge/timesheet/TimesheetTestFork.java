@@ -24,6 +24,7 @@
 package org.projectforge.timesheet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.Serializable;
@@ -200,6 +201,52 @@ public class TimesheetTestFork extends TestBase
     }
   }
 
+  @SuppressWarnings({ "unchecked", "rawtypes"})
+  @Test
+  public void testOverlapRollbackAndForeignModification()
+  {
+    logon(ADMIN);
+    getInitTestDB().addTask("timesheet-overlap", "root");
+    getInitTestDB().addUser("timesheet-overlap-user");
+    final TimesheetDO ts1 = new TimesheetDO().setTask(getTask("timesheet-overlap")).setUser(getUser("timesheet-overlap-user"));
+    setTimeperiod(ts1, 2011, Calendar.JANUARY, 10, 8, 0, 10, 12, 0);
+    final Serializable id1 = timesheetDao.save(ts1);
+    assertTrue(timesheetDao.getTimesheetsWithTimeoverlap(getUserId("timesheet-overlap-user")).isEmpty());
+    // Move ts1 to another day, but roll back:
+    txTemplate.execute(new TransactionCallback() {
+      public Object doInTransaction(final TransactionStatus status)
+      {
+        final TimesheetDO t = timesheetDao.internalGetById(id1);
+        setTimeperiod(t, 2011, Calendar.JANUARY, 11, 8, 0, 11, 12, 0);
+        timesheetDao.internalUpdate(t);
+        status.setRollbackOnly();
+        return null;
+      }
+    });
+    final TimesheetDO ts2 = new TimesheetDO().setTask(getTask("timesheet-overlap")).setUser(getUser("timesheet-overlap-user"));
+    setTimeperiod(ts2, 2011, Calendar.JANUARY, 11, 8, 0, 11, 12, 0);
+    timesheetDao.save(ts2); // No phantom interval of the rolled back modification.
+    assertTrue(timesheetDao.getTimesheetsWithTimeoverlap(getUserId("timesheet-overlap-user")).isEmpty());
+    // Time sheet inserted by direct data base access (bypassing the dao):
+    final TimesheetDO ts3 = new TimesheetDO().setTask(getTask("timesheet-overlap")).setUser(getUser("timesheet-overlap-user"));
+    setTimeperiod(ts3, 2011, Calendar.JANUARY, 10, 11, 0, 10, 13, 0);
+    ts3.setCreated();
+    ts3.setLastUpdate();
+    hibernate.save(ts3);
+    assertTrue("Modifications bypassing the dao aren't seen by the index.",
+        timesheetDao.getTimesheetsWithTimeoverlap(getUserId("timesheet-overlap-user")).isEmpty());
+    timesheetDao.recheckTimesheetOverlap(getUserId("timesheet-overlap-user"));
+    assertEquals(2, timesheetDao.getTimesheetsWithTimeoverlap(getUserId("timesheet-overlap-user")).size());
+    final TimesheetDO ts4 = new TimesheetDO().setTask(getTask("timesheet-overlap")).setUser(getUser("timesheet-overlap-user"));
+    setTimeperiod(ts4, 2011, Calendar.JANUARY, 10, 12, 0, 10, 14, 0);
+    try {
+      timesheetDao.save(ts4); // Overlap with ts3!
+      fail();
+    } catch (final UserException ex) {
+      assertEquals("timesheet.error.timeperiodOverlapDetection", ex.getI18nKey());
+    }
+  }
+
   @Test
   public void testTimesheetProtection()
   {
@@ -0,0 +1,114 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.user;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LoginProtectionTest
+{
+  @Test
+  public void lockUser()
+  {
+    final LoginProtection protection = new LoginProtection();
+    for (int i = 0; i < LoginProtection.FREE_ATTEMPTS_PER_USER; i++) {
+      assertEquals(0, protection.getLockTime("kai", "192.168.0.1"));
+      protection.loginFailed("kai", "192.168.0.1");
+    }
+    assertEquals(0, protection.getLockTime("kai", "192.168.0.1"));
+    protection.loginFailed("kai", "192.168.0.1");
+    long lockTime = protection.getLockTime("kai", "192.168.0.1");
+    assertTrue(lockTime > 0 && lockTime <= LoginProtection.INITIAL_LOCK_TIME);
+    assertEquals(1, protection.getBlockedCount());
+    assertEquals("Other users of the same ip aren't locked.", 0, protection.getLockTime("other", "192.168.0.1"));
+    assertEquals("The user isn't locked for other ips.", 0, protection.getLockTime("kai", "192.168.0.2"));
+    protection.loginFailed("kai", "192.168.0.1");
+    lockTime = protection.getLockTime("kai", "192.168.0.1");
+    assertTrue("Lock time is doubled.", lockTime > LoginProtection.INITIAL_LOCK_TIME && lockTime <= 2 * LoginProtection.INITIAL_LOCK_TIME);
+    protection.loginSucceeded("kai", "192.168.0.1");
+    assertEquals(0, protection.getLockTime("kai", "192.168.0.1"));
+    assertEquals(LoginProtection.FREE_ATTEMPTS_PER_USER + 2, protection.getFailedCount());
+  }
+
+  @Test
+  public void lockIp()
+  {
+    final LoginProtection protection = new LoginProtection();
+    for (int i = 0; i <= LoginProtection.FREE_ATTEMPTS_PER_IP; i++) {
+      protection.loginFailed("user" + i, "10.0.0.1");
+    }
+    assertTrue(protection.getLockTime("anyUser", "10.0.0.1") > 0);
+    assertEquals(0, protection.getLockTime("anyUser", "10.0.0.2"));
+    protection.loginSucceeded("user1", "10.0.0.1");
+    assertTrue("Successful login doesn't remove the lock of the ip.", protection.getLockTime("anyUser", "10.0.0.1") > 0);
+  }
+
+  @Test
+  public void sharedIp()
+  {
+    final LoginProtection protection = new LoginProtection();
+    // Many users behind one proxy with occasional typos:
+    for (int i = 0; i < 3 * LoginProtection.FREE_ATTEMPTS_PER_IP; i++) {
+      assertEquals(0, protection.getLockTime("user" + i, "10.0.0.1"));
+      protection.loginFailed("user" + i, "10.0.0.1");
+      protection.loginSucceeded("user" + i, "10.0.0.1");
+    }
+    assertEquals("Successful logins after typos decrement the failed attempts of the ip.", 0,
+        protection.getLockTime("anyUser", "10.0.0.1"));
+    // An attacker can't lock out a user of the shared ip:
+    for (int i = 0; i <= LoginProtection.FREE_ATTEMPTS_PER_USER; i++) {
+      protection.loginFailed("user1", "172.16.0.1");
+    }
+    assertTrue(protection.getLockTime("user1", "172.16.0.1") > 0);
+    assertEquals(0, protection.getLockTime("user1", "10.0.0.1"));
+  }
+
+  @Test
+  public void passwordSpraying()
+  {
+    final LoginProtection protection = new LoginProtection();
+    // Attacker owning one account alternates guessed passwords of other users with valid logins:
+    for (int i = 0; i <= LoginProtection.FREE_ATTEMPTS_PER_IP; i++) {
+      protection.loginFailed("victim" + i, "10.0.0.1");
+      protection.loginSucceeded("attacker", "10.0.0.1");
+    }
+    assertTrue("Valid logins without preceding failures don't decrement the ip counter.",
+        protection.getLockTime("anyUser", "10.0.0.1") > 0);
+  }
+
+  @Test
+  public void maxEntries()
+  {
+    final LoginProtection protection = new LoginProtection();
+    for (int i = 0; i < LoginProtection.MAX_ENTRIES + 100; i++) {
+      protection.loginFailed("random" + i, "10.0.0." + (i % 2));
+    }
+    // The two ips and the most recent user names:
+    assertEquals(LoginProtection.MAX_ENTRIES + 2, protection.getNumberOfEntries());
+    assertEquals(100, protection.getEvictedCount());
+    assertTrue(protection.getLockTime("anyUser", "10.0.0.1") > 0);
+  }
+}
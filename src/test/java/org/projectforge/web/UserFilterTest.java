@@ -0,0 +1,53 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class UserFilterTest
+{
+  @Test
+  public void getClientIp()
+  {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+    assertEquals("10.0.0.1", UserFilter.getClientIp(request, null));
+    assertEquals("Header not given.", "10.0.0.1", UserFilter.getClientIp(request, "X-Forwarded-For"));
+    when(request.getHeader(Mockito.eq("X-Forwarded-For"))).thenReturn("192.168.0.1");
+    assertEquals("10.0.0.1", UserFilter.getClientIp(request, null));
+    assertEquals("192.168.0.1", UserFilter.getClientIp(request, "X-Forwarded-For"));
+    // The first address may be forged by the client, the last one is set by the own proxy:
+    when(request.getHeader(Mockito.eq("X-Forwarded-For"))).thenReturn("1.2.3.4, 192.168.0.2");
+    assertEquals("192.168.0.2", UserFilter.getClientIp(request, "X-Forwarded-For"));
+    when(request.getHeader(Mockito.eq("X-Forwarded-For"))).thenReturn("192.168.0.3,");
+    assertEquals("10.0.0.1", UserFilter.getClientIp(request, "X-Forwarded-For"));
+  }
+}
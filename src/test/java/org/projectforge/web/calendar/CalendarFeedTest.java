@@ -0,0 +1,123 @@
+/////////////////////////////////////////////////////////////////////////////
+//
+// Project ProjectForge Community Edition
+//         www.projectforge.org
+//
+// Copyright (C) 2001-2013 Kai Reinhard (k.reinhard@micromata.de)
+//
+// ProjectForge is dual-licensed.
+//
+// This community edition is free software; you can redistribute it and/or
+// modify it under the terms of the GNU General Public License as published
+// by the Free Software Foundation; version 3 of the License.
+//
+// This community edition is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+// Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, see http://www.gnu.org/licenses/.
+//
+/////////////////////////////////////////////////////////////////////////////
+
+package org.projectforge.web.calendar;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.projectforge.registry.Registry;
+import org.projectforge.test.TestBase;
+
+public class CalendarFeedTest extends TestBase
+{
+  @Test
+  public void conditionalGet() throws Exception
+  {
+    logon(TEST_USER);
+    final String url = CalendarFeed.getUrl4Timesheets(getUserId(TEST_USER));
+    final String userParam = url.substring(url.indexOf("user=") + 5, url.indexOf("&q="));
+    final String q = url.substring(url.indexOf("&q=") + 3);
+    final CalendarFeed feed = new CalendarFeed();
+
+    HttpServletResponse response = mockResponse();
+    feed.doGet(mockRequest(userParam, q, null), response);
+    final String eTag = getETag(response);
+    assertNotNull(eTag);
+
+    response = mockResponse();
+    feed.doGet(mockRequest(userParam, q, eTag), response);
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+    // Task titles are part of the feed:
+    logon(TEST_ADMIN_USER);
+    initTestDB.addTask("CalendarFeedTest", "root");
+    response = mockResponse();
+    feed.doGet(mockRequest(userParam, q, eTag), response);
+    verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    final String eTag2 = getETag(response);
+    assertFalse(eTag.equals(eTag2));
+
+    // The access rights depend on the user's groups:
+    logon(TEST_ADMIN_USER);
+    initTestDB.addGroup("CalendarFeedTestGroup", TEST_USER);
+    Registry.instance().getUserGroupCache().setExpired();
+    response = mockResponse();
+    feed.doGet(mockRequest(userParam, q, eTag2), response);
+    verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertFalse(eTag2.equals(getETag(response)));
+  }
+
+  private String getETag(final HttpServletResponse response)
+  {
+    final ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq("ETag"), captor.capture());
+    final String eTag = captor.getValue();
+    assertTrue(eTag.startsWith("\""));
+    return eTag;
+  }
+
+  private HttpServletRequest mockRequest(final String user, final String q, final String ifNoneMatch)
+  {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpSession session = mock(HttpSession.class);
+    when(session.getId()).thenReturn("CalendarFeedTest");
+    when(request.getSession()).thenReturn(session);
+    when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+    when(request.getParameter("user")).thenReturn(user);
+    when(request.getParameter("q")).thenReturn(q);
+    when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+    return request;
+  }
+
+  private HttpServletResponse mockResponse() throws IOException
+  {
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(final int b) throws IOException
+      {
+        out.write(b);
+      }
+    });
+    return response;
+  }
+}
@@ -37,6 +37,8 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.projectforge.user.PFUserDO;
 import org.projectforge.user.UserDao;
 import org.projectforge.user.UserGroupCache;
@@ -81,6 +83,36 @@ public class RestUserFilterTest
     verify(chain).doFilter(Mockito.eq(request), Mockito.eq(response));
   }
 
+  @Test
+  public void testLock() throws IOException, ServletException
+  {
+    final UserDao userDao = mock(UserDao.class);
+    when(userDao.authenticateUser(Mockito.eq("lockedUser"), Mockito.eq("successPassword"))).thenReturn(
+        new PFUserDO().setUsername("lockedUser"));
+    when(userDao.encryptPassword(Mockito.anyString())).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(final InvocationOnMock invocation)
+      {
+        return (String) invocation.getArguments()[0];
+      }
+    });
+    final RestUserFilter filter = new RestUserFilter();
+    filter.userDao = userDao;
+    HttpServletResponse response = null;
+    for (int i = 0; i <= 3; i++) {
+      response = mock(HttpServletResponse.class);
+      filter.doFilter(mockRequest("lockedUser", "failed", null, null), response, mock(FilterChain.class));
+      verify(response).sendError(HttpServletResponse.SC_FORBIDDEN);
+    }
+    // Locked, correct password is rejected without authentication:
+    response = mock(HttpServletResponse.class);
+    final FilterChain chain = mock(FilterChain.class);
+    filter.doFilter(mockRequest("lockedUser", "successPassword", null, null), response, chain);
+    verify(response).sendError(RestUserFilter.SC_TOO_MANY_REQUESTS);
+    verify(chain, never()).doFilter(Mockito.any(HttpServletRequest.class), Mockito.any(HttpServletResponse.class));
+    verify(userDao, never()).authenticateUser(Mockito.eq("lockedUser"), Mockito.eq("successPassword"));
+  }
+
   private HttpServletRequest mockRequest(final String username, final String password, final Integer userId,
       final String authenticationToken)
   {